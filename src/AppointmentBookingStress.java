@@ -0,0 +1,159 @@
+import controller.AppointmentController;
+import controller.Repositories;
+import entity.Appointment;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import utility.FieldTokenizer;
+import utility.IdSequence;
+
+/**
+ * Stress test for appointment booking. It adds a small pool of available slots, then
+ * has many patients book them at once through {@link AppointmentController#bookSlot},
+ * each reading a slot, pausing as if typing a message, and booking it. A patient who
+ * gets a slot cancels it again shortly after, so the pool stays contended throughout.
+ *
+ * <p>Every successful booking claims its slot in an in-memory register, which fails
+ * if the slot is already held, and at the end the file is read back and compared
+ * with the register. Any double booking or mismatch fails the run.
+ *
+ * <p>Usage: {@code java AppointmentBookingStress [slots] [patients] [attempts]}
+ * (default 10, 64 and 5000). The test adds slots to the appointment file, so run it
+ * from a scratch copy of the program directory.
+ */
+public class AppointmentBookingStress {
+
+    private static final String APPOINTMENT_FILE = "data/appointment.txt";
+    private static final String DOCTOR_ID = "DR99999";
+
+    public static void main(String[] args) throws Exception {
+        int slotCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int patients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int attempts = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+
+        List<String> slotIds = new ArrayList<>();
+        Map<String, AtomicReference<String>> holders = new HashMap<>();
+        LocalDate date = LocalDate.now().plusYears(50);
+        for (int i = 0; i < slotCount; i++) {
+            String slotId = IdSequence.forFile(APPOINTMENT_FILE, "AP").next();
+            Repositories.appointments().add(new Appointment(slotId, DOCTOR_ID, date, LocalTime.of(9, 0).plusMinutes(30L * i)));
+            slotIds.add(slotId);
+            holders.put(slotId, new AtomicReference<>());
+        }
+
+        AtomicInteger remaining = new AtomicInteger(attempts);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger doubleBookings = new AtomicInteger();
+        AtomicInteger failedCancels = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(patients);
+        List<Future<?>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int p = 0; p < patients; p++) {
+            String patientId = String.format("PA9%04d", p);
+            results.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (remaining.getAndDecrement() > 0) {
+                    String slotId = slotIds.get(random.nextInt(slotIds.size()));
+                    Appointment slot = Repositories.appointments().findById(slotId);
+                    pauseUpTo(2); // The patient types a message to the doctor
+
+                    if (!AppointmentController.bookSlot(slot, patientId, "Stress test")) {
+                        conflicts.incrementAndGet();
+                        continue;
+                    }
+                    booked.incrementAndGet();
+                    if (!holders.get(slotId).compareAndSet(null, patientId)) {
+                        doubleBookings.incrementAndGet();
+                        continue;
+                    }
+
+                    // Give the slot up again, so others can book it
+                    pauseUpTo(2);
+                    holders.get(slotId).set(null);
+                    Appointment cancel = new Appointment(Repositories.appointments().findById(slotId));
+                    cancel.setPatientId("-");
+                    cancel.setStatus(Appointment.Status.AVAILABLE);
+                    cancel.setRequestMessage("-");
+                    if (!Repositories.appointments().saveIf(withNextVersion(cancel),
+                            stored -> stored.getVersion() == cancel.getVersion()
+                                    && stored.getPatientId().equals(patientId))) {
+                        failedCancels.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(10, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        // Read the slots back from the file, past every cache
+        int mismatches = 0;
+        Map<String, Integer> linesPerSlot = new HashMap<>();
+        FieldTokenizer fields = new FieldTokenizer();
+        for (String line : Files.readAllLines(Paths.get(APPOINTMENT_FILE))) {
+            fields.reset(line);
+            String slotId = fields.field(0);
+            if (!holders.containsKey(slotId)) {
+                continue;
+            }
+            linesPerSlot.merge(slotId, 1, Integer::sum);
+            String holder = holders.get(slotId).get();
+            boolean available = fields.fieldEquals(5, "AVAILABLE") && fields.fieldEquals(2, "-");
+            boolean heldByHolder = fields.fieldEquals(5, "PENDING") && holder != null && fields.fieldEquals(2, holder);
+            if (holder == null ? !available : !heldByHolder) {
+                mismatches++;
+            }
+        }
+        for (String slotId : slotIds) {
+            if (linesPerSlot.getOrDefault(slotId, 0) != 1) {
+                mismatches++;
+            }
+        }
+
+        System.out.println("══════════════════════════════════════════");
+        System.out.printf("Booking attempts   : %d by %d patients on %d slots in %.1f s%n", attempts, patients,
+                slotCount, elapsed / 1e9);
+        System.out.printf("Booked             : %d%n", booked.get());
+        System.out.printf("Refused (conflict) : %d%n", conflicts.get());
+        System.out.printf("Double bookings    : %d%n", doubleBookings.get());
+        System.out.printf("Failed cancels     : %d%n", failedCancels.get());
+        System.out.printf("File mismatches    : %d%n", mismatches);
+
+        boolean passed = booked.get() > 0 && doubleBookings.get() == 0 && failedCancels.get() == 0 && mismatches == 0;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static Appointment withNextVersion(Appointment appointment) {
+        Appointment next = new Appointment(appointment);
+        next.setVersion(appointment.getVersion() + 1);
+        return next;
+    }
+
+    private static void pauseUpTo(int millis) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(millis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import utility.AtomicFileWriter;
+import utility.AtomicFileWriter.Durability;
+import utility.RecordStore;
+
+/**
+ * Benchmark for the durability levels of {@link AtomicFileWriter}. For each level it
+ * seeds a scratch file of records, then has several threads make three kinds of
+ * commit to it through {@link RecordStore}: updates of the same length, written in
+ * place; updates that change the length, which shift the records after them; and
+ * appends. Each kind is timed on its own and reported as commits per second with the
+ * latency of a commit.
+ *
+ * <p>Afterwards the file is read back: every record must hold the last value written
+ * to it and every appended record must be there, so a commit lost by a level fails
+ * the run. The levels do not differ in what a running process sees, only in what
+ * survives a power loss, which this benchmark does not simulate.
+ *
+ * <p>Usage: {@code java DurabilityBenchmark [records] [commits per thread] [threads]}
+ * (default 2000, 200 and 4). It writes to a temporary directory only.
+ */
+public class DurabilityBenchmark {
+
+    private static final String[] KINDS = { "In-place update", "Shifting update", "Append" };
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        records = Math.max(records, commits * threads); // Each commit of a kind gets a record of its own
+
+        Path directory = Files.createTempDirectory("hms-durability");
+        boolean passed = true;
+        System.out.println("══════════════════════════════════════════");
+        System.out.printf("%d records, %d threads x %d commits of each kind%n", records, threads, commits);
+        for (Durability durability : Durability.values()) {
+            Path file = directory.resolve(durability.name().toLowerCase() + ".txt");
+            AtomicFileWriter.setDurability(file.toString(), durability);
+            passed &= run(file, durability, records, commits, threads);
+        }
+        AtomicFileWriter.flush();
+        System.out.println("══════════════════════════════════════════");
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // Times each kind of commit against one file at one level, then checks the file
+    private static boolean run(Path file, Durability durability, int records, int commits, int threads)
+            throws Exception {
+        List<String> seed = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            seed.add(recordId(i) + "|" + value(0, 0));
+        }
+        Files.write(file, seed);
+        RecordStore store = RecordStore.forFile(file.toString());
+
+        System.out.println(durability + ":");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int kind = 0; kind < KINDS.length; kind++) {
+                int currentKind = kind;
+                long[] latencies = new long[threads * commits];
+                List<Future<?>> workers = new ArrayList<>();
+                long start = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    workers.add(pool.submit(() -> {
+                        commit(store, currentKind, thread, threads, commits, latencies);
+                        return null;
+                    }));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Arrays.sort(latencies);
+                System.out.printf("  %-16s : %8.0f commits/s | p50 %6.2f ms | p99 %6.2f ms%n", KINDS[kind],
+                        latencies.length / seconds, latencies[latencies.length / 2] / 1e6,
+                        latencies[(int) (latencies.length * 0.99)] / 1e6);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return check(file, records, commits, threads);
+    }
+
+    // Makes one thread's commits of one kind, recording the time each one took
+    private static void commit(RecordStore store, int kind, int thread, int threads, int commits, long[] latencies)
+            throws IOException {
+        for (int c = 0; c < commits; c++) {
+            int record = c * threads + thread;
+            long start = System.nanoTime();
+            switch (kind) {
+                case 0:
+                    store.update(recordId(record), recordId(record) + "|" + value(c, 0));
+                    break;
+                case 1:
+                    // Alternating widths, so every update changes the length of the record
+                    store.update(recordId(record), recordId(record) + "|" + value(c, c % 2 == 0 ? 1 : 2));
+                    break;
+                default:
+                    store.append("A" + thread + "-" + c + "|appended");
+                    break;
+            }
+            latencies[thread * commits + c] = System.nanoTime() - start;
+        }
+    }
+
+    // Checks that every record holds its last written value and every append is there
+    private static boolean check(Path file, int records, int commits, int threads) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        String[] expected = new String[records];
+        for (int i = 0; i < records; i++) {
+            expected[i] = value(0, 0);
+        }
+        for (int thread = 0; thread < threads; thread++) {
+            for (int c = 0; c < commits; c++) {
+                expected[c * threads + thread] = value(c, c % 2 == 0 ? 1 : 2);
+            }
+        }
+        int wrong = 0;
+        int appended = 0;
+        for (String line : lines) {
+            if (line.startsWith("A")) {
+                appended++;
+            } else {
+                int record = Integer.parseInt(line.substring(1, line.indexOf('|')));
+                wrong += line.substring(line.indexOf('|') + 1).equals(expected[record]) ? 0 : 1;
+            }
+        }
+        boolean passed = wrong == 0 && appended == threads * commits && lines.size() == records + appended;
+        System.out.printf("  Read back        : %d wrong records, %d of %d appends%n", wrong, appended,
+                threads * commits);
+        return passed;
+    }
+
+    private static String recordId(int record) {
+        return "R" + record;
+    }
+
+    // A value of the given extra width, so replacing updates change the record's length
+    private static String value(int commit, int extra) {
+        return String.format("%06d", commit) + "x".repeat(extra);
+    }
+}
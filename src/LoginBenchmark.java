@@ -0,0 +1,125 @@
+import controller.AccountController;
+import entity.User;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import utility.FileUtils;
+import utility.IdSequence;
+import utility.PasswordHashing;
+import utility.Terminal;
+
+/**
+ * Benchmark for logging in, as during a morning rush. It adds many patient accounts,
+ * then has several sessions log in at once through {@link AccountController#login()},
+ * each typing a user ID and password on a terminal of its own. One login in every
+ * {@code 10} uses a wrong password, which must be refused. Wrong passwords are only
+ * tried against half of the accounts, so the accounts they lock out (see
+ * {@link controller.LoginAttempts}) are never ones logged in to with the right one,
+ * and each session has a source of its own.
+ *
+ * <p>Usage: {@code java LoginBenchmark [accounts] [sessions] [logins]}
+ * (default 5000, 16 and 1000). Passwords are hashed with the current scheme, so the
+ * time per login follows {@code -Dhms.password.iterations}. The benchmark adds
+ * accounts to the data files, so run it from a scratch copy of the program directory.
+ */
+public class LoginBenchmark {
+
+    private static final String PASSWORD = "Passw0rd!";
+    private static final int WRONG_EVERY = 10;
+
+    public static void main(String[] args) throws Exception {
+        int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int logins = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        List<String> userIds = createPatients(accountCount);
+
+        AtomicInteger remaining = new AtomicInteger(logins);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger wrongResults = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(sessions);
+        List<Future<?>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int s = 0; s < sessions; s++) {
+            String source = "bench-" + s;
+            results.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int attempt;
+                while ((attempt = remaining.getAndDecrement()) > 0) {
+                    boolean wrongPassword = attempt % WRONG_EVERY == 0;
+                    int half = userIds.size() / 2;
+                    String userId = userIds.get(wrongPassword ? half + random.nextInt(userIds.size() - half)
+                            : random.nextInt(Math.max(1, half)));
+                    User user = login(userId, wrongPassword ? "Wrong0ne!" : PASSWORD, source);
+                    if (user == null) {
+                        refused.incrementAndGet();
+                    } else {
+                        accepted.incrementAndGet();
+                    }
+                    if (wrongPassword != (user == null) || user != null && !user.getUserId().equals(userId)) {
+                        wrongResults.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(10, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.println("══════════════════════════════════════════");
+        System.out.printf("Logins             : %d by %d sessions over %d accounts in %.2f s (%.0f per second)%n",
+                logins, sessions, userIds.size(), elapsed / 1e9, logins / (elapsed / 1e9));
+        System.out.printf("Accepted / refused : %d / %d%n", accepted.get(), refused.get());
+        System.out.printf("Wrong results      : %d%n", wrongResults.get());
+
+        boolean passed = wrongResults.get() == 0;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // Logs in once on a terminal of its own, answering all three attempts with the same password
+    private static User login(String userId, String password, String source) {
+        String input = (userId + "\n" + password + "\n").repeat(3);
+        Terminal terminal = new Terminal(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                OutputStream.nullOutputStream(), StandardCharsets.UTF_8, source);
+        Terminal.bind(terminal);
+        try {
+            return new AccountController(terminal).login();
+        } finally {
+            Terminal.unbind();
+        }
+    }
+
+    // Writes the accounts and profiles of the patients in one batch per file
+    private static List<String> createPatients(int count) {
+        List<String> userIds = new ArrayList<>();
+        List<String> accounts = new ArrayList<>();
+        List<String> profiles = new ArrayList<>();
+        String hashedPassword = PasswordHashing.hash(PASSWORD); // One salt for all, to seed quickly
+        for (int i = 0; i < count; i++) {
+            String userId = IdSequence.forFile("data/account.txt", "PA").next();
+            accounts.add(userId + "|" + hashedPassword);
+            profiles.add(String.join("|", userId, "Bench", "Patient", "Male", "91234567", "bench@test.com",
+                    "Patient", "01-01-2000", "O+"));
+            userIds.add(userId);
+        }
+        FileUtils.writeAllToFile("data/patient.txt", profiles);
+        FileUtils.writeAllToFile("data/account.txt", accounts);
+        return userIds;
+    }
+}
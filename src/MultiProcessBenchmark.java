@@ -0,0 +1,194 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import utility.FieldTokenizer;
+import utility.FileUtils;
+import utility.Repository;
+
+/**
+ * Benchmark for several programs sharing one data directory. For each process count
+ * it copies the data directory, seeds a few counter records, then starts that many
+ * JVMs against the copy. Every process increments random counters with a
+ * compare-and-set through {@link Repository#saveIf}, retrying when another process
+ * got in first, and appends a record of its own every few increments.
+ *
+ * <p>Once the processes have exited the file is read back: the counters must add up
+ * to the number of increments made and every appended record must be there once, so
+ * a write lost between processes fails the run. Throughput counts increments across
+ * all processes, from a common start time so JVM startup is left out.
+ *
+ * <p>Usage: {@code java MultiProcessBenchmark [increments per process] [process counts...]}
+ * (default 500, then 2, 4 and 8). Run it from the program directory; {@code -Dhms.*}
+ * options are passed on to the processes, so for example
+ * {@code -Dhms.processLocks=false} shows the updates lost without locking.
+ */
+public class MultiProcessBenchmark {
+
+    private static final String COUNTER_FILE = "data/processBenchmark.txt";
+    private static final int COUNTERS = 4;
+    private static final int APPEND_EVERY = 4;
+    private static final long START_DELAY_MS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("worker")) {
+            runWorker(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]));
+            return;
+        }
+
+        int increments = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        List<Integer> processCounts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            processCounts.add(Integer.parseInt(args[i]));
+        }
+        if (processCounts.isEmpty()) {
+            processCounts = List.of(2, 4, 8);
+        }
+
+        boolean passed = true;
+        System.out.println("══════════════════════════════════════════");
+        for (int processes : processCounts) {
+            passed &= runProcesses(processes, increments);
+        }
+        System.out.println("══════════════════════════════════════════");
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // Runs the given number of processes on a fresh copy of the data directory and checks the result
+    private static boolean runProcesses(int processes, int increments) throws Exception {
+        Path directory = Files.createTempDirectory("hms-benchmark");
+        copyDirectory(Paths.get("data"), directory.resolve("data"));
+        List<String> counters = new ArrayList<>();
+        for (int c = 0; c < COUNTERS; c++) {
+            counters.add(counterId(c) + "|0");
+        }
+        Files.write(directory.resolve(COUNTER_FILE), counters);
+
+        long startAt = System.currentTimeMillis() + START_DELAY_MS;
+        List<Process> workers = new ArrayList<>();
+        for (int p = 0; p < processes; p++) {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("hms.")) {
+                    command.add("-D" + name + "=" + System.getProperty(name));
+                }
+            }
+            command.add(MultiProcessBenchmark.class.getName());
+            command.addAll(List.of("worker", String.valueOf(p), String.valueOf(increments), String.valueOf(startAt)));
+            workers.add(new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start());
+        }
+
+        long retries = 0;
+        long finishedAt = startAt;
+        boolean workersFailed = false;
+        for (Process worker : workers) {
+            String result = null;
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(worker.getInputStream()))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (line.startsWith("RESULT ")) {
+                        result = line;
+                    } else {
+                        System.out.println("  worker: " + line);
+                    }
+                }
+            }
+            if (worker.waitFor() != 0 || result == null) {
+                workersFailed = true;
+                continue;
+            }
+            String[] fields = result.split(" ");
+            retries += Long.parseLong(fields[1]);
+            finishedAt = Math.max(finishedAt, Long.parseLong(fields[2]));
+        }
+
+        // Read the records back, as a process starting now would see them
+        long total = 0;
+        int appended = 0;
+        FieldTokenizer fields = new FieldTokenizer();
+        for (String line : FileUtils.readAllLines(directory.resolve(COUNTER_FILE).toString())) {
+            fields.reset(line);
+            if (fields.field(0).startsWith("CT")) {
+                total += Long.parseLong(fields.field(1));
+            } else if (!line.isEmpty()) {
+                appended++;
+            }
+        }
+        long expectedTotal = (long) processes * increments;
+        int expectedAppended = processes * (increments / APPEND_EVERY);
+        double seconds = Math.max(1, finishedAt - startAt) / 1000.0;
+
+        System.out.printf("%d processes : %d increments in %.2f s (%.0f per second), %d retries%n", processes,
+                expectedTotal, seconds, expectedTotal / seconds, retries);
+        System.out.printf("              counters %d / %d, appended records %d / %d%n", total, expectedTotal,
+                appended, expectedAppended);
+        deleteDirectory(directory);
+        return !workersFailed && total == expectedTotal && appended == expectedAppended;
+    }
+
+    // One process: waits for the common start, then increments and appends
+    private static void runWorker(int worker, int increments, long startAt) throws InterruptedException {
+        Repository<String> records = new Repository<>(COUNTER_FILE, Repository.Codec.lines());
+        records.findAll(); // Load before the clock starts
+        Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long retries = 0;
+        for (int i = 1; i <= increments; i++) {
+            String id = counterId(random.nextInt(COUNTERS));
+            while (true) {
+                String current = records.findById(id);
+                if (current == null) {
+                    System.out.println("Counter " + id + " was lost");
+                    System.exit(1);
+                }
+                long count = Long.parseLong(FieldTokenizer.fieldOf(current, 1));
+                if (records.saveIf(id + "|" + (count + 1), stored -> stored.equals(current))) {
+                    break;
+                }
+                retries++;
+            }
+            if (i % APPEND_EVERY == 0) {
+                records.add(String.format("WK%02d%05d|%d", worker, i, worker));
+            }
+        }
+        System.out.println("RESULT " + retries + " " + System.currentTimeMillis());
+    }
+
+    private static String counterId(int counter) {
+        return String.format("CT%05d", counter);
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        Files.createDirectories(target);
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    Files.copy(file, target.resolve(file.getFileName()));
+                }
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> paths = new ArrayList<>();
+            files.forEach(paths::add);
+            for (int i = paths.size() - 1; i >= 0; i--) {
+                Files.delete(paths.get(i));
+            }
+        }
+    }
+}
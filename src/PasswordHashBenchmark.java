@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import utility.PasswordHashing;
+
+/**
+ * Benchmark for picking the PBKDF2 cost ({@code -Dhms.password.iterations}). For each
+ * iteration count it warms the hasher up, then times verifying a password on one
+ * thread, and recommends the highest count that stays within the target time per
+ * login. It then times logins from many sessions at once through
+ * {@link PasswordHashing#verify}, with the current settings, to show the effect of the
+ * bounded worker pool.
+ *
+ * <p>Usage: {@code java PasswordHashBenchmark [target ms] [iteration counts...]}
+ * (default 100, then 100000, 210000, 310000 and 600000).
+ */
+public class PasswordHashBenchmark {
+
+    private static final String PASSWORD = "Passw0rd!";
+    private static final int WARMUP = 5;
+    private static final int MEASURED = 10;
+    private static final int SESSIONS = 16;
+    private static final int LOGINS_PER_SESSION = 4;
+
+    public static void main(String[] args) throws Exception {
+        double targetMillis = args.length > 0 ? Double.parseDouble(args[0]) : 100;
+        List<Integer> counts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            counts.add(Integer.parseInt(args[i]));
+        }
+        if (counts.isEmpty()) {
+            counts = List.of(100_000, 210_000, 310_000, 600_000);
+        }
+
+        System.out.println("══════════════════════════════════════════");
+        int recommended = 0;
+        for (int iterations : counts) {
+            PasswordHashing.Pbkdf2 hasher = new PasswordHashing.Pbkdf2(iterations);
+            String stored = hasher.hash(PASSWORD);
+            for (int i = 0; i < WARMUP; i++) {
+                hasher.verify(PASSWORD, stored);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED; i++) {
+                if (!hasher.verify(PASSWORD, stored)) {
+                    throw new IllegalStateException("Password not verified at " + iterations + " iterations");
+                }
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / MEASURED;
+            System.out.printf("%8d iterations : %7.1f ms per login%n", iterations, millis);
+            if (millis <= targetMillis) {
+                recommended = Math.max(recommended, iterations);
+            }
+        }
+        System.out.println(recommended > 0
+                ? "Recommended        : -Dhms.password.iterations=" + recommended + " (within " + targetMillis + " ms)"
+                : "Recommended        : none within " + targetMillis + " ms");
+
+        // Many sessions logging in at once with the current settings, through the worker pool
+        String stored = PasswordHashing.hash(PASSWORD);
+        ExecutorService sessions = Executors.newFixedThreadPool(SESSIONS);
+        List<Future<Boolean>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int s = 0; s < SESSIONS; s++) {
+            results.add(sessions.submit(() -> {
+                boolean verified = true;
+                for (int i = 0; i < LOGINS_PER_SESSION; i++) {
+                    verified &= PasswordHashing.verify(PASSWORD, stored);
+                }
+                return verified;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            if (!result.get(10, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Password not verified");
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sessions.shutdown();
+        int logins = SESSIONS * LOGINS_PER_SESSION;
+        System.out.printf("Pooled logins      : %d by %d sessions in %.2f s (%.1f per second, %d workers)%n", logins,
+                SESSIONS, seconds, logins / seconds, Integer.getInteger("hms.password.threads",
+                        Runtime.getRuntime().availableProcessors()));
+    }
+}
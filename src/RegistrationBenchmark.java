@@ -0,0 +1,116 @@
+import controller.AccountController;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import utility.FileUtils;
+import utility.Terminal;
+
+/**
+ * Benchmark for registering patients into a large patient file. It adds many patients,
+ * then registers new ones through {@link AccountController#register(boolean)}, typing
+ * the answers on a terminal of its own, and times each registration. It also tries to
+ * register each seeded name again, which must be refused, and a name that only
+ * appears inside a longer seeded name, which must not be.
+ *
+ * <p>Usage: {@code java RegistrationBenchmark [patients] [registrations]}
+ * (default 1000000 and 200). New accounts get a hashed password, so run with a low
+ * {@code -Dhms.password.iterations} to time the registration itself. The benchmark
+ * adds patients to the data files, so run it from a scratch copy of the program
+ * directory.
+ */
+public class RegistrationBenchmark {
+
+    private static final int WARMUP = 5;
+
+    public static void main(String[] args) {
+        int patientCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int registrations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        // Seeded names are "Seed<letters>" "Patient<letters>", so "<letters>" "Patient" is new
+        List<String> profiles = new ArrayList<>();
+        for (int i = 0; i < patientCount; i++) {
+            profiles.add(String.join("|", String.format("PB%07d", i), "Seed" + letters(i), "Patient" + letters(i),
+                    "Male", "91234567", "bench@test.com", "Patient", "01-01-2000", "O+"));
+        }
+        long start = System.nanoTime();
+        FileUtils.writeAllToFile("data/patient.txt", profiles);
+        System.out.println("══════════════════════════════════════════");
+        System.out.printf("Seeded             : %d patients in %.2f s%n", patientCount, (System.nanoTime() - start) / 1e9);
+
+        int wrongResults = 0;
+        start = System.nanoTime();
+        if (!register("First", "Patient")) {
+            wrongResults++; // The first registration also loads the patient file
+        }
+        System.out.printf("First registration : %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        for (int i = 0; i < WARMUP; i++) {
+            register("Warm" + letters(i), "Patient");
+        }
+
+        long[] added = new long[registrations];
+        long[] refused = new long[registrations];
+        for (int i = 0; i < registrations; i++) {
+            start = System.nanoTime();
+            if (!register("New" + letters(i), "Patient")) {
+                wrongResults++;
+            }
+            added[i] = System.nanoTime() - start;
+
+            int seeded = (int) ((long) i * patientCount / registrations);
+            start = System.nanoTime();
+            if (register("seed" + letters(seeded), " PATIENT" + letters(seeded).toUpperCase())) {
+                wrongResults++;
+            }
+            refused[i] = System.nanoTime() - start;
+        }
+        if (!register(letters(1), "Patient")) {
+            wrongResults++; // Only part of "Seed<letters>|Patient<letters>"
+        }
+
+        report("New patient        :", added);
+        report("Existing patient   :", refused);
+        System.out.printf("Wrong results      : %d%n", wrongResults);
+
+        boolean passed = wrongResults == 0;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // Registers one patient on a terminal of its own, returning whether it was added
+    private static boolean register(String firstName, String lastName) {
+        String input = String.join("\n", firstName, lastName, "1", "91234567", "bench@test.com", "01", "01", "2000",
+                "7", "") + "\n";
+        Terminal terminal = new Terminal(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+        Terminal.bind(terminal);
+        try {
+            return new AccountController(terminal).register(false);
+        } finally {
+            Terminal.unbind();
+        }
+    }
+
+    // A name of letters only, as registration accepts, distinct for each number
+    private static String letters(int number) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + number % 26));
+            number /= 26;
+        } while (number > 0);
+        return name.toString();
+    }
+
+    private static void report(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%s p50 %.2f ms | p99 %.2f ms | max %.2f ms%n", label,
+                sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6,
+                sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,125 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import utility.FieldTokenizer;
+
+/**
+ * Benchmark for {@link FieldTokenizer} against {@code String.split("\\|")} in the scan
+ * loops of the controllers. It generates appointment lines and runs two scans over
+ * them both ways: finding the available slots of one doctor, which compares two
+ * fields of each line, and summing the stock of medicine lines, which parses one
+ * numeric field. Each scan is timed over several rounds after a warm-up and reported
+ * as nanoseconds and bytes allocated per line; both ways must give the same result.
+ *
+ * <p>Usage: {@code java TokenizerBenchmark [lines] [rounds]} (default 1000000 and 10).
+ */
+public class TokenizerBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int DOCTORS = 50;
+    private static final String DOCTOR = "DR00007";
+
+    public static void main(String[] args) {
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<String> appointments = new ArrayList<>(lineCount);
+        List<String> medicines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            appointments.add(String.join("|", String.format("AP%07d", i), String.format("DR%05d", i % DOCTORS),
+                    i % 3 == 0 ? "-" : String.format("PA%05d", i % 1000), "10-11-2024", "14:00",
+                    i % 3 == 0 ? "AVAILABLE" : "BOOKED", "-", "-", "-", "-"));
+            medicines.add(String.join("|", String.format("ME%07d", i), "Paracetamol", String.valueOf(i % 500), "20"));
+        }
+
+        System.out.println("══════════════════════════════════════════");
+        System.out.printf("%d lines, %d rounds%n", lineCount, rounds);
+        boolean passed = true;
+        passed &= compare("Available slots", appointments, rounds,
+                TokenizerBenchmark::availableBySplit, TokenizerBenchmark::availableByTokenizer);
+        passed &= compare("Stock total    ", medicines, rounds,
+                TokenizerBenchmark::stockBySplit, TokenizerBenchmark::stockByTokenizer);
+        System.out.println("══════════════════════════════════════════");
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private interface Scan {
+        long run(List<String> lines);
+    }
+
+    // Times both ways of one scan and checks that they agree
+    private static boolean compare(String label, List<String> lines, int rounds, Scan split, Scan tokenizer) {
+        long[] splitResult = measure(lines, rounds, split);
+        long[] tokenizerResult = measure(lines, rounds, tokenizer);
+        System.out.printf("%s : split %6.1f ns %5d B | tokenizer %6.1f ns %5d B per line (%.1fx faster)%n", label,
+                splitResult[1] / (double) lines.size(), splitResult[2] / lines.size(),
+                tokenizerResult[1] / (double) lines.size(), tokenizerResult[2] / lines.size(),
+                splitResult[1] / (double) tokenizerResult[1]);
+        return splitResult[0] == tokenizerResult[0];
+    }
+
+    // Returns the result of the scan, its best time in nanoseconds and the bytes it allocated
+    private static long[] measure(List<String> lines, int rounds, Scan scan) {
+        long result = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            result = scan.run(lines);
+        }
+        long best = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            result = scan.run(lines);
+            best = Math.min(best, System.nanoTime() - start);
+            allocated = Math.min(allocated, allocatedBytes() - bytesBefore);
+        }
+        return new long[] { result, best, allocated };
+    }
+
+    private static long availableBySplit(List<String> lines) {
+        long found = 0;
+        for (String line : lines) {
+            String[] fields = line.split("\\|");
+            if (fields[1].equals(DOCTOR) && fields[5].equals("AVAILABLE")) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static long availableByTokenizer(List<String> lines) {
+        FieldTokenizer fields = new FieldTokenizer();
+        long found = 0;
+        for (String line : lines) {
+            fields.reset(line);
+            if (fields.fieldEquals(1, DOCTOR) && fields.fieldEquals(5, "AVAILABLE")) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static long stockBySplit(List<String> lines) {
+        long total = 0;
+        for (String line : lines) {
+            total += Integer.parseInt(line.split("\\|")[2]);
+        }
+        return total;
+    }
+
+    private static long stockByTokenizer(List<String> lines) {
+        FieldTokenizer fields = new FieldTokenizer();
+        long total = 0;
+        for (String line : lines) {
+            total += fields.reset(line).fieldAsInt(2);
+        }
+        return total;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
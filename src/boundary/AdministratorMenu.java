@@ -5,9 +5,10 @@ import controller.AppointmentController;
 import controller.BillController;
 import controller.ForgetPasswordController;
 import controller.InventoryController;
+import controller.SessionManager;
 import entity.Administrator;
 import interfaces.MenuInterface;
-import java.util.Scanner;
+import utility.Terminal;
 
 /**
  * Represents the menu interface for an administrator in the hospital management system.
@@ -18,24 +19,26 @@ import java.util.Scanner;
 public class AdministratorMenu implements MenuInterface {
 
     private final Administrator administrator;
+    private final Terminal terminal;
     private final AccountController accountController;
     private final AppointmentController appointmentController;
     private final InventoryController inventoryController;
     private final ForgetPasswordController forgetPasswordController;
-    private final BillController billController = new BillController();
     public static final String ANSI_TRUE_LIGHT_RED = "\u001B[38;2;255;182;193m"; 
 
     /**
      * Constructs an AdministratorMenu with the specified administrator and necessary controllers.
      * 
      * @param administrator the administrator whose menu is being managed
+     * @param terminal      the terminal of the administrator's session
      */
-    public AdministratorMenu(Administrator administrator) {
+    public AdministratorMenu(Administrator administrator, Terminal terminal) {
         this.administrator = administrator;
-        this.accountController = new AccountController();
-        this.appointmentController = new AppointmentController();
-        this.inventoryController = new InventoryController();
-        this.forgetPasswordController = new ForgetPasswordController();
+        this.terminal = terminal;
+        this.accountController = new AccountController(terminal);
+        this.appointmentController = new AppointmentController(terminal);
+        this.inventoryController = new InventoryController(terminal);
+        this.forgetPasswordController = new ForgetPasswordController(terminal);
     }
 
     /**
@@ -43,10 +46,14 @@ public class AdministratorMenu implements MenuInterface {
      */
     @Override
     public void displayMenu() {
-        Scanner scanner = new Scanner(System.in);
         boolean exit = false;
 
         while (!exit) {
+            // End the session once it has been idle too long
+            if (SessionManager.shared().resolve(terminal.getSessionToken()) == null) {
+                System.out.println("Your session has expired. Please log in again.");
+                break;
+            }
             System.out.println(ANSI_TRUE_LIGHT_RED + "\n╔════════════════════════════════════════╗");
             System.out.println("║           Administrator Menu           ║");
             System.out.println("╚════════════════════════════════════════╝");
@@ -62,17 +69,17 @@ public class AdministratorMenu implements MenuInterface {
 
             System.out.print("Enter your choice: ");
 
-            String choice = scanner.nextLine().trim();
+            String choice = terminal.nextLine().trim();
 
             switch (choice) {
                 case "1":
-                    manageStaff(scanner);
+                    manageStaff(terminal);
                     break;
                 case "2":
                     appointmentController.displayDoctorAppointmentDetails();
                     break;
                 case "3":
-                    manageInventory(scanner);
+                    manageInventory(terminal);
                     break;
                 case "4":
                     inventoryController.approveReplenishmentRequests();
@@ -81,7 +88,7 @@ public class AdministratorMenu implements MenuInterface {
                     forgetPasswordController.processForgetPasswordRequests();
                     break;
                 case "6":
-                    BillController.viewAndUpdatePendingBills();
+                    BillController.viewAndUpdatePendingBills(terminal);
                     break;
                 case "0":
                     System.out.println("Logging out...");
@@ -97,10 +104,10 @@ public class AdministratorMenu implements MenuInterface {
     /**
      * Provides options for managing hospital staff, including filtering, adding, updating, or removing staff members.
      * 
-     * @param scanner the Scanner object for user input
+     * @param terminal the terminal for user input
      */
     // Manage hospital staff options
-    private void manageStaff(Scanner scanner) {
+    private void manageStaff(Terminal terminal) {
         boolean backToMenu = false;
 
         while (!backToMenu) {
@@ -115,20 +122,20 @@ public class AdministratorMenu implements MenuInterface {
             System.out.println("0. Back to Main Menu");
             System.out.println("══════════════════════════════════════════");
             System.out.print("Enter your choice: ");
-            String choice = scanner.nextLine().trim();
+            String choice = terminal.nextLine().trim();
 
             switch (choice) {
                 case "1":
-                    filterStaff(scanner);
+                    filterStaff(terminal);
                     break;
                 case "2":
                     accountController.register(true);
                     break;
                 case "3":
-                    accountController.updateStaff(scanner);
+                    accountController.updateStaff(terminal);
                     break;
                 case "4":
-                    accountController.removeStaff(scanner);
+                    accountController.removeStaff(terminal);
                     break;
                 case "0":
                     backToMenu = true;
@@ -143,10 +150,10 @@ public class AdministratorMenu implements MenuInterface {
     /**
      * Provides options for filtering hospital staff based on role, gender, or age.
      * 
-     * @param scanner the Scanner object for user input
+     * @param terminal the terminal for user input
      */
     // Filter hospital staff by different attributes
-    private void filterStaff(Scanner scanner) {
+    private void filterStaff(Terminal terminal) {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║              Filter Staff              ║");
         System.out.println("╚════════════════════════════════════════╝");
@@ -157,17 +164,17 @@ public class AdministratorMenu implements MenuInterface {
         System.out.println("0. Back to Main Menu");
         System.out.println("══════════════════════════════════════════");
         System.out.print("Enter your choice: ");
-        String choice = scanner.nextLine().trim();
+        String choice = terminal.nextLine().trim();
 
         switch (choice) {
             case "1":
-                accountController.filterByRole(scanner);
+                accountController.filterByRole(terminal);
                 break;
             case "2":
-                accountController.filterByGender(scanner);
+                accountController.filterByGender(terminal);
                 break;
             case "3":
-                accountController.filterByAge(scanner);
+                accountController.filterByAge(terminal);
                 break;
             case "0":
                 break;
@@ -180,10 +187,10 @@ public class AdministratorMenu implements MenuInterface {
     /**
      * Provides options for managing the hospital's medication inventory, including adding, updating, or removing medicines.
      * 
-     * @param scanner the Scanner object for user input
+     * @param terminal the terminal for user input
      */
     // Manage medication inventory options
-    private void manageInventory(Scanner scanner) {
+    private void manageInventory(Terminal terminal) {
         boolean backToMenu = false;
 
         while (!backToMenu) {
@@ -197,17 +204,17 @@ public class AdministratorMenu implements MenuInterface {
             System.out.println("0. Back to Main Menu");
             System.out.println("══════════════════════════════════════════");
             System.out.print("Enter your choice: ");
-            String choice = scanner.nextLine().trim();
+            String choice = terminal.nextLine().trim();
 
             switch (choice) {
                 case "1":
-                    inventoryController.addMedicine(scanner);
+                    inventoryController.addMedicine(terminal);
                     break;
                 case "2":
-                    inventoryController.updateMedicine(scanner);
+                    inventoryController.updateMedicine(terminal);
                     break;
                 case "3":
-                    inventoryController.removeMedicine(scanner);
+                    inventoryController.removeMedicine(terminal);
                     break;
                 case "0":
                     backToMenu = true;
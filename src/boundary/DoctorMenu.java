@@ -4,9 +4,10 @@ import controller.AppointmentController;
 import controller.AppointmentOutcomeController;
 import controller.FeedbackController;
 import controller.MedicalRecordsController;
+import controller.SessionManager;
 import entity.Doctor;
 import interfaces.MenuInterface;
-import java.util.Scanner;
+import utility.Terminal;
 
 /**
  * The DoctorMenu class provides an interface for doctors to manage various
@@ -22,6 +23,9 @@ public class DoctorMenu implements MenuInterface {
      /** Doctor object representing the currently logged-in doctor. */
     private final Doctor doctor;
 
+    /** Terminal of the doctor's session. */
+    private final Terminal terminal;
+
     /** Controller for managing patient medical records. */
     private final MedicalRecordsController medicalRecordsController;
 
@@ -42,16 +46,18 @@ public class DoctorMenu implements MenuInterface {
      * Constructs a DoctorMenu with the given Doctor instance.
      * Initializes the required controllers for doctor operations.
      *
-     * @param doctor the currently logged-in doctor
+     * @param doctor   the currently logged-in doctor
+     * @param terminal the terminal of the doctor's session
      */
 
     // Initialize DoctorMenu with necessary controllers for doctor actions
-    public DoctorMenu(Doctor doctor) {
+    public DoctorMenu(Doctor doctor, Terminal terminal) {
         this.doctor = doctor;
-        this.medicalRecordsController = new MedicalRecordsController();
-        this.appointmentController = new AppointmentController();
-        this.appointmentOutcomeController = new AppointmentOutcomeController();
-        this.feedbackController = new FeedbackController();
+        this.terminal = terminal;
+        this.medicalRecordsController = new MedicalRecordsController(terminal);
+        this.appointmentController = new AppointmentController(terminal);
+        this.appointmentOutcomeController = new AppointmentOutcomeController(terminal);
+        this.feedbackController = new FeedbackController(terminal);
     }
 
     /**
@@ -61,10 +67,14 @@ public class DoctorMenu implements MenuInterface {
      */
     @Override
     public void displayMenu() {
-        Scanner scanner = new Scanner(System.in);
         boolean exit = false;
 
         while (!exit) {
+            // End the session once it has been idle too long
+            if (SessionManager.shared().resolve(terminal.getSessionToken()) == null) {
+                System.out.println("Your session has expired. Please log in again.");
+                break;
+            }
             System.out.println(ANSI_TRUE_LIGHT_BLUE+"\n╔════════════════════════════════════════╗");
             System.out.println("║               Doctor Menu              ║");
             System.out.println("╚════════════════════════════════════════╝");
@@ -81,7 +91,7 @@ public class DoctorMenu implements MenuInterface {
 
             System.out.print("Enter your choice: ");
             
-            String choice = scanner.nextLine().trim();
+            String choice = terminal.nextLine().trim();
 
             switch (choice) {
                 case "1":
@@ -6,9 +6,10 @@ import controller.AppointmentOutcomeController;
 import controller.BillController;
 import controller.FeedbackController;
 import controller.MedicalRecordsController;
+import controller.SessionManager;
 import entity.Patient;
 import interfaces.MenuInterface;
-import java.util.Scanner;
+import utility.Terminal;
 
 /**
  * The PatientMenu class implements the MenuInterface and represents the menu
@@ -23,6 +24,9 @@ public class PatientMenu implements MenuInterface {
     /** Patient object representing the currently logged-in patient. */
     private final Patient patient;
 
+    /** Terminal of the patient's session. */
+    private final Terminal terminal;
+
     /** ANSI color code for light yellow text in the console. */
     public static final String ANSI_TRUE_LIGHT_YELLOW = "\u001B[38;2;255;255;224m"; // Light Yellow (#FFFFE0)
 
@@ -31,9 +35,11 @@ public class PatientMenu implements MenuInterface {
      * Constructs a PatientMenu instance with the specified patient.
      * 
      * @param patient The Patient object representing the currently logged-in patient.
+     * @param terminal The terminal of the patient's session.
      */
-    public PatientMenu(Patient patient) {
+    public PatientMenu(Patient patient, Terminal terminal) {
         this.patient = patient;
+        this.terminal = terminal;
     }
 
      /**
@@ -46,16 +52,20 @@ public class PatientMenu implements MenuInterface {
      */
     @Override
     public void displayMenu() {
-        AccountController accountController = new AccountController();
-        AppointmentController appointmentController = new AppointmentController();
-        MedicalRecordsController medicalRecordsController = new MedicalRecordsController();
-        AppointmentOutcomeController appointmentOutcomeController = new AppointmentOutcomeController();
-        FeedbackController feedbackController = new FeedbackController();
+        AccountController accountController = new AccountController(terminal);
+        AppointmentController appointmentController = new AppointmentController(terminal);
+        MedicalRecordsController medicalRecordsController = new MedicalRecordsController(terminal);
+        AppointmentOutcomeController appointmentOutcomeController = new AppointmentOutcomeController(terminal);
+        FeedbackController feedbackController = new FeedbackController(terminal);
 
-        Scanner scanner = new Scanner(System.in);
         boolean exit = false;
 
         while (!exit) {
+            // End the session once it has been idle too long
+            if (SessionManager.shared().resolve(terminal.getSessionToken()) == null) {
+                System.out.println("Your session has expired. Please log in again.");
+                break;
+            }
             System.out.println(ANSI_TRUE_LIGHT_YELLOW  + "\n╔════════════════════════════════════════╗");
             System.out.println("║               Patient Menu             ║");
             System.out.println("╚════════════════════════════════════════╝");
@@ -72,7 +82,7 @@ public class PatientMenu implements MenuInterface {
             System.out.println("══════════════════════════════════════════");
 
             System.out.print("Enter your choice: ");
-            String choice = scanner.nextLine().trim();
+            String choice = terminal.nextLine().trim();
 
             switch (choice) {
                 case "1":
@@ -105,7 +115,7 @@ public class PatientMenu implements MenuInterface {
                     break;
                 case "8":
                     // Provide feedback on a doctor
-                    BillController.viewAndPayBills(patient.getUserId());    
+                    BillController.viewAndPayBills(patient.getUserId(), terminal);    
                     break;
                 case "9":
                     // Provide feedback on a doctor
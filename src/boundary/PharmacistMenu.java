@@ -3,21 +3,23 @@ package boundary;
 import controller.AppointmentOutcomeController;
 import controller.InventoryController;
 import controller.PrescriptionController;
+import controller.SessionManager;
 import entity.Pharmacist;
 import interfaces.MenuInterface;
-import java.util.Scanner;
+import utility.Terminal;
 
 /**
  * The PharmacistMenu class implements the MenuInterface and represents the menu
  * of options available to a pharmacist within the hospital management system.
  * It allows the pharmacist to perform various actions such as viewing appointment
  * outcomes, updating prescription statuses, managing the medication inventory,
- * and submitting replenishment requests.
+ * submitting replenishment requests and dispensing prescriptions in batch.
  */
 public class PharmacistMenu implements MenuInterface {
 
     private final Pharmacist pharmacist;
-    private InventoryController inventoryController;
+    private final Terminal terminal;
+    private final InventoryController inventoryController;
     private final AppointmentOutcomeController appointmentOutcomeController;
     public static final String ANSI_TRUE_LIGHT_PURPLE = "\u001B[38;2;221;160;221m"; // Light Purple (#DDA0DD)
 
@@ -25,12 +27,14 @@ public class PharmacistMenu implements MenuInterface {
      * Constructs a PharmacistMenu instance with the specified pharmacist.
      * 
      * @param pharmacist The Pharmacist object representing the currently logged-in pharmacist.
+     * @param terminal   The terminal of the pharmacist's session.
      */
     // Constructor initializes the pharmacist instance.
-    public PharmacistMenu(Pharmacist pharmacist) {
+    public PharmacistMenu(Pharmacist pharmacist, Terminal terminal) {
         this.pharmacist = pharmacist;
-        this.inventoryController = new InventoryController();
-        this.appointmentOutcomeController = new AppointmentOutcomeController();
+        this.terminal = terminal;
+        this.inventoryController = new InventoryController(terminal);
+        this.appointmentOutcomeController = new AppointmentOutcomeController(terminal);
     }
 
     /**
@@ -43,12 +47,16 @@ public class PharmacistMenu implements MenuInterface {
      */
     @Override
     public void displayMenu() {
-        PrescriptionController prescriptionController = new PrescriptionController();
-        Scanner scanner = new Scanner(System.in);
+        PrescriptionController prescriptionController = new PrescriptionController(terminal);
         boolean exit = false;
 
         // Display the Pharmacist menu and handle choices
         while (!exit) {
+            // End the session once it has been idle too long
+            if (SessionManager.shared().resolve(terminal.getSessionToken()) == null) {
+                System.out.println("Your session has expired. Please log in again.");
+                break;
+            }
             System.out.println(ANSI_TRUE_LIGHT_PURPLE + "\n╔════════════════════════════════════════╗");
             System.out.println("║             Pharmacist Menu            ║");
             System.out.println("╚════════════════════════════════════════╝");
@@ -56,11 +64,12 @@ public class PharmacistMenu implements MenuInterface {
             System.out.println("2. Update Prescription Status");
             System.out.println("3. View Medication Inventory");
             System.out.println("4. Submit Replenishment Request");
+            System.out.println("5. Dispense Prescriptions in Batch");
             System.out.println("0. Logout");
             System.out.println("══════════════════════════════════════════");
 
             System.out.print("Enter your choice: ");
-            String choice = scanner.nextLine().trim();
+            String choice = terminal.nextLine().trim();
 
             switch (choice) {
                 case "1":
@@ -73,13 +82,16 @@ public class PharmacistMenu implements MenuInterface {
                     break;
                 case "3":
                     // Display current medication inventory
-                    inventoryController = new InventoryController();
                     inventoryController.displayInventory();
                     break;
                 case "4":
                     // Submit a replenishment request for medications
                     inventoryController.requestReplenishment();
                     break;
+                case "5":
+                    // Dispense the pending prescriptions of several appointments at once
+                    prescriptionController.dispensePrescriptionsInBatch();
+                    break;
                 case "0":
                     // Log out and exit menu
                     System.out.println("Logging out...");
@@ -4,30 +4,45 @@ import entity.Administrator;
 import entity.Doctor;
 import entity.Patient;
 import entity.Pharmacist;
+import entity.Staff;
 import entity.User;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.Period;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.HexFormat;
 import java.util.List;
-import java.util.Scanner;
+import java.util.regex.Pattern;
+import utility.FieldTokenizer;
 import utility.FileUtils;
+import utility.IdSequence;
+import utility.PasswordHashing;
 import utility.PrintUtils;
+import utility.TableRenderer;
+import utility.Terminal;
 
 public class AccountController {
 
     private static final String ACCOUNT_TXT = "data/account.txt";
-    private static final String PATIENT_TXT = "data/patient.txt";
-    private static final String STAFF_TXT = "data/staff.txt";
+    private static final String PATIENT_TXT = AccountIndex.PATIENT_TXT;
+    private static final String STAFF_TXT = AccountIndex.STAFF_TXT;
+
+    // Compiled once, as bulk imports run the validators for every row
+    private static final Pattern NAME_PATTERN = Pattern.compile("^[a-zA-Z]+$");
+    private static final Pattern DIGITS_PATTERN = Pattern.compile("[0-9]+");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    private final Terminal terminal;
+
+    /**
+     * Constructs a AccountController that reads the user's input from the given terminal.
+     *
+     * @param terminal the terminal of the current session
+     */
+    public AccountController(Terminal terminal) {
+        this.terminal = terminal;
+    }
 
     /**
      * Registers a new user.
@@ -65,7 +80,6 @@ public class AccountController {
         String dateOfBirth = "";
         String userRole = "Patient";
 
-        Scanner scanner = new Scanner(System.in);
 
         if (isAdmin) {
             System.out.println("\n╔════════════════════════════════════════╗");
@@ -79,7 +93,7 @@ public class AccountController {
                 // System.out.println("3. Administrator");
                 System.out.println("══════════════════════════════════════════");
                 System.out.print("Enter choice: ");
-                userRole = scanner.nextLine().trim();
+                userRole = terminal.nextLine().trim();
 
                 switch (userRole) {
                     case "0":
@@ -110,11 +124,11 @@ public class AccountController {
         boolean firstNameValid = false;
         while (!firstNameValid) {
             System.out.print("Enter first name (1-15 characters, 0 to cancel): ");
-            firstName = scanner.nextLine().trim();
+            firstName = terminal.nextLine().trim();
             if (firstName.equals("0")) {
                 return false;
             }
-            if (firstName.length() < 1 || firstName.length() > 15 || !firstName.matches("^[a-zA-Z]+$")) {
+            if (!isValidName(firstName)) {
                 System.out.println(
                         "First name must be between 1 and 15 characters and contain only alphabetic characters. Please try again.");
             } else {
@@ -126,11 +140,11 @@ public class AccountController {
         boolean lastNameValid = false;
         while (!lastNameValid) {
             System.out.print("Enter last name (1-15 characters, 0 to cancel): ");
-            lastName = scanner.nextLine().trim();
+            lastName = terminal.nextLine().trim();
             if (lastName.equals("0")) {
                 return false;
             }
-            if (lastName.length() < 1 || lastName.length() > 15 || !lastName.matches("^[a-zA-Z]+$")) {
+            if (!isValidName(lastName)) {
                 System.out.println(
                         "Last name must be between 1 and 15 characters and contain only alphabetic characters. Please try again.");
             } else {
@@ -155,7 +169,7 @@ public class AccountController {
             System.out.println("2. Female");
             System.out.println("3. Other");
             System.out.print("Enter choice (1-3): ");
-            gender = scanner.nextLine().trim();
+            gender = terminal.nextLine().trim();
 
             switch (gender) {
                 case "0":
@@ -176,7 +190,7 @@ public class AccountController {
 
         while (!isValidContactNumber(contactNumber)) {
             System.out.print("Enter contact number (8-15 digits, 0 to cancel): ");
-            contactNumber = scanner.nextLine().trim();
+            contactNumber = terminal.nextLine().trim();
             if (contactNumber.equals("0")) {
                 return false;
             }
@@ -187,7 +201,7 @@ public class AccountController {
 
         while (!isValidEmail(emailAddress)) {
             System.out.print("Enter a valid email address (0 to cancel): ");
-            emailAddress = scanner.nextLine().trim();
+            emailAddress = terminal.nextLine().trim();
             if (emailAddress.equals("0")) {
                 return false;
             }
@@ -200,7 +214,7 @@ public class AccountController {
         System.out.println("Enter date of birth (0 to cancel): ");
         while (day.length() != 2 || !day.matches("\\d{2}") || Integer.parseInt(day) < 1 || Integer.parseInt(day) > 31) {
             System.out.print("Enter day (DD): ");
-            day = scanner.nextLine().trim();
+            day = terminal.nextLine().trim();
             if (day.equals("0")) {
                 return false;
             }
@@ -214,7 +228,7 @@ public class AccountController {
         while (month.length() != 2 || !month.matches("\\d{2}") || Integer.parseInt(month) < 1
                 || Integer.parseInt(month) > 12) {
             System.out.print("Enter month (MM): ");
-            month = scanner.nextLine().trim();
+            month = terminal.nextLine().trim();
             if (month.equals("0")) {
                 return false;
             }
@@ -229,7 +243,7 @@ public class AccountController {
         while (year.length() != 4 || !year.matches("\\d{4}") || Integer.parseInt(year) < 1900
                 || Integer.parseInt(year) > LocalDate.now().getYear()) {
             System.out.print("Enter year (YYYY, 0 to cancel): ");
-            year = scanner.nextLine().trim();
+            year = terminal.nextLine().trim();
             if (year.equals("0")) {
                 return false;
             }
@@ -256,7 +270,7 @@ public class AccountController {
                 System.out.println("7. O+");
                 System.out.println("8. O-");
                 System.out.print("Enter choice (1-8): ");
-                bloodType = scanner.nextLine().trim();
+                bloodType = terminal.nextLine().trim();
                 switch (bloodType) {
                     case "0":
                         return false;
@@ -290,45 +304,50 @@ public class AccountController {
             }
         }
 
-        // Determine the file and object creation based on userRole
-        User newUser;
-        String roleFile;
+        // Determine the object creation based on userRole
+        boolean added;
 
         if (userRole.equals("Patient")) {
-            // Create Patient object and set to PATIENT_TXT
-            newUser = new Patient(userId, firstName, lastName, gender, contactNumber, emailAddress, userRole,
+            // Create Patient object and add it to PATIENT_TXT
+            Patient patient = new Patient(userId, firstName, lastName, gender, contactNumber, emailAddress, userRole,
                     dateOfBirth, bloodType);
-            roleFile = PATIENT_TXT;
+            added = NameIndex.patients().addIfAbsent(patient);
         } else {
-            // Create a Staff object based on userRole and set to STAFF_TXT
+            // Create a Staff object based on userRole and add it to STAFF_TXT
+            Staff staff;
             switch (userRole) {
                 case "Doctor":
-                    newUser = new Doctor(userId, firstName, lastName, gender, dateOfBirth, contactNumber, emailAddress,
+                    staff = new Doctor(userId, firstName, lastName, gender, dateOfBirth, contactNumber, emailAddress,
                             userRole);
                     break;
                 // case "Administrator":
-                // newUser = new Administrator(userId, firstName, lastName, gender, dateOfBirth,
+                // staff = new Administrator(userId, firstName, lastName, gender, dateOfBirth,
                 // contactNumber,
                 // emailAddress, userRole);
                 // break;
                 case "Pharmacist":
-                    newUser = new Pharmacist(userId, firstName, lastName, gender, dateOfBirth, contactNumber,
+                    staff = new Pharmacist(userId, firstName, lastName, gender, dateOfBirth, contactNumber,
                             emailAddress, userRole);
                     break;
                 default:
                     throw new IllegalArgumentException("Invalid user role: " + userRole);
             }
-            roleFile = STAFF_TXT;
+            added = NameIndex.staff().addIfAbsent(staff);
         }
 
-        // Write to the appropriate file based on the user role
-        FileUtils.writeToFile(roleFile, newUser.registrationString());
+        // Another session may have registered the same name since the check above
+        if (!added) {
+            System.out.println((isAdmin ? "Staff" : "Patient") + " already exists!");
+            return false;
+        }
+
+        // Create the account with the default password
         FileUtils.writeToFile(ACCOUNT_TXT, userId + "|" + hashPassword("password"));
 
         // Display success message
         System.out.println(userRole + " registered successfully!");
         System.out.println("The account's credentials are: " + userId + " | \"password\".");
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
         return true;
 
     }
@@ -343,31 +362,43 @@ public class AccountController {
      * 4. If the password is updated successfully, the user is granted access.
      * 5. In case of failure to authenticate, the user will be given up to 3
      * attempts to try again.
+     * 6. A user ID or source with too many recent failed logins (see
+     * {@link LoginAttempts}) is refused without checking the password.
      * 
      * @return User object if authentication and password update are successful,
      *         null if the login fails or if the user fails to update their password
      *         after multiple attempts.
      */
     public User login() {
-        Scanner scanner = new Scanner(System.in);
         int attempt = 0;
-        String defaultHashedPassword = hashPassword("password");
 
         while (attempt < 3) {
             attempt++;
             System.out.print("Enter User ID (e.g., PA00001): ");
-            String inputUserId = scanner.nextLine().trim();
+            String inputUserId = terminal.nextLine().trim();
 
             System.out.print("Enter Password: ");
-            String inputPassword = scanner.nextLine().trim();
+            String inputPassword = terminal.nextLine().trim();
+
+            String userId = inputUserId.toUpperCase();
+            String source = terminal.getSource();
+
+            // Refuse a locked-out user ID or source before spending any time hashing
+            if (LoginAttempts.byUser().isLockedOut(userId) || LoginAttempts.bySource().isLockedOut(source)) {
+                System.out.println("Too many failed login attempts. Please try again later.");
+                continue;
+            }
 
             // Step 1: Verify User ID and Password from account.txt
-            if (authenticate(inputUserId.toUpperCase(), hashPassword(inputPassword))) {
+            if (authenticate(userId, inputPassword)) {
+                LoginAttempts.byUser().reset(userId);
+                LoginAttempts.bySource().reset(source);
+
                 // Step 2: Load User details if authentication succeeds
-                User user = loadUserDetails(inputUserId.toUpperCase());
+                User user = loadUserDetails(userId);
                 if (user != null) {
-                    // Check if the password is still the default hashed "password"
-                    if (authenticate(inputUserId.toUpperCase(), defaultHashedPassword)) {
+                    // Check if the password just accepted is still the default "password"
+                    if (inputPassword.equals("password")) {
                         System.out.println("You are using the default password. Please change it.");
 
                         // Force the user to change their password
@@ -376,7 +407,7 @@ public class AccountController {
 
                         while (newPasswordAttempts < 3 && !passwordUpdated) {
                             System.out.print("Enter new password (min 8 chars, 1 digit, 1 special char): ");
-                            String newPassword = scanner.nextLine().trim();
+                            String newPassword = terminal.nextLine().trim();
 
                             if (isValidPassword(newPassword)) {
                                 passwordUpdated = updatePassword(user.getUserId(), newPassword);
@@ -403,6 +434,8 @@ public class AccountController {
                 }
 
             } else {
+                LoginAttempts.byUser().recordFailure(userId);
+                LoginAttempts.bySource().recordFailure(source);
                 System.out.println("Incorrect User ID or Password, " + (3 - attempt) + " more attempts.");
             }
         }
@@ -416,15 +449,32 @@ public class AccountController {
      * the format
      * "PREFIX00001", where PREFIX is a 2-character code based on the user role
      * (e.g. "PA" for Patient,
-     * "DR" for Doctor, etc.). The numeric part is the highest existing ID number in
-     * the account file
-     * plus 1.
+     * "DR" for Doctor, etc.). The numeric part is allocated from the sequence of
+     * that prefix in the account file, so it is never handed out twice.
      *
      * @param userRole the user role to generate the user ID for
      * @return a unique user ID string
      * @throws IllegalArgumentException if the user role is invalid
      */
     private String generateUserId(String userRole) {
+        return IdSequence.forFile(ACCOUNT_TXT, prefixOf(userRole)).next(); // Format as "PREFIX00001"
+    }
+
+    /**
+     * Generates several unique user IDs for the given user role at once, from one
+     * block of its sequence, as for a bulk import.
+     *
+     * @param userRole the user role to generate the user IDs for
+     * @param count    the number of user IDs
+     * @return the unique user IDs, in ascending order
+     * @throws IllegalArgumentException if the user role is invalid
+     */
+    static List<String> generateUserIds(String userRole, int count) {
+        return IdSequence.forFile(ACCOUNT_TXT, prefixOf(userRole)).next(count);
+    }
+
+    // The 2-character code of the IDs of a user role
+    private static String prefixOf(String userRole) {
         String prefix;
         switch (userRole) {
             case "Patient":
@@ -443,39 +493,15 @@ public class AccountController {
                 throw new IllegalArgumentException("Invalid user role: " + userRole);
         }
 
-        int maxId = 0;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(ACCOUNT_TXT))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] accountData = line.split("\\|");
-                String userId = accountData[0];
-
-                // Check if userId starts with the prefix
-                if (userId.startsWith(prefix)) {
-                    int idNumber = Integer.parseInt(userId.substring(2)); // Extract the numeric part
-                    maxId = Math.max(maxId, idNumber); // Track the highest ID number
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        // Increment the highest found ID number by 1
-        int newIdNumber = maxId + 1;
-        return String.format("%s%05d", prefix, newIdNumber); // Format as "PREFIX00001"
+        return prefix;
     }
 
     /**
      * Checks if a user exists in the file specified by {@code isAdmin}.
      * <p>
-     * The method reads the file line by line, normalizes each line by removing
-     * spaces and converting to lowercase, and checks if any normalized line
-     * contains the normalized input (first name and last name, also normalized).
-     * If a match is found, the method returns true. Otherwise, it returns false.
-     * <p>
-     * If an I/O exception occurs, the method prints the stack trace and returns
-     * false.
+     * The name is looked up in the file's {@link NameIndex}, with whitespace removed
+     * and in lower case, so only users with exactly the same first and last name
+     * match.
      *
      * @param firstName the first name of the user to search for
      * @param lastName  the last name of the user to search for
@@ -484,129 +510,80 @@ public class AccountController {
      * @return true if the user is found, false otherwise
      */
     private boolean checkIfUserExists(String firstName, String lastName, boolean isAdmin) {
-
-        String fileToUse;
         if (isAdmin) {
-            fileToUse = STAFF_TXT;
-        } else {
-            fileToUse = PATIENT_TXT;
-        }
-        // Normalize the input by removing spaces and converting to lowercase
-        String normalizedInput = (firstName + "|" + lastName).replaceAll("\\s+", "").toLowerCase();
-
-        try {
-            return Files.lines(Paths.get(fileToUse))
-                    // Normalize each line: remove spaces and convert to lowercase
-                    .map(line -> line.replaceAll("\\s+", "").toLowerCase())
-                    // Check if any normalized line matches the normalized input
-                    .anyMatch(normalizedLine -> normalizedLine.contains(normalizedInput));
-
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            return NameIndex.staff().contains(firstName, lastName);
         }
+        return NameIndex.patients().contains(firstName, lastName);
     }
 
     /**
-     * Hashes the given password using SHA-256 and returns the result as a
-     * hexadecimal string.
+     * Hashes the given password with the current password scheme (see
+     * {@link PasswordHashing}), with a new salt.
      *
      * @param password the password to hash
-     * @return the hashed password as a hexadecimal string
-     * @throws RuntimeException if there is an error hashing the password
+     * @return the hash to store in the account file
      */
     private String hashPassword(String password) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashedBytes = md.digest(password.getBytes());
-            return HexFormat.of().formatHex(hashedBytes); // Convert bytes to hex string
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error hashing password!", e);
-        }
+        return PasswordHashing.hash(password);
     }
 
     /**
-     * Authenticates the given user ID and password by checking against the
-     * account records in the account file.
+     * Authenticates the given user ID and password against the account index (see
+     * {@link AccountIndex}), which also re-hashes a password stored under an older
+     * scheme.
      *
      * @param userId   the user ID to authenticate
      * @param password the password to authenticate
      * @return true if authentication is successful, false otherwise
      */
     private boolean authenticate(String userId, String password) {
-        try (BufferedReader br = new BufferedReader(new FileReader(ACCOUNT_TXT))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] accountData = line.split("\\|");
-                if (accountData[0].equals(userId) && accountData[1].equals(password)) {
-                    return true; // Successful authentication
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return AccountIndex.shared().authenticate(userId, password);
     }
 
     /**
-     * Loads a User object based on the given userId by searching for matching
-     * records in patient.txt and staff.txt. If found, the User object is
-     * instantiated with the corresponding data fields and returned. If not
-     * found, null is returned.
+     * Loads a User object based on the given userId. The account index tells which
+     * profile file holds the user, and only the user's own line of that file is read.
+     * If found, the User object is instantiated with the corresponding data fields
+     * and returned. If not found, null is returned.
      *
      * @param userId the userId to search for
      * @return the User object if found, or null if not found
      */
     private User loadUserDetails(String userId) {
-        // First, check in patient.txt for a Patient record
-        try (BufferedReader br = new BufferedReader(new FileReader(PATIENT_TXT))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] userData = line.split("\\|");
-                if (userData[0].equals(userId)) {
-                    // Assuming Patient has data fields that include specific fields such as
-                    // bloodType and dateOfBirth
-                    return new Patient(userId, userData[1], userData[2], userData[3],
-                            userData[4], userData[5], "Patient", userData[6], userData[7]);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        AccountIndex.Entry account = AccountIndex.shared().find(userId);
+        if (account == null || account.getProfileFile() == null) {
+            return null; // User not found in either file
+        }
+        String line = FileUtils.findEntryReturnString(account.getProfileFile(), userId);
+        if (line == null) {
+            return null;
         }
+        FieldTokenizer userData = new FieldTokenizer().reset(line);
 
-        // If not found in patient.txt, check in staff.txt for Staff records
-        try (BufferedReader br = new BufferedReader(new FileReader(STAFF_TXT))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] userData = line.split("\\|");
-                if (userData[0].equals(userId)) {
-                    String role = userData[7]; // Assuming role is at index 7
-
-                    switch (role) {
-                        case "Doctor":
-                            return new Doctor(userId, userData[1], userData[2], userData[3],
-                                    userData[4], userData[5], userData[6], role);
-
-                        case "Administrator":
-                            return new Administrator(userId, userData[1], userData[2], userData[3],
-                                    userData[4], userData[5], userData[6], role);
-
-                        case "Pharmacist":
-                            return new Pharmacist(userId, userData[1], userData[2], userData[3],
-                                    userData[4], userData[5], userData[6], role);
-
-                        default:
-                            System.out.println("Unknown role: " + role);
-                            return null;
-                    }
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (account.getProfileFile().equals(PATIENT_TXT)) {
+            // patientId|firstName|lastName|gender|contact|email|role|dateOfBirth|bloodType
+            return new Patient(userId, userData.field(1), userData.field(2), userData.field(3),
+                    userData.field(4), userData.field(5), "Patient", userData.field(7), userData.field(8));
         }
 
-        // User not found in either file
-        return null;
+        String role = userData.field(7); // Assuming role is at index 7
+        switch (role) {
+            case "Doctor":
+                return new Doctor(userId, userData.field(1), userData.field(2), userData.field(3),
+                        userData.field(4), userData.field(5), userData.field(6), role);
+
+            case "Administrator":
+                return new Administrator(userId, userData.field(1), userData.field(2), userData.field(3),
+                        userData.field(4), userData.field(5), userData.field(6), role);
+
+            case "Pharmacist":
+                return new Pharmacist(userId, userData.field(1), userData.field(2), userData.field(3),
+                        userData.field(4), userData.field(5), userData.field(6), role);
+
+            default:
+                System.out.println("Unknown role: " + role);
+                return null;
+        }
     }
 
     /**
@@ -626,7 +603,6 @@ public class AccountController {
      *             instances of Patient.
      */
     public void updatePersonalInformation(User user) {
-        Scanner scanner = new Scanner(System.in);
         boolean updating = true;
 
         while (updating) {
@@ -648,20 +624,20 @@ public class AccountController {
             System.out.println("0. Back to Main Menu");
             System.out.println("══════════════════════════════════════════");
             System.out.print("Enter your choice: ");
-            String choice = scanner.nextLine().trim();
+            String choice = terminal.nextLine().trim();
 
             switch (choice) {
                 case "1":
-                    updatePasswordFlow(user, scanner);
+                    updatePasswordFlow(user, terminal);
                     break;
                 case "2":
                     if (user instanceof Patient) {
-                        updateContactNumberFlow((Patient) user, scanner);
+                        updateContactNumberFlow((Patient) user, terminal);
                     }
                     break;
                 case "3":
                     if (user instanceof Patient) {
-                        updateEmailAddressFlow((Patient) user, scanner);
+                        updateEmailAddressFlow((Patient) user, terminal);
                     }
                     break;
                 case "0":
@@ -686,18 +662,18 @@ public class AccountController {
      * print a failure message.
      *
      * @param user    the User object whose password is to be updated
-     * @param scanner the Scanner object used for reading user input
+     * @param terminal the terminal used for reading user input
      */
-    private void updatePasswordFlow(User user, Scanner scanner) {
+    private void updatePasswordFlow(User user, Terminal terminal) {
         int currentPasswordAttempts = 0;
         boolean currentPasswordCorrect = false;
 
         // First, verify current password with up to 3 attempts
         while (currentPasswordAttempts < 3 && !currentPasswordCorrect) {
             System.out.print("Enter current password: ");
-            String currentPassword = scanner.nextLine().trim();
+            String currentPassword = terminal.nextLine().trim();
 
-            if (authenticate(user.getUserId(), hashPassword(currentPassword))) {
+            if (authenticate(user.getUserId(), currentPassword)) {
                 currentPasswordCorrect = true;
             } else {
                 currentPasswordAttempts++;
@@ -714,12 +690,12 @@ public class AccountController {
 
             while (newPasswordAttempts < 3 && !passwordUpdated) {
                 System.out.print("Enter new password (min 8 chars, 1 digit, 1 special char): ");
-                String newPassword = scanner.nextLine().trim();
+                String newPassword = terminal.nextLine().trim();
 
                 if (isValidPassword(newPassword)) {
                     passwordUpdated = updatePassword(user.getUserId(), newPassword);
                     System.out.println(passwordUpdated ? "Password updated successfully." : "Password update failed.");
-                    PrintUtils.pause();
+                    PrintUtils.pause(terminal);
                 } else {
                     newPasswordAttempts++;
                     System.out.println(
@@ -772,22 +748,22 @@ public class AccountController {
      * number. If all 3 attempts fail, the user is notified and the method ends.
      *
      * @param patient the Patient object whose contact number is to be updated
-     * @param scanner the Scanner object used to read user input
+     * @param terminal the terminal used to read user input
      */
-    private void updateContactNumberFlow(Patient patient, Scanner scanner) {
+    private void updateContactNumberFlow(Patient patient, Terminal terminal) {
         int attempts = 0;
         boolean contactUpdated = false;
 
         while (attempts < 3 && !contactUpdated) {
             System.out.print("Enter new contact number (8-15 digits): ");
-            String newContactNumber = scanner.nextLine().trim();
+            String newContactNumber = terminal.nextLine().trim();
 
             if (isValidContactNumber(newContactNumber)) {
                 if (updateContactNumber(patient.getUserId(), newContactNumber)) {
                     patient.setContactNumber(newContactNumber);
                     System.out.println("Contact number updated successfully.");
                     contactUpdated = true;
-                    PrintUtils.pause();
+                    PrintUtils.pause(terminal);
                 } else {
                     System.out.println("Failed to update contact number. Please try again.");
                 }
@@ -812,23 +788,23 @@ public class AccountController {
      * address. If all 3 attempts fail, the user is notified and the method ends.
      *
      * @param patient the Patient object whose email address is to be updated
-     * @param scanner the Scanner object used to read user input
+     * @param terminal the terminal used to read user input
      */
 
-    private void updateEmailAddressFlow(Patient patient, Scanner scanner) {
+    private void updateEmailAddressFlow(Patient patient, Terminal terminal) {
         int attempts = 0;
         boolean emailUpdated = false;
 
         while (attempts < 3 && !emailUpdated) {
             System.out.print("Enter new valid email address: ");
-            String newEmail = scanner.nextLine().trim();
+            String newEmail = terminal.nextLine().trim();
 
             if (isValidEmail(newEmail)) {
                 if (updateEmailAddress(patient.getUserId(), newEmail)) {
                     patient.setEmailAddress(newEmail);
                     System.out.println("Email address updated successfully.");
                     emailUpdated = true;
-                    PrintUtils.pause();
+                    PrintUtils.pause(terminal);
                 } else {
                     System.out.println("Failed to update email address. Please try again.");
                 }
@@ -904,21 +880,10 @@ public class AccountController {
      */
     private boolean updateAccountFile(String userId, String newValue, String filePath, int fieldIndex)
             throws IOException {
-        List<String> fileContent = Files.readAllLines(Paths.get(filePath));
-        boolean updated = false;
-
-        for (int i = 0; i < fileContent.size(); i++) {
-            String[] line = fileContent.get(i).split("\\|");
-            if (line[0].equals(userId)) {
-                line[fieldIndex] = newValue;
-                fileContent.set(i, String.join("|", line));
-                updated = true;
-                break;
-            }
-        }
+        // Only the user's own line is rewritten, so concurrent updates of other users are kept
+        boolean updated = FileUtils.updateField(filePath, userId, newValue, fieldIndex);
 
         if (updated) {
-            Files.write(Paths.get(filePath), fileContent);
             System.out.println("Update successful for userId: " + userId);
         } else {
             System.out.println("User with userId: " + userId + " not found.");
@@ -937,12 +902,12 @@ public class AccountController {
      * The method also prints a header with the column names, and a footer with
      * a horizontal line.
      * 
-     * Finally, the method calls {@link PrintUtils#pause()} to pause the console
+     * Finally, the method calls {@link PrintUtils#pause(Terminal)} to pause the console
      * output.
      */
     public void viewStaff() {
         try {
-            List<String> staff = Files.readAllLines(Paths.get(STAFF_TXT));
+            List<String> staff = FileUtils.readLines(STAFF_TXT);
 
             if (staff.isEmpty()) {
                 System.out.println("\nNo results found.");
@@ -950,22 +915,13 @@ public class AccountController {
                 System.out.println("\n╔════════════════════════════════════════╗");
                 System.out.println("║             View All Staff             ║");
                 System.out.println("╚════════════════════════════════════════╝");
-                System.out.printf("%-5s %-10s %-20s %-20s %-10s %-8s %-18s %-30s %-15s\n",
-                        "No.", "User ID", "First Name", "Last Name", "Gender", "Age", "Contact Number", "Email Address",
-                        "Role");
-                System.out.println("══════════════════════════════════════════");
-                for (int i = 0; i < staff.size(); i++) {
-                    String[] fields = staff.get(i).split("\\|");
-                    int age = calculateAge(LocalDate.parse(fields[4], DateTimeFormatter.ofPattern("dd-MM-yyyy")));
-                    System.out.printf("%-5d %-10s %-20s %-20s %-10s %-8d %-18s %-30s %-15s\n",
-                            i + 1, fields[0], fields[1], fields[2], fields[3], age, fields[5], fields[6], fields[7]);
-                }
+                printStaffTable(staff, terminal);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     /**
@@ -980,10 +936,10 @@ public class AccountController {
      * The method also prints a header with the column names, and a footer with
      * a horizontal line.
      * 
-     * Finally, the method calls {@link PrintUtils#pause()} to pause the console
+     * Finally, the method calls {@link PrintUtils#pause(Terminal)} to pause the console
      * output.
      */
-    public void filterByRole(Scanner scanner) {
+    public void filterByRole(Terminal terminal) {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║          Filter Staff by Role          ║");
         System.out.println("╚════════════════════════════════════════╝");
@@ -993,7 +949,7 @@ public class AccountController {
         System.out.println("3. Administrator");
         System.out.println("══════════════════════════════════════════");
         System.out.print("Enter your choice: ");
-        String choice = scanner.nextLine().trim();
+        String choice = terminal.nextLine().trim();
         String role = "";
         switch (choice) {
             case "1":
@@ -1011,11 +967,12 @@ public class AccountController {
         }
 
         try {
-            List<String> filteredStaff = Files.readAllLines(Paths.get(STAFF_TXT));
+            List<String> filteredStaff = FileUtils.readLines(STAFF_TXT);
             List<String> filtered = new ArrayList<>();
+            FieldTokenizer fields = new FieldTokenizer();
             for (String line : filteredStaff) {
-                String[] fields = line.split("\\|");
-                if (fields[7].equals(role)) {
+                fields.reset(line);
+                if (fields.fieldEquals(7, role)) {
                     filtered.add(line);
                 }
             }
@@ -1026,22 +983,13 @@ public class AccountController {
                 System.out.println("\n╔════════════════════════════════════════╗");
                 System.out.println("║             Filtered Staff             ║");
                 System.out.println("╚════════════════════════════════════════╝");
-                System.out.printf("%-5s %-10s %-20s %-20s %-10s %-8s %-18s %-30s %-15s\n",
-                        "No.", "User ID", "First Name", "Last Name", "Gender", "Age", "Contact Number", "Email Address",
-                        "Role");
-                System.out.println("══════════════════════════════════════════");
-                for (int i = 0; i < filtered.size(); i++) {
-                    String[] fields = filtered.get(i).split("\\|");
-                    int age = calculateAge(LocalDate.parse(fields[4], DateTimeFormatter.ofPattern("dd-MM-yyyy")));
-                    System.out.printf("%-5d %-10s %-20s %-20s %-10s %-8d %-18s %-30s %-15s\n",
-                            i + 1, fields[0], fields[1], fields[2], fields[3], age, fields[5], fields[6], fields[7]);
-                }
+                printStaffTable(filtered, terminal);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     /**
@@ -1056,10 +1004,10 @@ public class AccountController {
      * The method also prints a header with the column names, and a footer with
      * a horizontal line.
      * 
-     * Finally, the method calls {@link PrintUtils#pause()} to pause the console
+     * Finally, the method calls {@link PrintUtils#pause(Terminal)} to pause the console
      * output.
      */
-    public void filterByGender(Scanner scanner) {
+    public void filterByGender(Terminal terminal) {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║          Filter Staff by Gender        ║");
         System.out.println("╚════════════════════════════════════════╝");
@@ -1068,7 +1016,7 @@ public class AccountController {
         System.out.println("3. Other");
         System.out.println("══════════════════════════════════════════");
         System.out.print("Enter your choice: ");
-        String choice = scanner.nextLine().trim();
+        String choice = terminal.nextLine().trim();
         String gender = "";
         switch (choice) {
             case "1":
@@ -1086,11 +1034,12 @@ public class AccountController {
         }
 
         try {
-            List<String> filteredStaff = Files.readAllLines(Paths.get(STAFF_TXT));
+            List<String> filteredStaff = FileUtils.readLines(STAFF_TXT);
             List<String> filtered = new ArrayList<>();
+            FieldTokenizer fields = new FieldTokenizer();
             for (String line : filteredStaff) {
-                String[] fields = line.split("\\|");
-                if (fields[3].equals(gender)) {
+                fields.reset(line);
+                if (fields.fieldEquals(3, gender)) {
                     filtered.add(line);
                 }
             }
@@ -1101,23 +1050,13 @@ public class AccountController {
                 System.out.println("\n╔════════════════════════════════════════╗");
                 System.out.println("║             Filtered Staff             ║");
                 System.out.println("╚════════════════════════════════════════╝");
-                System.out.printf("%-5s %-10s %-20s %-20s %-10s %-8s %-18s %-30s %-15s\n",
-                        "No.", "User ID", "First Name", "Last Name", "Gender", "Age", "Contact Number", "Email Address",
-                        "Role");
-                System.out.println("══════════════════════════════════════════");
-
-                for (int i = 0; i < filtered.size(); i++) {
-                    String[] fields = filtered.get(i).split("\\|");
-                    int age = calculateAge(LocalDate.parse(fields[4], DateTimeFormatter.ofPattern("dd-MM-yyyy")));
-                    System.out.printf("%-5d %-10s %-20s %-20s %-10s %-8d %-18s %-30s %-15s\n",
-                            i + 1, fields[0], fields[1], fields[2], fields[3], age, fields[5], fields[6], fields[7]);
-                }
+                printStaffTable(filtered, terminal);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     /**
@@ -1133,10 +1072,10 @@ public class AccountController {
      * The method also prints a header with the column names, and a footer with
      * a horizontal line.
      * 
-     * Finally, the method calls {@link PrintUtils#pause()} to pause the console
+     * Finally, the method calls {@link PrintUtils#pause(Terminal)} to pause the console
      * output.
      */
-    public void filterByAge(Scanner scanner) {
+    public void filterByAge(Terminal terminal) {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║           Filter Staff by Age          ║");
         System.out.println("╚════════════════════════════════════════╝");
@@ -1145,7 +1084,7 @@ public class AccountController {
         int age;
         while (true) {
             try {
-                age = Integer.parseInt(scanner.nextLine().trim());
+                age = Integer.parseInt(terminal.nextLine().trim());
                 if (age < 0) {
                     System.out.println("Age cannot be negative. Please enter a valid age: ");
                     continue;
@@ -1157,11 +1096,12 @@ public class AccountController {
         }
 
         try {
-            List<String> filteredStaff = Files.readAllLines(Paths.get(STAFF_TXT));
+            List<String> filteredStaff = FileUtils.readLines(STAFF_TXT);
             List<String> filtered = new ArrayList<>();
+            FieldTokenizer fields = new FieldTokenizer();
             for (String line : filteredStaff) {
-                String[] fields = line.split("\\|");
-                if (calculateAge(LocalDate.parse(fields[4], DateTimeFormatter.ofPattern("dd-MM-yyyy"))) == age) {
+                fields.reset(line);
+                if (calculateAge(LocalDate.parse(fields.field(4), DateTimeFormatter.ofPattern("dd-MM-yyyy"))) == age) {
                     filtered.add(line);
                 }
             }
@@ -1172,21 +1112,30 @@ public class AccountController {
                 System.out.println("\n╔════════════════════════════════════════╗");
                 System.out.println("║             Filtered Staff             ║");
                 System.out.println("╚════════════════════════════════════════╝");
-                System.out.printf("%-5s %-10s %-20s %-20s %-10s %-8s %-18s %-30s %-15s\n",
-                        "No.", "User ID", "First Name", "Last Name", "Gender", "Age", "Contact Number", "Email Address",
-                        "Role");
-                System.out.println("══════════════════════════════════════════");
-                for (int i = 0; i < filtered.size(); i++) {
-                    String[] fields = filtered.get(i).split("\\|");
-                    System.out.printf("%-5d %-10s %-20s %-20s %-10s %-8d %-18s %-30s %-15s\n",
-                            i + 1, fields[0], fields[1], fields[2], fields[3], age, fields[5], fields[6], fields[7]);
-                }
+                printStaffTable(filtered, terminal);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
+    }
+
+    // Prints staff records as a table, with each member's age worked out from their date of birth
+    private void printStaffTable(List<String> staff, Terminal terminal) {
+        TableRenderer table = new TableRenderer()
+                .column("No.", 5).column("User ID", 10).column("First Name", 20).column("Last Name", 20)
+                .column("Gender", 10).column("Age", 8).column("Contact Number", 18).column("Email Address", 30)
+                .column("Role", 15);
+        DateTimeFormatter dobFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+        FieldTokenizer fields = new FieldTokenizer();
+        for (int i = 0; i < staff.size(); i++) {
+            fields.reset(staff.get(i));
+            int age = calculateAge(LocalDate.parse(fields.field(4), dobFormatter));
+            table.addRow(i + 1, fields.field(0), fields.field(1), fields.field(2), fields.field(3), age,
+                    fields.field(5), fields.field(6), fields.field(7));
+        }
+        table.print(terminal);
     }
 
     /**
@@ -1208,23 +1157,23 @@ public class AccountController {
      * 
      * The user is also prompted to update the password of the staff member.
      * If the user chooses to update the password, the password is updated
-     * using the {@link #updateStaffPasswordFlow(String, Scanner)} method.
+     * using the {@link #updateStaffPasswordFlow(String, Terminal)} method.
      * 
      * After all the fields have been updated, the updated record is written
      * back to the staff file.
      * 
-     * @param scanner the Scanner object to read user input from
+     * @param terminal the terminal to read user input from
      */
-    public void updateStaff(Scanner scanner) { // Pass the scanner as a parameter
+    public void updateStaff(Terminal terminal) { // Pass the terminal as a parameter
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║              Update Staff              ║");
         System.out.println("╚════════════════════════════════════════╝");
 
         try {
-            List<String> staff = Files.readAllLines(Paths.get(STAFF_TXT));
+            List<String> staff = FileUtils.readLines(STAFF_TXT);
             while (true) {
                 System.out.print("Enter the index of the staff to update (or 0 to exit): ");
-                String input = scanner.nextLine();
+                String input = terminal.nextLine();
                 if (input.trim().equals("0")) {
                     break;
                 }
@@ -1253,7 +1202,7 @@ public class AccountController {
                 // Prompt for new values if provided
                 while (true) {
                     System.out.print("Enter your new First Name (leave blank to keep current value): ");
-                    String input2 = scanner.nextLine();
+                    String input2 = terminal.nextLine();
                     if (input2 == null || input2.trim().isEmpty()) {
                         break;
                     }
@@ -1270,7 +1219,7 @@ public class AccountController {
 
                 while (true) {
                     System.out.print("Enter your new Last Name (leave blank to keep current value): ");
-                    String input2 = scanner.nextLine();
+                    String input2 = terminal.nextLine();
                     if (input2 == null || input2.trim().isEmpty()) {
                         break;
                     }
@@ -1291,7 +1240,7 @@ public class AccountController {
                     System.out.println("2. Female");
                     System.out.println("3. Other");
                     System.out.print("Enter your choice (1-3): ");
-                    String choiceInput = scanner.nextLine().trim();
+                    String choiceInput = terminal.nextLine().trim();
                     if (choiceInput == null || choiceInput.isEmpty()) {
                         break;
                     }
@@ -1322,7 +1271,7 @@ public class AccountController {
 
                 while (true) {
                     System.out.print("Enter your new Contact Number (leave blank to keep current value): ");
-                    String input2 = scanner.nextLine();
+                    String input2 = terminal.nextLine();
                     if (input2 == null || input2.trim().isEmpty()) {
                         break;
                     }
@@ -1338,7 +1287,7 @@ public class AccountController {
 
                 while (true) {
                     System.out.print("Enter your new Email Address (leave blank to keep current value): ");
-                    String input2 = scanner.nextLine();
+                    String input2 = terminal.nextLine();
                     if (input2 == null || input2.trim().isEmpty()) {
                         break;
                     }
@@ -1354,7 +1303,7 @@ public class AccountController {
 
                 while (true) {
                     System.out.print("Enter your new date of birth (dd-MM-yyyy) (leave blank to keep current value): ");
-                    String input2 = scanner.nextLine();
+                    String input2 = terminal.nextLine();
                     if (input2 == null || input2.trim().isEmpty()) {
                         break;
                     }
@@ -1374,7 +1323,7 @@ public class AccountController {
                     System.out.println("2. Pharmacist");
                     // System.out.println("3. Administrator");
                     System.out.print("Enter your choice (1-2): ");
-                    String choiceInput = scanner.nextLine().trim();
+                    String choiceInput = terminal.nextLine().trim();
                     if (choiceInput == null || choiceInput.isEmpty()) {
                         break;
                     }
@@ -1405,9 +1354,9 @@ public class AccountController {
 
                 while (true) {
                     System.out.print("Do you want to update your password? (yes/no): ");
-                    String input2 = scanner.nextLine().toLowerCase().trim();
+                    String input2 = terminal.nextLine().toLowerCase().trim();
                     if (input2.equals("yes")) {
-                        updateStaffPasswordFlow((staffId), scanner);
+                        updateStaffPasswordFlow((staffId), terminal);
                         break;
                     } else if (input2.equals("no")) {
                         break;
@@ -1421,45 +1370,34 @@ public class AccountController {
                     continue;
                 }
 
-                boolean updated = false;
-                List<String> updatedStaff = new ArrayList<>();
-                for (int i = 0; i < staff.size(); i++) {
-                    String[] updatedFields = staff.get(i).split("\\|");
-                    if (i == index) {
-                        if (!firstName.isEmpty()) {
-                            updatedFields[1] = firstName;
-                        }
-                        if (!lastName.isEmpty()) {
-                            updatedFields[2] = lastName;
-                        }
-                        if (!gender.isEmpty()) {
-                            updatedFields[3] = gender;
-                        }
-                        if (!dateOfBirth.isEmpty()) {
-                            updatedFields[4] = dateOfBirth;
-                        }
-                        if (!contactNumber.isEmpty()) {
-                            updatedFields[5] = contactNumber;
-                        }
-                        if (!emailAddress.isEmpty()) {
-                            updatedFields[6] = emailAddress;
-                        }
-                        if (!role.isEmpty()) {
-                            updatedFields[7] = role;
-                        }
-                        updatedStaff.add(String.join("|", updatedFields));
-                        updated = true;
-                    } else {
-                        updatedStaff.add(staff.get(i));
-                    }
+                String[] updatedFields = staff.get(index).split("\\|");
+                if (!firstName.isEmpty()) {
+                    updatedFields[1] = firstName;
                 }
-
-                if (updated) {
-                    Files.write(Paths.get(STAFF_TXT), updatedStaff);
-                    System.out.println("Update successful for staff ID: " + staffId);
-                } else {
-                    System.out.println("Update failed for staff ID: " + staffId);
+                if (!lastName.isEmpty()) {
+                    updatedFields[2] = lastName;
+                }
+                if (!gender.isEmpty()) {
+                    updatedFields[3] = gender;
                 }
+                if (!dateOfBirth.isEmpty()) {
+                    updatedFields[4] = dateOfBirth;
+                }
+                if (!contactNumber.isEmpty()) {
+                    updatedFields[5] = contactNumber;
+                }
+                if (!emailAddress.isEmpty()) {
+                    updatedFields[6] = emailAddress;
+                }
+                if (!role.isEmpty()) {
+                    updatedFields[7] = role;
+                }
+
+                // Only the selected staff's line is rewritten, so concurrent changes to others are kept
+                String updatedLine = String.join("|", updatedFields);
+                FileUtils.updateToFile(STAFF_TXT, updatedLine, staffId);
+                staff.set(index, updatedLine);
+                System.out.println("Update successful for staff ID: " + staffId);
                 break;
             }
         } catch (IOException e) {
@@ -1481,18 +1419,18 @@ public class AccountController {
      * print a failure message.
      *
      * @param staffId the staff ID whose password is to be updated
-     * @param scanner the Scanner object used for reading user input
+     * @param terminal the terminal used for reading user input
      */
-    private void updateStaffPasswordFlow(String staffId, Scanner scanner) {
+    private void updateStaffPasswordFlow(String staffId, Terminal terminal) {
         int currentPasswordAttempts = 0;
         boolean currentPasswordCorrect = false;
 
         // First, verify current password with up to 3 attempts
         while (currentPasswordAttempts < 3 && !currentPasswordCorrect) {
             System.out.print("Enter current password: ");
-            String currentPassword = scanner.nextLine().trim();
+            String currentPassword = terminal.nextLine().trim();
 
-            if (authenticate(staffId, hashPassword(currentPassword))) {
+            if (authenticate(staffId, currentPassword)) {
                 currentPasswordCorrect = true;
             } else {
                 currentPasswordAttempts++;
@@ -1509,12 +1447,12 @@ public class AccountController {
 
             while (newPasswordAttempts < 3 && !passwordUpdated) {
                 System.out.print("Enter new password (min 8 chars, 1 digit, 1 special char): ");
-                String newPassword = scanner.nextLine().trim();
+                String newPassword = terminal.nextLine().trim();
 
                 if (isValidPassword(newPassword)) {
                     passwordUpdated = updateStaffPassword(staffId, newPassword);
                     System.out.println(passwordUpdated ? "Password updated successfully." : "Password update failed.");
-                    PrintUtils.pause();
+                    PrintUtils.pause(terminal);
                 } else {
                     newPasswordAttempts++;
                     System.out.println(
@@ -1558,18 +1496,18 @@ public class AccountController {
      * or the index is out of range, an appropriate error message is displayed.
      * The user can exit the removal process by entering 0.
      *
-     * @param scanner the Scanner object used for reading user input
+     * @param terminal the terminal used for reading user input
      */
-    public void removeStaff(Scanner scanner) {
+    public void removeStaff(Terminal terminal) {
         try {
-            List<String> staff = Files.readAllLines(Paths.get(STAFF_TXT));
+            List<String> staff = FileUtils.readLines(STAFF_TXT);
             while (true) {
                 System.out.println("\n╔════════════════════════════════════════╗");
                 System.out.println("║              Remove Staff              ║");
                 System.out.println("╚════════════════════════════════════════╝");
 
                 System.out.print("Enter index of staff to remove (or 0 to exit): ");
-                String input = scanner.nextLine().trim();
+                String input = terminal.nextLine().trim();
                 if (input.equals("0")) {
                     break;
                 }
@@ -1594,17 +1532,8 @@ public class AccountController {
                 String lastName = fields[2];
 
                 staff.remove(index);
-                Files.write(Paths.get(STAFF_TXT), staff);
-
-                List<String> accounts = Files.readAllLines(Paths.get(ACCOUNT_TXT));
-                List<String> updatedAccounts = new ArrayList<>();
-                for (String account : accounts) {
-                    String[] fieldsInAccount = account.split("\\|");
-                    if (!fieldsInAccount[0].equals(userId)) {
-                        updatedAccounts.add(account);
-                    }
-                }
-                Files.write(Paths.get(ACCOUNT_TXT), updatedAccounts);
+                FileUtils.deleteFromFile(STAFF_TXT, userId);
+                FileUtils.deleteFromFile(ACCOUNT_TXT, userId);
 
                 System.out
                         .println("User removed successfully: " + userId + " (" + firstName + " " + lastName + ")");
@@ -1617,6 +1546,18 @@ public class AccountController {
         }
     }
 
+    /**
+     * Checks if the given first or last name is valid.
+     * 
+     * A valid name has 1 to 15 characters, all of them letters.
+     * 
+     * @param name the name to check
+     * @return true if the name is valid, false otherwise
+     */
+    static boolean isValidName(String name) {
+        return name.length() >= 1 && name.length() <= 15 && NAME_PATTERN.matcher(name).matches();
+    }
+
     /**
      * Checks if the contact number is valid.
      * 
@@ -1626,10 +1567,10 @@ public class AccountController {
      * @param contactNumber the contact number to check
      * @return true if the contact number is valid, false otherwise
      */
-    private boolean isValidContactNumber(String contactNumber) {
+    static boolean isValidContactNumber(String contactNumber) {
         return contactNumber.length() >= 8
                 && contactNumber.length() <= 15
-                && contactNumber.matches("[0-9]+"); // Ensures all characters are digits
+                && DIGITS_PATTERN.matcher(contactNumber).matches(); // Ensures all characters are digits
     }
 
     /**
@@ -1640,7 +1581,7 @@ public class AccountController {
      * @param email the email address to check
      * @return true if the email address is valid, false otherwise
      */
-    private boolean isValidEmail(String email) {
+    static boolean isValidEmail(String email) {
         return email.contains("@") && email.contains(".");
     }
 
@@ -1682,9 +1623,9 @@ public class AccountController {
      * @param date the date string to check
      * @return true if the date is valid, false otherwise
      */
-    private boolean isValidDate(String date) {
+    static boolean isValidDate(String date) {
         try {
-            LocalDate.parse(date, DateTimeFormatter.ofPattern("dd-MM-yyyy"));
+            LocalDate.parse(date, DATE_FORMATTER);
             return true;
         } catch (DateTimeParseException e) {
             return false;
@@ -1705,10 +1646,11 @@ public class AccountController {
      */
     private boolean isValidStaffId(String staffId) {
         try {
-            List<String> staff = Files.readAllLines(Paths.get(STAFF_TXT));
+            List<String> staff = FileUtils.readLines(STAFF_TXT);
+            FieldTokenizer fields = new FieldTokenizer();
             for (String line : staff) {
-                String[] fields = line.split("\\|");
-                if (fields[0].equals(staffId)) {
+                fields.reset(line);
+                if (fields.fieldEquals(0, staffId)) {
                     return true;
                 }
             }
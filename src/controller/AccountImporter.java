@@ -0,0 +1,536 @@
+package controller;
+
+import entity.Doctor;
+import entity.Patient;
+import entity.Pharmacist;
+import entity.Staff;
+import entity.User;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import utility.PasswordHasher;
+import utility.PasswordHashing;
+import utility.Repository;
+import utility.Transaction;
+
+/**
+ * Bulk import of patients and staff, for onboarding a clinic without registering each
+ * person through the prompts of {@link AccountController#register(boolean)}.
+ *
+ * <p>The input is either CSV, with a header row naming the columns, or NDJSON, one
+ * flat JSON object per line (chosen by a {@code .ndjson} or {@code .jsonl} extension).
+ * The columns are {@code role} (Patient, Doctor or Pharmacist; Patient if left out),
+ * {@code firstName}, {@code lastName}, {@code gender}, {@code contactNumber},
+ * {@code emailAddress}, {@code dateOfBirth} ({@code dd-MM-yyyy}) and, for patients,
+ * {@code bloodType}. Quoted CSV fields may not span lines.
+ *
+ * <p>The file is read as a stream, in chunks of {@code -Dhms.import.chunkSize} rows
+ * (default 5000). Each chunk is validated on a pool of {@code -Dhms.import.threads}
+ * threads (default one per processor) with the same rules as registration, while the
+ * chunks before it are written in file order. A chunk gets its IDs in one block per
+ * role, and its profiles and accounts are written as one {@link Transaction}, so a chunk
+ * is imported entirely or not at all. Names already registered, or repeated within the
+ * file, are left out through the {@link NameIndex}.
+ *
+ * <p>New accounts get the default password, which users must change at their first
+ * login. It is hashed for each account with its own salt, on the validation pool as
+ * each chunk is validated. As the password is known anyway, it is hashed at a lower
+ * cost of {@code -Dhms.import.passwordIterations} PBKDF2 iterations (default 1000,
+ * about 0.25 ms per hash on one core) rather than the cost of
+ * {@link PasswordHashing}, which would take about 100 ms per row; the first login
+ * hashes it again at the full cost before the password is changed.
+ *
+ * <p>Rejected rows are written to a report, one per line as
+ * {@code <line number>|<reason>|<row>}.
+ */
+public class AccountImporter {
+
+    private static final int CHUNK_SIZE = Math.max(1, Integer.getInteger("hms.import.chunkSize", 5000));
+    private static final int THREADS = Math.max(1,
+            Integer.getInteger("hms.import.threads", Runtime.getRuntime().availableProcessors()));
+    private static final String DEFAULT_PASSWORD = "password";
+    private static final PasswordHasher HASHER = new PasswordHashing.Pbkdf2(
+            Math.max(1, Integer.getInteger("hms.import.passwordIterations", 1000)));
+
+    // Columns of a row, in the order of Row.values
+    private static final String[] COLUMNS = { "role", "firstname", "lastname", "gender", "contactnumber",
+            "emailaddress", "dateofbirth", "bloodtype" };
+    private static final int ROLE = 0;
+    private static final int FIRST_NAME = 1;
+    private static final int LAST_NAME = 2;
+    private static final int GENDER = 3;
+    private static final int CONTACT_NUMBER = 4;
+    private static final int EMAIL_ADDRESS = 5;
+    private static final int DATE_OF_BIRTH = 6;
+    private static final int BLOOD_TYPE = 7;
+    private static final Map<String, String> ALIASES = Map.of("email", "emailaddress", "contact", "contactnumber",
+            "phone", "contactnumber", "dob", "dateofbirth");
+    private static final Pattern DATE_PATTERN = Pattern.compile("\\d{2}-\\d{2}-\\d{4}");
+    private static final Set<String> BLOOD_TYPES = Set.of("A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-");
+
+    private final BufferedWriter rejects;
+    private int imported;
+    private int rejected;
+
+    private AccountImporter(BufferedWriter rejects) {
+        this.rejects = rejects;
+    }
+
+    /**
+     * Counts of one import.
+     */
+    public static class Summary {
+        private final int imported;
+        private final int rejected;
+        private final double seconds;
+
+        private Summary(int imported, int rejected, double seconds) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.seconds = seconds;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+    }
+
+    // One row of the input, with its values once parsed, or the reason it was rejected
+    private static class Row {
+        private final long lineNumber;
+        private final String line;
+        private String[] values;
+        private String passwordHash;
+        private String reason;
+
+        private Row(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Imports the patients and staff of a file, printing a summary when done.
+     *
+     * @param inputPath   the CSV or NDJSON file to import
+     * @param rejectsPath the file to write the rejected rows to
+     * @return the counts of the import, or null if the file could not be imported
+     */
+    public static Summary importFile(String inputPath, String rejectsPath) {
+        boolean ndjson = inputPath.endsWith(".ndjson") || inputPath.endsWith(".jsonl");
+        long start = System.nanoTime();
+        ExecutorService validators = Executors.newFixedThreadPool(THREADS);
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(inputPath), StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(Paths.get(rejectsPath), StandardCharsets.UTF_8)) {
+            AccountImporter importer = new AccountImporter(rejects);
+
+            long lineNumber = 0;
+            int[] columns = null; // Position of each column in a CSV row
+            if (!ndjson) {
+                String header = reader.readLine();
+                lineNumber++;
+                columns = columnsOf(header);
+            }
+            int[] csvColumns = columns;
+
+            // Validate chunks ahead on the pool, and write the oldest ones in file order
+            Deque<Future<List<Row>>> pending = new ArrayDeque<>();
+            List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.add(new Row(lineNumber, line));
+                if (chunk.size() == CHUNK_SIZE) {
+                    pending.add(submit(validators, chunk, csvColumns));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                    if (pending.size() > THREADS * 2) {
+                        importer.write(pending.poll().get());
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                pending.add(submit(validators, chunk, csvColumns));
+            }
+            while (!pending.isEmpty()) {
+                importer.write(pending.poll().get());
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Imported %d account(s) in %.2f s, rejected %d (see %s).%n", importer.imported,
+                    seconds, importer.rejected, rejectsPath);
+            return new Summary(importer.imported, importer.rejected, seconds);
+        } catch (IOException | IllegalArgumentException | ExecutionException e) {
+            System.out.println("Error importing " + inputPath + ": " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Error importing " + inputPath + ": interrupted");
+            return null;
+        } finally {
+            validators.shutdownNow();
+        }
+    }
+
+    private static Future<List<Row>> submit(ExecutorService validators, List<Row> chunk, int[] columns) {
+        return validators.submit(() -> {
+            for (Row row : chunk) {
+                validate(row, columns);
+                if (row.reason == null) {
+                    row.passwordHash = HASHER.hash(DEFAULT_PASSWORD);
+                }
+            }
+            return chunk;
+        });
+    }
+
+    // Writes the valid rows of a chunk, then reports the rejected ones
+    private void write(List<Row> rows) throws IOException {
+        Map<String, List<Row>> byRole = new HashMap<>();
+        for (Row row : rows) {
+            if (row.reason == null) {
+                byRole.computeIfAbsent(row.values[ROLE], role -> new ArrayList<>()).add(row);
+            }
+        }
+
+        List<Patient> patients = new ArrayList<>();
+        List<Staff> staff = new ArrayList<>();
+        Map<User, Row> rowOf = new IdentityHashMap<>();
+        for (Map.Entry<String, List<Row>> entry : byRole.entrySet()) {
+            List<String> userIds = AccountController.generateUserIds(entry.getKey(), entry.getValue().size());
+            for (int i = 0; i < userIds.size(); i++) {
+                Row row = entry.getValue().get(i);
+                User user = userOf(userIds.get(i), row.values);
+                rowOf.put(user, row);
+                if (user instanceof Patient) {
+                    patients.add((Patient) user);
+                } else {
+                    staff.add((Staff) user);
+                }
+            }
+        }
+
+        for (Patient patient : NameIndex.patients().addAllIfAbsent(patients,
+                accepted -> commit(Repositories.patients(), accepted, rowOf))) {
+            rowOf.get(patient).reason = "Patient already exists";
+        }
+        for (Staff member : NameIndex.staff().addAllIfAbsent(staff,
+                accepted -> commit(Repositories.staff(), accepted, rowOf))) {
+            rowOf.get(member).reason = "Staff already exists";
+        }
+
+        for (Row row : rows) {
+            if (row.reason == null) {
+                imported++;
+            } else {
+                rejected++;
+                rejects.write(row.lineNumber + "|" + row.reason + "|" + row.line);
+                rejects.newLine();
+            }
+        }
+    }
+
+    // Writes the profiles and accounts of a chunk as one transaction
+    private <T extends User> boolean commit(Repository<T> profiles, List<T> users, Map<User, Row> rowOf) {
+        Transaction transaction = new Transaction();
+        for (T user : users) {
+            transaction.insert(profiles, user).insert(Repositories.accounts(),
+                    user.getUserId() + "|" + rowOf.get(user).passwordHash);
+        }
+        if (transaction.commit()) {
+            return true;
+        }
+        for (T user : users) {
+            rowOf.get(user).reason = "Could not be written";
+        }
+        return false;
+    }
+
+    private static User userOf(String userId, String[] values) {
+        switch (values[ROLE]) {
+            case "Patient":
+                return new Patient(userId, values[FIRST_NAME], values[LAST_NAME], values[GENDER],
+                        values[CONTACT_NUMBER], values[EMAIL_ADDRESS], "Patient", values[DATE_OF_BIRTH],
+                        values[BLOOD_TYPE]);
+            case "Doctor":
+                return new Doctor(userId, values[FIRST_NAME], values[LAST_NAME], values[GENDER],
+                        values[DATE_OF_BIRTH], values[CONTACT_NUMBER], values[EMAIL_ADDRESS], "Doctor");
+            case "Pharmacist":
+                return new Pharmacist(userId, values[FIRST_NAME], values[LAST_NAME], values[GENDER],
+                        values[DATE_OF_BIRTH], values[CONTACT_NUMBER], values[EMAIL_ADDRESS], "Pharmacist");
+            default:
+                throw new IllegalArgumentException("Invalid user role: " + values[ROLE]);
+        }
+    }
+
+    // Parses a row into its values and checks them with the rules of registration
+    private static void validate(Row row, int[] columns) {
+        String[] values = new String[COLUMNS.length];
+        try {
+            if (columns != null) {
+                List<String> fields = splitCsv(row.line);
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    values[i] = columns[i] >= 0 && columns[i] < fields.size() ? fields.get(columns[i]).trim() : "";
+                }
+            } else {
+                Map<String, String> object = parseJsonObject(row.line);
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    values[i] = object.getOrDefault(COLUMNS[i], "").trim();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            row.reason = e.getMessage();
+            return;
+        }
+
+        values[ROLE] = values[ROLE].isEmpty() ? "Patient" : capitalize(values[ROLE]);
+        values[GENDER] = capitalize(values[GENDER]);
+        values[BLOOD_TYPE] = values[BLOOD_TYPE].toUpperCase();
+        if (!values[ROLE].equals("Patient") && !values[ROLE].equals("Doctor") && !values[ROLE].equals("Pharmacist")) {
+            row.reason = "Invalid role";
+        } else if (!AccountController.isValidName(values[FIRST_NAME])) {
+            row.reason = "Invalid first name";
+        } else if (!AccountController.isValidName(values[LAST_NAME])) {
+            row.reason = "Invalid last name";
+        } else if (!values[GENDER].equals("Male") && !values[GENDER].equals("Female")
+                && !values[GENDER].equals("Other")) {
+            row.reason = "Invalid gender";
+        } else if (!AccountController.isValidContactNumber(values[CONTACT_NUMBER])) {
+            row.reason = "Invalid contact number";
+        } else if (!AccountController.isValidEmail(values[EMAIL_ADDRESS]) || values[EMAIL_ADDRESS].contains("|")) {
+            row.reason = "Invalid email address";
+        } else if (!isValidDateOfBirth(values[DATE_OF_BIRTH])) {
+            row.reason = "Invalid date of birth";
+        } else if (values[ROLE].equals("Patient") && !BLOOD_TYPES.contains(values[BLOOD_TYPE])) {
+            row.reason = "Invalid blood type";
+        } else {
+            if (!values[ROLE].equals("Patient")) {
+                values[BLOOD_TYPE] = "";
+            }
+            row.values = values;
+        }
+    }
+
+    // A dd-MM-yyyy date with a year from 1900 to this year, as registration accepts
+    private static boolean isValidDateOfBirth(String date) {
+        if (!DATE_PATTERN.matcher(date).matches() || !AccountController.isValidDate(date)) {
+            return false;
+        }
+        int year = Integer.parseInt(date.substring(6));
+        return year >= 1900 && year <= LocalDate.now().getYear();
+    }
+
+    private static String capitalize(String value) {
+        return value.isEmpty() ? value : value.substring(0, 1).toUpperCase() + value.substring(1).toLowerCase();
+    }
+
+    // Maps each column to its position in the CSV header
+    private static int[] columnsOf(String header) {
+        if (header == null) {
+            throw new IllegalArgumentException("missing header row");
+        }
+        List<String> names = splitCsv(header);
+        int[] columns = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columns[i] = -1;
+        }
+        for (int position = 0; position < names.size(); position++) {
+            String name = keyOf(names.get(position));
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (COLUMNS[i].equals(name)) {
+                    columns[i] = position;
+                }
+            }
+        }
+        for (int i = FIRST_NAME; i <= DATE_OF_BIRTH; i++) {
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("missing column " + COLUMNS[i]);
+            }
+        }
+        return columns;
+    }
+
+    // A column name in lower case without spaces, dashes or underscores, with its aliases resolved
+    private static String keyOf(String name) {
+        String key = name.replaceAll("[\\s_-]", "").toLowerCase();
+        return ALIASES.getOrDefault(key, key);
+    }
+
+    // Splits a CSV line into fields, with quoted fields holding commas and doubled quotes
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Parses a flat JSON object of strings, numbers, booleans and nulls, keyed by column
+    private static Map<String, String> parseJsonObject(String line) {
+        Map<String, String> object = new HashMap<>();
+        int[] position = { skipSpaces(line, 0) };
+        expect(line, position, '{');
+        if (peek(line, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String key = parseJsonString(line, position);
+                expect(line, position, ':');
+                object.put(keyOf(key), parseJsonValue(line, position));
+                char next = peek(line, position);
+                position[0]++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("Invalid JSON object");
+                }
+            }
+        }
+        if (skipSpaces(line, position[0]) != line.length()) {
+            throw new IllegalArgumentException("Invalid JSON object");
+        }
+        return object;
+    }
+
+    private static String parseJsonValue(String line, int[] position) {
+        char c = peek(line, position);
+        if (c == '"') {
+            return parseJsonString(line, position);
+        }
+        if (c == '{' || c == '[') {
+            throw new IllegalArgumentException("Nested JSON values are not supported");
+        }
+        int start = position[0];
+        while (position[0] < line.length() && ",} \t".indexOf(line.charAt(position[0])) < 0) {
+            position[0]++;
+        }
+        String literal = line.substring(start, position[0]);
+        if (literal.isEmpty()) {
+            throw new IllegalArgumentException("Invalid JSON object");
+        }
+        return literal.equals("null") ? "" : literal;
+    }
+
+    private static String parseJsonString(String line, int[] position) {
+        expect(line, position, '"');
+        StringBuilder value = new StringBuilder();
+        int i = position[0];
+        while (i < line.length() && line.charAt(i) != '"') {
+            char c = line.charAt(i++);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= line.length()) {
+                break;
+            }
+            char escaped = line.charAt(i++);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 > line.length()) {
+                        throw new IllegalArgumentException("Invalid JSON string");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(line.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid JSON string");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    value.append(escaped); // \" \\ and \/
+            }
+        }
+        if (i >= line.length()) {
+            throw new IllegalArgumentException("Unterminated JSON string");
+        }
+        position[0] = i + 1;
+        return value.toString();
+    }
+
+    private static void expect(String line, int[] position, char expected) {
+        if (peek(line, position) != expected) {
+            throw new IllegalArgumentException("Invalid JSON object");
+        }
+        position[0]++;
+    }
+
+    // Skips spaces and returns the next character, or 0 at the end of the line
+    private static char peek(String line, int[] position) {
+        position[0] = skipSpaces(line, position[0]);
+        return position[0] < line.length() ? line.charAt(position[0]) : 0;
+    }
+
+    private static int skipSpaces(String line, int position) {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,200 @@
+package controller;
+
+import entity.Patient;
+import entity.Staff;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import utility.FieldTokenizer;
+import utility.PasswordHashing;
+import utility.Repository;
+
+/**
+ * In-memory index of the accounts, so a login is checked without reading the account
+ * and profile files. Each user ID maps to its stored password hash, its role, and the
+ * profile file holding the user's details; the details themselves are read from the
+ * user's own line of that file, located through the file's record index.
+ *
+ * <p>The index is built from the account, patient and staff repositories once, then
+ * kept up to date by the writes made through them: a registration, a password change
+ * or a removed staff member changes only that user's entry. Only a change a repository
+ * did not make itself, such as one by another process sharing the data directory,
+ * builds that repository's part of the index again. Passwords are checked through
+ * {@link PasswordHashing}, and a hash made with an older scheme or a lower cost is
+ * replaced on the first successful login.
+ */
+public class AccountIndex {
+
+    static final String PATIENT_TXT = "data/patient.txt";
+    static final String STAFF_TXT = "data/staff.txt";
+
+    private static final AccountIndex SHARED = new AccountIndex(Repositories.accounts(), Repositories.patients(),
+            Repositories.staff());
+
+    private final Repository<String> accounts;
+    private final View<String> hashes;   // User ID -> password hash
+    private final View<Patient> patients; // User ID -> role, for users with a patient profile
+    private final View<Staff> staff;      // User ID -> role, for users with a staff profile
+
+    private AccountIndex(Repository<String> accounts, Repository<Patient> patients, Repository<Staff> staff) {
+        this.accounts = accounts;
+        this.hashes = new View<>(accounts, line -> FieldTokenizer.fieldOf(line, 0), AccountIndex::hashOf);
+        this.patients = new View<>(patients, Patient::getUserId, patient -> "Patient");
+        this.staff = new View<>(staff, Staff::getUserId, Staff::getUserRole);
+    }
+
+    /**
+     * Returns the index of the accounts in the data directory.
+     *
+     * @return the shared index
+     */
+    public static AccountIndex shared() {
+        return SHARED;
+    }
+
+    /**
+     * The indexed details of one account.
+     */
+    public static class Entry {
+        private final String passwordHash;
+        private final String role;        // Null if the user has no profile
+        private final String profileFile; // Null if the user has no profile
+
+        private Entry(String passwordHash, String role, String profileFile) {
+            this.passwordHash = passwordHash;
+            this.role = role;
+            this.profileFile = profileFile;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public String getProfileFile() {
+            return profileFile;
+        }
+    }
+
+    // The part of the index built from one repository, a value for each user ID. It is
+    // changed by each write passed on by the repository, and built again only after a
+    // change it was not told of.
+    private static class View<T> implements Repository.Listener<T> {
+        private final Repository<T> repository;
+        private final Function<T, String> idOf;
+        private final Function<T, String> valueOf; // Null to leave a record out
+
+        // Changed under this view's lock, which is taken after the repository's
+        private volatile Map<String, String> values = new ConcurrentHashMap<>();
+        private long generation = -1; // Generation of the repository the values hold
+
+        private View(Repository<T> repository, Function<T, String> idOf, Function<T, String> valueOf) {
+            this.repository = repository;
+            this.idOf = idOf;
+            this.valueOf = valueOf;
+            repository.addListener(this);
+        }
+
+        // Returns the values, building them again first if they missed a change
+        private Map<String, String> current() {
+            long latest = repository.generation();
+            synchronized (this) {
+                if (generation >= latest) {
+                    return values; // Writes after the generation was read have been applied already
+                }
+            }
+            return repository.derive((records, at) -> {
+                Map<String, String> built = new ConcurrentHashMap<>(records.size() * 2);
+                for (T record : records) {
+                    String value = valueOf.apply(record);
+                    if (value != null) {
+                        built.putIfAbsent(idOf.apply(record), value);
+                    }
+                }
+                synchronized (this) {
+                    values = built;
+                    generation = at;
+                }
+                return built;
+            });
+        }
+
+        @Override
+        public synchronized void changed(long at, List<T> saved, List<String> deletedIds) {
+            if (generation != at - 1) {
+                generation = -1; // Missed a change, so the next lookup builds the values again
+                return;
+            }
+            for (T record : saved) {
+                String value = valueOf.apply(record);
+                if (value != null) {
+                    values.put(idOf.apply(record), value);
+                } else {
+                    values.remove(idOf.apply(record));
+                }
+            }
+            for (String id : deletedIds) {
+                values.remove(id);
+            }
+            generation = at;
+        }
+    }
+
+    /**
+     * Builds the index now rather than on the first login.
+     */
+    public void load() {
+        hashes.current();
+        patients.current();
+        staff.current();
+    }
+
+    /**
+     * Finds the account of a user.
+     *
+     * @param userId the user ID
+     * @return the account, or null if the user has none
+     */
+    public Entry find(String userId) {
+        String passwordHash = hashes.current().get(userId);
+        if (passwordHash == null) {
+            return null;
+        }
+        String role = patients.current().get(userId);
+        if (role != null) {
+            return new Entry(passwordHash, role, PATIENT_TXT);
+        }
+        role = staff.current().get(userId);
+        return role != null ? new Entry(passwordHash, role, STAFF_TXT) : new Entry(passwordHash, null, null);
+    }
+
+    /**
+     * Checks a password against the hash stored for a user. If the hash was made with
+     * an older scheme or a lower cost, the password is hashed again with the current
+     * ones and stored, unless the password was changed in the meantime.
+     *
+     * @param userId   the user ID
+     * @param password the password entered
+     * @return true if the user exists and the password matches
+     */
+    public boolean authenticate(String userId, String password) {
+        Entry entry = find(userId);
+        if (entry == null || !PasswordHashing.verify(password, entry.passwordHash)) {
+            return false;
+        }
+        if (PasswordHashing.needsRehash(entry.passwordHash)) {
+            String upgraded = userId + "|" + PasswordHashing.hash(password);
+            accounts.saveIf(upgraded, stored -> entry.passwordHash.equals(FieldTokenizer.fieldOf(stored, 1)));
+        }
+        return true;
+    }
+
+    // The password hash of an account line, or null for a line without one
+    private static String hashOf(String line) {
+        String passwordHash = FieldTokenizer.fieldOf(line, 1);
+        if (passwordHash == null) {
+            System.out.println("Skipping invalid account: " + FieldTokenizer.fieldOf(line, 0));
+        }
+        return passwordHash;
+    }
+}
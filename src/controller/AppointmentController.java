@@ -1,30 +1,46 @@
 package controller;
 
+import entity.Appointment;
 import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Set;
+import utility.FieldTokenizer;
 import utility.FileUtils;
+import utility.IdSequence;
 import utility.PrintUtils;
+import utility.TableRenderer;
+import utility.Terminal;
 
 public class AppointmentController {
 
     private static final String APPOINTMENT_FILE = "data/appointment.txt";
     private static final String STAFF_FILE = "data/staff.txt";
+    private static final IdSequence APPOINTMENT_IDS = IdSequence.forFile(APPOINTMENT_FILE, "AP");
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
     private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
 
+    private final Terminal terminal;
+
+    /**
+     * Constructs a AppointmentController that reads the user's input from the given terminal.
+     *
+     * @param terminal the terminal of the current session
+     */
+    public AppointmentController(Terminal terminal) {
+        this.terminal = terminal;
+    }
+
     /**
      * Schedules an appointment for a patient.
      *
@@ -37,7 +53,6 @@ public class AppointmentController {
      *                  scheduled
      */
     public void scheduleAppointment(String patientId) {
-        Scanner scanner = new Scanner(System.in);
 
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║         Schedule an Appointment        ║");
@@ -47,7 +62,7 @@ public class AppointmentController {
         System.out.println("══════════════════════════════════════════");
         System.out.print("Choose an option (1 or 2, 0 to exit): ");
 
-        String choice = scanner.nextLine().trim();
+        String choice = terminal.nextLine().trim();
 
         switch (choice) {
             case "1":
@@ -69,76 +84,55 @@ public class AppointmentController {
      * Displays all available appointments by doctor, sorted by date and time.
      *
      * The method first reads the doctor details from the STAFF_TXT file and
-     * groups the available appointments by doctor ID. Then, it sorts each
-     * doctor's appointments by date and time. Finally, it displays the
+     * then takes each doctor's available appointments, already in date and time
+     * order, from the appointment slot index. Finally, it displays the
      * appointments to the user, prompting the user to select an appointment.
      *
      * @param patientId the ID of the patient for whom the appointment is being
      *                  scheduled
      */
     private void displayAppointmentsByDoctor(String patientId) {
-        Map<String, List<String>> doctorAppointments = new HashMap<>();
-        Scanner scanner = new Scanner(System.in);
+        Map<String, List<Appointment>> doctorAppointments = new HashMap<>();
 
         // Retrieve doctor details and group their appointments
-        try (BufferedReader staffReader = new BufferedReader(new FileReader(STAFF_FILE));
-                BufferedReader appointmentReader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
+        try (BufferedReader staffReader = FileUtils.newReader(STAFF_FILE)) {
 
             String line;
             Map<String, String[]> doctorDetails = new HashMap<>();
 
-            // Read doctor details
+            // Read doctor details and look up their available appointments by date and time
+            AppointmentSlotIndex slotIndex = AppointmentSlotIndex.current();
+            FieldTokenizer fields = new FieldTokenizer();
             while ((line = staffReader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if ("Doctor".equalsIgnoreCase(fields[7])) {
-                    doctorDetails.put(fields[0], new String[] { fields[1] + " " + fields[2], fields[5], fields[6] });
-                    doctorAppointments.put(fields[0], new ArrayList<>());
+                fields.reset(line);
+                if (fields.fieldEqualsIgnoreCase(7, "Doctor")) {
+                    doctorDetails.put(fields.field(0),
+                            new String[] { fields.field(1) + " " + fields.field(2), fields.field(5), fields.field(6) });
+                    doctorAppointments.put(fields.field(0), slotIndex.schedule(fields.field(0),
+                            Appointment.Status.AVAILABLE));
                 }
             }
 
-            // Group available appointments by doctor and sort by date and time
-            while ((line = appointmentReader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length >= 6 && "AVAILABLE".equalsIgnoreCase(fields[5])) {
-                    String doctorId = fields[1];
-                    if (doctorAppointments.containsKey(doctorId)) {
-                        doctorAppointments.get(doctorId).add(line);
-                    }
-                }
-            }
-
-            // Sort each doctor's appointments by date and time
-            doctorAppointments.forEach(
-                    (doctorId, appointments) -> appointments.sort(Comparator.comparing((String appointment) -> {
-                        String[] fields = appointment.split("\\|");
-                        return LocalDate.parse(fields[3], dateFormatter);
-                    }).thenComparing(appointment -> {
-                        String[] fields = appointment.split("\\|");
-                        return LocalTime.parse(fields[4], timeFormatter);
-                    })));
-
             // Display appointments by doctor
             System.out.println("\n╔════════════════════════════════════════╗");
             System.out.println("║    Available Appointments by Doctor    ║");
             System.out.println("╚════════════════════════════════════════╝");
 
             int globalIndex = 1;
-            Map<Integer, String> indexToAppointment = new HashMap<>();
+            Map<Integer, Appointment> indexToAppointment = new HashMap<>();
 
-            for (Map.Entry<String, List<String>> entry : doctorAppointments.entrySet()) {
+            for (Map.Entry<String, List<Appointment>> entry : doctorAppointments.entrySet()) {
                 String doctorId = entry.getKey();
                 String[] details = doctorDetails.get(doctorId);
-                List<String> appointments = entry.getValue();
+                List<Appointment> appointments = entry.getValue();
 
                 System.out.printf("Doctor: %s | Contact: %s | Email: %s%n", details[0], details[1], details[2]);
                 if (appointments.isEmpty()) {
                     System.out.println("- No appointment slots available");
                 } else {
-                    for (String appointment : appointments) {
-                        String[] fields = appointment.split("\\|");
-                        String date = fields[3];
-                        String time = fields[4];
-                        System.out.printf("%d - Date: %s | Time: %s%n", globalIndex, date, time);
+                    for (Appointment appointment : appointments) {
+                        System.out.printf("%d - Date: %s | Time: %s%n", globalIndex,
+                                appointment.getDate().format(dateFormatter), appointment.getTime().format(timeFormatter));
                         indexToAppointment.put(globalIndex++, appointment);
                     }
                 }
@@ -148,7 +142,7 @@ public class AppointmentController {
             // Prompt user to select an appointment
             while (true) {
                 System.out.print("Enter the number of the appointment slot to select, or 0 to exit: ");
-                String input = scanner.nextLine().trim();
+                String input = terminal.nextLine().trim();
                 try {
                     int selection = Integer.parseInt(input);
                     if (selection == 0) {
@@ -156,7 +150,7 @@ public class AppointmentController {
                         return;
                     }
                     if (indexToAppointment.containsKey(selection)) {
-                        String selectedAppointment = indexToAppointment.get(selection);
+                        Appointment selectedAppointment = indexToAppointment.get(selection);
                         processAppointmentSelection(1, Collections.singletonList(selectedAppointment), patientId); // Simplified
                         // slot
                         // handling
@@ -183,22 +177,13 @@ public class AppointmentController {
      *                  scheduled
      */
     public void displayAndSelectAvailableAppointments(String patientId) {
-        List<String> availableAppointments = getAvailableAppointments();
+        List<Appointment> availableAppointments = getAvailableAppointments();
 
         if (availableAppointments.isEmpty()) {
             System.out.println("No available appointments found.");
             return;
         }
 
-        // Sort appointments by date and time
-        availableAppointments.sort(Comparator.comparing((String line) -> {
-            String[] fields = line.split("\\|");
-            return LocalDate.parse(fields[3], dateFormatter);
-        }).thenComparing(line -> {
-            String[] fields = line.split("\\|");
-            return LocalTime.parse(fields[4], timeFormatter);
-        }));
-
         displayAppointmentsWithIndex(availableAppointments);
 
         int selection = getUserSelection(availableAppointments.size());
@@ -211,27 +196,14 @@ public class AppointmentController {
     }
 
     /**
-     * Retrieves a list of available appointments from the appointment file.
-     * An appointment is considered available if its status is "AVAILABLE".
+     * Retrieves a list of available appointments from the appointment slot index,
+     * sorted by date and time. An appointment is considered available if its
+     * status is "AVAILABLE".
      * 
-     * @return a list of strings representing available appointments, where each
-     *         string
-     *         contains the appointment details separated by the '|' character.
+     * @return a list of available appointments
      */
-    private List<String> getAvailableAppointments() {
-        List<String> availableAppointments = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length >= 6 && fields[5].equals("AVAILABLE")) {
-                    availableAppointments.add(line);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return availableAppointments;
+    private List<Appointment> getAvailableAppointments() {
+        return AppointmentSlotIndex.current().slots(Appointment.Status.AVAILABLE);
     }
 
     /**
@@ -241,21 +213,17 @@ public class AppointmentController {
      * the date and time of each appointment. The appointments are indexed for easy
      * selection. An option to return to the main menu is also provided.
      *
-     * @param appointments a list of strings, where each string contains the
-     *                     details of an appointment separated by the '|' character.
+     * @param appointments a list of appointments
      */
-    private void displayAppointmentsWithIndex(List<String> appointments) {
+    private void displayAppointmentsWithIndex(List<Appointment> appointments) {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║          Available Appointments        ║");
         System.out.println("╚════════════════════════════════════════╝");
 
         int index = 1;
-        for (String appointment : appointments) {
-            String[] fields = appointment.split("\\|");
-            LocalDate date = LocalDate.parse(fields[3], dateFormatter);
-            LocalTime time = LocalTime.parse(fields[4], timeFormatter);
-            System.out.printf("%d. Date: %s | Time: %s%n", index++, date.format(dateFormatter),
-                    time.format(timeFormatter));
+        for (Appointment appointment : appointments) {
+            System.out.printf("%d. Date: %s | Time: %s%n", index++, appointment.getDate().format(dateFormatter),
+                    appointment.getTime().format(timeFormatter));
         }
         System.out.println("0. Back to Main Menu");
         System.out.println("══════════════════════════════════════════");
@@ -275,11 +243,10 @@ public class AppointmentController {
      * @return the index of the selected appointment
      */
     private int getUserSelection(int maxIndex) {
-        Scanner scanner = new Scanner(System.in);
         int selection = -1;
         while (true) {
             System.out.print("Please enter the number of the appointment you wish to select (or 0 to exit): ");
-            String input = scanner.nextLine().trim();
+            String input = terminal.nextLine().trim();
             try {
                 selection = Integer.parseInt(input);
                 if (selection >= 0 && selection <= maxIndex) {
@@ -297,65 +264,91 @@ public class AppointmentController {
     /**
      * Processes the selection of an appointment slot by a patient.
      *
-     * This method updates the selected appointment with the patient's ID,
-     * changes its status to "PENDING", and adds any request message from
-     * the patient. The updated appointment is then saved back to the file.
-     * Finally, it informs the user that the appointment is pending approval
+     * This method books the selected slot for the patient with their request
+     * message, moving it to "PENDING" through {@link #bookSlot}. If another
+     * session booked or changed the slot while the patient was typing, the
+     * booking is refused and the patient is asked to choose again.
+     * Otherwise, it informs the user that the appointment is pending approval
      * from the doctor.
      *
      * @param selection    the index of the selected appointment in the list
      * @param appointments a list of available appointment slots
      * @param patientId    the ID of the patient scheduling the appointment
      */
-    private void processAppointmentSelection(int selection, List<String> appointments, String patientId) {
-        String chosenAppointment = appointments.get(selection - 1);
-        String[] fields = chosenAppointment.split("\\|");
+    private void processAppointmentSelection(int selection, List<Appointment> appointments, String patientId) {
+        Appointment chosenAppointment = appointments.get(selection - 1);
 
-        Scanner scanner = new Scanner(System.in);
         System.out.print("Anything you would like to tell the doctor? ");
-        String requestMessage = scanner.nextLine();
+        String requestMessage = terminal.nextLine();
         if (requestMessage.length() == 0) {
             requestMessage = "-"; // CANNOT LET IT BE EMPTY.
         }
 
-        // Update fields for the selected appointment
-        fields[2] = patientId;
-        fields[5] = "PENDING";
-        fields[6] = requestMessage;
-
-        // Update appointment in file
-        updateAppointmentInFile(chosenAppointment, String.join("|", fields));
+        if (!bookSlot(chosenAppointment, patientId, requestMessage)) {
+            System.out.println("Sorry, this slot was just taken or changed. Please choose another slot.");
+            PrintUtils.pause(terminal);
+            return;
+        }
         System.out.println("Pending request, awaiting Doctor's approval.");
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     /**
-     * Updates the appointment file by replacing a specific line with a new line.
+     * Books an available slot for a patient, moving it from AVAILABLE to PENDING.
      *
-     * This method reads the appointment file and searches for the specified
-     * old line. If found, it replaces the old line with the provided new line
-     * in the file. The updated contents are then written back to the file.
+     * The booking is a compare-and-set on the slot's version: it succeeds only if
+     * the stored slot has not changed since {@code slot} was read, so two sessions
+     * booking the same slot can never both succeed.
      *
-     * @param oldLine the existing line in the file to be replaced
-     * @param newLine the new line to replace the old line in the file
+     * @param slot           the slot as read by the caller; it is not modified
+     * @param patientId      the ID of the patient booking the slot
+     * @param requestMessage the patient's message to the doctor
+     * @return true if the slot was booked, false if it was no longer available
      */
-    private void updateAppointmentInFile(String oldLine, String newLine) {
-        try {
-            List<String> lines = new ArrayList<>();
-            try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    lines.add(line.equals(oldLine) ? newLine : line);
-                }
-            }
-            try (FileWriter writer = new FileWriter(APPOINTMENT_FILE, false)) {
-                for (String line : lines) {
-                    writer.write(line + System.lineSeparator());
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    public static boolean bookSlot(Appointment slot, String patientId, String requestMessage) {
+        if (slot.getStatus() != Appointment.Status.AVAILABLE) {
+            return false;
         }
+        Appointment booking = new Appointment(slot);
+        booking.setPatientId(patientId);
+        booking.setStatus(Appointment.Status.PENDING);
+        booking.setRequestMessage(requestMessage);
+        return updateAppointmentInFile(booking);
+    }
+
+    /**
+     * Writes an updated appointment back to the appointment file, unless the stored
+     * appointment has changed since it was read.
+     *
+     * The update is based on the version the appointment carries: it is saved with
+     * the next version only if the stored appointment is still at that version.
+     * Callers change a copy of the appointment, never the shared record, so a failed
+     * update leaves nothing behind.
+     *
+     * @param appointment a copy of the appointment with its updated details
+     * @return true if the appointment was saved, false if another session changed it first
+     */
+    static boolean updateAppointmentInFile(Appointment appointment) {
+        long readVersion = appointment.getVersion();
+        Appointment updated = new Appointment(appointment);
+        updated.setVersion(readVersion + 1);
+        return Repositories.appointments().saveIf(updated, stored -> stored.getVersion() == readVersion);
+    }
+
+    /**
+     * Retrieves a patient's appointments with any of the given statuses, sorted
+     * by date and time.
+     *
+     * @param patientId the ID of the patient
+     * @param statuses  the statuses to include
+     * @return the matching appointments, earliest first
+     */
+    private List<Appointment> getPatientAppointments(String patientId, Appointment.Status... statuses) {
+        Set<Appointment.Status> wanted = EnumSet.copyOf(Arrays.asList(statuses));
+        List<Appointment> appointments = Repositories.appointments().findWhere(
+                appointment -> appointment.getPatientId().equals(patientId) && wanted.contains(appointment.getStatus()));
+        appointments.sort(Comparator.comparingLong(Appointment::getSortKey));
+        return appointments;
     }
 
     /**
@@ -363,8 +356,8 @@ public class AppointmentController {
      * select
      * an appointment to view the doctor's details.
      * 
-     * This method reads the appointment file, filters out the booked appointments
-     * for the patient, sorts them by date and time, and displays them in a table
+     * This method retrieves the booked appointments for the patient, sorted by
+     * date and time, and displays them in a table
      * format. The user is then prompted to select an appointment by index. If the
      * selected appointment is valid, the method displays the doctor's details.
      * 
@@ -373,81 +366,48 @@ public class AppointmentController {
      */
     public void displayAndSelectBookedAppointments(String patientId) {
         while (true) {
-            List<String[]> bookedAppointments = new ArrayList<>();
             System.out.println("\n╔════════════════════════════════════════╗");
             System.out.println("║            Your Appointments           ║");
             System.out.println("╚════════════════════════════════════════╝");
 
-            // Retrieve booked appointments
-            try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-                String line;
-                int index = 1;
-
-                while ((line = reader.readLine()) != null) {
-                    String[] fields = line.split("\\|");
-
-                    // Check if the appointment is booked for the patient
-                    if (fields.length >= 6 && fields[2].equals(patientId) && (fields[5].equals("BOOKED")
-                            || fields[5].equals("PENDING") || fields[5].equals("RESCHEDULE"))) {
-                        bookedAppointments.add(fields);
-                    }
-                }
-
-                // Sort booked appointments by date and time
-                bookedAppointments
-                        .sort(Comparator.comparing((String[] fields) -> LocalDate.parse(fields[3], dateFormatter))
-                                .thenComparing(fields -> LocalTime.parse(fields[4], timeFormatter)));
-
-                // Display sorted appointments
-                if (bookedAppointments.isEmpty()) {
-                    System.out.println("You have no upcoming appointments!");
-                    PrintUtils.pause();
-                    return;
-                }
+            // Retrieve booked appointments, sorted by date and time
+            List<Appointment> bookedAppointments = getPatientAppointments(patientId, Appointment.Status.BOOKED,
+                    Appointment.Status.PENDING, Appointment.Status.RESCHEDULE);
 
-                System.out.println("Select index to view Doctor's details");
-                index = 1;
-                for (String[] fields : bookedAppointments) {
-                    LocalDate date = LocalDate.parse(fields[3], dateFormatter);
-                    LocalTime time = LocalTime.parse(fields[4], timeFormatter);
-                    String status = fields[5];
-                    String message = fields[6];
-
-                    System.out.printf("%d. Date: %s | Time: %s | Status: %s | Message: %s%n", index++,
-                            date.format(dateFormatter), time.format(timeFormatter), status, message);
-
-                    // If the status is RESCHEDULED, display rescheduled date, time, and message
-                    if ("RESCHEDULE".equalsIgnoreCase(status) && fields.length >= 10) {
-                        String rescheduleDate = fields[7];
-                        String rescheduleTime = fields[8];
-                        String rescheduleMessage = fields[9];
-                        System.out.printf("   - Rescheduling in progress to: %s at %s%n", rescheduleDate,
-                                rescheduleTime);
-                        System.out.printf("   - Message: %s%n", rescheduleMessage);
-                    }
-                }
-
-                System.out.println("0. Back to Main Menu");
-                System.out.println("══════════════════════════");
+            // Display sorted appointments
+            if (bookedAppointments.isEmpty()) {
+                System.out.println("You have no upcoming appointments!");
+                PrintUtils.pause(terminal);
+                return;
+            }
 
-                // Prompt user to select an appointment by index
-                int selection = getUserSelection(bookedAppointments.size());
-                if (selection == 0) {
-                    System.out.println("Returning to main menu...");
-                    return;
+            System.out.println("Select index to view Doctor's details");
+            int index = 1;
+            for (Appointment appointment : bookedAppointments) {
+                System.out.printf("%d. Date: %s | Time: %s | Status: %s | Message: %s%n", index++,
+                        appointment.getDate().format(dateFormatter), appointment.getTime().format(timeFormatter),
+                        appointment.getStatus(), appointment.getRequestMessage());
+
+                // If the status is RESCHEDULED, display rescheduled date, time, and message
+                if (appointment.getStatus() == Appointment.Status.RESCHEDULE) {
+                    System.out.printf("   - Rescheduling in progress to: %s at %s%n", appointment.getRescheduleDate(),
+                            appointment.getRescheduleTime());
+                    System.out.printf("   - Message: %s%n", appointment.getRescheduleMessage());
                 }
+            }
 
-                // Validate selection
-                String[] selectedAppointment = bookedAppointments.get(selection - 1);
-                String doctorId = selectedAppointment[1];
-
-                // Retrieve and display doctor details
-                displayDoctorDetails(doctorId);
+            System.out.println("0. Back to Main Menu");
+            System.out.println("══════════════════════════");
 
-            } catch (IOException e) {
-                e.printStackTrace();
-                break;
+            // Prompt user to select an appointment by index
+            int selection = getUserSelection(bookedAppointments.size());
+            if (selection == 0) {
+                System.out.println("Returning to main menu...");
+                return;
             }
+
+            // Retrieve and display doctor details
+            displayDoctorDetails(bookedAppointments.get(selection - 1).getDoctorId());
         }
     }
 
@@ -460,28 +420,29 @@ public class AppointmentController {
      * and email address in a formatted table.
      * 
      * The method also prints a header with the column names, and a footer with
-     * a horizontal line. Finally, the method calls {@link PrintUtils#pause()} to
+     * a horizontal line. Finally, the method calls {@link PrintUtils#pause(Terminal)} to
      * pause the console output.
      * 
      * @param doctorId the ID of the doctor whose details should be displayed
      */
     private void displayDoctorDetails(String doctorId) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(STAFF_FILE))) {
+        try (BufferedReader reader = FileUtils.newReader(STAFF_FILE)) {
             String line;
+            FieldTokenizer fields = new FieldTokenizer();
             while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
+                fields.reset(line);
 
                 // Check if this is the correct doctor
-                if (fields[0].equals(doctorId)) {
+                if (fields.fieldEquals(0, doctorId)) {
                     System.out.println("\n╔════════════════════════════════════════╗");
                     System.out.println("║             Doctor Details             ║");
                     System.out.println("╚════════════════════════════════════════╝");
-                    System.out.println("\nName: " + fields[1] + " " + fields[2]
-                            + "\nGender: " + fields[3]
-                            + "\nContact Number: " + fields[5]
-                            + "\nEmail Address: " + fields[6]);
+                    System.out.println("\nName: " + fields.field(1) + " " + fields.field(2)
+                            + "\nGender: " + fields.field(3)
+                            + "\nContact Number: " + fields.field(5)
+                            + "\nEmail Address: " + fields.field(6));
                     System.out.println("══════════════════════════════════════════");
-                    PrintUtils.pause();
+                    PrintUtils.pause(terminal);
                 }
             }
         } catch (IOException e) {
@@ -492,9 +453,8 @@ public class AppointmentController {
     /**
      * Deletes a booked appointment for a given patient.
      * 
-     * This method retrieves all booked appointments for the specified patient from
-     * the
-     * appointment file, sorts them by date and time, and displays them in a
+     * This method retrieves all booked appointments for the specified patient,
+     * sorted by date and time, and displays them in a
      * formatted
      * manner. The patient is prompted to select an appointment to delete. Upon
      * confirmation,
@@ -509,114 +469,82 @@ public class AppointmentController {
      *                  deleted
      */
     public void deleteBookedAppointment(String patientId) {
-        List<String[]> bookedAppointments = new ArrayList<>();
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║        Your Booked Appointments        ║");
         System.out.println("╚════════════════════════════════════════╝");
 
-        // Retrieve booked appointments
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-            int index = 1;
+        // Retrieve booked appointments, sorted by date and time
+        List<Appointment> bookedAppointments = getPatientAppointments(patientId, Appointment.Status.BOOKED,
+                Appointment.Status.RESCHEDULE, Appointment.Status.PENDING);
 
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-
-                // Check if the appointment is booked for the patient and has a status of BOOKED
-                // or RESCHEDULE
-                if (fields.length >= 6 && fields[2].equals(patientId)
-                        && (fields[5].equals("BOOKED") || fields[5].equals("RESCHEDULE")
-                                || fields[5].equals("PENDING"))) {
-                    bookedAppointments.add(fields);
-                }
-            }
-
-            // Sort booked appointments by date and time
-            bookedAppointments.sort(Comparator.comparing((String[] fields) -> LocalDate.parse(fields[3], dateFormatter))
-                    .thenComparing(fields -> LocalTime.parse(fields[4], timeFormatter)));
-
-            // Display sorted appointments
-            if (bookedAppointments.isEmpty()) {
-                System.out.println("You have no booked appointments to delete!");
-                PrintUtils.pause();
-                return;
-            }
-            System.out.println("Select index to remove appointment/request");
-
-            index = 1;
-            for (String[] fields : bookedAppointments) {
-                LocalDate date = LocalDate.parse(fields[3], dateFormatter);
-                LocalTime time = LocalTime.parse(fields[4], timeFormatter);
-                String status = fields[5];
-                System.out.printf("%d. Date: %s | Time: %s | Status: %s%n", index++, date.format(dateFormatter),
-                        time.format(timeFormatter), status);
-            }
+        // Display sorted appointments
+        if (bookedAppointments.isEmpty()) {
+            System.out.println("You have no booked appointments to delete!");
+            PrintUtils.pause(terminal);
+            return;
+        }
+        System.out.println("Select index to remove appointment/request");
 
-            System.out.println("0. Back to Main Menu");
-            System.out.println("══════════════════════════════════════════");
+        int index = 1;
+        for (Appointment appointment : bookedAppointments) {
+            System.out.printf("%d. Date: %s | Time: %s | Status: %s%n", index++,
+                    appointment.getDate().format(dateFormatter), appointment.getTime().format(timeFormatter),
+                    appointment.getStatus());
+        }
 
-            // Prompt user to select an appointment by index
-            int selection = getUserSelection(bookedAppointments.size());
-            if (selection == 0) {
-                System.out.println("Returning to delete menu...");
-                return;
-            }
+        System.out.println("0. Back to Main Menu");
+        System.out.println("══════════════════════════════════════════");
 
-            // Validate selection and confirm deletion
-            String[] selectedAppointment = bookedAppointments.get(selection - 1);
-            LocalDate date = LocalDate.parse(selectedAppointment[3], dateFormatter);
-            LocalTime time = LocalTime.parse(selectedAppointment[4], timeFormatter);
-            System.out.printf("Are you sure you want to delete the appointment/request on %s at %s?%n",
-                    date.format(dateFormatter), time.format(timeFormatter));
+        // Prompt user to select an appointment by index
+        int selection = getUserSelection(bookedAppointments.size());
+        if (selection == 0) {
+            System.out.println("Returning to delete menu...");
+            return;
+        }
 
-            // Prompt for confirmation
-            Scanner scanner = new Scanner(System.in);
-            String confirmation;
-            while (true) {
-                System.out.println("1: Confirm");
-                System.out.println("0: Cancel");
-                System.out.print("Enter your choice: ");
-                confirmation = scanner.nextLine().trim();
-
-                if (confirmation.equals("1")) {
-                    String oldLine = String.join("|", selectedAppointment);
-
-                    // If status is RESCHEDULE, reset specific fields
-                    if (selectedAppointment[5].equals("RESCHEDULE")) {
-                        selectedAppointment[2] = "-"; // Reset patientId
-                        selectedAppointment[5] = "AVAILABLE"; // Set status to AVAILABLE
-                        selectedAppointment[6] = "-"; // Clear requestMessage
-                        selectedAppointment[7] = "-"; // Clear rescheduleDate
-                        selectedAppointment[8] = "-"; // Clear rescheduleTime
-                        selectedAppointment[9] = "-"; // Clear rescheduleMessage
-                    } else {
-                        // For BOOKED status, reset patientId, status, and request message only
-                        selectedAppointment[2] = "-"; // Reset patientId
-                        selectedAppointment[5] = "AVAILABLE"; // Set status to AVAILABLE
-                        selectedAppointment[6] = "-"; // Clear requestMessage
-                    }
+        // Validate selection and confirm deletion
+        Appointment selectedAppointment = new Appointment(bookedAppointments.get(selection - 1));
+        System.out.printf("Are you sure you want to delete the appointment/request on %s at %s?%n",
+                selectedAppointment.getDate().format(dateFormatter),
+                selectedAppointment.getTime().format(timeFormatter));
 
-                    String newLine = String.join("|", selectedAppointment);
+        // Prompt for confirmation
+        String confirmation;
+        while (true) {
+            System.out.println("1: Confirm");
+            System.out.println("0: Cancel");
+            System.out.print("Enter your choice: ");
+            confirmation = terminal.nextLine().trim();
 
-                    // Update the file
-                    updateAppointmentInFile(oldLine, newLine);
-                    System.out.println("Appointment/Request has been successfully deleted.");
-                    PrintUtils.pause();
-                    deleteBookedAppointment(patientId); // Refresh the list after deletion
+            if (confirmation.equals("1")) {
+                // If status is RESCHEDULE, also clear the requested reschedule
+                if (selectedAppointment.getStatus() == Appointment.Status.RESCHEDULE) {
+                    selectedAppointment.setReschedule("-", "-", "-");
+                }
+                selectedAppointment.setPatientId("-"); // Reset patientId
+                selectedAppointment.setStatus(Appointment.Status.AVAILABLE); // Set status to AVAILABLE
+                selectedAppointment.setRequestMessage("-"); // Clear requestMessage
+
+                // Update the file
+                if (!updateAppointmentInFile(selectedAppointment)) {
+                    System.out.println("This appointment was changed by someone else. Please try again.");
+                    PrintUtils.pause(terminal);
+                    deleteBookedAppointment(patientId); // Show the current list again
                     break;
-                } else if (confirmation.equals("0")) {
-                    System.out.println("Action canceled.");
+                }
+                System.out.println("Appointment/Request has been successfully deleted.");
+                PrintUtils.pause(terminal);
+                deleteBookedAppointment(patientId); // Refresh the list after deletion
+                break;
+            } else if (confirmation.equals("0")) {
+                System.out.println("Action canceled.");
 
-                    deleteBookedAppointment(patientId); // Go back to the delete menu
+                deleteBookedAppointment(patientId); // Go back to the delete menu
 
-                    break;
-                } else {
-                    System.out.println("Invalid input. Please enter 1 to confirm or 0 to exit.");
-                }
+                break;
+            } else {
+                System.out.println("Invalid input. Please enter 1 to confirm or 0 to exit.");
             }
-
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
@@ -634,42 +562,26 @@ public class AppointmentController {
      * @param patientId the ID of the patient requesting the reschedule
      */
     public void requestRescheduleAppointment(String patientId) {
-        List<String[]> bookedAppointments = new ArrayList<>();
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║        Your Booked Appointments        ║");
         System.out.println("╚════════════════════════════════════════╝");
 
-        // Retrieve booked appointments
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-
-                // Check if the appointment is booked for the patient
-                if (fields.length >= 6 && fields[2].equals(patientId) && fields[5].equals("BOOKED")) {
-                    bookedAppointments.add(fields);
-                }
-            }
-
-            // Sort appointments by date and time
-            bookedAppointments.sort(Comparator.comparing((String[] fields) -> LocalDate.parse(fields[3], dateFormatter))
-                    .thenComparing(fields -> LocalTime.parse(fields[4], timeFormatter)));
+        // Retrieve booked appointments, sorted by date and time
+        List<Appointment> bookedAppointments = getPatientAppointments(patientId, Appointment.Status.BOOKED);
+        {
 
             // Display appointments with index
             if (bookedAppointments.isEmpty()) {
                 System.out.println("You have no appointments available to request rescheduling!");
-                PrintUtils.pause();
+                PrintUtils.pause(terminal);
                 return;
             }
             System.out.println("Select appointment to request for a reschedule");
 
             int index = 1;
-            for (String[] fields : bookedAppointments) {
-                LocalDate date = LocalDate.parse(fields[3], dateFormatter);
-                LocalTime time = LocalTime.parse(fields[4], timeFormatter);
-                System.out.printf("%d. Date: %s | Time: %s%n", index++, date.format(dateFormatter),
-                        time.format(timeFormatter));
+            for (Appointment appointment : bookedAppointments) {
+                System.out.printf("%d. Date: %s | Time: %s%n", index++, appointment.getDate().format(dateFormatter),
+                        appointment.getTime().format(timeFormatter));
             }
 
             System.out.println("0. Back to Main Menu");
@@ -683,19 +595,18 @@ public class AppointmentController {
             }
 
             // Selected appointment
-            String[] selectedAppointment = bookedAppointments.get(selection - 1);
-            Scanner scanner = new Scanner(System.in);
+            Appointment selectedAppointment = new Appointment(bookedAppointments.get(selection - 1));
 
             // Prompt for reschedule date with validation
-            String day = promptForInput("Enter new day (DD): ", scanner, 1, 31);
+            String day = promptForInput("Enter new day (DD): ", terminal, 1, 31);
             if (day.equals("0")) {
                 return;
             }
-            String month = promptForInput("Enter new month (MM): ", scanner, 1, 12);
+            String month = promptForInput("Enter new month (MM): ", terminal, 1, 12);
             if (month.equals("0")) {
                 return;
             }
-            String year = promptForInput("Enter new year (YYYY): ", scanner, 1900, 2100);
+            String year = promptForInput("Enter new year (YYYY): ", terminal, 1900, 2100);
             if (year.equals("0")) {
                 return;
             }
@@ -703,11 +614,11 @@ public class AppointmentController {
                     Integer.parseInt(year));
 
             // Prompt for reschedule time with validation
-            String hour = promptForInput("Enter new hour (HH, 24-hour format): ", scanner, 0, 23);
+            String hour = promptForInput("Enter new hour (HH, 24-hour format): ", terminal, 0, 23);
             if (hour.equals("0")) {
                 return;
             }
-            String minutes = promptForInput("Enter new minutes (MM): ", scanner, 0, 59);
+            String minutes = promptForInput("Enter new minutes (MM): ", terminal, 0, 59);
             if (minutes.equals("0")) {
                 return;
             }
@@ -715,7 +626,7 @@ public class AppointmentController {
 
             // Prompt for reschedule message
             System.out.print("Enter reschedule message: ");
-            String rescheduleMessage = scanner.nextLine().trim();
+            String rescheduleMessage = terminal.nextLine().trim();
             if (rescheduleMessage.isEmpty()) {
                 rescheduleMessage = "-";
             }
@@ -725,26 +636,24 @@ public class AppointmentController {
             System.out.println("New Date: " + rescheduleDate);
             System.out.println("New Time: " + rescheduleTime);
             System.out.println("Message: " + rescheduleMessage);
-            String confirmation = promptForConfirmation(scanner);
+            String confirmation = promptForConfirmation(terminal);
 
             if (confirmation.equals("1")) {
-                String oldLine = String.join("|", selectedAppointment);
-                selectedAppointment[5] = "RESCHEDULE";
-                selectedAppointment[7] = rescheduleDate;
-                selectedAppointment[8] = rescheduleTime;
-                selectedAppointment[9] = rescheduleMessage;
+                selectedAppointment.setStatus(Appointment.Status.RESCHEDULE);
+                selectedAppointment.setReschedule(rescheduleDate, rescheduleTime, rescheduleMessage);
 
                 // Update the appointment in the file
-                String newLine = String.join("|", selectedAppointment);
-                updateAppointmentInFile(oldLine, newLine);
+                if (!updateAppointmentInFile(selectedAppointment)) {
+                    System.out.println("This appointment was changed by someone else. Please try again.");
+                    PrintUtils.pause(terminal);
+                    return;
+                }
                 System.out.println("Reschedule request submitted.");
-                PrintUtils.pause();
+                PrintUtils.pause(terminal);
             } else {
                 System.out.println("Reschedule request canceled.");
-                PrintUtils.pause();
+                PrintUtils.pause(terminal);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
@@ -757,15 +666,15 @@ public class AppointmentController {
      * returns "0" immediately.
      *
      * @param prompt  the message to display to the user
-     * @param scanner the Scanner object used to read the user's input
+     * @param terminal the terminal used to read the user's input
      * @param min     the minimum valid value (inclusive)
      * @param max     the maximum valid value (inclusive)
      * @return the validated input as a string or "0" if the operation is canceled
      */
-    private String promptForInput(String prompt, Scanner scanner, int min, int max) {
+    private String promptForInput(String prompt, Terminal terminal, int min, int max) {
         while (true) {
             System.out.print(prompt);
-            String input = scanner.nextLine().trim();
+            String input = terminal.nextLine().trim();
             if (input.equals("0")) {
                 return "0";
             }
@@ -790,15 +699,15 @@ public class AppointmentController {
      * to prompt until a valid input is provided. If the user enters 1, the
      * method returns "1". If the user enters 0, the method returns "0".
      * 
-     * @param scanner the Scanner object used to read the user's input
+     * @param terminal the terminal used to read the user's input
      * @return "1" if the user confirmed, or "0" if the user canceled
      */
-    private String promptForConfirmation(Scanner scanner) {
+    private String promptForConfirmation(Terminal terminal) {
         while (true) {
             System.out.println("1: Confirm");
             System.out.println("0: Cancel");
             System.out.print("Enter your choice: ");
-            String confirmation = scanner.nextLine().trim();
+            String confirmation = terminal.nextLine().trim();
             if (confirmation.equals("1") || confirmation.equals("0")) {
                 return confirmation;
             } else {
@@ -811,55 +720,31 @@ public class AppointmentController {
      * Retrieves a list of appointments for a specific doctor that are either
      * available or booked.
      *
-     * This method reads from the appointment file, filtering the records based on
-     * the provided doctor ID
-     * and the status of the appointment. It collects appointments with a status of
-     * "AVAILABLE" or "BOOKED".
+     * This method looks up the doctor's appointments in the appointment slot
+     * index and collects those with a status of "AVAILABLE" or "BOOKED", in date
+     * and time order.
      *
      * @param doctorId the ID of the doctor whose appointments are being retrieved
-     * @return a list of appointment strings that are either available or booked for
-     *         the specified doctor
+     * @return a list of appointments that are either available or booked for the
+     *         specified doctor
      */
-    public List<String> getAvailableAndBookedAppointment(String doctorId) {
-        List<String> doctorAppointments = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length >= 6 && (fields[5].equals("AVAILABLE")) || fields[5].equals("BOOKED")) {
-                    doctorAppointments.add(line);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return doctorAppointments;
+    public List<Appointment> getAvailableAndBookedAppointment(String doctorId) {
+        return AppointmentSlotIndex.current().schedule(doctorId, Appointment.Status.AVAILABLE,
+                Appointment.Status.BOOKED);
     }
 
     /**
      * Retrieves the personal schedule of a doctor by filtering appointments.
      *
-     * This method fetches all available and booked appointment slots for a given
-     * doctor ID, then filters and returns only the appointments that are associated
-     * with the specified doctor.
+     * This method fetches the available and booked appointment slots whose
+     * doctor ID field matches the given doctor ID exactly, in date and time order.
      *
      * @param doctorId the ID of the doctor whose personal schedule is being
      *                 retrieved
-     * @return a list of appointment strings that belong to the specified doctor
+     * @return a list of appointments that belong to the specified doctor
      */
-    public List<String> getPersonalSchedule(String doctorId) {
-        List<String> allAppointmentSlots = getAvailableAndBookedAppointment(doctorId);
-        List<String> currentDoctorSchedule = new ArrayList<>();
-
-        for (String appointment : allAppointmentSlots) {
-            // Assuming each slot string contains doctor ID in a specific format, check if
-            // it matches
-            if (appointment.contains(doctorId)) { // Modify as needed for exact matching logic
-                currentDoctorSchedule.add(appointment);
-            }
-        }
-
-        return currentDoctorSchedule;
+    public List<Appointment> getPersonalSchedule(String doctorId) {
+        return getAvailableAndBookedAppointment(doctorId);
     }
 
     /**
@@ -878,7 +763,7 @@ public class AppointmentController {
      */
     public void viewPersonalSchedule(String doctorId) {
 
-        List<String> currentDoctorSchedule = getPersonalSchedule(doctorId);
+        List<Appointment> currentDoctorSchedule = getPersonalSchedule(doctorId);
 
         // Print or return the currentDoctorSchedule if needed
         System.out.println("\n╔════════════════════════════════════════╗");
@@ -889,16 +774,13 @@ public class AppointmentController {
             System.out.println("No appointments scheduled.");
         } else {
             int appointmentNumber = 1;
-            for (String appointment : currentDoctorSchedule) {
-                String[] fields = appointment.split("\\|");
-                LocalDate date = LocalDate.parse(fields[3], dateFormatter);
-                LocalTime time = LocalTime.parse(fields[4], timeFormatter);
-                String status = fields[5];
-                String message = fields[6];
+            for (Appointment appointment : currentDoctorSchedule) {
+                Appointment.Status status = appointment.getStatus();
+                String message = appointment.getRequestMessage();
 
                 // Format the date and time
-                String formattedDate = date.format(dateFormatter);
-                String formattedTime = time.format(timeFormatter);
+                String formattedDate = appointment.getDate().format(dateFormatter);
+                String formattedTime = appointment.getTime().format(timeFormatter);
 
                 // Only show consultation notes if they are not "-"
                 String consultationNotes = message.equals("-") ? "" : " - " + message;
@@ -910,29 +792,17 @@ public class AppointmentController {
         }
 
         System.out.println("══════════════════════════════════════════");
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     /**
-     * Generates a unique appointment ID based on the last ID found in the
-     * appointment file. If no entries are found, defaults to "AP00000".
+     * Generates a unique appointment ID from the appointment ID sequence, starting
+     * after the highest ID in the appointment file.
      *
      * @return a unique appointment ID
      */
     private String generateAppointmentId() {
-        String lastId = "AP00000"; // Default ID if no entries are found
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lastId = line.split("\\|")[0];
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading appointment file: " + e.getMessage());
-        }
-
-        int lastNum = Integer.parseInt(lastId.substring(2));
-        return String.format("AP%05d", lastNum + 1);
+        return APPOINTMENT_IDS.next();
     }
 
     /**
@@ -953,7 +823,6 @@ public class AppointmentController {
      */
     public void createAvailability(String doctorId) {
 
-        Scanner scanner = new Scanner(System.in);
         String appointmentId = generateAppointmentId();
         LocalDate date;
         LocalTime time;
@@ -965,7 +834,7 @@ public class AppointmentController {
         System.out.println("--------------------------");
         while (true) {
             System.out.print("Enter day (DD): ");
-            dayInput = scanner.nextLine().trim();
+            dayInput = terminal.nextLine().trim();
             if (dayInput.matches("\\d{2}") && (day = Integer.parseInt(dayInput)) >= 1 && day <= 31) {
                 break;
             } else {
@@ -978,7 +847,7 @@ public class AppointmentController {
         int month;
         while (true) {
             System.out.print("Enter month (MM): ");
-            monthInput = scanner.nextLine().trim();
+            monthInput = terminal.nextLine().trim();
             if (monthInput.matches("\\d{2}") && (month = Integer.parseInt(monthInput)) >= 1 && month <= 12) {
                 break;
             } else {
@@ -991,7 +860,7 @@ public class AppointmentController {
         int year;
         while (true) {
             System.out.print("Enter year (YYYY): ");
-            yearInput = scanner.nextLine().trim();
+            yearInput = terminal.nextLine().trim();
             if (yearInput.matches("\\d{4}")) {
                 year = Integer.parseInt(yearInput);
                 break;
@@ -1016,7 +885,7 @@ public class AppointmentController {
         int hour;
         while (true) {
             System.out.print("Enter hour (HH): ");
-            hourInput = scanner.nextLine().trim();
+            hourInput = terminal.nextLine().trim();
             if (hourInput.matches("\\d{2}") && (hour = Integer.parseInt(hourInput)) >= 0 && hour <= 23) {
                 break;
             } else {
@@ -1029,7 +898,7 @@ public class AppointmentController {
         int minute;
         while (true) {
             System.out.print("Enter minute (MM): ");
-            minuteInput = scanner.nextLine().trim();
+            minuteInput = terminal.nextLine().trim();
             if (minuteInput.matches("\\d{2}") && (minute = Integer.parseInt(minuteInput)) >= 0 && minute <= 59) {
                 break;
             } else {
@@ -1041,23 +910,7 @@ public class AppointmentController {
         time = LocalTime.of(hour, minute);
 
         // Save the appointment to file
-        String appointmentRecord = String.join("|",
-                appointmentId,
-                doctorId,
-                "-",
-                date.format(dateFormatter),
-                time.format(timeFormatter),
-                "AVAILABLE",
-                "-",
-                "-",
-                "-",
-                "-");
-
-        try (FileWriter writer = new FileWriter(APPOINTMENT_FILE, true)) {
-            writer.write(appointmentRecord + System.lineSeparator());
-        } catch (IOException e) {
-            System.out.println("Error writing to appointment file: " + e.getMessage());
-        }
+        Repositories.appointments().add(new Appointment(appointmentId, doctorId, date, time));
 
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║     Appointment Added Successfully     ║");
@@ -1076,13 +929,14 @@ public class AppointmentController {
      * The user can enter '0' to cancel the deletion.
      * The function will remove the selected appointment from the doctor's schedule
      * and remove the corresponding
-     * record from the appointment file.
+     * record from the appointment file, unless it was changed since it was listed,
+     * such as by a patient booking it.
      * 
      * @param doctorId the doctor ID to delete the appointment from
      */
     public void deleteAvailability(String doctorId) {
 
-        List<String> currentDoctorSchedule = getPersonalSchedule(doctorId);
+        List<Appointment> currentDoctorSchedule = getPersonalSchedule(doctorId);
         viewPersonalSchedule(doctorId);
 
         if (currentDoctorSchedule.isEmpty()) {
@@ -1090,15 +944,13 @@ public class AppointmentController {
             return;
         }
 
-        Scanner scanner = new Scanner(System.in);
         int appointmentId;
 
         // Prompt the user to enter the appointment ID to delete
         while (true) {
             // Prompt the user to enter the appointment ID to delete
             System.out.print("Enter the slot you wish to delete (or type '0' to cancel): ");
-            appointmentId = scanner.nextInt();
-            scanner.nextLine();
+            appointmentId = terminal.nextInt();
 
             // Check if the user wants to cancel
             if (appointmentId == 0) {
@@ -1106,14 +958,19 @@ public class AppointmentController {
                 return;
             }
 
-            if (appointmentId > currentDoctorSchedule.size()) {
+            if (appointmentId < 1 || appointmentId > currentDoctorSchedule.size()) {
                 System.out.println("Invalid choice. Please re-enter.");
                 continue;
             }
-            String appointmentToDelete = currentDoctorSchedule.get(appointmentId - 1);
-            String[] fields = appointmentToDelete.split("\\|");
+            Appointment appointmentToDelete = currentDoctorSchedule.get(appointmentId - 1);
 
-            FileUtils.deleteFromFile(APPOINTMENT_FILE, fields[0]);
+            // Delete the slot only as listed, not one a patient booked or changed meanwhile
+            long readVersion = appointmentToDelete.getVersion();
+            if (!Repositories.appointments().deleteIf(appointmentToDelete.getAppointmentId(),
+                    stored -> stored.getVersion() == readVersion)) {
+                System.out.println("This appointment was changed by someone else. Please try again.");
+                return;
+            }
             System.out.println("Appointment ID " + appointmentId + " deleted successfully.");
             break;
         }
@@ -1128,12 +985,11 @@ public class AppointmentController {
      */
     public void setAvailability(String doctorId) {
 
-        Scanner scanner = new Scanner(System.in);
 
         while (true) {
             System.out.println(
                     "\nSet availability menu: \n1. Create availability slot \n2. Delete availability slot \n0. Return");
-            String choice = scanner.nextLine().trim();
+            String choice = terminal.nextLine().trim();
 
             switch (choice) {
                 case "1":
@@ -1157,26 +1013,12 @@ public class AppointmentController {
      * Retrieve all appointment requests for a given doctor ID.
      * 
      * @param doctorId the doctor ID to retrieve appointment requests for
-     * @return a list of appointment requests for the given doctor ID. Each element
-     *         in the list is a string
-     *         containing the appointment details in the following format:
-     *         "appointmentId|doctorId|patientId|dateOfAppointment|timeOfAppointment|status|patientName"
+     * @return a list of pending or rescheduled appointments for the given doctor
+     *         ID, in date and time order
      */
-    public List<String> getAppointmentRequests(String doctorId) {
-        List<String> appointmentsRequests = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length >= 6 && (fields[5].equals("PENDING") || fields[5].equals("RESCHEDULE"))
-                        && fields[1].equals(doctorId)) {
-                    appointmentsRequests.add(line);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return appointmentsRequests;
+    public List<Appointment> getAppointmentRequests(String doctorId) {
+        return AppointmentSlotIndex.current().schedule(doctorId, Appointment.Status.PENDING,
+                Appointment.Status.RESCHEDULE);
     }
 
     /**
@@ -1190,7 +1032,7 @@ public class AppointmentController {
     public void printAppointmentRequest(String doctorId) {
 
         // For each appointment in the appointment request, print the details
-        List<String> appointmentRequests = getAppointmentRequests(doctorId);
+        List<Appointment> appointmentRequests = getAppointmentRequests(doctorId);
         int counter = 1;
 
         if (appointmentRequests.isEmpty()) {
@@ -1199,36 +1041,27 @@ public class AppointmentController {
         }
 
         System.out.println("Pending appointment requests for doctor ID: " + doctorId + ":");
-        for (String request : appointmentRequests) {
-            String[] fields = request.split("\\|");
-
-            // Extract date, time, status, consultation notes, and reschedule details
-            LocalDate date = LocalDate.parse(fields[3], dateFormatter);
-            LocalTime time = LocalTime.parse(fields[4], timeFormatter);
-            String status = fields[5];
-            String patientId = fields[2];
-            String consultationNotes = fields[6]; // Notes for PENDING status
-            String rescheduleDate = fields.length > 7 ? fields[7] : "-";
-            String rescheduleTime = fields.length > 8 ? fields[8] : "-";
-            String rescheduleMessage = fields.length > 9 ? fields[9] : "-";
+        for (Appointment request : appointmentRequests) {
+            Appointment.Status status = request.getStatus();
+            String consultationNotes = request.getRequestMessage(); // Notes for PENDING status
 
             // Format the date and time
-            String formattedDate = date.format(dateFormatter);
-            String formattedTime = time.format(timeFormatter);
+            String formattedDate = request.getDate().format(dateFormatter);
+            String formattedTime = request.getTime().format(timeFormatter);
 
             // Display basic appointment details
-            System.out.printf("%d. %s / %s: %s %s (%s)", counter++, fields[0], patientId, formattedDate, formattedTime,
-                    status);
+            System.out.printf("%d. %s / %s: %s %s (%s)", counter++, request.getAppointmentId(),
+                    request.getPatientId(), formattedDate, formattedTime, status);
 
             // Display consultation notes if the status is PENDING
-            if ("PENDING".equalsIgnoreCase(status) && !consultationNotes.equals("-")) {
+            if (status == Appointment.Status.PENDING && !consultationNotes.equals("-")) {
                 System.out.printf(" - Consultation Notes: %s", consultationNotes);
             }
 
             // Display reschedule details if the status is RESCHEDULE
-            if ("RESCHEDULE".equalsIgnoreCase(status)) {
-                System.out.printf(" - Rescheduled to: %s at %s | Message: %s", rescheduleDate, rescheduleTime,
-                        rescheduleMessage);
+            if (status == Appointment.Status.RESCHEDULE) {
+                System.out.printf(" - Rescheduled to: %s at %s | Message: %s", request.getRescheduleDate(),
+                        request.getRescheduleTime(), request.getRescheduleMessage());
             }
 
             System.out.println(); // Newline after each appointment
@@ -1248,12 +1081,11 @@ public class AppointmentController {
      * @param doctorId the doctor ID to accept or decline appointments for
      */
     public void acceptDeclineAppointment(String doctorId) {
-        Scanner scanner = new Scanner(System.in);
-        String decision, appointmentId, choice;
-        String selectedAppointment = null;
+        String decision, choice;
+        Appointment selectedAppointment = null;
 
         // Step 1: Display pending or rescheduled appointments for the doctor
-        List<String> appointmentRequests = getAppointmentRequests(doctorId);
+        List<Appointment> appointmentRequests = getAppointmentRequests(doctorId);
         if (appointmentRequests.isEmpty()) {
             return;
         }
@@ -1262,7 +1094,7 @@ public class AppointmentController {
         System.out.println("Select an appointment to accept/decline (press 0 to return): ");
 
         while (true) {
-            choice = scanner.nextLine();
+            choice = terminal.nextLine();
 
             // Check if the user wants to exit
             if (choice.equals("0")) {
@@ -1273,7 +1105,7 @@ public class AppointmentController {
                 continue;
             }
 
-            selectedAppointment = appointmentRequests.get(Integer.parseInt(choice) - 1);
+            selectedAppointment = new Appointment(appointmentRequests.get(Integer.parseInt(choice) - 1));
             break;
         }
 
@@ -1281,7 +1113,7 @@ public class AppointmentController {
         while (true) {
             System.out.print(
                     "Do you want to accept or decline this appointment? (type 'accept', 'decline', or '0' to return): ");
-            decision = scanner.nextLine().trim().toLowerCase();
+            decision = terminal.nextLine().trim().toLowerCase();
 
             if (decision.equals("0")) {
                 System.out.println("Returning to the previous menu.");
@@ -1294,38 +1126,34 @@ public class AppointmentController {
         }
 
         // Step 6: Update the status and add notes in the data
-        String[] fields = selectedAppointment.split("\\|");
+        boolean reschedule = selectedAppointment.getStatus() == Appointment.Status.RESCHEDULE;
 
         if (decision.equals("accept")) {
-            if (fields[5].equals("RESCHEDULE")) {
-                fields[5] = "BOOKED";
-                fields[3] = fields[7];
-                fields[4] = fields[8];
-                fields[7] = "-";
-                fields[8] = "-";
-                fields[9] = "-";
-            } else {
-                fields[5] = "BOOKED";
+            if (reschedule) {
+                selectedAppointment.setDateTime(
+                        LocalDate.parse(selectedAppointment.getRescheduleDate(), dateFormatter),
+                        LocalTime.parse(selectedAppointment.getRescheduleTime(), timeFormatter));
+                selectedAppointment.setReschedule("-", "-", "-");
             }
+            selectedAppointment.setStatus(Appointment.Status.BOOKED);
         } else {
-            if (fields[5].equals("RESCHEDULE")) {
-                fields[5] = "BOOKED";
-                fields[6] = "Reschdule appointment declined";
-                fields[7] = "-";
-                fields[8] = "-";
-                fields[9] = "-";
+            if (reschedule) {
+                selectedAppointment.setStatus(Appointment.Status.BOOKED);
+                selectedAppointment.setRequestMessage("Reschdule appointment declined");
+                selectedAppointment.setReschedule("-", "-", "-");
             } else {
-                fields[2] = "-";
-                fields[6] = "Appointment request declined";
-                fields[5] = "AVAILABLE";
+                selectedAppointment.setPatientId("-");
+                selectedAppointment.setRequestMessage("Appointment request declined");
+                selectedAppointment.setStatus(Appointment.Status.AVAILABLE);
             }
 
         }
 
-        String updatedData = String.join("|", fields);
-
         // Step 7: Update the file
-        FileUtils.updateToFile(APPOINTMENT_FILE, updatedData, fields[0]);
+        if (!updateAppointmentInFile(selectedAppointment)) {
+            System.out.println("This appointment was changed by someone else. Please review it again.");
+            return;
+        }
         System.out.println("Appointment " + (decision.equals("accept") ? "accepted" : "declined") + " successfully.");
     }
 
@@ -1346,7 +1174,7 @@ public class AppointmentController {
 
         printAppointmentRequest(doctorId);
         acceptDeclineAppointment(doctorId);
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
 
         return;
     }
@@ -1365,20 +1193,9 @@ public class AppointmentController {
      *                 viewed
      */
     public void viewUpcomingAppointments(String doctorId) {
-        List<String> upcomingAppointments = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-
-                // Check if the appointment is booked and belongs to the specified doctor
-                if (fields.length >= 6 && fields[5].equals("BOOKED") && fields[1].equals(doctorId)) {
-                    upcomingAppointments.add(line);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // Booked appointments that belong to the specified doctor
+        List<Appointment> upcomingAppointments = AppointmentSlotIndex.current().schedule(doctorId,
+                Appointment.Status.BOOKED);
 
         if (upcomingAppointments.isEmpty()) {
             System.out.println("No upcoming appointments for doctor ID: " + doctorId);
@@ -1387,33 +1204,26 @@ public class AppointmentController {
 
         // Print the list of upcoming appointments
         System.out.println("Upcoming appointments for Doctor ID: " + doctorId + ":");
-        for (String appointment : upcomingAppointments) {
-            String[] fields = appointment.split("\\|");
-
-            // Extract details
-            String appointmentId = fields[0];
-            String patientId = fields[2];
-            LocalDate date = LocalDate.parse(fields[3], dateFormatter);
-            LocalTime time = LocalTime.parse(fields[4], timeFormatter);
-            String status = fields[5];
-            String consultationNotes = fields[6];
+        for (Appointment appointment : upcomingAppointments) {
+            String consultationNotes = appointment.getRequestMessage();
 
             // Format the date and time
-            String formattedDate = date.format(dateFormatter);
-            String formattedTime = time.format(timeFormatter);
+            String formattedDate = appointment.getDate().format(dateFormatter);
+            String formattedTime = appointment.getTime().format(timeFormatter);
 
             // Display appointment details
-            System.out.printf("%s / %s: %s %s (%s)", appointmentId, patientId, formattedDate, formattedTime, status);
+            System.out.printf("%s / %s: %s %s (%s)", appointment.getAppointmentId(), appointment.getPatientId(),
+                    formattedDate, formattedTime, appointment.getStatus());
 
-            // Show consultation notes if the status is BOOKED and notes are available
-            if ("BOOKED".equalsIgnoreCase(status) && !consultationNotes.equals("-")) {
+            // Show consultation notes if notes are available
+            if (!consultationNotes.equals("-")) {
                 System.out.printf(" - %s", consultationNotes);
             }
 
             System.out.println(); // Newline after each appointment
         }
 
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     /**
@@ -1432,54 +1242,23 @@ public class AppointmentController {
         System.out.println("║          View All Appointments         ║");
         System.out.println("╚════════════════════════════════════════╝");
 
-        System.out.printf("%-16s %-12s %-12s %-12s %-8s %-12s %-32s %-18s %-18s %-32s%n",
-                "Appointment ID", "Doctor ID", "Patient ID", "Date", "Time", "Status", "Request Message",
-                "Reschedule Date", "Reschedule Time", "Reschedule Message");
-        System.out.println(
-                "═════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════");
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length < 10) {
-                    System.out.println("Skipping appointment with invalid number of fields: " + line);
-                    continue;
-                }
-                String appointmentId = fields[0];
-                String doctorId = fields[1];
-                String patientId = fields[2];
-                LocalDate date;
-                LocalTime time;
-                String status;
-                String requestMessage;
-                String rescheduleDate;
-                String rescheduleTime;
-                String rescheduleMessage;
-                try {
-                    date = LocalDate.parse(fields[3], dateFormatter);
-                    time = LocalTime.parse(fields[4], timeFormatter);
-                    status = fields[5];
-                    requestMessage = fields[6];
-                    rescheduleDate = fields[7];
-                    rescheduleTime = fields[8];
-                    rescheduleMessage = fields[9];
-                } catch (DateTimeParseException e) {
-                    System.out.println("Skipping appointment with invalid date/time: " + line);
-                    continue;
-                }
-                System.out.printf("%-16s %-12s %-12s %-12s %-8s %-12s %-32s %-18s %-18s %-32s%n",
-                        appointmentId, doctorId, patientId, date.format(dateFormatter), time.format(timeFormatter),
-                        status, requestMessage, rescheduleDate, rescheduleTime, rescheduleMessage);
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading appointment file: " + e.getMessage());
+        TableRenderer table = new TableRenderer()
+                .column("Appointment ID", 16).column("Doctor ID", 12).column("Patient ID", 12).column("Date", 12)
+                .column("Time", 8).column("Status", 12).column("Request Message", 32).column("Reschedule Date", 18)
+                .column("Reschedule Time", 18).column("Reschedule Message", 32);
+        // Invalid records are skipped, with a message, when the repository loads the file
+        for (Appointment appointment : Repositories.appointments().findAll()) {
+            table.addRow(appointment.getAppointmentId(), appointment.getDoctorId(), appointment.getPatientId(),
+                    appointment.getDate().format(dateFormatter), appointment.getTime().format(timeFormatter),
+                    appointment.getStatus(), appointment.getRequestMessage(), appointment.getRescheduleDate(),
+                    appointment.getRescheduleTime(), appointment.getRescheduleMessage());
         }
+        table.print(terminal);
 
         // Prompt for patient ID to view appointment outcome details
-        Scanner scanner = new Scanner(System.in);
         System.out.print(
                 "\nEnter Patient ID to view completed (Status: CLOSED) appointment outcome details (or 0 to exit): ");
-        String patientId = scanner.nextLine().trim();
+        String patientId = terminal.nextLine().trim();
 
         if (patientId.equals("0")) {
             System.out.println("Exiting to main menu...");
@@ -1491,7 +1270,7 @@ public class AppointmentController {
             return;
         }
 
-        AppointmentOutcomeController appointmentOutcomeController = new AppointmentOutcomeController();
+        AppointmentOutcomeController appointmentOutcomeController = new AppointmentOutcomeController(terminal);
         appointmentOutcomeController.displayAppointmentOutcomesByPatientId(patientId);
     }
 
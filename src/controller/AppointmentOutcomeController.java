@@ -1,11 +1,12 @@
 package controller;
 
+import entity.Appointment;
 import entity.AppointmentOutcome;
+import entity.Medicine;
+import entity.Patient;
 import entity.Prescription;
+import entity.Staff;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -16,29 +17,43 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.Set;
+import utility.FieldTokenizer;
 import utility.FileUtils;
+import utility.IdSequence;
 import utility.PrintUtils;
+import utility.Terminal;
+import utility.Transaction;
 
 public class AppointmentOutcomeController {
 
     private static final String APPOINTMENT_OUTCOME_FILE = "data/appointmentOutcome.txt";
-    private static final String STAFF_FILE = "data/staff.txt";
     private static final String APPOINTMENT_FILE = "data/appointment.txt";
     private static final String PATIENT_FILE = "data/patient.txt";
     private static final String MEDICINE_FILE = "data/medicine.txt";
     private static final String PRESCRIPTION_FILE = "data/prescription.txt";
-    private static final String BILL_FILE = "data/bill.txt";
+    private static final IdSequence PRESCRIPTION_IDS = IdSequence.forFile(PRESCRIPTION_FILE, "PR");
 
     private DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
 
+    private final Terminal terminal;
+
+    /**
+     * Constructs a AppointmentOutcomeController that reads the user's input from the given terminal.
+     *
+     * @param terminal the terminal of the current session
+     */
+    public AppointmentOutcomeController(Terminal terminal) {
+        this.terminal = terminal;
+    }
+
     /**
      * Displays all appointment outcomes with at least one pending prescription.
      *
-     * The method reads all appointment outcomes from the file and filters those
-     * with
-     * at least one pending prescription. It then displays the results in a table
+     * The method indexes prescriptions, medicines and staff by ID once, then
+     * streams the appointment outcome file and joins each row against those
+     * indexes, keeping the rows with at least one pending prescription. It
+     * displays the results in a table
      * format, with each row representing an appointment outcome and columns for
      * appointment ID, date, doctor, service type, medications, and consultation
      * notes. The medications column is formatted to show each medication on a new
@@ -53,148 +68,76 @@ public class AppointmentOutcomeController {
         System.out.println(
                 "\n══════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════");
 
-        try {
-            // Step 1: Load all pending prescription IDs
-            Set<String> pendingPrescriptionIds = getPendingPrescriptionIds();
+        // Step 1: Index prescriptions, medicines and staff by ID, one pass over each file
+        Map<String, Prescription> prescriptions = Repositories.prescriptions().indexById();
+        Map<String, Medicine> medicines = Repositories.medicines().indexById();
+        Map<String, Staff> staff = Repositories.staff().indexById();
 
-            // Step 2: Read and filter appointment outcomes with pending prescriptions
-            BufferedReader br = new BufferedReader(new FileReader(APPOINTMENT_OUTCOME_FILE));
+        // Step 2: Stream the appointment outcomes, joining each row against the indexes
+        int pendingCount = 0;
+        try (BufferedReader br = FileUtils.newReader(APPOINTMENT_OUTCOME_FILE)) {
             String line;
-            List<String[]> pendingAppointments = new ArrayList<>();
-
+            FieldTokenizer data = new FieldTokenizer();
+            List<String> medications = new ArrayList<>();
             while ((line = br.readLine()) != null) {
-                String[] data = line.split("\\|");
-                String appointmentId = data[0].trim();
-                String patientId = data[1].trim();
-                String doctorId = data[2].trim();
-                String date = data[3].trim();
-                String serviceType = data[4].trim();
-                String prescriptionIds = data[5].trim();
-                String consultationNotes = data[6].trim();
+                data.reset(line);
+                if (data.fieldCount() < 7) {
+                    continue;
+                }
 
                 // Check if any of the prescription IDs in this appointment are pending
-                String[] prescriptionIdArray = prescriptionIds.split(",");
-                List<String> medications = new ArrayList<>();
+                medications.clear();
                 boolean hasPendingPrescription = false;
-
-                for (String prescriptionId : prescriptionIdArray) {
-                    if (pendingPrescriptionIds.contains(prescriptionId.trim())) {
-                        hasPendingPrescription = true;
-                    }
-                    // Get full prescription details
-                    Prescription prescription = getPrescriptionDetails(prescriptionId.trim());
+                for (String prescriptionId : data.field(5).trim().split(",")) {
+                    Prescription prescription = prescriptions.get(prescriptionId.trim());
                     if (prescription != null) {
-                        String medicineName = getMedicineName(prescription.getMedicineId());
-                        medications.add(String.format("%dx %s (%s)", prescription.getQuantity(), medicineName,
+                        if (prescription.getStatus() == Prescription.Status.PENDING) {
+                            hasPendingPrescription = true;
+                        }
+                        Medicine medicine = medicines.get(prescription.getMedicineId());
+                        medications.add(String.format("%dx %s (%s)", prescription.getQuantity(),
+                                medicine != null ? medicine.getName() : "Unknown Medicine",
                                 prescription.getStatus()));
                     }
                 }
-
-                // Add to list if it has at least one pending prescription
-                if (hasPendingPrescription) {
-                    pendingAppointments.add(new String[] {
-                            appointmentId,
-                            date,
-                            getDoctorName(doctorId),
-                            serviceType,
-                            medications.isEmpty() ? "- No Prescription" : String.join("\n", medications),
-                            consultationNotes.isEmpty() ? "-" : consultationNotes
-                    });
+                if (!hasPendingPrescription) {
+                    continue;
                 }
-            }
-            br.close();
 
-            // Step 3: Display the results in table format
-            if (pendingAppointments.isEmpty()) {
-                System.out.println("No appointment outcomes with pending prescriptions found.");
-            } else {
-                // Adjust column widths to make Service Type wider by 1.5x (adding space)
-                System.out.printf("%-15s ║ %-12s ║ %-18s ║ %-20s ║ %-40s ║ %-40s ║%n", // Adjusted Service Type width
-                        "Appointment ID", "Date", "Doctor", "Service Type", "Medications", "Consultation Notes");
-                System.out.println(
-                        "══════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════");
-
-                for (String[] appointment : pendingAppointments) {
-                    // Print the first line with all data, including consultation notes
-                    System.out.printf("%-15s ║ %-12s ║ %-18s ║ %-20s ║ %-40s ║ %-40s ║%n", // Adjusted Service Type
-                                                                                           // width
-                            appointment[0], appointment[1], appointment[2], appointment[3],
-                            appointment[4].split("\n")[0], appointment[5]);
-
-                    // Print additional lines for each medication if there are multiple
-                    String[] medications = appointment[4].split("\n");
-                    for (int i = 1; i < medications.length; i++) {
-                        System.out.printf("%-15s ║ %-12s ║ %-18s ║ %-20s ║ %-40s ║ %-40s ║%n", // Adjusted Service Type
-                                                                                               // width
-                                "", "", "", "", medications[i], "");
-                    }
+                // Step 3: Print the row, with the table header before the first one
+                if (pendingCount++ == 0) {
+                    // Adjust column widths to make Service Type wider by 1.5x (adding space)
+                    System.out.printf("%-15s ║ %-12s ║ %-18s ║ %-20s ║ %-40s ║ %-40s ║%n", // Adjusted Service Type width
+                            "Appointment ID", "Date", "Doctor", "Service Type", "Medications", "Consultation Notes");
                     System.out.println(
                             "══════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════");
                 }
-            }
 
-        } catch (IOException e) {
-            System.out.println("Error reading files: " + e.getMessage());
-        }
-        PrintUtils.pause();
-    }
-
-    /**
-     * Retrieves details of a specific prescription by its ID.
-     *
-     * This method reads from the prescription file to find the prescription
-     * with the specified ID. If found, it returns a Prescription object
-     * containing the prescription ID, associated medicine ID, quantity, and
-     * status. If the prescription is not found, it returns null.
-     *
-     * @param prescriptionId the ID of the prescription to be retrieved
-     * @return a Prescription object with the specified ID, or null if not found
-     */
-    private Prescription getPrescriptionDetails(String prescriptionId) {
-        try (BufferedReader br = new BufferedReader(new FileReader(PRESCRIPTION_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].trim().equals(prescriptionId)) {
-                    String medicineId = fields[1].trim();
-                    int quantity = Integer.parseInt(fields[2].trim());
-                    Prescription.Status status = Prescription.Status.valueOf(fields[3].trim().toUpperCase());
-                    return new Prescription(prescriptionId, medicineId, quantity, status);
+                Staff doctor = staff.get(data.field(2).trim());
+                String consultationNotes = data.field(6).trim();
+                // Print the first line with all data, including consultation notes
+                System.out.printf("%-15s ║ %-12s ║ %-18s ║ %-20s ║ %-40s ║ %-40s ║%n",
+                        data.field(0).trim(), data.field(3).trim(),
+                        doctor != null ? doctor.getFirstName() + " " + doctor.getLastName() : "Doctor not found.",
+                        data.field(4).trim(), medications.isEmpty() ? "- No Prescription" : medications.get(0),
+                        consultationNotes.isEmpty() ? "-" : consultationNotes);
+
+                // Print additional lines for each medication if there are multiple
+                for (int i = 1; i < medications.size(); i++) {
+                    System.out.printf("%-15s ║ %-12s ║ %-18s ║ %-20s ║ %-40s ║ %-40s ║%n",
+                            "", "", "", "", medications.get(i), "");
                 }
+                System.out.println(
+                        "══════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════");
             }
         } catch (IOException e) {
-            System.out.println("Error reading prescription file: " + e.getMessage());
+            System.out.println("Error reading files: " + e.getMessage());
         }
-        return null;
-    }
 
-    /**
-     * Retrieves a set of prescription IDs with a status of "PENDING".
-     *
-     * This method reads from the prescription file, collecting the IDs of all
-     * prescriptions with a status of "PENDING". If an error occurs while
-     * reading the file, it prints an error message and continues. The set of
-     * pending prescription IDs is then returned.
-     *
-     * @return a set of prescription IDs with a status of "PENDING"
-     */
-    private Set<String> getPendingPrescriptionIds() {
-        Set<String> pendingPrescriptionIds = new HashSet<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(PRESCRIPTION_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                String prescriptionId = fields[0].trim();
-                String status = fields[3].trim();
-
-                if (status.equalsIgnoreCase("PENDING")) {
-                    pendingPrescriptionIds.add(prescriptionId);
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading prescription file: " + e.getMessage());
+        if (pendingCount == 0) {
+            System.out.println("No appointment outcomes with pending prescriptions found.");
         }
-        return pendingPrescriptionIds;
+        PrintUtils.pause(terminal);
     }
 
     /**
@@ -273,7 +216,7 @@ public class AppointmentOutcomeController {
 
             }
         }
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     /**
@@ -292,25 +235,8 @@ public class AppointmentOutcomeController {
      *         an empty list if no prescriptions match the given IDs
      */
     private List<Prescription> getPrescriptionsByIds(List<String> prescriptionIds) {
-        List<Prescription> prescriptions = new ArrayList<>();
-
-        try (BufferedReader prescriptionReader = new BufferedReader(new FileReader(PRESCRIPTION_FILE))) {
-            String prescriptionLine;
-            while ((prescriptionLine = prescriptionReader.readLine()) != null) {
-                String[] fields = prescriptionLine.split("\\|");
-                if (fields.length >= 4 && prescriptionIds.contains(fields[0])) {
-                    String prescriptionId = fields[0];
-                    String medicineId = fields[1];
-                    int quantity = Integer.parseInt(fields[2]);
-                    Prescription.Status status = Prescription.Status.valueOf(fields[3].toUpperCase());
-
-                    prescriptions.add(new Prescription(prescriptionId, medicineId, quantity, status));
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading prescription file: " + e.getMessage());
-        }
-        return prescriptions;
+        Set<String> ids = new HashSet<>(prescriptionIds);
+        return Repositories.prescriptions().findWhere(prescription -> ids.contains(prescription.getPrescriptionId()));
     }
 
     /**
@@ -327,18 +253,8 @@ public class AppointmentOutcomeController {
      *         if no match is found
      */
     private String getMedicineName(String medicineId) {
-        try (BufferedReader reader = new BufferedReader(new FileReader("data/medicine.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].equals(medicineId)) {
-                    return fields[1]; // Return the medicine name (assumed to be at index 1)
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading medicine file: " + e.getMessage());
-        }
-        return "Unknown Medicine";
+        Medicine medicine = Repositories.medicines().findById(medicineId);
+        return medicine != null ? medicine.getName() : "Unknown Medicine";
     }
 
     /**
@@ -359,26 +275,27 @@ public class AppointmentOutcomeController {
     public List<AppointmentOutcome> getAppointmentOutcomesByPatientId(String patientId) {
         List<AppointmentOutcome> outcomes = new ArrayList<>();
 
-        try (BufferedReader outcomeReader = new BufferedReader(new FileReader(APPOINTMENT_OUTCOME_FILE))) {
+        try (BufferedReader outcomeReader = FileUtils.newReader(APPOINTMENT_OUTCOME_FILE)) {
             String outcomeLine;
+            FieldTokenizer outcomeFields = new FieldTokenizer();
             while ((outcomeLine = outcomeReader.readLine()) != null) {
-                String[] outcomeFields = outcomeLine.split("\\|");
-                if (outcomeFields.length >= 7 && outcomeFields[1].equals(patientId)) {
-                    LocalDate dateOfAppointment = LocalDate.parse(outcomeFields[3], dateFormatter);
+                outcomeFields.reset(outcomeLine);
+                if (outcomeFields.fieldCount() >= 7 && outcomeFields.fieldEquals(1, patientId)) {
+                    LocalDate dateOfAppointment = LocalDate.parse(outcomeFields.field(3), dateFormatter);
 
-                    // Parse the prescription IDs from the outcomeFields[5], which is
+                    // Parse the prescription IDs from field 5 of the outcome, which is
                     // semicolon-separated
-                    List<String> prescriptionIds = parsePrescriptionIds(outcomeFields[5]);
+                    List<String> prescriptionIds = parsePrescriptionIds(outcomeFields.field(5));
 
                     // Create appointment outcome with prescription IDs
                     AppointmentOutcome outcome = new AppointmentOutcome(
-                            outcomeFields[0], // appointmentId
-                            outcomeFields[1], // patientId
-                            outcomeFields[2], // doctorId
+                            outcomeFields.field(0), // appointmentId
+                            outcomeFields.field(1), // patientId
+                            outcomeFields.field(2), // doctorId
                             dateOfAppointment,
-                            outcomeFields[4], // serviceType
+                            outcomeFields.field(4), // serviceType
                             prescriptionIds, // List of prescription IDs
-                            outcomeFields[6] // consultationNotes
+                            outcomeFields.field(6) // consultationNotes
                     );
                     outcomes.add(outcome);
                 }
@@ -425,18 +342,8 @@ public class AppointmentOutcomeController {
      * @return the full name of the doctor or "Doctor not found." if not found
      */
     private String getDoctorName(String doctorId) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(STAFF_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].equals(doctorId)) {
-                    return fields[1] + " " + fields[2]; // Concatenates first and last name
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading staff file: " + e.getMessage());
-        }
-        return "Doctor not found.";
+        Staff doctor = Repositories.staff().findById(doctorId);
+        return doctor != null ? doctor.getFirstName() + " " + doctor.getLastName() : "Doctor not found.";
     }
 
     /**
@@ -455,11 +362,12 @@ public class AppointmentOutcomeController {
     private List<String> getUpcomingAppointments(String doctorId) {
 
         List<String> upcomingAppointments = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
+        try (BufferedReader reader = FileUtils.newReader(APPOINTMENT_FILE)) {
             String line;
+            FieldTokenizer fields = new FieldTokenizer();
             while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length >= 6 && fields[5].equals("BOOKED") && fields[1].equals(doctorId)) {
+                fields.reset(line);
+                if (fields.fieldCount() >= 6 && fields.fieldEquals(5, "BOOKED") && fields.fieldEquals(1, doctorId)) {
                     upcomingAppointments.add(line);
                 }
             }
@@ -490,11 +398,12 @@ public class AppointmentOutcomeController {
     private List<String> getPatientList() {
 
         List<String> patientList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(PATIENT_FILE))) {
+        try (BufferedReader reader = FileUtils.newReader(PATIENT_FILE)) {
             String line;
+            FieldTokenizer fields = new FieldTokenizer();
             while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length > 8) {
+                fields.reset(line);
+                if (fields.fieldCount() > 8) {
                     patientList.add(line);
                 }
             }
@@ -527,11 +436,12 @@ public class AppointmentOutcomeController {
     public Map<String, String> getPatientMap(List<String> patients) {
         Map<String, String> patientMap = new HashMap<>();
 
+        FieldTokenizer fields = new FieldTokenizer();
         for (String patient : patients) {
-            String[] fields = patient.split("\\|");
-            if (fields.length >= 3) { // Ensure at least ID, first name, and last name are available
-                String patientId = fields[0];
-                String fullName = fields[1] + " " + fields[2]; // Combine first and last name
+            fields.reset(patient);
+            if (fields.fieldCount() >= 3) { // Ensure at least ID, first name, and last name are available
+                String patientId = fields.field(0);
+                String fullName = fields.field(1) + " " + fields.field(2); // Combine first and last name
                 patientMap.put(patientId, fullName);
             }
         }
@@ -607,7 +517,7 @@ public class AppointmentOutcomeController {
      */
     private List<String[]> loadMedicines() {
         List<String[]> medicines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_FILE))) {
+        try (BufferedReader reader = FileUtils.newReader(MEDICINE_FILE)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 medicines.add(line.split("\\|"));
@@ -626,8 +536,9 @@ public class AppointmentOutcomeController {
      * appointments to the user, prompting the user to select an appointment
      * by index. Once the user selects an appointment, the method prompts the
      * user to select medicines to prescribe and record additional details.
-     * Finally, it creates a record in the appointment outcome file and updates
-     * the appointment status to "CLOSED" in the appointment file.
+     * Finally, it records the outcome with {@link #recordOutcome}, which writes
+     * the prescriptions, the outcome, the bill and the CLOSED appointment as one
+     * transaction.
      *
      * @param doctorId the doctor ID to create the appointment outcome record for
      */
@@ -659,18 +570,13 @@ public class AppointmentOutcomeController {
         }
         System.out.println("══════════════════════════════════════════");
 
-        Scanner scanner = new Scanner(System.in);
         int selectedIndex;
 
-        // Get the last ID once and keep incrementing in memory
-        String currentPrescriptionId = getLastPrescriptionId();
-
         // Prompt user to select an appointment by index
         while (true) {
             System.out.print("\nEnter the index of the appointment to create a record, or press 0 to return: ");
-            if (scanner.hasNextInt()) {
-                selectedIndex = scanner.nextInt();
-                scanner.nextLine(); // Consume newline
+            if (terminal.hasNextInt()) {
+                selectedIndex = terminal.nextInt();
 
                 if (selectedIndex == 0) {
                     System.out.println("Returning to previous menu.");
@@ -682,7 +588,7 @@ public class AppointmentOutcomeController {
                     String dateOfAppointment = selectedAppointment[2];
                     String timeOfAppointment = selectedAppointment[3];
 
-                    List<String> pendingPrescriptions = new ArrayList<>();
+                    List<Prescription> pendingPrescriptions = new ArrayList<>();
                     List<String> prescriptionIds = new ArrayList<>();
 
                     while (true) {
@@ -693,8 +599,7 @@ public class AppointmentOutcomeController {
                             System.out.printf("%d. %s (%s)\n", i + 1, medicines.get(i)[1], medicines.get(i)[2]);
                         }
                         System.out.print("Enter the index of the medicine to prescribe, or 0 to finish: ");
-                        int medicineIndex = scanner.nextInt();
-                        scanner.nextLine();
+                        int medicineIndex = terminal.nextInt();
 
                         if (medicineIndex == 0) {
                             break;
@@ -702,16 +607,14 @@ public class AppointmentOutcomeController {
                             String[] selectedMedicine = medicines.get(medicineIndex - 1);
                             String medicineId = selectedMedicine[0];
                             System.out.print("Enter quantity: ");
-                            int quantity = scanner.nextInt();
-                            scanner.nextLine();
+                            int quantity = terminal.nextInt();
 
-                            // Generate a unique prescription ID by incrementing in memory
-                            currentPrescriptionId = incrementPrescriptionId(currentPrescriptionId);
-                            prescriptionIds.add(currentPrescriptionId);
+                            // Generate a unique prescription ID
+                            String prescriptionId = generatePrescriptionId();
+                            prescriptionIds.add(prescriptionId);
 
-                            String prescriptionEntry = String.format("%s|%s|%d|PENDING", currentPrescriptionId,
-                                    medicineId, quantity);
-                            pendingPrescriptions.add(prescriptionEntry);
+                            pendingPrescriptions.add(new Prescription(prescriptionId, medicineId, quantity,
+                                    Prescription.Status.PENDING));
                         } else {
                             System.out.println("Invalid index. Please select a valid medicine index.");
                         }
@@ -723,68 +626,82 @@ public class AppointmentOutcomeController {
                     String typeOfService = additionalDetails[0].isEmpty() ? "-" : additionalDetails[0];
                     String consultationNotes = additionalDetails[1].isEmpty() ? "-" : additionalDetails[1];
 
-                    for (String prescriptionEntry : pendingPrescriptions) {
-                        FileUtils.writeToFile(PRESCRIPTION_FILE, prescriptionEntry);
-                    }
-
                     String appointmentRecord = String.format("%s|%s|%s|%s|%s|%s|%s",
                             appointmentId, patientId, doctorId, dateOfAppointment, typeOfService,
                             prescribedMedicine, consultationNotes);
-                    FileUtils.writeToFile(APPOINTMENT_OUTCOME_FILE, appointmentRecord);
-
-                    FileUtils.updateEntry(APPOINTMENT_FILE, appointmentId, "CLOSED", 5);
-                    System.out.println("\nAppointment outcome record created successfully.");
-                    BillController.createBill(BILL_FILE, appointmentId, patientId);
 
+                    if (recordOutcome(appointmentId, patientId, pendingPrescriptions, appointmentRecord,
+                            BillController.formatBill(appointmentId, patientId))) {
+                        System.out.println("\nAppointment outcome record created successfully.");
+                    } else {
+                        System.out.println("\nThe appointment outcome could not be recorded. "
+                                + "It may have been recorded or cancelled in another session.");
+                    }
                     return;
                 } else {
                     System.out.println("Invalid index. Please select a valid appointment index.");
                 }
             } else {
                 System.out.println("Invalid input. Please enter a number.");
-                scanner.next(); // Consume invalid input
+                terminal.next(); // Consume invalid input
             }
         }
     }
 
     /**
-     * Retrieves the last prescription ID from the prescription file.
+     * Writes the prescriptions, the outcome record and the bill of an appointment
+     * and marks the appointment CLOSED, all as one {@link Transaction}, so an outcome
+     * is never left without its bill or a closed appointment without its outcome.
      *
-     * This method reads the prescription file line by line, extracting the
-     * prescription ID from each line, and updates the lastId with the most
-     * recent prescription ID found. If the file is empty or an error occurs
-     * during reading, it defaults to "PR00000".
+     * If another session changed the appointment since it was read, the appointment is
+     * read again and the transaction retried on top of that change, but only while the
+     * appointment is still BOOKED for the same patient. It is given up if the patient
+     * cancelled or the slot went to someone else meanwhile, if the appointment is gone
+     * or already has an outcome, or if the transaction fails for any other reason. The
+     * check is made again by the transaction itself, under the appointment's lock.
      *
-     * @return the last prescription ID found in the prescription file, or
-     *         "PR00000" if no entries are found or an error occurs.
+     * @param appointmentId  the ID of the appointment
+     * @param patientId      the ID of the patient the outcome is for
+     * @param prescriptions  the new pending prescriptions
+     * @param outcomeRecord  the line of the appointment outcome file
+     * @param billRecord     the line of the bill file
+     * @return true if everything was written, false if nothing was
      */
-    private String getLastPrescriptionId() {
-        String lastId = "PR00000";
-        try (BufferedReader reader = new BufferedReader(new FileReader(PRESCRIPTION_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lastId = line.split("\\|")[0];
+    private boolean recordOutcome(String appointmentId, String patientId, List<Prescription> prescriptions,
+            String outcomeRecord, String billRecord) {
+        while (true) {
+            Appointment stored = Repositories.appointments().findById(appointmentId);
+            if (stored == null || !isBookedFor(stored, patientId)
+                    || Repositories.appointmentOutcomes().findById(appointmentId) != null) {
+                return false; // Cancelled, rebooked or already recorded: closing it would undo that
+            }
+            long readVersion = stored.getVersion();
+            Appointment closed = new Appointment(stored);
+            closed.setStatus(Appointment.Status.CLOSED);
+            closed.setVersion(readVersion + 1);
+
+            Transaction transaction = new Transaction();
+            for (Prescription prescription : prescriptions) {
+                transaction.insert(Repositories.prescriptions(), prescription);
+            }
+            transaction.insert(Repositories.appointmentOutcomes(), outcomeRecord)
+                    .insert(Repositories.bills(), billRecord)
+                    .update(Repositories.appointments(), closed,
+                            current -> current.getVersion() == readVersion && isBookedFor(current, patientId));
+            if (transaction.commit()) {
+                return true;
+            }
+
+            Appointment current = Repositories.appointments().findById(appointmentId);
+            if (current == null || current.getVersion() == readVersion) {
+                return false; // Not a concurrent change to the appointment, so a retry would fail again
             }
-        } catch (IOException e) {
-            System.out.println("Error reading prescription file: " + e.getMessage());
         }
-        return lastId;
     }
 
-    /**
-     * Generates a new prescription ID by incrementing the last prescription ID
-     * found in the prescription file.
-     *
-     * This method takes the last prescription ID as a parameter, extracts the
-     * numerical part of the ID, increments it by one, and formats the new ID
-     * with the same prefix ("PR") and padding (5 digits).
-     *
-     * @param lastId the last prescription ID found in the prescription file
-     * @return the new prescription ID
-     */
-    private String incrementPrescriptionId(String lastId) {
-        int lastNum = Integer.parseInt(lastId.substring(2));
-        return String.format("PR%05d", lastNum + 1);
+    // Whether the appointment is still booked by the patient the outcome is for
+    private static boolean isBookedFor(Appointment appointment, String patientId) {
+        return appointment.getStatus() == Appointment.Status.BOOKED && appointment.getPatientId().equals(patientId);
     }
 
     /**
@@ -816,10 +733,10 @@ public class AppointmentOutcomeController {
      * prescription IDs with commas and returns the string for the appointment
      * outcome.
      *
-     * @param scanner the scanner to read user input
+     * @param terminal the terminal to read user input
      * @return a string of prescription IDs joined by commas
      */
-    private String selectMedicinesForPrescription(Scanner scanner) {
+    private String selectMedicinesForPrescription(Terminal terminal) {
         List<String> selectedMedicineIds = new ArrayList<>();
         List<String[]> medicineList = loadMedicinesFromFile();
         int medicineIndex;
@@ -832,9 +749,8 @@ public class AppointmentOutcomeController {
         // Keep prompting the doctor to select medicines
         while (true) {
             System.out.print("Enter the index of the medicine to add (or press 0 to finish): ");
-            if (scanner.hasNextInt()) {
-                medicineIndex = scanner.nextInt();
-                scanner.nextLine(); // Consume newline
+            if (terminal.hasNextInt()) {
+                medicineIndex = terminal.nextInt();
 
                 if (medicineIndex == 0) {
                     break; // Exit if doctor finishes adding medicines
@@ -843,8 +759,7 @@ public class AppointmentOutcomeController {
                     String medicineId = selectedMedicine[0];
 
                     System.out.print("Enter quantity for " + selectedMedicine[1] + ": ");
-                    int quantity = scanner.nextInt();
-                    scanner.nextLine(); // Consume newline
+                    int quantity = terminal.nextInt();
 
                     // Generate a new prescription ID
                     String prescriptionId = generatePrescriptionId();
@@ -862,7 +777,7 @@ public class AppointmentOutcomeController {
                 }
             } else {
                 System.out.println("Invalid input. Please enter a number.");
-                scanner.next(); // Consume invalid input
+                terminal.next(); // Consume invalid input
             }
         }
 
@@ -873,20 +788,22 @@ public class AppointmentOutcomeController {
     /**
      * Load the list of medicines from the medicine file.
      * 
-     * This method reads the medicine file line by line and splits each line into
-     * an array of strings using the "|" character as the delimiter. Each array
-     * represents a medicine with its ID, name, description, stock level, low
-     * stock level, and type. The method returns a list of these arrays.
+     * This method reads the medicine file line by line and takes the ID and
+     * name of each medicine from its "|"-delimited fields, the two fields the
+     * selection prompt uses. The method returns a list of these pairs.
      * 
-     * @return A list of strings arrays, each representing a medicine.
+     * @return A list of {ID, name} arrays, one per medicine.
      */
     private List<String[]> loadMedicinesFromFile() {
         List<String[]> medicines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_FILE))) {
+        try (BufferedReader reader = FileUtils.newReader(MEDICINE_FILE)) {
             String line;
+            FieldTokenizer fields = new FieldTokenizer();
             while ((line = reader.readLine()) != null) {
-                String[] data = line.split("\\|");
-                medicines.add(data);
+                fields.reset(line);
+                if (fields.fieldCount() >= 2) {
+                    medicines.add(new String[] { fields.field(0), fields.field(1) });
+                }
             }
         } catch (IOException e) {
             System.out.println("Error loading medicines: " + e.getMessage());
@@ -895,28 +812,13 @@ public class AppointmentOutcomeController {
     }
 
     /**
-     * Generates a new unique prescription ID based on the last ID found in the
-     * prescription file. If no entries are found, defaults to "PR00000".
+     * Generates a new unique prescription ID from the prescription ID sequence,
+     * starting after the highest ID in the prescription file.
      *
      * @return a unique prescription ID
      */
     private String generatePrescriptionId() {
-        String lastId = "PR00000"; // Default ID if no entries are found
-
-        try (BufferedReader reader = new BufferedReader(new FileReader("data/prescription.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lastId = line.split("\\|")[0]; // Get the ID from each line
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading prescription file: " + e.getMessage());
-        }
-
-        // Extract the numeric part of the last ID and increment it
-        int lastNum = Integer.parseInt(lastId.substring(2));
-        String newId = String.format("PR%05d", lastNum + 1); // Generate new ID with leading zeros
-
-        return newId;
+        return PRESCRIPTION_IDS.next();
     }
 
     /**
@@ -926,18 +828,8 @@ public class AppointmentOutcomeController {
      * @return The full name of the patient, or "Unknown Patient" if not found.
      */
     private String getPatientNameById(String patientId) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(PATIENT_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].equals(patientId)) {
-                    return fields[1] + " " + fields[2]; // Assuming first name at index 1, last name at index 2
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading patient file: " + e.getMessage());
-        }
-        return "Unknown Patient";
+        Patient patient = Repositories.patients().findById(patientId);
+        return patient != null ? patient.getFirstName() + " " + patient.getLastName() : "Unknown Patient";
     }
 
     /**
@@ -954,12 +846,11 @@ public class AppointmentOutcomeController {
      * @return The selected appointment ID, or "0" if the user chose to return.
      */
     private String promptForAppointmentId(List<String> upcomingAppointments) {
-        Scanner scanner = new Scanner(System.in);
         String inputAppointmentId;
 
         while (true) {
             System.out.println("\nEnter the Appointment ID to create a record, or press 0 to return:");
-            inputAppointmentId = scanner.nextLine().trim();
+            inputAppointmentId = terminal.nextLine().trim();
 
             if (inputAppointmentId.equals("0")) {
                 return "0";
@@ -987,10 +878,11 @@ public class AppointmentOutcomeController {
      *         appointment, or null if the appointment ID is not found.
      */
     private String[] getAppointmentDetailsById(List<String> appointments, String appointmentId) {
+        FieldTokenizer fields = new FieldTokenizer();
         for (String appointment : appointments) {
-            String[] fields = appointment.split("\\|");
-            if (fields[0].equals(appointmentId)) {
-                return new String[] { fields[2], fields[3] }; // {patientId, dateOfAppointment}
+            fields.reset(appointment);
+            if (fields.fieldEquals(0, appointmentId)) {
+                return new String[] { fields.field(2), fields.field(3) }; // {patientId, dateOfAppointment}
             }
         }
         return null;
@@ -1006,13 +898,12 @@ public class AppointmentOutcomeController {
      *         consultation notes.
      */
     private String[] promptForAppointmentDetails() {
-        Scanner scanner = new Scanner(System.in);
 
         System.out.println("Enter type of service:");
-        String typeOfService = scanner.nextLine().trim();
+        String typeOfService = terminal.nextLine().trim();
 
         System.out.println("Enter consultation notes:");
-        String consultationNotes = scanner.nextLine().trim();
+        String consultationNotes = terminal.nextLine().trim();
 
         return new String[] { typeOfService, consultationNotes };
     }
@@ -1032,9 +923,10 @@ public class AppointmentOutcomeController {
      * @return true if the appointment ID is found, false otherwise.
      */
     private boolean checkAppointmentId(String appointmentId, List<String> appointments) {
+        FieldTokenizer fields = new FieldTokenizer();
         for (String appointment : appointments) {
-            String[] fields = appointment.split("\\|");
-            if (fields[0].equals(appointmentId)) {
+            fields.reset(appointment);
+            if (fields.fieldEquals(0, appointmentId)) {
                 return true; // Appointment ID found
             }
         }
@@ -1054,7 +946,6 @@ public class AppointmentOutcomeController {
      */
     public void viewDoctorMenu(String doctorId) {
 
-        Scanner scanner = new Scanner(System.in);
         int choice;
 
         while (true) {
@@ -1064,22 +955,21 @@ public class AppointmentOutcomeController {
             System.out.println("0. Return");
 
             // Check for valid integer input
-            if (scanner.hasNextInt()) {
-                choice = scanner.nextInt();
-                scanner.nextLine(); // Consume newline character
+            if (terminal.hasNextInt()) {
+                choice = terminal.nextInt();
 
                 switch (choice) {
                     case 1:
                         System.out.println("Creating appointment outcome record...");
                         // Call the method to create an appointment outcome record
                         createAppointmentOutcome(doctorId);
-                        PrintUtils.pause();
+                        PrintUtils.pause(terminal);
                         break;
 
                     case 2:
                         System.out.println("Editing appointment outcome record...");
                         updateAppointmentOutcomeRecord(doctorId);
-                        PrintUtils.pause();
+                        PrintUtils.pause(terminal);
 
                         break;
 
@@ -1093,7 +983,7 @@ public class AppointmentOutcomeController {
             } else {
 
                 System.out.println("Invalid input. Please enter a number (0, 1, or 2).");
-                scanner.next(); // Consume invalid input
+                terminal.next(); // Consume invalid input
             }
         }
     }
@@ -1126,15 +1016,13 @@ public class AppointmentOutcomeController {
         }
         System.out.println("══════════════════════════════════════════");
 
-        Scanner scanner = new Scanner(System.in);
         int selectedIndex;
 
         // Prompt user to select a record to edit
         while (true) {
             System.out.print("\nWould you like to edit an Appointment Outcome Record? Enter index (0 to exit): ");
-            if (scanner.hasNextInt()) {
-                selectedIndex = scanner.nextInt();
-                scanner.nextLine(); // Consume newline
+            if (terminal.hasNextInt()) {
+                selectedIndex = terminal.nextInt();
 
                 if (selectedIndex == 0) {
                     System.out.println("Exiting update menu.");
@@ -1144,13 +1032,13 @@ public class AppointmentOutcomeController {
 
                     // Prompt for new service type and consultation notes
                     System.out.print("Enter new Service Type (leave blank to keep current): ");
-                    String serviceType = scanner.nextLine().trim();
+                    String serviceType = terminal.nextLine().trim();
                     if (serviceType.isEmpty()) {
                         serviceType = selectedOutcome.getServiceType();
                     }
 
                     System.out.print("Enter new Consultation Notes (leave blank to keep current): ");
-                    String consultationNotes = scanner.nextLine().trim();
+                    String consultationNotes = terminal.nextLine().trim();
                     if (consultationNotes.isEmpty()) {
                         consultationNotes = selectedOutcome.getConsultationNotes();
                     }
@@ -1168,7 +1056,7 @@ public class AppointmentOutcomeController {
                 }
             } else {
                 System.out.println("Invalid input. Please enter a number.");
-                scanner.next(); // Consume invalid input
+                terminal.next(); // Consume invalid input
             }
         }
     }
@@ -1185,16 +1073,17 @@ public class AppointmentOutcomeController {
      */
     private List<AppointmentOutcome> getAppointmentOutcomesByDoctorId(String doctorId) {
         List<AppointmentOutcome> outcomes = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_OUTCOME_FILE))) {
+        try (BufferedReader reader = FileUtils.newReader(APPOINTMENT_OUTCOME_FILE)) {
             String line;
+            FieldTokenizer fields = new FieldTokenizer();
             while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[2].equals(doctorId)) { // Match the doctor ID
-                    LocalDate dateOfAppointment = LocalDate.parse(fields[3], dateFormatter);
-                    List<String> prescriptionIds = parsePrescriptionIds(fields[5]);
+                fields.reset(line);
+                if (fields.fieldEquals(2, doctorId)) { // Match the doctor ID
+                    LocalDate dateOfAppointment = LocalDate.parse(fields.field(3), dateFormatter);
+                    List<String> prescriptionIds = parsePrescriptionIds(fields.field(5));
                     AppointmentOutcome outcome = new AppointmentOutcome(
-                            fields[0], fields[1], doctorId, dateOfAppointment,
-                            fields[4], prescriptionIds, fields[6]);
+                            fields.field(0), fields.field(1), doctorId, dateOfAppointment,
+                            fields.field(4), prescriptionIds, fields.field(6));
                     outcomes.add(outcome);
                 }
             }
@@ -1208,46 +1097,19 @@ public class AppointmentOutcomeController {
      * Updates the appointment outcome file with the provided AppointmentOutcome
      * details.
      *
-     * This method reads the appointment outcome file and searches for the line with
-     * the matching appointment ID. If found, it updates the line with the new
-     * details
-     * from the AppointmentOutcome object. The updated contents are then written
-     * back
-     * to the file.
+     * The line with the matching appointment ID is replaced with the new details
+     * from the AppointmentOutcome object; the rest of the file is left untouched.
      *
      * @param outcome the AppointmentOutcome object containing updated details to be
      *                saved
      */
     private void updateAppointmentOutcomeInFile(AppointmentOutcome outcome) {
-        List<String> fileContents = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_OUTCOME_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].equals(outcome.getAppointmentId())) {
-                    // Update the relevant line with new details
-                    line = String.join("|",
-                            outcome.getAppointmentId(), outcome.getPatientId(), outcome.getDoctorId(),
-                            outcome.getDateOfAppointment().format(dateFormatter),
-                            outcome.getServiceType(), String.join(",", outcome.getPrescribedMedications()),
-                            outcome.getConsultationNotes());
-                }
-                fileContents.add(line);
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading appointment outcome file: " + e.getMessage());
-            return;
-        }
-
-        // Write updated contents back to the file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(APPOINTMENT_OUTCOME_FILE))) {
-            for (String contentLine : fileContents) {
-                writer.write(contentLine);
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.out.println("Error writing to appointment outcome file: " + e.getMessage());
-        }
+        String line = String.join("|",
+                outcome.getAppointmentId(), outcome.getPatientId(), outcome.getDoctorId(),
+                outcome.getDateOfAppointment().format(dateFormatter),
+                outcome.getServiceType(), String.join(",", outcome.getPrescribedMedications()),
+                outcome.getConsultationNotes());
+        FileUtils.updateToFile(APPOINTMENT_OUTCOME_FILE, line, outcome.getAppointmentId());
     }
 
 }
@@ -0,0 +1,247 @@
+package controller;
+
+import entity.Appointment;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import utility.Repository;
+
+/**
+ * Index over the appointments for slot queries. Each appointment holds a slot number,
+ * each doctor has a {@link NavigableMap} of their appointments by date and time, and
+ * each status has a bitmap of the slot numbers in it. A query such as "the next 20
+ * free slots of DR00005" seeks to the start time in the doctor's map and walks forward,
+ * testing one bit per appointment, instead of scanning and sorting the whole file.
+ *
+ * <p>The index is built from the appointment repository once, then kept up to date by
+ * the writes made through it: each saved or deleted appointment moves between the
+ * maps and bitmaps on its own, without re-sorting the others. Only a change the
+ * repository did not make itself, such as one by another process, makes
+ * {@link #current()} build the index again.
+ */
+public class AppointmentSlotIndex implements Repository.Listener<Appointment> {
+
+    private static final AppointmentSlotIndex SHARED = new AppointmentSlotIndex(Repositories.appointments());
+
+    private final Repository<Appointment> repository;
+
+    // Guarded by this index
+    private long generation = -1;             // Generation of the repository the index holds
+    private Appointment[] slots = new Appointment[0]; // Appointment of each slot number, or null if free
+    private long[] keys = new long[0];        // Map key of each slot number
+    private int slotCount;                    // Slot numbers handed out so far
+    private final Deque<Integer> freeSlots = new ArrayDeque<>(); // Handed out, then freed by a delete
+    private final Map<String, Integer> slotOf = new HashMap<>(); // Appointment ID -> slot number
+    private final Map<Appointment.Status, BitSet> byStatus = new EnumMap<>(Appointment.Status.class);
+    private final Map<String, NavigableMap<Long, Appointment>> byDoctor = new HashMap<>();
+    private final NavigableMap<Long, Appointment> byTime = new TreeMap<>(); // Every doctor's appointments
+
+    private AppointmentSlotIndex(Repository<Appointment> repository) {
+        this.repository = repository;
+        for (Appointment.Status status : Appointment.Status.values()) {
+            byStatus.put(status, new BitSet());
+        }
+        repository.addListener(this);
+    }
+
+    /**
+     * Returns the index of the current appointments, building it again first if the
+     * appointments changed other than through the repository.
+     *
+     * @return the up-to-date index
+     */
+    public static AppointmentSlotIndex current() {
+        SHARED.refresh();
+        return SHARED;
+    }
+
+    // Builds the index again if it missed a change. The repository is locked before the
+    // index, both here and when it passes on a write.
+    private void refresh() {
+        long latest = repository.generation();
+        synchronized (this) {
+            if (generation >= latest) {
+                return; // Writes after the generation was read have been applied already
+            }
+        }
+        repository.derive((appointments, at) -> {
+            rebuild(appointments, at);
+            return null;
+        });
+    }
+
+    private synchronized void rebuild(List<Appointment> appointments, long at) {
+        slots = new Appointment[Math.max(16, appointments.size())];
+        keys = new long[slots.length];
+        freeSlots.clear();
+        slotOf.clear();
+        byStatus.values().forEach(BitSet::clear);
+        byDoctor.clear();
+        byTime.clear();
+        slotCount = 0;
+        for (Appointment appointment : appointments) {
+            if (!slotOf.containsKey(appointment.getAppointmentId())) { // The first line of an ID, as the repository
+                place(slotCount++, appointment);
+            }
+        }
+        generation = at;
+    }
+
+    @Override
+    public synchronized void changed(long at, List<Appointment> saved, List<String> deletedIds) {
+        if (generation != at - 1) {
+            generation = -1; // Missed a change, so the next query builds the index again
+            return;
+        }
+        for (Appointment appointment : saved) {
+            Integer slot = slotOf.get(appointment.getAppointmentId());
+            if (slot != null) {
+                remove(slot);
+            }
+            place(slot != null ? slot : allocate(), appointment);
+        }
+        for (String appointmentId : deletedIds) {
+            Integer slot = slotOf.remove(appointmentId);
+            if (slot != null) {
+                remove(slot);
+                freeSlots.push(slot);
+            }
+        }
+        generation = at;
+    }
+
+    /**
+     * Returns a doctor's appointments with any of the given statuses, in date and time order.
+     *
+     * @param doctorId the ID of the doctor
+     * @param statuses the statuses to include
+     * @return the matching appointments
+     */
+    public synchronized List<Appointment> schedule(String doctorId, Appointment.Status... statuses) {
+        BitSet wanted = new BitSet();
+        for (Appointment.Status status : statuses) {
+            wanted.or(byStatus.get(status));
+        }
+        return collect(byDoctor.getOrDefault(doctorId, Collections.emptyNavigableMap()), wanted, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a doctor's next appointments with the given status, starting at a time.
+     *
+     * @param doctorId the ID of the doctor
+     * @param status   the status to include
+     * @param from     the earliest date and time to return (inclusive)
+     * @param limit    the maximum number of appointments to return
+     * @return up to {@code limit} matching appointments, in date and time order
+     */
+    public synchronized List<Appointment> nextSlots(String doctorId, Appointment.Status status, LocalDateTime from,
+            int limit) {
+        NavigableMap<Long, Appointment> schedule = byDoctor.getOrDefault(doctorId, Collections.emptyNavigableMap());
+        return collect(schedule.tailMap(keyOf(from), true), byStatus.get(status), limit);
+    }
+
+    /**
+     * Returns the appointments of every doctor with the given status, in date and time order.
+     *
+     * @param status the status to include
+     * @return the matching appointments
+     */
+    public synchronized List<Appointment> slots(Appointment.Status status) {
+        return collect(byTime, byStatus.get(status), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the appointments of every doctor with the given status within a period.
+     *
+     * @param status the status to include
+     * @param from   the start of the period (inclusive)
+     * @param to     the end of the period (exclusive)
+     * @return the matching appointments, in date and time order
+     */
+    public synchronized List<Appointment> slotsBetween(Appointment.Status status, LocalDateTime from,
+            LocalDateTime to) {
+        return collect(byTime.subMap(keyOf(from), true, keyOf(to), false), byStatus.get(status), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of appointments with the given status.
+     *
+     * @param status the status
+     * @return the number of appointments in that status
+     */
+    public synchronized int count(Appointment.Status status) {
+        return byStatus.get(status).cardinality();
+    }
+
+    // Indexes an appointment under a slot number
+    private void place(int slot, Appointment appointment) {
+        if (slot >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slot + 1, slots.length * 2));
+            keys = Arrays.copyOf(keys, slots.length);
+        }
+        long key = keyOf(appointment.getSortKey(), slot);
+        slots[slot] = appointment;
+        keys[slot] = key;
+        slotOf.put(appointment.getAppointmentId(), slot);
+        byStatus.get(appointment.getStatus()).set(slot);
+        byDoctor.computeIfAbsent(appointment.getDoctorId(), doctor -> new TreeMap<>()).put(key, appointment);
+        byTime.put(key, appointment);
+    }
+
+    // Takes the appointment of a slot number out of the maps and bitmaps
+    private void remove(int slot) {
+        Appointment appointment = slots[slot];
+        slots[slot] = null;
+        byStatus.get(appointment.getStatus()).clear(slot);
+        NavigableMap<Long, Appointment> schedule = byDoctor.get(appointment.getDoctorId());
+        schedule.remove(keys[slot]);
+        if (schedule.isEmpty()) {
+            byDoctor.remove(appointment.getDoctorId());
+        }
+        byTime.remove(keys[slot]);
+    }
+
+    private int allocate() {
+        Integer slot = freeSlots.poll();
+        return slot != null ? slot : slotCount++;
+    }
+
+    // Returns up to limit appointments of a map, in its order, whose slot is in the bitmap
+    private List<Appointment> collect(NavigableMap<Long, Appointment> appointments, BitSet wanted, int limit) {
+        List<Appointment> matches = new ArrayList<>();
+        for (Map.Entry<Long, Appointment> entry : appointments.entrySet()) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            if (wanted.get(slotOfKey(entry.getKey()))) {
+                matches.add(entry.getValue());
+            }
+        }
+        return matches;
+    }
+
+    // Map keys order appointments by date and time, then by slot number, so two
+    // appointments at the same time each have a key of their own
+    private static long keyOf(long sortKey, int slot) {
+        return sortKey << 32 | slot;
+    }
+
+    private static int slotOfKey(long key) {
+        return (int) key;
+    }
+
+    // The lowest key at the given date and time
+    private static long keyOf(LocalDateTime dateTime) {
+        return keyOf(Appointment.sortKeyOf(dateTime.toLocalDate(), dateTime.toLocalTime()), 0);
+    }
+}
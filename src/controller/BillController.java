@@ -1,13 +1,14 @@
 package controller;
 
 import entity.Bill;
+import utility.FieldTokenizer;
 import utility.FileUtils;
 import utility.PrintUtils;
+import utility.Terminal;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 
 /**
  * The {@code BillController} class provides methods for creating, viewing, updating, 
@@ -41,18 +42,57 @@ public class BillController {
      * @param patientId     the ID of the patient associated with the bill
      */
     public static void createBill(String FILE_PATH, String appointmentId, String patientId) {
+        // Write to file
+        FileUtils.writeToFile(FILE_PATH, formatBill(appointmentId, patientId));
+    }
+
+    /**
+     * Formats a new bill for the given appointment as a line of the bill file.
+     *
+     * @param appointmentId the ID of the appointment associated with the bill
+     * @param patientId     the ID of the patient associated with the bill
+     * @return the line of the new bill
+     */
+    static String formatBill(String appointmentId, String patientId) {
         Bill bill = new Bill(appointmentId, patientId);
-        String data = appointmentId + "|" + patientId + "|" + bill.getStatus() + "|" + String.format("%.2f", bill.getCost()) + "|" + bill.getDatetime();
+        return appointmentId + "|" + patientId + "|" + bill.getStatus() + "|" + String.format("%.2f", bill.getCost()) + "|" + bill.getDatetime();
+    }
 
-        // Write to file
-        FileUtils.writeToFile(FILE_PATH, data);
+    /**
+     * Sets the status and cost of a bill, only if it still has the expected status.
+     * The status is checked and the bill written through {@link Repositories#bills()}
+     * under the bill's record lock and the bill file's exclusive lock, so of two
+     * sessions updating the same bill, in this process or another one sharing the
+     * data directory, only the first succeeds.
+     *
+     * @param appointmentId  the ID of the appointment the bill is for
+     * @param expectedStatus the status the bill must have
+     * @param status         the new status
+     * @param cost           the new cost, formatted with 2 decimal places
+     * @return true if the bill was updated
+     */
+    private static boolean updateBill(String appointmentId, String expectedStatus, String status, String cost) {
+        String line = Repositories.bills().findById(appointmentId); // AppointmentID as ID
+        if (line == null) {
+            return false;
+        }
+        String[] fields = new FieldTokenizer().reset(line).fields();
+        if (fields.length < 5 || !fields[2].equals(expectedStatus)) {
+            return false;
+        }
+        fields[2] = status;
+        fields[3] = cost;
+        return Repositories.bills().saveIf(String.join("|", fields),
+                stored -> expectedStatus.equals(FieldTokenizer.fieldOf(stored, 2)));
     }
 
     /**
      * Displays and updates the status of pending bills.
      * Allows the user to select a bill and update its cost and status.
+     *
+     * @param terminal the terminal used to read the user's input
      */
-    public static void viewAndUpdatePendingBills() {
+    public static void viewAndUpdatePendingBills(Terminal terminal) {
         String FILE_PATH = "data/bill.txt";
         File file = new File(FILE_PATH);
 
@@ -71,32 +111,32 @@ public class BillController {
         System.out.println("║              Bill Patients             ║");
         System.out.println("╚════════════════════════════════════════╝");
 
+        FieldTokenizer fields = new FieldTokenizer();
         for (String line : bills) {
-            String[] fields = line.split("\\|");
-            if (fields.length < 5 || !fields[2].equals("PROCESSING")) {
+            fields.reset(line);
+            if (fields.fieldCount() < 5 || !fields.fieldEquals(2, "PROCESSING")) {
                 continue; // Skip malformed lines or non-processing bills
             }
             processingBills.add(line);
-            System.out.printf("%d. %s / %s / %s\n", index++, fields[0], fields[1], fields[4]);
+            System.out.printf("%d. %s / %s / %s\n", index++, fields.field(0), fields.field(1), fields.field(4));
         }
         System.out.println("══════════════════════════════════════════");
 
         if (processingBills.isEmpty()) {
             System.out.println("No processing bills found.");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
         // Selecting a bill by index
-        Scanner scanner = new Scanner(System.in);
         int selection = -1;
         while (true) {
             System.out.print("Enter the number of the bill you want to update (or 0 to exit): ");
-            if (scanner.hasNextInt()) {
-                selection = scanner.nextInt();
+            if (terminal.hasNextInt()) {
+                selection = terminal.nextInt();
                 if (selection == 0) {
                     System.out.println("Exiting...");
-                    PrintUtils.pause();
+                    PrintUtils.pause(terminal);
                     return; // Exit if user enters 0
                 } else if (selection >= 1 && selection <= processingBills.size()) {
                     break;
@@ -105,7 +145,7 @@ public class BillController {
                 }
             } else {
                 System.out.println("Invalid input. Please enter a valid number.");
-                scanner.next(); // Clear invalid input
+                terminal.next(); // Clear invalid input
             }
         }
 
@@ -116,8 +156,8 @@ public class BillController {
         double newCost = -1;
         while (true) {
             System.out.print("Enter the new cost for the bill: ");
-            if (scanner.hasNextDouble()) {
-                newCost = scanner.nextDouble();
+            if (terminal.hasNextDouble()) {
+                newCost = terminal.nextDouble();
                 if (newCost >= 0) { // Ensure cost is non-negative
                     break;
                 } else {
@@ -125,18 +165,17 @@ public class BillController {
                 }
             } else {
                 System.out.println("Invalid input. Please enter a valid numeric cost.");
-                scanner.next(); // Clear invalid input
+                terminal.next(); // Clear invalid input
             }
         }
 
         // Round cost to 2 decimal places and update bill data
-        selectedFields[2] = "BILLED"; // Status
-        selectedFields[3] = String.format("%.2f", newCost); // Cost rounded to 2 decimal places
-
-        String updatedBill = String.join("|", selectedFields);
-        FileUtils.updateToFile(FILE_PATH, updatedBill, selectedFields[0]); // AppointmentID as ID
-        System.out.println("Bill updated successfully.");
-        PrintUtils.pause();
+        if (updateBill(selectedFields[0], "PROCESSING", "BILLED", String.format("%.2f", newCost))) {
+            System.out.println("Bill updated successfully.");
+        } else {
+            System.out.println("This bill has already been updated in another session.");
+        }
+        PrintUtils.pause(terminal);
     }
 
     /**
@@ -144,8 +183,9 @@ public class BillController {
      * Allows the user to select and pay billed bills.
      *
      * @param patientId the ID of the patient whose bills will be viewed and paid
+     * @param terminal  the terminal used to read the user's input
      */
-    public static void viewAndPayBills(String patientId) {
+    public static void viewAndPayBills(String patientId, Terminal terminal) {
         String FILE_PATH = "data/bill.txt";
         File file = new File(FILE_PATH);
 
@@ -157,7 +197,6 @@ public class BillController {
 
         List<String> bills = FileUtils.readAllLines(FILE_PATH); // Read all lines from file
 
-        Scanner scanner = new Scanner(System.in);
 
         while (true) {
             List<String> processingBills = new ArrayList<>();
@@ -165,10 +204,11 @@ public class BillController {
             List<String> paidBills = new ArrayList<>();
 
             // Categorize bills by status for the specified patientId
+            FieldTokenizer fields = new FieldTokenizer();
             for (String line : bills) {
-                String[] fields = line.split("\\|");
-                if (fields.length >= 5 && fields[1].equals(patientId)) { // Check if patientId matches
-                    switch (fields[2]) {
+                fields.reset(line);
+                if (fields.fieldCount() >= 5 && fields.fieldEquals(1, patientId)) { // Check if patientId matches
+                    switch (fields.field(2)) {
                         case "PROCESSING":
                             processingBills.add(line);
                             break;
@@ -190,16 +230,16 @@ public class BillController {
             // Show processing bills
             System.out.println("\nINCOMING BILLS");
             for (String line : processingBills) {
-                String[] fields = line.split("\\|");
-                System.out.printf("- %s (%s)\n", fields[0], fields[4]);
+                fields.reset(line);
+                System.out.printf("- %s (%s)\n", fields.field(0), fields.field(4));
             }
             System.out.println("══════════════════════════════════════════");
 
             // Show paid bills
             System.out.println("\nPAID BILLS:");
             for (String line : paidBills) {
-                String[] fields = line.split("\\|");
-                System.out.printf("- %s (%s) - $%s\n", fields[0], fields[4], fields[3]);
+                fields.reset(line);
+                System.out.printf("- %s (%s) - $%s\n", fields.field(0), fields.field(4), fields.field(3));
             }
 
             System.out.println("══════════════════════════════════════════");
@@ -208,23 +248,23 @@ public class BillController {
             System.out.println("\nBILLED BILLS (Select to Pay):");
             int index = 1;
             for (String line : billedBills) {
-                String[] fields = line.split("\\|");
-                System.out.printf("%d. %s (%s) - $%s\n", index++, fields[0], fields[4], fields[3]);
+                fields.reset(line);
+                System.out.printf("%d. %s (%s) - $%s\n", index++, fields.field(0), fields.field(4), fields.field(3));
             }
             System.out.println("══════════════════════════════════════════");
 
             if (billedBills.isEmpty()) {
                 System.out.println("No billed bills available for payment.");
-                PrintUtils.pause();
+                PrintUtils.pause(terminal);
                 return;
             }
 
             System.out.print("Enter the number of the billed bill to pay (or 0 to exit): ");
-            if (scanner.hasNextInt()) {
-                int selection = scanner.nextInt();
+            if (terminal.hasNextInt()) {
+                int selection = terminal.nextInt();
                 if (selection == 0) {
                     System.out.println("Exiting to main view.");
-                    PrintUtils.pause();
+                    PrintUtils.pause(terminal);
                     return; // Exit to main view
                 } else if (selection >= 1 && selection <= billedBills.size()) {
                     String selectedBill = billedBills.get(selection - 1);
@@ -240,31 +280,32 @@ public class BillController {
                     System.out.println("══════════════════════════════════════════");
 
                     System.out.print("Choose an option: ");
-                    if (scanner.hasNextInt()) {
-                        int payOption = scanner.nextInt();
+                    if (terminal.hasNextInt()) {
+                        int payOption = terminal.nextInt();
                         if (payOption == 1) {
-                            selectedFields[2] = "PAID"; // Update status to PAID
-                            String updatedBill = String.join("|", selectedFields);
-                            FileUtils.updateToFile(FILE_PATH, updatedBill, selectedFields[0]); // Update in file by AppointmentID
-                            System.out.println("Payment successful!");
-                            PrintUtils.pause();
+                            if (updateBill(selectedFields[0], "BILLED", "PAID", selectedFields[3])) {
+                                System.out.println("Payment successful!");
+                            } else {
+                                System.out.println("This bill has already been paid.");
+                            }
+                            PrintUtils.pause(terminal);
                             bills = FileUtils.readAllLines(FILE_PATH); // Refresh bills after update
                         } else if (payOption == 0) {
                             System.out.println("Exiting to main view.");
-                            PrintUtils.pause();
+                            PrintUtils.pause(terminal);
                         } else {
                             System.out.println("Invalid option.");
                         }
                     } else {
                         System.out.println("Invalid input. Please enter 1 to pay or 0 to exit.");
-                        scanner.next(); // Clear invalid input
+                        terminal.next(); // Clear invalid input
                     }
                 } else {
                     System.out.println("Invalid selection. Please enter a number between 1 and " + billedBills.size() + " or 0 to exit.");
                 }
             } else {
                 System.out.println("Invalid input. Please enter a valid number.");
-                scanner.next(); // Clear invalid input
+                terminal.next(); // Clear invalid input
             }
         }
     }
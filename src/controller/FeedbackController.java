@@ -1,20 +1,33 @@
 package controller;
 
+import entity.Doctor;
 import entity.Feedback;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import entity.Staff;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
+import utility.DataFileLock;
 import utility.FileUtils;
+import utility.IdSequence;
 import utility.PrintUtils;
+import utility.Terminal;
 
 public class FeedbackController {
 
-    private static final String STAFF_FILE = "data/staff.txt";
     private static final String FEEDBACK_FILE = "data/feedback.txt";
-    private Scanner scanner = new Scanner(System.in);
+    private static final String FEEDBACK_PREFIX = "FB";
+    private static final IdSequence FEEDBACK_IDS = IdSequence.forFile(FEEDBACK_FILE, FEEDBACK_PREFIX);
+
+    private final Terminal terminal;
+
+    /**
+     * Constructs a FeedbackController that reads the user's input from the given terminal.
+     *
+     * @param terminal the terminal of the current session
+     */
+    public FeedbackController(Terminal terminal) {
+        this.terminal = terminal;
+    }
 
     // Display doctors, collect feedback for selected doctor
     public void provideFeedback(String patientId) {
@@ -22,7 +35,7 @@ public class FeedbackController {
 
         if (doctorList.isEmpty()) {
             System.out.println("No doctors available.");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
@@ -37,7 +50,7 @@ public class FeedbackController {
         int doctorIndex = getValidSelection(doctorList.size(), "Select a doctor (1-" + doctorList.size() + " or 0 to exit): ");
         if (doctorIndex == 0) {
             System.out.println("Exiting...");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
@@ -50,36 +63,25 @@ public class FeedbackController {
         System.out.print("Enter your comments (press Enter to skip): ");
 
         // Capture comment in a single line to avoid double reading issues
-        String comments = scanner.nextLine().trim();
+        String comments = terminal.nextLine().trim();
         if (comments.isEmpty()) {
             comments = "-"; // Set to "-" if no comment is provided
         }
 
         // Save feedback to the file
-        FileUtils.writeToFile(FEEDBACK_FILE, String.join("|", patientId, doctorId, String.valueOf(rating), comments));
+        Repositories.feedback().add(new Feedback(FEEDBACK_IDS.next(), patientId, doctorId, rating, comments));
         System.out.println("Thank you for your feedback!");
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     // Retrieve and display all ratings for a doctor with average rating
     public void viewDoctorRatings(String doctorId) {
-        List<Feedback> feedbackList = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(FEEDBACK_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length >= 4 && fields[1].equals(doctorId)) {
-                    feedbackList.add(new Feedback(fields[0], doctorId, Integer.parseInt(fields[2]), fields[3]));
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading feedback file: " + e.getMessage());
-        }
+        List<Feedback> feedbackList = Repositories.feedback()
+                .findWhere(feedback -> feedback.getDoctorId().equals(doctorId));
 
         if (feedbackList.isEmpty()) {
             System.out.println("No feedback available for Doctor ID: " + doctorId);
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
@@ -96,22 +98,44 @@ public class FeedbackController {
         }
         System.out.printf("\nAverage Rating: %.2f/10\n", (double) totalRating / feedbackList.size());
         System.out.println("══════════════════════════════════════════");
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
-    // Retrieve doctors' list from the staff file
-    private List<String> getDoctorList() {
-        List<String> doctorList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(STAFF_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if ("Doctor".equalsIgnoreCase(fields[7])) {
-                    doctorList.add(fields[0] + " " + fields[1] + " " + fields[2]);
+    /**
+     * Gives an ID to every feedback line written before feedback had one
+     * ({@code patientId|doctorId|rating|comments}), so each line can be found, saved
+     * and deleted on its own rather than by the patient's ID, which is shared by all
+     * of a patient's feedback. Must be called at startup, before the feedback is read.
+     */
+    public static void assignFeedbackIds() {
+        DataFileLock.Held held = DataFileLock.forFile(FEEDBACK_FILE).exclusive();
+        try {
+            List<String> lines = FileUtils.readLines(FEEDBACK_FILE);
+            List<String> upgraded = new ArrayList<>();
+            boolean changed = false;
+            for (String line : lines) {
+                if (line.isEmpty() || line.startsWith(FEEDBACK_PREFIX)) {
+                    upgraded.add(line);
+                } else {
+                    upgraded.add(FEEDBACK_IDS.next() + "|" + line);
+                    changed = true;
                 }
             }
+            if (changed) {
+                FileUtils.rewriteFile(FEEDBACK_FILE, upgraded);
+            }
         } catch (IOException e) {
-            System.out.println("Error reading staff file: " + e.getMessage());
+            System.out.println("Error upgrading feedback file: " + e.getMessage());
+        } finally {
+            held.close();
+        }
+    }
+
+    // Retrieve doctors' list from the staff file
+    private List<String> getDoctorList() {
+        List<String> doctorList = new ArrayList<>();
+        for (Staff staff : Repositories.staff().findWhere(staff -> staff instanceof Doctor)) {
+            doctorList.add(staff.getUserId() + " " + staff.getFirstName() + " " + staff.getLastName());
         }
         return doctorList;
     }
@@ -122,7 +146,7 @@ public class FeedbackController {
         while (true) {
             try {
                 System.out.print(prompt);
-                selection = Integer.parseInt(scanner.nextLine().trim());
+                selection = Integer.parseInt(terminal.nextLine().trim());
                 if (selection >= 0 && selection <= max) {
                     return selection;
                 }
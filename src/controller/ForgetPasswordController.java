@@ -2,15 +2,15 @@ package controller;
 
 import entity.ForgetPassword;
 import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
+import utility.FieldTokenizer;
+import utility.FileUtils;
 import utility.PrintUtils;
+import utility.Terminal;
 
 /**
  * The ForgetPasswordController class manages the forget password functionality.
@@ -23,7 +23,18 @@ public class ForgetPasswordController {
     private static final String ACCOUNT_FILE = "data/account.txt";
     private static final String FORGET_PASSWORD_FILE = "data/forgetPassword.txt";
     private static final String DEFAULT_PASSWORD = "password";
-    private AccountController accountController = new AccountController();
+    private final Terminal terminal;
+    private final AccountController accountController;
+
+    /**
+     * Constructs a ForgetPasswordController that reads the user's input from the given terminal.
+     *
+     * @param terminal the terminal of the current session
+     */
+    public ForgetPasswordController(Terminal terminal) {
+        this.terminal = terminal;
+        this.accountController = new AccountController(terminal);
+    }
 
     // Handle a forget password request from the user
      /**
@@ -32,10 +43,9 @@ public class ForgetPasswordController {
      * and stores the request in the forget password file.
      */
     public void handleForgetPasswordRequest() {
-        Scanner scanner = new Scanner(System.in);
 
         System.out.print("Enter your User ID (0 to cancel): ");
-        String userId = scanner.nextLine().trim().toUpperCase();
+        String userId = terminal.nextLine().trim().toUpperCase();
         if (userId.equals("0")) {
             System.out.println("Exiting request.");
             return;
@@ -43,12 +53,12 @@ public class ForgetPasswordController {
 
         if (!isUserIdExist(userId)) {
             System.out.println("User ID not found. Please try again.");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
         System.out.print("Enter a message for the reset request (0 to cancel): ");
-        String message = scanner.nextLine().trim();
+        String message = terminal.nextLine().trim();
         if (message.equals("0")) {
             System.out.println("Exiting request.");
             return;
@@ -57,7 +67,7 @@ public class ForgetPasswordController {
         ForgetPassword forgetPasswordRequest = new ForgetPassword(userId, message.isEmpty() ? "-" : message);
         writeRequestToFile(forgetPasswordRequest);
         System.out.println("Your password reset request has been submitted.");
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     // Admin view and process forget password requests
@@ -70,22 +80,22 @@ public class ForgetPasswordController {
         List<ForgetPassword> requests = readAllRequests();
         if (requests.isEmpty()) {
             System.out.println("No password reset requests found.");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
-        Scanner scanner = new Scanner(System.in);
 
         while (true) {
             displayRequests(requests);
-            int index = getRequestIndex(scanner, requests.size());
+            int index = getRequestIndex(terminal, requests.size());
             if (index == 0) {
                 return;
             }
 
             ForgetPassword selectedRequest = requests.get(index - 1);
-            if (processRequestSelection(scanner, selectedRequest)) {
-                requests.remove(index - 1);
-                updateRequestsFile(requests);
+            if (processRequestSelection(terminal, selectedRequest)) {
+                // Settle the user's requests in place, keeping any filed in the meantime
+                FileUtils.deleteFromFile(FORGET_PASSWORD_FILE, selectedRequest.getUserId());
+                requests = readAllRequests();
             }
         }
     }
@@ -98,10 +108,10 @@ public class ForgetPasswordController {
      * @return true if the User ID exists, false otherwise
      */
     private boolean isUserIdExist(String userId) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(ACCOUNT_FILE))) {
+        try (BufferedReader reader = FileUtils.newReader(ACCOUNT_FILE)) {
             String line;
             while ((line = reader.readLine()) != null) {
-                if (line.split("\\|")[0].equalsIgnoreCase(userId)) {
+                if (FieldTokenizer.fieldOf(line, 0).equalsIgnoreCase(userId)) {
                     return true;
                 }
             }
@@ -119,12 +129,13 @@ public class ForgetPasswordController {
      */
     private List<ForgetPassword> readAllRequests() {
         List<ForgetPassword> requests = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(FORGET_PASSWORD_FILE))) {
+        try (BufferedReader reader = FileUtils.newReader(FORGET_PASSWORD_FILE)) {
             String line;
+            FieldTokenizer fields = new FieldTokenizer();
             while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields.length == 3) { // Ensure correct number of fields
-                    requests.add(new ForgetPassword(fields[0], fields[1], LocalDateTime.parse(fields[2], DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")) // Date/Time
+                fields.reset(line);
+                if (fields.fieldCount() == 3) { // Ensure correct number of fields
+                    requests.add(new ForgetPassword(fields.field(0), fields.field(1), LocalDateTime.parse(fields.field(2), DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")) // Date/Time
                     ));
                 }
             }
@@ -158,15 +169,15 @@ public class ForgetPasswordController {
     /**
      * Gets a valid request index from the administrator.
      * 
-     * @param scanner the scanner for reading input
+     * @param terminal the terminal for reading input
      * @param maxIndex the maximum valid index
      * @return the valid request index or 0 to cancel
      */
-    private int getRequestIndex(Scanner scanner, int maxIndex) {
+    private int getRequestIndex(Terminal terminal, int maxIndex) {
         while (true) {
             System.out.print("\nEnter the request number to process (or 0 to cancel): ");
             try {
-                int index = Integer.parseInt(scanner.nextLine().trim());
+                int index = Integer.parseInt(terminal.nextLine().trim());
                 if (index == 0) {
                     return 0;
                 }
@@ -183,30 +194,30 @@ public class ForgetPasswordController {
     /**
      * Processes the selected forget password request based on the admin's choice.
      * 
-     * @param scanner the scanner for reading input
+     * @param terminal the terminal for reading input
      * @param selectedRequest the selected request to process
      * @return true if the request was processed successfully, false otherwise
      */
-    private boolean processRequestSelection(Scanner scanner, ForgetPassword selectedRequest) {
+    private boolean processRequestSelection(Terminal terminal, ForgetPassword selectedRequest) {
         System.out.println("\nSelected Request: " + selectedRequest.getUserId());
         System.out.println("1. Reset to default password");
         System.out.println("2. Reject request");
         System.out.println("0. Exit");
 
-        String choice = scanner.nextLine().trim();
+        String choice = terminal.nextLine().trim();
         switch (choice) {
             case "1":
                 resetPassword(selectedRequest.getUserId());
                 System.out.println("Password has been reset to default.");
-                PrintUtils.pause();
+                PrintUtils.pause(terminal);
                 return true;
             case "2":
                 System.out.println("Request has been rejected.");
-                PrintUtils.pause();
+                PrintUtils.pause(terminal);
                 return true;
             case "0":
                 System.out.println("Exiting.");
-                PrintUtils.pause();
+                PrintUtils.pause(terminal);
                 return false;
             default:
                 System.out.println("Invalid choice. Please enter 1, 2, or 0.");
@@ -224,27 +235,6 @@ public class ForgetPasswordController {
         accountController.updatePassword(userId, DEFAULT_PASSWORD);
     }
 
-    /**
-     * Updates the forget password file after processing requests.
-     * 
-     * @param requests the updated list of requests to write back to the file
-     */
-    // Update ForgetPassword file after processing requests
-    private void updateRequestsFile(List<ForgetPassword> requests) {
-        try (FileWriter writer = new FileWriter(FORGET_PASSWORD_FILE, false)) { // Overwrite the file
-            for (ForgetPassword request : requests) {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
-                // Write each request back to the file without changing the date/time
-                writer.write(String.format("%s|%s|%s%n",
-                        request.getUserId(),
-                        request.getMessage(),
-                        request.getRequestDateTime().format(formatter)));
-            }
-        } catch (IOException e) {
-            System.out.println("Error updating ForgetPassword.txt: " + e.getMessage());
-        }
-    }
-
     /**
      * Writes a new forget password request to the forget password file.
      * 
@@ -252,14 +242,10 @@ public class ForgetPasswordController {
      */
     // Write a forget password request to the file
     private void writeRequestToFile(ForgetPassword request) {
-        try (FileWriter writer = new FileWriter(FORGET_PASSWORD_FILE, true)) {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
-            writer.write(String.format("%s|%s|%s%n",
-                    request.getUserId(),
-                    request.getMessage(),
-                    request.getRequestDateTime().format(formatter)));
-        } catch (IOException e) {
-            System.out.println("Error writing to ForgetPassword.txt: " + e.getMessage());
-        }
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+        FileUtils.writeToFile(FORGET_PASSWORD_FILE, String.format("%s|%s|%s",
+                request.getUserId(),
+                request.getMessage(),
+                request.getRequestDateTime().format(formatter)));
     }
 }
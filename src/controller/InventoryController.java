@@ -2,15 +2,17 @@ package controller;
 
 import entity.Medicine;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
+import utility.DataFileLock;
+import utility.FieldTokenizer;
 import utility.FileUtils;
+import utility.IdSequence;
 import utility.PrintUtils;
+import utility.RecordLocks;
+import utility.TableRenderer;
+import utility.Terminal;
 
 /**
  * Controller class for managing the inventory of medicines in a hospital
@@ -22,70 +24,24 @@ import utility.PrintUtils;
  */
 public class InventoryController {
 
-    private List<Medicine> medicines;
-    private static final String MEDICINE_FILE = "data/medicine.txt";
     private static final String MEDICINE_REPLENISHMENT_REQUESTS = "data/medicineReplenishmentRequests.txt";
+    private static final IdSequence MEDICINE_IDS = IdSequence.forFile("data/medicine.txt", "MD");
 
-    /**
-     * Constructs an InventoryController instance and initializes the medicines list
-     * by loading data from a file.
-     */
-    // Constructor to initialize the inventory controller and load medicines from
-    // file
-    public InventoryController() {
-        this.medicines = new ArrayList<>();
-        loadMedicinesFromFile();
-    }
-
-    // Load medicines from the file into the medicines list
-    /**
-     * Loads the list of medicines from a file and initializes the inventory.
-     */
-    private void loadMedicinesFromFile() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split("\\|");
-                Medicine medicine = new Medicine(data[0], data[1], data[2],
-                        Integer.parseInt(data[3]), Integer.parseInt(data[4]), data[5]);
-                medicines.add(medicine);
-            }
-        } catch (IOException e) {
-            System.out.println("Error loading medicines: " + e.getMessage());
-        }
-    }
+    private final Terminal terminal;
 
-    // Save the current list of medicines to the file
     /**
-     * Saves the current state of the medicines list to the file.
+     * Constructs an InventoryController instance. Medicines are read from the shared
+     * repository, so every controller sees the same, current inventory.
+     *
+     * @param terminal the terminal of the current session
      */
-    private void saveMedicinesToFile() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(MEDICINE_FILE))) {
-            for (Medicine medicine : medicines) {
-                writer.write(String.join("|",
-                        medicine.getMedicineId(), medicine.getName(), medicine.getDescription(),
-                        String.valueOf(medicine.getStockLevel()), String.valueOf(medicine.getLowStockLevel()),
-                        medicine.getMedicineType()));
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.out.println("Error saving medicines: " + e.getMessage());
-        }
+    public InventoryController(Terminal terminal) {
+        this.terminal = terminal;
     }
 
     // Generate a new unique medicine ID
     private String generateMedicineId() {
-        String lastId = "MD00000";
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lastId = line.split("\\|")[0];
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading medicine file: " + e.getMessage());
-        }
-        int lastNum = Integer.parseInt(lastId.substring(2));
-        return String.format("MD%05d", lastNum + 1);
+        return MEDICINE_IDS.next();
     }
 
     // Display the current inventory of medicines
@@ -98,24 +54,23 @@ public class InventoryController {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║                Inventory               ║");
         System.out.println("╚════════════════════════════════════════╝");
-        System.out.println(String.format("%-10s %-15s %-25s %-15s %-35s %-12s %-18s %-15s",
-                "Index", "Medicine ID", "Name", "Type", "Description", "Quantity", "Low Stock Level", "Status"));
-        System.out.println(
-                "════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════════");
-
+        List<Medicine> medicines = Repositories.medicines().findAll();
+        TableRenderer table = new TableRenderer()
+                .column("Index", 10).column("Medicine ID", 15).column("Name", 25).column("Type", 15)
+                .column("Description", 35).column("Quantity", 12).column("Low Stock Level", 18).column("Status", 15);
         int index = 1;
         for (Medicine medicine : medicines) {
-            System.out.printf("%-10d %-15s %-25s %-15s %-35s %-12d %-18d %-15s%n",
-                    index++, medicine.getMedicineId(), medicine.getName(),
-                    medicine.getMedicineType(), medicine.getDescription(),
-                    medicine.getStockLevel(), medicine.getLowStockLevel(), medicine.getStatus());
+            table.addRow(index++, medicine.getMedicineId(), medicine.getName(), medicine.getMedicineType(),
+                    medicine.getDescription(), medicine.getStockLevel(), medicine.getLowStockLevel(),
+                    medicine.getStatus());
         }
+        table.print(terminal);
 
         if (medicines.isEmpty()) {
             System.out.println("No medicines in inventory.");
         }
 
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     // Add a new medicine to the inventory
@@ -124,53 +79,48 @@ public class InventoryController {
      * validated for
      * constraints such as name length, description length, and numerical limits.
      *
-     * @param scanner the Scanner instance used for user input.
+     * @param terminal the terminal used for user input.
      */
-    public void addMedicine(Scanner scanner) {
+    public void addMedicine(Terminal terminal) {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║              Add Medicine              ║");
         System.out.println("╚════════════════════════════════════════╝");
 
         try {
-            if (medicines == null) {
-                medicines = new ArrayList<>();
-            }
-
             String medicineId = generateMedicineId();
 
-            String name = promptForInput(scanner, "Enter Medicine Name (max 20 characters), or -1 to cancel: ", 1, 20,
+            String name = promptForInput(terminal, "Enter Medicine Name (max 20 characters), or -1 to cancel: ", 1, 20,
                     true);
             if (name == null) {
                 return;
             }
 
-            String description = promptForInput(scanner,
+            String description = promptForInput(terminal,
                     "Enter Medicine Description (max 30 characters), or -1 to cancel: ", 1, 30, true);
             if (description == null) {
                 return;
             }
 
-            int stockLevel = promptForIntegerInput(scanner, "Enter Stock Level, or -1 to cancel: ", 0,
+            int stockLevel = promptForIntegerInput(terminal, "Enter Stock Level, or -1 to cancel: ", 0,
                     Integer.MAX_VALUE);
             if (stockLevel == -1) {
                 return;
             }
 
-            int lowStockLevel = promptForIntegerInput(scanner, "Enter Low Stock Level, or -1 to cancel: ", 0,
+            int lowStockLevel = promptForIntegerInput(terminal, "Enter Low Stock Level, or -1 to cancel: ", 0,
                     stockLevel);
             if (lowStockLevel == -1) {
                 return;
             }
 
-            String medicineType = promptForInput(scanner, "Enter Medicine Type (max 15 characters), or -1 to cancel: ",
+            String medicineType = promptForInput(terminal, "Enter Medicine Type (max 15 characters), or -1 to cancel: ",
                     1, 15, true);
             if (medicineType == null) {
                 return;
             }
 
             Medicine newMedicine = new Medicine(medicineId, name, description, stockLevel, lowStockLevel, medicineType);
-            medicines.add(newMedicine);
-            saveMedicinesToFile();
+            Repositories.medicines().add(newMedicine);
 
             System.out.println("Medicine added successfully with ID: " + medicineId);
         } catch (Exception e) {
@@ -184,45 +134,48 @@ public class InventoryController {
      * Allows modifications to name, description, stock level, low stock level, and
      * type.
      *
-     * @param scanner the Scanner instance used for user input.
+     * @param terminal the terminal used for user input.
      */
-    public void updateMedicine(Scanner scanner) {
+    public void updateMedicine(Terminal terminal) {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║             Update Medicine            ║");
         System.out.println("╚════════════════════════════════════════╝");
 
-        int index = promptForIntegerInput(scanner, "Enter the index of the medicine to update (or -1 to cancel): ", 1,
+        List<Medicine> medicines = Repositories.medicines().findAll();
+        int index = promptForIntegerInput(terminal, "Enter the index of the medicine to update (or -1 to cancel): ", 1,
                 medicines.size());
         if (index == -1) {
             return;
         }
 
-        Medicine medicine = medicines.get(index - 1);
+        Medicine original = medicines.get(index - 1);
+        Medicine medicine = new Medicine(original.getMedicineId(), original.getName(), original.getDescription(),
+                original.getStockLevel(), original.getLowStockLevel(), original.getMedicineType());
+        Integer newStockLevel = null;
         boolean anyFieldUpdated = false;
 
-        String name = promptForInput(scanner, "Enter the new name (leave blank to keep current value): ", 0, 20, false);
+        String name = promptForInput(terminal, "Enter the new name (leave blank to keep current value): ", 0, 20, false);
         if (!name.isEmpty()) {
             medicine.setName(name);
             anyFieldUpdated = true;
         }
 
-        String description = promptForInput(scanner, "Enter the new description (leave blank to keep current value): ",
+        String description = promptForInput(terminal, "Enter the new description (leave blank to keep current value): ",
                 0, 30, false);
         if (!description.isEmpty()) {
             medicine.setDescription(description);
             anyFieldUpdated = true;
         }
 
-        String stockLevelInput = promptForInput(scanner,
+        String stockLevelInput = promptForInput(terminal,
                 "Enter the new stock level (leave blank to keep current value): ", 0,
                 Integer.toString(Integer.MAX_VALUE).length(), false);
         if (!stockLevelInput.isEmpty()) {
-            int stockLevel = Integer.parseInt(stockLevelInput);
-            medicine.setStockLevel(stockLevel);
+            newStockLevel = Integer.parseInt(stockLevelInput);
             anyFieldUpdated = true;
         }
 
-        String lowStockLevelInput = promptForInput(scanner,
+        String lowStockLevelInput = promptForInput(terminal,
                 "Enter the new low stock level (leave blank to keep current value): ", 0,
                 Integer.toString(Integer.MAX_VALUE).length(), false);
         if (!lowStockLevelInput.isEmpty()) {
@@ -231,7 +184,7 @@ public class InventoryController {
             anyFieldUpdated = true;
         }
 
-        String medicineType = promptForInput(scanner,
+        String medicineType = promptForInput(terminal,
                 "Enter the new medicine type (leave blank to keep current value): ", 0, 15, false);
         if (!medicineType.isEmpty()) {
             medicine.setMedicineType(medicineType);
@@ -241,7 +194,12 @@ public class InventoryController {
         if (!anyFieldUpdated) {
             System.out.println("No fields were updated for medicine ID: " + medicine.getMedicineId());
         } else {
-            saveMedicinesToFile();
+            // Stock is counted by the ledger, so a new level is recorded there as an adjustment
+            StockLedger.shared().saveDetails(medicine);
+            if (newStockLevel != null
+                    && !StockLedger.shared().adjustTo(medicine.getMedicineId(), newStockLevel, "ADJUSTMENT")) {
+                System.out.println("Stock level not changed: it cannot be negative or below the units being dispensed.");
+            }
             System.out.println("Update successful for medicine ID: " + medicine.getMedicineId());
         }
     }
@@ -249,21 +207,22 @@ public class InventoryController {
     /**
      * Removes a medicine from the inventory based on its index.
      *
-     * @param scanner the Scanner instance used for user input.
+     * @param terminal the terminal used for user input.
      */
-    public void removeMedicine(Scanner scanner) {
+    public void removeMedicine(Terminal terminal) {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║             Remove Medicine            ║");
         System.out.println("╚════════════════════════════════════════╝");
 
-        int index = promptForIntegerInput(scanner, "Enter the index of the medicine to remove (or -1 to cancel): ", 1,
+        List<Medicine> medicines = Repositories.medicines().findAll();
+        int index = promptForIntegerInput(terminal, "Enter the index of the medicine to remove (or -1 to cancel): ", 1,
                 medicines.size());
         if (index == -1) {
             return;
         }
 
-        medicines.remove(index - 1);
-        saveMedicinesToFile();
+        Repositories.medicines().delete(medicines.get(index - 1).getMedicineId());
+        StockLedger.shared().forget(medicines.get(index - 1).getMedicineId());
         System.out.println("Medicine removed successfully.");
     }
 
@@ -273,12 +232,11 @@ public class InventoryController {
      * Updates the stock levels based on approved replenishment amounts.
      */
     public void approveReplenishmentRequests() {
-        Scanner scanner = new Scanner(System.in);
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║      Approve Replenishment Requests    ║");
         System.out.println("╚════════════════════════════════════════╝");
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_REPLENISHMENT_REQUESTS))) {
+        try (BufferedReader reader = FileUtils.newReader(MEDICINE_REPLENISHMENT_REQUESTS)) {
             String line;
             List<Medicine> lowStockMedicines = new ArrayList<>();
             System.out.println(
@@ -287,10 +245,11 @@ public class InventoryController {
             System.out.println(
                     "═══════════════════════════════════════════════════════════════════════════════════════════════════════════");
 
+            FieldTokenizer data = new FieldTokenizer();
             while ((line = reader.readLine()) != null) {
-                String[] data = line.split("\\|");
-                String medicineId = data[0];
-                int replenishmentAmount = Integer.parseInt(data[1]);
+                data.reset(line);
+                String medicineId = data.field(0);
+                int replenishmentAmount = Integer.parseInt(data.field(1));
 
                 Medicine medicine = findMedicineById(medicineId);
                 if (medicine != null && medicine.isLowStockLevelAlert()) {
@@ -308,7 +267,7 @@ public class InventoryController {
             }
 
             System.out.print("\nEnter the Medicine ID to approve replenishment (enter -1 to cancel): ");
-            String medicineId = scanner.nextLine().trim();
+            String medicineId = terminal.nextLine().trim();
 
             if (medicineId.equals("-1")) {
                 System.out.println("Replenishment request cancelled.");
@@ -325,78 +284,49 @@ public class InventoryController {
                 return;
             }
 
+            // The requests for the medicine are summed, fulfilled and dropped under their record
+            // lock and the request file's exclusive lock, so two approvals, in this process or
+            // another one sharing the data directory, cannot both fulfil them and a request
+            // submitted meanwhile is not dropped unfulfilled. The stock itself is changed
+            // through the ledger, whose transaction never waits for the request file.
             int totalReplenishmentAmount = 0;
-            try (BufferedReader reader2 = new BufferedReader(new FileReader(MEDICINE_REPLENISHMENT_REQUESTS))) {
-                String line2;
-                List<String> lines = new ArrayList<>();
-                while ((line2 = reader2.readLine()) != null) {
-                    String[] data2 = line2.split("\\|");
-                    if (data2[0].equals(medicineId)) {
-                        totalReplenishmentAmount += Integer.parseInt(data2[1]);
-                    } else {
-                        lines.add(line2);
+            RecordLocks.Held held = RecordLocks.forFile(MEDICINE_REPLENISHMENT_REQUESTS).lock(medicineId);
+            try {
+                DataFileLock.Held fileHeld = DataFileLock.forFile(MEDICINE_REPLENISHMENT_REQUESTS).exclusive();
+                try (BufferedReader reader2 = FileUtils.newReader(MEDICINE_REPLENISHMENT_REQUESTS)) {
+                    String line2;
+                    FieldTokenizer data2 = new FieldTokenizer();
+                    while ((line2 = reader2.readLine()) != null) {
+                        data2.reset(line2);
+                        if (data2.fieldEquals(0, medicineId)) {
+                            totalReplenishmentAmount += Integer.parseInt(data2.field(1));
+                        }
                     }
-                }
-
-                if (totalReplenishmentAmount > 0) {
-                    medicine.setStockLevel(medicine.getStockLevel() + totalReplenishmentAmount);
-                    System.out.println("Replenished " + totalReplenishmentAmount + " units of " + medicine.getName());
 
-                    updateMedicineStockInFile(medicine);
+                    if (totalReplenishmentAmount <= 0) {
+                        System.out.println("No replenishment amount found for the specified Medicine ID.");
+                    } else if (!StockLedger.shared().restock(medicineId, totalReplenishmentAmount, "REPLENISHMENT")) {
+                        System.out.println("Could not replenish " + medicine.getName()
+                                + ". The requests were kept, please try again.");
+                    } else {
+                        System.out.println("Replenished " + totalReplenishmentAmount + " units of " + medicine.getName());
 
-                    try (BufferedWriter writer = new BufferedWriter(new FileWriter(MEDICINE_REPLENISHMENT_REQUESTS))) {
-                        for (String lineToWrite : lines) {
-                            writer.write(lineToWrite);
-                            writer.newLine();
-                        }
-                    } catch (IOException e) {
-                        System.out.println("Error writing to medicine replenishment request file: " + e.getMessage());
+                        // Drop every request for this medicine now that it has been fulfilled
+                        FileUtils.deleteFromFile(MEDICINE_REPLENISHMENT_REQUESTS, medicineId);
                     }
-                } else {
-                    System.out.println("No replenishment amount found for the specified Medicine ID.");
+                } finally {
+                    fileHeld.close();
                 }
             } catch (IOException e) {
                 System.out.println("Error reading medicine replenishment request file: " + e.getMessage());
+            } finally {
+                held.close();
             }
         } catch (IOException e) {
             System.out.println("Error reading medicine replenishment request file: " + e.getMessage());
         }
     }
 
-    /**
-     * Updates the stock level of a medicine in the file after approval of
-     * replenishment requests.
-     *
-     * @param updatedMedicine the Medicine object with updated stock level.
-     */
-    private void updateMedicineStockInFile(Medicine updatedMedicine) {
-        List<String> fileContent = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split("\\|");
-                if (data[0].equals(updatedMedicine.getMedicineId())) {
-                    data[3] = String.valueOf(updatedMedicine.getStockLevel());
-                    line = String.join("|", data);
-                }
-                fileContent.add(line);
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading medicine file: " + e.getMessage());
-            return;
-        }
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(MEDICINE_FILE))) {
-            for (String fileLine : fileContent) {
-                writer.write(fileLine);
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.out.println("Error updating medicine file: " + e.getMessage());
-        }
-    }
-
     // Update the stock level of a medicine in the file
     /**
      * Checks and returns a list of medicines with stock levels below their low
@@ -410,7 +340,7 @@ public class InventoryController {
         System.out.println("╚════════════════════════════════════════╝");
 
         List<Medicine> lowStockMedicines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_REPLENISHMENT_REQUESTS))) {
+        try (BufferedReader reader = FileUtils.newReader(MEDICINE_REPLENISHMENT_REQUESTS)) {
             String line;
             System.out.println(
                     String.format("%-15s %-30s %-10s %-18s %-30s",
@@ -418,10 +348,11 @@ public class InventoryController {
             System.out.println(
                     "═══════════════════════════════════════════════════════════════════════════════════════════════════════════");
 
+            FieldTokenizer data = new FieldTokenizer();
             while ((line = reader.readLine()) != null) {
-                String[] data = line.split("\\|");
-                String medicineId = data[0];
-                int replenishmentAmount = Integer.parseInt(data[1]);
+                data.reset(line);
+                String medicineId = data.field(0);
+                int replenishmentAmount = Integer.parseInt(data.field(1));
 
                 Medicine medicine = findMedicineById(medicineId);
                 if (medicine != null && medicine.isLowStockLevelAlert()) {
@@ -453,16 +384,15 @@ public class InventoryController {
         System.out.println("║       Submit Replenishment Request     ║");
         System.out.println("╚════════════════════════════════════════╝");
         // System.out.println("=========================================================================");
-        Scanner scanner = new Scanner(System.in);
 
         System.out.print("Enter Medicine ID for replenishment request: ");
-        String medicineId = scanner.nextLine().trim();
+        String medicineId = terminal.nextLine().trim();
 
         Medicine medicine = findMedicineById(medicineId);
         if (medicine == null) {
             System.out.println("Medicine ID: " + medicineId + " not found in inventory.");
             System.out.println("═════════════════════════════════════════════════════════════════════════");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
@@ -470,35 +400,39 @@ public class InventoryController {
             System.out.println(
                     "Replenishment not needed for medicine ID: " + medicineId + " as stock is sufficient.");
             System.out.println("═════════════════════════════════════════════════════════════════════════");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
         System.out.print("Enter replenishment amount: ");
         int replenishmentAmount;
         try {
-            replenishmentAmount = Integer.parseInt(scanner.nextLine().trim());
+            replenishmentAmount = Integer.parseInt(terminal.nextLine().trim());
             if (replenishmentAmount <= 0) {
                 System.out.println("Invalid amount. negative value.");
                 System.out.println("═════════════════════════════════════════════════════════════════════════");
-                PrintUtils.pause();
+                PrintUtils.pause(terminal);
                 return;
             }
 
-            FileUtils.writeToFile(MEDICINE_REPLENISHMENT_REQUESTS,
-                    medicineId + "|" + replenishmentAmount + "|" + medicine.getName());
+            RecordLocks.Held held = RecordLocks.forFile(MEDICINE_REPLENISHMENT_REQUESTS).lock(medicineId);
+            try {
+                FileUtils.writeToFile(MEDICINE_REPLENISHMENT_REQUESTS,
+                        medicineId + "|" + replenishmentAmount + "|" + medicine.getName());
+                medicine.setPendingReplenishmentRequest();
+                StockLedger.shared().saveDetails(medicine);
+            } finally {
+                held.close();
+            }
             System.out
                     .println("Replenishment request submitted for medicine ID: " + medicineId + " with amount: "
                             + replenishmentAmount);
-
-            medicine.setPendingReplenishmentRequest();
-            saveMedicinesToFile();
         } catch (NumberFormatException e) {
             System.out.println("Invalid amount format. Please enter a valid numeric value.");
         }
         System.out.println("═════════════════════════════════════════════════════════════════════════");
 
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     // Find a medicine by its ID
@@ -509,28 +443,22 @@ public class InventoryController {
      * @return a unique Medicine ID.
      */
     public Medicine findMedicineById(String medicineId) {
-        for (Medicine medicine : medicines) {
-            if (medicine.getMedicineId().equals(medicineId)) {
-                return medicine;
-            }
-        }
-        return null;
+        return Repositories.medicines().findById(medicineId);
     }
 
     // Prompt the user to return to the menu
     private void promptReturnToMenu() {
-        Scanner scanner = new Scanner(System.in);
         System.out.print("Please enter -1 to return: ");
-        while (!"-1".equals(scanner.nextLine().trim())) {
+        while (!"-1".equals(terminal.nextLine().trim())) {
             System.out.print("Invalid input. Please enter -1 to return: ");
         }
     }
 
     // Prompt the user for input with validation
-    private String promptForInput(Scanner scanner, String prompt, int minLength, int maxLength, boolean isRequired) {
+    private String promptForInput(Terminal terminal, String prompt, int minLength, int maxLength, boolean isRequired) {
         while (true) {
             System.out.print(prompt);
-            String input = scanner.nextLine().trim();
+            String input = terminal.nextLine().trim();
             if (input.equals("-1")) {
                 System.out.println("Operation cancelled.");
                 return null;
@@ -546,10 +474,10 @@ public class InventoryController {
     }
 
     // Prompt the user for integer input with validation
-    private int promptForIntegerInput(Scanner scanner, String prompt, int minValue, int maxValue) {
+    private int promptForIntegerInput(Terminal terminal, String prompt, int minValue, int maxValue) {
         while (true) {
             System.out.print(prompt);
-            String input = scanner.nextLine().trim();
+            String input = terminal.nextLine().trim();
             if (input.equals("-1")) {
                 System.out.println("Operation cancelled.");
                 return -1;
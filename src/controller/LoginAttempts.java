@@ -0,0 +1,154 @@
+package controller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Failed login attempts, counted over a sliding window and shared by every session of
+ * this process, so guessing passwords from several sessions at once is limited as
+ * well. Attempts are counted per user ID ({@link #byUser()}) and per source address
+ * ({@link #bySource()}); once a key has had its maximum number of failures within the
+ * window, further logins for it are refused before any password is hashed.
+ *
+ * <p>Each key keeps the times of its last few failures in a ring, so checking a key
+ * takes constant time. Keys whose failures have all left the window are dropped when
+ * next looked at, and at most {@code -Dhms.login.maxTracked} keys (default 10000) are
+ * kept per counter: past that, expired keys are swept and then the least recently
+ * failed ones dropped.
+ *
+ * <p>The window is {@code -Dhms.login.windowSeconds} long (default 300). A user ID is
+ * locked after {@code -Dhms.login.maxFailures} failures (default 5) and a source after
+ * {@code -Dhms.login.maxSourceFailures} (default 50, as sessions from one host share
+ * it); 0 turns a counter off. A successful login clears the failures of its user ID
+ * and source. Clients on the server's own host have no source (null), since they
+ * would all share one, and are counted per user ID only.
+ */
+public class LoginAttempts {
+
+    private static final long WINDOW_NANOS = Long.getLong("hms.login.windowSeconds", 300) * 1_000_000_000L;
+    private static final int MAX_TRACKED = Math.max(1, Integer.getInteger("hms.login.maxTracked", 10_000));
+    private static final LoginAttempts USERS = new LoginAttempts(Integer.getInteger("hms.login.maxFailures", 5));
+    private static final LoginAttempts SOURCES = new LoginAttempts(
+            Integer.getInteger("hms.login.maxSourceFailures", 50));
+
+    private final int maxFailures;
+    private final Map<String, Failures> failures = new ConcurrentHashMap<>();
+
+    private LoginAttempts(int maxFailures) {
+        this.maxFailures = Math.max(0, maxFailures);
+    }
+
+    /**
+     * Returns the failed attempts counted per user ID.
+     *
+     * @return the shared counter of user IDs
+     */
+    public static LoginAttempts byUser() {
+        return USERS;
+    }
+
+    /**
+     * Returns the failed attempts counted per source address.
+     *
+     * @return the shared counter of sources
+     */
+    public static LoginAttempts bySource() {
+        return SOURCES;
+    }
+
+    // The times of the last failures of one key, oldest first from next once the ring is full
+    private static class Failures {
+        private final long[] times;
+        private int next;
+        private int recorded;
+
+        private Failures(int size) {
+            this.times = new long[size];
+        }
+
+        private synchronized void add(long now) {
+            times[next] = now;
+            next = (next + 1) % times.length;
+            recorded = Math.min(recorded + 1, times.length);
+        }
+
+        // Whether the ring is full and even its oldest failure is within the window
+        private synchronized boolean isFull(long now) {
+            return recorded == times.length && now - times[next] < WINDOW_NANOS;
+        }
+
+        private synchronized long last() {
+            return times[(next + times.length - 1) % times.length];
+        }
+
+        private boolean isExpired(long now) {
+            return now - last() >= WINDOW_NANOS;
+        }
+    }
+
+    /**
+     * Returns whether a key has had too many failures within the window.
+     *
+     * @param key the user ID or source, or null for a source that is not counted
+     * @return true if logins for the key must be refused
+     */
+    public boolean isLockedOut(String key) {
+        if (key == null) {
+            return false;
+        }
+        Failures entry = failures.get(key);
+        if (entry == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (entry.isExpired(now)) {
+            failures.remove(key, entry);
+            return false;
+        }
+        return entry.isFull(now);
+    }
+
+    /**
+     * Counts a failed login for a key.
+     *
+     * @param key the user ID or source, or null for a source that is not counted
+     */
+    public void recordFailure(String key) {
+        if (maxFailures == 0 || key == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        failures.computeIfAbsent(key, k -> new Failures(maxFailures)).add(now);
+        if (failures.size() > MAX_TRACKED) {
+            evict(now);
+        }
+    }
+
+    /**
+     * Forgets the failures of a key, after a successful login.
+     *
+     * @param key the user ID or source, or null for a source that is not counted
+     */
+    public void reset(String key) {
+        if (key != null) {
+            failures.remove(key);
+        }
+    }
+
+    // Drops keys whose failures have left the window, then the least recently failed ones
+    private synchronized void evict(long now) {
+        failures.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+        while (failures.size() > MAX_TRACKED) {
+            String oldest = null;
+            long oldestTime = now;
+            for (Map.Entry<String, Failures> entry : failures.entrySet()) {
+                long last = entry.getValue().last();
+                if (oldest == null || last - oldestTime < 0) {
+                    oldest = entry.getKey();
+                    oldestTime = last;
+                }
+            }
+            failures.remove(oldest);
+        }
+    }
+}
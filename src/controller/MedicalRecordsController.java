@@ -4,14 +4,10 @@ import entity.Doctor;
 import entity.MedicalRecord;
 import entity.Patient;
 import entity.User;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
-import utility.FileUtils;
+import utility.IdSequence;
 import utility.PrintUtils;
+import utility.Terminal;
 
 /**
  * The MedicalRecordsController class is responsible for managing and processing medical records in a hospital management system.
@@ -21,90 +17,18 @@ import utility.PrintUtils;
 
 public class MedicalRecordsController {
 
-    private List<Patient> patients;
-    private List<MedicalRecord> medicalRecords;
-    private static final String MEDICALRECORDS_TXT = "data/medicalRecords.txt";
-    private static final String PATIENT_TXT = "data/patient.txt";
-    Scanner scanner = new Scanner(System.in);
+    private static final IdSequence MEDICAL_RECORD_IDS = IdSequence.forFile("data/medicalRecords.txt", "MR");
 
-     /**
-     * Constructor that initializes the controller and loads data from files.
-     * It loads patient records and medical records from the specified file paths.
-     */
-    public MedicalRecordsController() {
-        this.patients = new ArrayList<>();
-        this.medicalRecords = new ArrayList<>();
-
-        // Load patient records
-        try {
-            loadPatientsFromFile(PATIENT_TXT);
-        } catch (IOException e) {
-            System.out.println("Error loading patients: " + e.getMessage());
-        }
-
-        // Load medical records
-        try {
-            loadMedicalRecordsFromFile(MEDICALRECORDS_TXT);
-        } catch (IOException e) {
-            System.out.println("Error loading medical records: " + e.getMessage());
-        }
-    }
-
-     /**
-     * Loads patient data from a specified file.
-     * @param filename The name of the file containing patient data.
-     * @throws IOException If an error occurs while reading the file.
-     */
-    private void loadPatientsFromFile(String filename) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split("\\|");
-
-                if (data.length < 9) {
-                    System.out.println("Skipping invalid patient record: " + line);
-                    continue;
-                }
-
-                Patient patient = new Patient(data[0], data[1], data[2], data[3], data[4], data[5], data[6], data[7], data[8]);
-                patients.add(patient);
-            }
-        }
-    }
+    private final Terminal terminal;
 
     /**
-     * Loads medical records from a specified file.
-     * @param filename The name of the file containing medical records.
-     * @throws IOException If an error occurs while reading the file.
+     * Constructor that initializes the controller. Patients and medical records are
+     * read from the shared repositories, so every screen sees the current data.
+     *
+     * @param terminal the terminal of the current session
      */
-    private void loadMedicalRecordsFromFile(String filename) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split("\\|");
-
-                if (data.length < 5) {
-                    System.out.println("Skipping invalid medical record: " + line);
-                    continue;
-                }
-
-                String medicalRecordId = data[0];
-                String doctorId = data[1];
-                String patientId = data[2];
-                String diagnosis = data[3];
-                String treatment = data[4];
-
-                // Find the associated patient using patientId
-                Patient patient = findPatientById(patientId);
-
-                if (patient != null) {
-                    MedicalRecord record = new MedicalRecord(medicalRecordId, doctorId, patientId, diagnosis, treatment);
-                    medicalRecords.add(record);
-                } else {
-                    System.out.println("No matching patient found for ID: " + patientId);
-                }
-            }
-        }
+    public MedicalRecordsController(Terminal terminal) {
+        this.terminal = terminal;
     }
 
      /**
@@ -113,12 +37,7 @@ public class MedicalRecordsController {
      * @return The Patient object if found, null otherwise.
      */
     private Patient findPatientById(String patientId) {
-        for (Patient patient : patients) {
-            if (patient.getUserId().equals(patientId)) {
-                return patient;
-            }
-        }
-        return null;
+        return Repositories.patients().findById(patientId);
     }
 
       /**
@@ -129,14 +48,14 @@ public class MedicalRecordsController {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║            Select a Patient            ║");
         System.out.println("╚════════════════════════════════════════╝");
-        for (Patient patient : patients) {
+        for (Patient patient : Repositories.patients().findAll()) {
             System.out.println("══════════════════════════════════════════════════════");
             System.out.println(patient);  // Assuming Patient class has a meaningful toString() method
             System.out.println("══════════════════════════════════════════════════════");
         }
 
         System.out.print("Enter the patient ID to view medical records (or 0 to exit): ");
-        String patientId = scanner.nextLine().trim();
+        String patientId = terminal.nextLine().trim();
 
         if (patientId.equals("0")) {
             return null;  // Exit option
@@ -151,20 +70,11 @@ public class MedicalRecordsController {
     }
 
     /**
-     * Generates a unique medical record ID based on the existing medical records.
-     * @return A new medical record ID in the format "MR00001", incrementing from the last ID.
+     * Generates a unique medical record ID from the medical record ID sequence.
+     * @return A new medical record ID in the format "MR00001".
      */
     private String generateMedicalRecordId() {
-        if (medicalRecords.isEmpty()) {
-            return "MR00001"; // Start with MR00001 if no records exist
-        }
-
-        // Get the last medical record ID
-        String lastRecordId = medicalRecords.get(medicalRecords.size() - 1).getMedicalRecordId();
-
-        // Extract the numeric part and increment it
-        int lastIdNumber = Integer.parseInt(lastRecordId.substring(2));
-        return String.format("%s%05d", "MR", lastIdNumber + 1);
+        return MEDICAL_RECORD_IDS.next();
     }
 
     /**
@@ -183,29 +93,28 @@ public class MedicalRecordsController {
         System.out.println("╚════════════════════════════════════════╝");
 
         System.out.print("Enter diagnosis: ");
-        String diagnosisInput = scanner.nextLine().trim();
+        String diagnosisInput = terminal.nextLine().trim();
         while (true) {
             if (diagnosisInput.isEmpty()) {
                 System.out.println("Diagnosis cannot be empty. Please re-enter:");
-                diagnosisInput = scanner.nextLine().trim();
+                diagnosisInput = terminal.nextLine().trim();
                 continue;
             }
             break;
         }
 
         System.out.print("Enter treatment (or NIL if none): ");
-        String treatment = scanner.nextLine().trim();
+        String treatment = terminal.nextLine().trim();
         if (treatment.equalsIgnoreCase("NIL") || treatment.isEmpty()) {
             treatment = "NIL";
         }
         String medicalRecordID = generateMedicalRecordId();
 
         MedicalRecord newRecord = new MedicalRecord(medicalRecordID, doctorId, patientId, diagnosisInput, treatment);
-        medicalRecords.add(newRecord);
         System.out.println("Medical record created successfully for patient ID: " + patientId);
 
         // Write to file
-        FileUtils.writeToFile(MEDICALRECORDS_TXT, medicalRecordID + '|' + doctorId + '|' + patientId + '|' + diagnosisInput + '|' + treatment);
+        Repositories.medicalRecords().add(newRecord);
 
         // Display success message
         System.out.println(patientId + " Created Medical record successfully!");
@@ -222,12 +131,8 @@ public class MedicalRecordsController {
             return;
         }
 
-        List<MedicalRecord> recordsToUpdate = new ArrayList<>();
-        for (MedicalRecord record : medicalRecords) {
-            if (record.getPatientId().equals(patientId) && record.getDoctorId().equals(doctorId)) {
-                recordsToUpdate.add(record);
-            }
-        }
+        List<MedicalRecord> recordsToUpdate = Repositories.medicalRecords().findWhere(
+                record -> record.getPatientId().equals(patientId) && record.getDoctorId().equals(doctorId));
 
         if (recordsToUpdate.isEmpty()) {
             System.out.println("No medical records found for Patient ID: " + patientId);
@@ -246,7 +151,7 @@ public class MedicalRecordsController {
 
         while (true) {
             System.out.println("Select a medical record to update (0 to return): ");
-            int updateChoice = scanner.nextInt();
+            int updateChoice = terminal.nextInt();
             if (updateChoice == 0) {
                 return;
             }
@@ -255,26 +160,33 @@ public class MedicalRecordsController {
                 continue;
             }
 
-            MedicalRecord recordToUpdate = recordsToUpdate.get(updateChoice - 1);
+            // Edit a copy, so other sessions never see the shared cached record half-edited
+            MedicalRecord original = recordsToUpdate.get(updateChoice - 1);
+            MedicalRecord recordToUpdate = new MedicalRecord(original.getMedicalRecordId(), original.getDoctorId(),
+                    original.getPatientId(), original.getDiagnosis(), original.getTreatment());
 
             System.out.print("Enter new diagnosis (or press Enter to keep current): ");
-            scanner.nextLine(); // Consume newline
-            String diagnosisInput = scanner.nextLine().trim();
+            String diagnosisInput = terminal.nextLine().trim();
             if (!diagnosisInput.isEmpty()) {
                 String diagnosis = diagnosisInput.equalsIgnoreCase("NIL") ? "-" : diagnosisInput; // Set to null if NIL
                 recordToUpdate.setDiagnosis(diagnosis);
             }
 
             System.out.print("Enter new treatment (or press Enter to keep current): ");
-            String treatmentInput = scanner.nextLine().trim();
+            String treatmentInput = terminal.nextLine().trim();
             if (!treatmentInput.isEmpty()) {
                 recordToUpdate.setTreatment(treatmentInput.equalsIgnoreCase("NIL") ? "-" : treatmentInput);
             }
 
+            // Write updated record to file, unless another session changed it while it was being edited
+            boolean saved = Repositories.medicalRecords().saveIf(recordToUpdate,
+                    stored -> stored.getDiagnosis().equals(original.getDiagnosis())
+                            && stored.getTreatment().equals(original.getTreatment()));
+            if (!saved) {
+                System.out.println("This medical record was changed by someone else. Please try again.");
+                return;
+            }
             System.out.println("Medical record updated successfully for Patient ID: " + patientId);
-
-            // Write updated record to file
-            FileUtils.updateToFile(MEDICALRECORDS_TXT, recordToUpdate.getMedicalRecordId() + '|' + doctorId + '|' + patientId + '|' + recordToUpdate.getDiagnosis() + '|' + recordToUpdate.getTreatment(), recordToUpdate.getMedicalRecordId());
             return;
         }
     }
@@ -290,12 +202,8 @@ public class MedicalRecordsController {
             return;
         }
 
-        List<MedicalRecord> recordsToDelete = new ArrayList<>();
-        for (MedicalRecord record : medicalRecords) {
-            if (record.getPatientId().equals(patientId) && record.getDoctorId().equals(doctorId)) {
-                recordsToDelete.add(record);
-            }
-        }
+        List<MedicalRecord> recordsToDelete = Repositories.medicalRecords().findWhere(
+                record -> record.getPatientId().equals(patientId) && record.getDoctorId().equals(doctorId));
 
         if (recordsToDelete.isEmpty()) {
             System.out.println("No medical records found for Patient ID: " + patientId);
@@ -314,7 +222,7 @@ public class MedicalRecordsController {
 
         while (true) {
             System.out.println("Select medical record to delete (0 to return): ");
-            int medicalRecordChoice = scanner.nextInt();
+            int medicalRecordChoice = terminal.nextInt();
             if (medicalRecordChoice == 0) {
                 return;
             }
@@ -326,12 +234,10 @@ public class MedicalRecordsController {
             MedicalRecord recordToDelete = recordsToDelete.get(medicalRecordChoice - 1);
 
             System.out.print("Are you sure you want to delete this medical record? (yes/no): ");
-            scanner.nextLine(); // Consume newline
-            String confirmation = scanner.nextLine().trim().toLowerCase();
+            String confirmation = terminal.nextLine().trim().toLowerCase();
 
             if (confirmation.equals("yes")) {
-                medicalRecords.remove(recordToDelete);  // Remove the selected medical record from the list
-                FileUtils.deleteFromFile(MEDICALRECORDS_TXT, recordToDelete.getMedicalRecordId());
+                Repositories.medicalRecords().delete(recordToDelete.getMedicalRecordId());
                 System.out.println("Medical record for Patient ID: " + patientId + " has been deleted successfully.");
             } else {
                 System.out.println("Deletion canceled for Patient ID: " + patientId);
@@ -345,24 +251,6 @@ public class MedicalRecordsController {
      * @param patientId The ID of the patient.
      */
     public void displayMedicalRecords(String patientId) {
-
-        this.patients = new ArrayList<>();
-        this.medicalRecords = new ArrayList<>();
-
-        // Load patient records
-        try {
-            loadPatientsFromFile(PATIENT_TXT);
-        } catch (IOException e) {
-            System.out.println("Error loading patients: " + e.getMessage());
-        }
-
-        // Load medical records
-        try {
-            loadMedicalRecordsFromFile(MEDICALRECORDS_TXT);
-        } catch (IOException e) {
-            System.out.println("Error loading medical records: " + e.getMessage());
-        }
-
         Patient patient = findPatientById(patientId);
 
         // Print patient's information
@@ -382,7 +270,7 @@ public class MedicalRecordsController {
         System.out.println("║             Medical Records            ║");
         System.out.println("╚════════════════════════════════════════╝");
 
-        for (MedicalRecord record : medicalRecords) {
+        for (MedicalRecord record : Repositories.medicalRecords().findAll()) {
             if (record.getPatientId().equals(patientId)) {
                 System.out.println("Diagnosis: " + record.getDiagnosis());
                 System.out.println("Treatment: " + record.getTreatment());
@@ -395,7 +283,7 @@ public class MedicalRecordsController {
             System.out.println("No medical records found for patient ID: " + patientId);
         }
 
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
     }
 
     /**
@@ -407,7 +295,7 @@ public class MedicalRecordsController {
         System.out.println("\n╔════════════════════════════════════════╗");
         System.out.println("║              Patient List              ║");
         System.out.println("╚════════════════════════════════════════╝");
-        for (Patient patient : patients) {
+        for (Patient patient : Repositories.patients().findAll()) {
             System.out.printf("%d. %s %s\n", i, patient.getFirstName(), patient.getLastName());
             i++;
         }
@@ -418,10 +306,10 @@ public class MedicalRecordsController {
      */
     private void displayMedicalRecords() {
         printPatients();
+        List<Patient> patients = Repositories.patients().findAll();
         while (true) {
             System.out.println("Select a patient (0 to return): ");
-            int patientChoice = scanner.nextInt();
-            scanner.nextLine();
+            int patientChoice = terminal.nextInt();
             if (patientChoice == 0) {
                 return;
             }
@@ -441,11 +329,10 @@ public class MedicalRecordsController {
      */
     private void createMedicalRecord(String doctorId) {
         printPatients();
+        List<Patient> patients = Repositories.patients().findAll();
         while (true) {
             System.out.println("Select a patient (0 to return): ");
-            int patientChoice = scanner.nextInt();
-            //Consumes next line from nextInt
-            scanner.nextLine();
+            int patientChoice = terminal.nextInt();
             if (patientChoice == 0) {
                 return;
             }
@@ -465,11 +352,10 @@ public class MedicalRecordsController {
      */
     private void updateMedicalRecord(String doctorId) {
         printPatients();
+        List<Patient> patients = Repositories.patients().findAll();
         while (true) {
             System.out.println("Select a patient (0 to return): ");
-            int patientChoice = scanner.nextInt();
-            //Consume next line from next.Int
-            scanner.nextLine();
+            int patientChoice = terminal.nextInt();
             if (patientChoice == 0) {
                 return;
             }
@@ -489,9 +375,10 @@ public class MedicalRecordsController {
      */
     private void deleteMedicalRecord(String doctorId) {
         printPatients();
+        List<Patient> patients = Repositories.patients().findAll();
         while (true) {
             System.out.println("Select a patient (0 to return): ");
-            int patientChoice = scanner.nextInt();
+            int patientChoice = terminal.nextInt();
             if (patientChoice == 0) {
                 return;
             }
@@ -518,7 +405,7 @@ public class MedicalRecordsController {
                 System.out.println("4: Delete medical record");
                 System.out.println("0: Return to menu");
                 System.out.print("Your choice: ");
-                String option = scanner.nextLine().trim();
+                String option = terminal.nextLine().trim();
 
                 switch (option) {
                     case "1":
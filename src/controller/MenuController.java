@@ -10,6 +10,7 @@ import entity.Patient;
 import entity.Pharmacist;
 import entity.User;
 import interfaces.MenuInterface;
+import utility.Terminal;
 
 /**
  * The MenuController class determines and displays the appropriate menu 
@@ -23,13 +24,20 @@ public class MenuController implements MenuInterface {
      */
     private User user;
 
+    /**
+     * The terminal of the user's session.
+     */
+    private final Terminal terminal;
+
     /**
      * Constructs a MenuController with the specified user.
      *
-     * @param user The user for whom the menu will be displayed.
+     * @param user     The user for whom the menu will be displayed.
+     * @param terminal The terminal of the user's session.
      */
-    public MenuController(User user) {
+    public MenuController(User user, Terminal terminal) {
         this.user = user;
+        this.terminal = terminal;
     }
 
     /**
@@ -47,13 +55,13 @@ public class MenuController implements MenuInterface {
     // Display the appropriate menu based on user role
     public void displayMenu() {
         if (user instanceof Patient) {
-            new PatientMenu((Patient) user).displayMenu();
+            new PatientMenu((Patient) user, terminal).displayMenu();
         } else if (user instanceof Doctor) {
-            new DoctorMenu((Doctor) user).displayMenu();
+            new DoctorMenu((Doctor) user, terminal).displayMenu();
         } else if (user instanceof Pharmacist) {
-            new PharmacistMenu((Pharmacist) user).displayMenu();
+            new PharmacistMenu((Pharmacist) user, terminal).displayMenu();
         } else if (user instanceof Administrator) {
-            new AdministratorMenu((Administrator) user).displayMenu();
+            new AdministratorMenu((Administrator) user, terminal).displayMenu();
         } else {
             System.out.println("Invalid user role. No menu available.");
         }
@@ -0,0 +1,153 @@
+package controller;
+
+import entity.Patient;
+import entity.Staff;
+import entity.User;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import utility.Repository;
+
+/**
+ * In-memory index of the names of the registered patients or staff, so registration
+ * checks for a duplicate without reading the profile file. A name is its first and last
+ * name without whitespace and in lower case, and must match exactly.
+ *
+ * <p>The index is built from its repository once, then kept up to date by the
+ * registrations and imports that go through {@link #addIfAbsent(User)} and
+ * {@link #addAllIfAbsent(List, Predicate)}. Any other change to the file, such as an
+ * edited profile or a removed staff member, makes the next call rebuild it.
+ *
+ * @param <T> the user type
+ */
+public class NameIndex<T extends User> {
+
+    private static final NameIndex<Patient> PATIENTS = new NameIndex<>(Repositories.patients());
+    private static final NameIndex<Staff> STAFF = new NameIndex<>(Repositories.staff());
+
+    private final Repository<T> repository;
+    private Set<String> names;        // Null until built
+    private long generation = -1;     // Generation of the repository the names reflect
+
+    private NameIndex(Repository<T> repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Returns the index of the patients' names.
+     *
+     * @return the shared index of patients
+     */
+    public static NameIndex<Patient> patients() {
+        return PATIENTS;
+    }
+
+    /**
+     * Returns the index of the staff's names.
+     *
+     * @return the shared index of staff
+     */
+    public static NameIndex<Staff> staff() {
+        return STAFF;
+    }
+
+    /**
+     * Returns whether a user with this name is registered.
+     *
+     * @param firstName the first name
+     * @param lastName  the last name
+     * @return true if the name is taken
+     */
+    public synchronized boolean contains(String firstName, String lastName) {
+        return current().contains(normalize(firstName, lastName));
+    }
+
+    /**
+     * Registers a user, unless a user with the same name was registered in the meantime.
+     *
+     * @param user the user to add to the file
+     * @return true if the user was added, false if the name is taken
+     */
+    public synchronized boolean addIfAbsent(T user) {
+        Set<String> current = current();
+        String name = normalize(user.getFirstName(), user.getLastName());
+        if (current.contains(name)) {
+            return false;
+        }
+        long before = generation;
+        repository.add(user);
+        current.add(name);
+        // The add moves the generation on by one; more means another write came in between
+        generation = repository.generation() == before + 1 ? before + 1 : -1;
+        return true;
+    }
+
+    /**
+     * Registers several users with one write, leaving out those whose name is taken,
+     * by an earlier user in the list or by a registered one.
+     *
+     * @param users the users to add to the file
+     * @param write writes the users left, in one batch, returning whether it succeeded
+     * @return the users left out because their name is taken
+     */
+    public synchronized List<T> addAllIfAbsent(List<T> users, Predicate<List<T>> write) {
+        Set<String> current = current();
+        Set<String> added = new HashSet<>();
+        List<T> accepted = new ArrayList<>();
+        List<T> taken = new ArrayList<>();
+        for (T user : users) {
+            String name = normalize(user.getFirstName(), user.getLastName());
+            if (current.contains(name) || !added.add(name)) {
+                taken.add(user);
+            } else {
+                accepted.add(user);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return taken;
+        }
+        long before = generation;
+        if (write.test(accepted)) {
+            current.addAll(added);
+            // One batch moves the generation on by one; more means another write came in between
+            generation = repository.generation() == before + 1 ? before + 1 : -1;
+        } else {
+            generation = -1; // Part of the batch may have been written
+        }
+        return taken;
+    }
+
+    // Returns the names, rebuilding them first if the file changed other than by addIfAbsent
+    private Set<String> current() {
+        long latest = repository.generation();
+        if (names == null || generation != latest) {
+            List<T> users = repository.findAll();
+            names = new HashSet<>(users.size() * 2);
+            for (T user : users) {
+                names.add(normalize(user.getFirstName(), user.getLastName()));
+            }
+            // A write after the generation was read moves it on, so the next call rebuilds again
+            generation = latest;
+        }
+        return names;
+    }
+
+    private static String normalize(String firstName, String lastName) {
+        StringBuilder name = new StringBuilder(firstName.length() + lastName.length() + 1);
+        appendNormalized(name, firstName);
+        name.append('|');
+        appendNormalized(name, lastName);
+        return name.toString().toLowerCase();
+    }
+
+    private static void appendNormalized(StringBuilder name, String part) {
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                name.append(c);
+            }
+        }
+    }
+}
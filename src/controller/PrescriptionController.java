@@ -1,11 +1,20 @@
 package controller;
 
+import entity.Medicine;
 import entity.Prescription;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.Set;
+import utility.FieldTokenizer;
+import utility.FileUtils;
 import utility.PrintUtils;
+import utility.TableRenderer;
+import utility.Terminal;
 
 /**
  * The PrescriptionController class handles operations related to prescriptions, including
@@ -16,13 +25,27 @@ import utility.PrintUtils;
 public class PrescriptionController {
 
     private static final String APPOINTMENT_OUTCOME_FILE = "data/appointmentOutcome.txt";
-    private static final String PRESCRIPTION_FILE = "data/prescription.txt";
-    private static final String MEDICINE_FILE = "data/medicine.txt";
+
+    private final Terminal terminal;
+
+    /**
+     * Constructs a PrescriptionController that reads the user's input from the given terminal.
+     *
+     * @param terminal the terminal of the current session
+     */
+    public PrescriptionController(Terminal terminal) {
+        this.terminal = terminal;
+    }
 
     /**
      * Updates the status of a specific prescription and adjusts the medicine stock level.
      * Displays pending prescriptions for a given appointment ID, allows the user to select one,
      * and updates its status to "DISPENSED" if stock is sufficient.
+     * <p>
+     * The stock is reserved in the {@link StockLedger} before the prescription is marked,
+     * then taken out in the same transaction that moves the prescription from PENDING to
+     * DISPENSED, so neither the units nor the prescription can be dispensed twice by
+     * concurrent sessions, and a failed write leaves both as they were.
      */
     public void updatePrescriptionStatus() {
         System.out.println("\n╔════════════════════════════════════════╗");
@@ -30,15 +53,14 @@ public class PrescriptionController {
         System.out.println("╚════════════════════════════════════════╝");
         System.out.println("═══════════════════════════════════════════════════════");
 
-        Scanner scanner = new Scanner(System.in);
         System.out.print("Enter Appointment ID: ");
-        String appointmentId = scanner.nextLine().trim();
+        String appointmentId = terminal.nextLine().trim();
 
         List<Prescription> prescriptions = getPendingPrescriptions(appointmentId);
         if (prescriptions.isEmpty()) {
             System.out.println("\nNo pending prescriptions found for this appointment.");
             System.out.println("═══════════════════════════════════════════════════════");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
@@ -50,34 +72,258 @@ public class PrescriptionController {
         }
 
         System.out.print("Select the prescription to dispense (Enter number): ");
-        int choice = scanner.nextInt();
-        scanner.nextLine();
+        int choice = terminal.nextInt();
 
         if (choice < 1 || choice > prescriptions.size()) {
             System.out.println("\nInvalid choice. Please try again.");
             System.out.println("═══════════════════════════════════════════════════════");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
         Prescription selectedPrescription = prescriptions.get(choice - 1);
-        int currentStock = getStockLevel(selectedPrescription.getMedicineId());
+        StockLedger ledger = StockLedger.shared();
+        StockLedger.Reservation reservation = ledger.reserve(selectedPrescription.getMedicineId(),
+                selectedPrescription.getQuantity());
 
-        if (currentStock < selectedPrescription.getQuantity()) {
+        if (reservation == null) {
             System.out.println("\nError: Not enough stock available for this medication.");
-            System.out.println("Current stock: " + currentStock + " | Quantity required: " + selectedPrescription.getQuantity());
+            System.out.println("Current stock: " + ledger.onHand(selectedPrescription.getMedicineId())
+                    + " | Quantity required: " + selectedPrescription.getQuantity());
             System.out.println("═══════════════════════════════════════════════════════");
-            PrintUtils.pause();
+            PrintUtils.pause(terminal);
             return;
         }
 
-        updateFileContent(PRESCRIPTION_FILE, selectedPrescription.getPrescriptionId(), "DISPENSED", 3);
-        updateFileContent(MEDICINE_FILE, selectedPrescription.getMedicineId(),
-                String.valueOf(Math.max(0, currentStock - selectedPrescription.getQuantity())), 3);
+        Prescription dispensed = new Prescription(selectedPrescription.getPrescriptionId(),
+                selectedPrescription.getMedicineId(), selectedPrescription.getQuantity(), Prescription.Status.DISPENSED);
+        if (!ledger.commit(reservation, selectedPrescription.getPrescriptionId(),
+                transaction -> transaction.update(Repositories.prescriptions(), dispensed,
+                        PrescriptionController::isPending))) {
+            ledger.release(reservation);
+            if (isPending(getPrescription(selectedPrescription.getPrescriptionId()))) {
+                System.out.println("\nError: The prescription could not be dispensed. Please try again.");
+            } else {
+                System.out.println("\nThis prescription has already been dispensed.");
+            }
+            System.out.println("═══════════════════════════════════════════════════════");
+            PrintUtils.pause(terminal);
+            return;
+        }
 
         System.out.println("\nPrescription successfully dispensed.");
         System.out.println("═══════════════════════════════════════════════════════");
-        PrintUtils.pause();
+        PrintUtils.pause(terminal);
+    }
+
+    /**
+     * The outcome of dispensing one prescription in a batch.
+     */
+    public static class DispenseResult {
+        private final String appointmentId;
+        private final Prescription prescription;
+        private final boolean dispensed;
+        private final String message;
+
+        private DispenseResult(String appointmentId, Prescription prescription, boolean dispensed, String message) {
+            this.appointmentId = appointmentId;
+            this.prescription = prescription;
+            this.dispensed = dispensed;
+            this.message = message;
+        }
+
+        public String getAppointmentId() {
+            return appointmentId;
+        }
+
+        public Prescription getPrescription() {
+            return prescription;
+        }
+
+        public boolean isDispensed() {
+            return dispensed;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Dispenses every pending prescription of the given appointments, or of all
+     * appointments, in one batch.
+     * <p>
+     * Stock is first reserved in the {@link StockLedger} for each prescription, in
+     * file order, so a prescription is skipped if the ones before it have used up its
+     * medicine. The prescriptions that got their stock are then marked DISPENSED and
+     * their stock is taken out in one {@link utility.Transaction}, with one write each to
+     * the prescription file, the ledger and the medicine file. The transaction requires
+     * every prescription to be still PENDING; if another session dispensed some of them
+     * meanwhile, their reservations are released and the rest is committed again.
+     *
+     * @param appointmentIds the appointments to dispense for, or null for every appointment
+     * @return the result of each pending prescription found, in file order
+     */
+    public static List<DispenseResult> dispenseBatch(Collection<String> appointmentIds) {
+        Set<String> selected = appointmentIds == null ? null : new HashSet<>(appointmentIds);
+        Map<String, Prescription> prescriptionsById = Repositories.prescriptions().indexById();
+        List<DispenseResult> results = new ArrayList<>();
+        Map<String, String> appointmentOf = new LinkedHashMap<>(); // Prescription -> appointment
+
+        try (BufferedReader outcomeReader = FileUtils.newReader(APPOINTMENT_OUTCOME_FILE)) {
+            String line;
+            FieldTokenizer fields = new FieldTokenizer();
+            while ((line = outcomeReader.readLine()) != null) {
+                fields.reset(line);
+                String appointmentId = fields.field(0).trim();
+                if (selected != null && !selected.contains(appointmentId)) {
+                    continue;
+                }
+                if (fields.fieldCount() <= 5) {
+                    continue; // An outcome without prescriptions
+                }
+                for (String prescriptionId : fields.field(5).trim().split(",")) {
+                    Prescription prescription = prescriptionsById.get(prescriptionId.trim());
+                    if (prescription != null && prescription.getStatus() == Prescription.Status.PENDING) {
+                        appointmentOf.putIfAbsent(prescription.getPrescriptionId(), appointmentId);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading appointment outcome file: " + e.getMessage());
+            return results;
+        }
+
+        // Set the stock aside for each prescription before anything is written
+        StockLedger ledger = StockLedger.shared();
+        Map<String, StockLedger.Reservation> reservations = new LinkedHashMap<>();
+        List<Prescription> dispensed = new ArrayList<>();
+        Map<String, DispenseResult> resultById = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : appointmentOf.entrySet()) {
+            Prescription prescription = prescriptionsById.get(entry.getKey());
+            StockLedger.Reservation reservation = ledger.reserve(prescription.getMedicineId(),
+                    prescription.getQuantity());
+            if (reservation == null) {
+                resultById.put(entry.getKey(), new DispenseResult(entry.getValue(), prescription, false,
+                        "Not enough stock (" + ledger.onHand(prescription.getMedicineId()) + " on hand)"));
+                continue;
+            }
+            reservations.put(entry.getKey(), reservation);
+            dispensed.add(new Prescription(prescription.getPrescriptionId(), prescription.getMedicineId(),
+                    prescription.getQuantity(), Prescription.Status.DISPENSED));
+            resultById.put(entry.getKey(), null);
+        }
+
+        while (!reservations.isEmpty()) {
+            Map<StockLedger.Reservation, String> commits = new LinkedHashMap<>();
+            for (Map.Entry<String, StockLedger.Reservation> entry : reservations.entrySet()) {
+                commits.put(entry.getValue(), entry.getKey());
+            }
+            List<Prescription> batch = new ArrayList<>(dispensed);
+            if (ledger.commitAll(commits, transaction -> {
+                for (Prescription prescription : batch) {
+                    transaction.update(Repositories.prescriptions(), prescription, PrescriptionController::isPending);
+                }
+            })) {
+                for (String prescriptionId : reservations.keySet()) {
+                    resultById.put(prescriptionId, new DispenseResult(appointmentOf.get(prescriptionId),
+                            prescriptionsById.get(prescriptionId), true, "Dispensed"));
+                }
+                break;
+            }
+
+            // Leave out the prescriptions dispensed meanwhile and try the rest again
+            boolean droppedAny = false;
+            for (Prescription prescription : batch) {
+                String prescriptionId = prescription.getPrescriptionId();
+                if (!isPending(Repositories.prescriptions().findById(prescriptionId))) {
+                    ledger.release(reservations.remove(prescriptionId));
+                    dispensed.remove(prescription);
+                    resultById.put(prescriptionId, new DispenseResult(appointmentOf.get(prescriptionId),
+                            prescriptionsById.get(prescriptionId), false, "Already dispensed"));
+                    droppedAny = true;
+                }
+            }
+            if (!droppedAny) {
+                // Nothing changed meanwhile, so the writes themselves failed
+                for (Map.Entry<String, StockLedger.Reservation> entry : reservations.entrySet()) {
+                    ledger.release(entry.getValue());
+                    resultById.put(entry.getKey(), new DispenseResult(appointmentOf.get(entry.getKey()),
+                            prescriptionsById.get(entry.getKey()), false, "Could not be saved"));
+                }
+                break;
+            }
+        }
+
+        results.addAll(resultById.values());
+        return results;
+    }
+
+    /**
+     * Dispenses the pending prescriptions of several appointments at once, such as at
+     * the end of a clinic. Prompts for a comma-separated list of appointment IDs, or
+     * ALL for every pending prescription, and shows the result of each prescription.
+     */
+    public void dispensePrescriptionsInBatch() {
+        System.out.println("\n╔════════════════════════════════════════╗");
+        System.out.println("║      Dispense Prescriptions in Batch   ║");
+        System.out.println("╚════════════════════════════════════════╝");
+        System.out.println("═══════════════════════════════════════════════════════");
+
+        System.out.print("Enter Appointment IDs separated by commas, or ALL for every pending prescription: ");
+        String input = terminal.nextLine().trim();
+        if (input.isEmpty()) {
+            System.out.println("\nNo appointments entered.");
+            System.out.println("═══════════════════════════════════════════════════════");
+            PrintUtils.pause(terminal);
+            return;
+        }
+
+        List<String> appointmentIds = null;
+        if (!input.equalsIgnoreCase("ALL")) {
+            appointmentIds = new ArrayList<>();
+            for (String appointmentId : input.split(",")) {
+                if (!appointmentId.trim().isEmpty()) {
+                    appointmentIds.add(appointmentId.trim().toUpperCase());
+                }
+            }
+        }
+
+        List<DispenseResult> results = dispenseBatch(appointmentIds);
+        if (results.isEmpty()) {
+            System.out.println("\nNo pending prescriptions found for these appointments.");
+            System.out.println("═══════════════════════════════════════════════════════");
+            PrintUtils.pause(terminal);
+            return;
+        }
+
+        Map<String, Medicine> medicinesById = Repositories.medicines().indexById();
+        TableRenderer table = new TableRenderer()
+                .column("Appointment ID", 15)
+                .column("Prescription ID", 16)
+                .column("Medicine", 20)
+                .column("Quantity", 8)
+                .column("Result", 20);
+        int dispensedCount = 0;
+        for (DispenseResult result : results) {
+            Prescription prescription = result.getPrescription();
+            Medicine medicine = medicinesById.get(prescription.getMedicineId());
+            table.addRow(result.getAppointmentId(), prescription.getPrescriptionId(),
+                    medicine != null ? medicine.getName() : "Unknown Medicine", prescription.getQuantity(),
+                    result.getMessage());
+            if (result.isDispensed()) {
+                dispensedCount++;
+            }
+        }
+        System.out.println();
+        table.print(terminal);
+        System.out.println("\nDispensed " + dispensedCount + " of " + results.size() + " pending prescriptions.");
+        System.out.println("═══════════════════════════════════════════════════════");
+        PrintUtils.pause(terminal);
+    }
+
+    private static boolean isPending(Prescription prescription) {
+        return prescription != null && prescription.getStatus() == Prescription.Status.PENDING;
     }
 
     // Retrieve pending prescriptions associated with a specific appointment ID
@@ -89,12 +335,16 @@ public class PrescriptionController {
      */
     private List<Prescription> getPendingPrescriptions(String appointmentId) {
         List<Prescription> prescriptions = new ArrayList<>();
-        try (BufferedReader outcomeReader = new BufferedReader(new FileReader(APPOINTMENT_OUTCOME_FILE))) {
+        try (BufferedReader outcomeReader = FileUtils.newReader(APPOINTMENT_OUTCOME_FILE)) {
             String line;
+            FieldTokenizer fields = new FieldTokenizer();
             while ((line = outcomeReader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].trim().equals(appointmentId)) {
-                    for (String prescriptionId : fields[5].trim().split(",")) {
+                fields.reset(line);
+                if (fields.field(0).trim().equals(appointmentId)) {
+                    if (fields.fieldCount() <= 5) {
+                        break; // An outcome without prescriptions
+                    }
+                    for (String prescriptionId : fields.field(5).trim().split(",")) {
                         Prescription prescription = getPrescription(prescriptionId.trim());
                         if (prescription != null && prescription.getStatus() == Prescription.Status.PENDING) {
                             prescriptions.add(prescription);
@@ -118,75 +368,7 @@ public class PrescriptionController {
      */
     // Retrieve a specific prescription by its ID
     private Prescription getPrescription(String prescriptionId) {
-        try (BufferedReader prescriptionReader = new BufferedReader(new FileReader(PRESCRIPTION_FILE))) {
-            String line;
-            while ((line = prescriptionReader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].trim().equals(prescriptionId)) {
-                    return new Prescription(prescriptionId, fields[1].trim(),
-                            Integer.parseInt(fields[2].trim()), Prescription.Status.valueOf(fields[3].trim().toUpperCase()));
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading prescription file: " + e.getMessage());
-        }
-        return null;
-    }
-
-    // Retrieve the stock level of a specific medicine
-    /**
-     * Retrieves the stock level of a specific medicine.
-     *
-     * @param medicineId The ID of the medicine.
-     * @return The stock level of the medicine, or 0 if not found.
-     */
-    private int getStockLevel(String medicineId) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].trim().equals(medicineId)) {
-                    return Integer.parseInt(fields[3].trim());
-                }
-            }
-        } catch (IOException | NumberFormatException e) {
-            System.out.println("Error reading stock level: " + e.getMessage());
-        }
-        return 0;
-    }
-
-    // Update content in a file by ID and field index
-    /**
-     * Updates a specific field in a file for a given record ID.
-     *
-     * @param filePath   The path to the file to update.
-     * @param id         The ID of the record to update.
-     * @param newValue   The new value to set in the specified field.
-     * @param fieldIndex The index of the field to update (0-based).
-     */
-    private void updateFileContent(String filePath, String id, String newValue, int fieldIndex) {
-        List<String> lines = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].trim().equals(id)) {
-                    fields[fieldIndex] = newValue;
-                    line = String.join("|", fields);
-                }
-                lines.add(line);
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading file: " + e.getMessage());
-        }
-
-        try (FileWriter writer = new FileWriter(filePath)) {
-            for (String updatedLine : lines) {
-                writer.write(updatedLine + System.lineSeparator());
-            }
-        } catch (IOException e) {
-            System.out.println("Error writing to file: " + e.getMessage());
-        }
+        return Repositories.prescriptions().findById(prescriptionId);
     }
 
     // Retrieve the name of a specific medicine by its ID
@@ -197,17 +379,7 @@ public class PrescriptionController {
      * @return The name of the medicine, or "Unknown Medicine" if not found.
      */
     private String getMedicineName(String medicineId) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(MEDICINE_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split("\\|");
-                if (fields[0].trim().equals(medicineId)) {
-                    return fields[1].trim();
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading medicine file: " + e.getMessage());
-        }
-        return "Unknown Medicine";
+        Medicine medicine = Repositories.medicines().findById(medicineId);
+        return medicine != null ? medicine.getName() : "Unknown Medicine";
     }
 }
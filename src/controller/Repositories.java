@@ -0,0 +1,196 @@
+package controller;
+
+import entity.Administrator;
+import entity.Appointment;
+import entity.Doctor;
+import entity.Feedback;
+import entity.MedicalRecord;
+import entity.Medicine;
+import entity.Patient;
+import entity.Pharmacist;
+import entity.Prescription;
+import entity.Staff;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import utility.FieldTokenizer;
+import utility.Repository;
+import utility.Repository.Codec;
+
+/**
+ * Shared repositories for the data files, one per file. Every controller goes through
+ * these instances, so each file is parsed once and then served from memory until it
+ * changes.
+ *
+ * <p>Files whose entity does not map one-to-one onto the line layout (outcomes, bills,
+ * accounts and the stock ledger) are cached as raw lines keyed by their first field.
+ */
+public class Repositories {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private static final Repository<Medicine> MEDICINES = new Repository<>("data/medicine.txt",
+            Codec.of(Repositories::parseMedicine, Repositories::formatMedicine, Medicine::getMedicineId));
+    private static final Repository<Prescription> PRESCRIPTIONS = new Repository<>("data/prescription.txt",
+            Codec.of(Repositories::parsePrescription, Repositories::formatPrescription,
+                    Prescription::getPrescriptionId));
+    private static final Repository<MedicalRecord> MEDICAL_RECORDS = new Repository<>("data/medicalRecords.txt",
+            Codec.of(Repositories::parseMedicalRecord, Repositories::formatMedicalRecord,
+                    MedicalRecord::getMedicalRecordId));
+    private static final Repository<Feedback> FEEDBACK = new Repository<>("data/feedback.txt",
+            Codec.of(Repositories::parseFeedback, Repositories::formatFeedback, Feedback::getFeedbackId));
+    private static final Repository<Patient> PATIENTS = new Repository<>("data/patient.txt",
+            Codec.of(Repositories::parsePatient, Patient::registrationString, Patient::getUserId));
+    private static final Repository<Staff> STAFF = new Repository<>("data/staff.txt",
+            Codec.of(Repositories::parseStaff, Staff::registrationString, Staff::getUserId));
+
+    private static final Repository<Appointment> APPOINTMENTS = new Repository<>("data/appointment.txt",
+            Codec.of(Repositories::parseAppointment, Repositories::formatAppointment,
+                    Appointment::getAppointmentId));
+    private static final Repository<String> APPOINTMENT_OUTCOMES = new Repository<>("data/appointmentOutcome.txt",
+            Codec.lines());
+    private static final Repository<String> BILLS = new Repository<>("data/bill.txt", Codec.lines());
+    private static final Repository<String> ACCOUNTS = new Repository<>("data/account.txt", Codec.lines());
+    private static final Repository<String> STOCK_LEDGER = new Repository<>("data/stockLedger.txt", Codec.lines());
+
+    public static Repository<Medicine> medicines() {
+        return MEDICINES;
+    }
+
+    public static Repository<Prescription> prescriptions() {
+        return PRESCRIPTIONS;
+    }
+
+    public static Repository<MedicalRecord> medicalRecords() {
+        return MEDICAL_RECORDS;
+    }
+
+    public static Repository<Feedback> feedback() {
+        return FEEDBACK;
+    }
+
+    public static Repository<Patient> patients() {
+        return PATIENTS;
+    }
+
+    public static Repository<Staff> staff() {
+        return STAFF;
+    }
+
+    public static Repository<Appointment> appointments() {
+        return APPOINTMENTS;
+    }
+
+    public static Repository<String> appointmentOutcomes() {
+        return APPOINTMENT_OUTCOMES;
+    }
+
+    public static Repository<String> bills() {
+        return BILLS;
+    }
+
+    public static Repository<String> accounts() {
+        return ACCOUNTS;
+    }
+
+    public static Repository<String> stockLedger() {
+        return STOCK_LEDGER;
+    }
+
+    // appointmentId|doctorId|patientId|date|time|status|requestMessage|rescheduleDate|rescheduleTime|rescheduleMessage|version
+    private static Appointment parseAppointment(String line) {
+        FieldTokenizer fields = new FieldTokenizer().reset(line);
+        String[] optional = new String[4];
+        for (int i = 0; i < optional.length; i++) {
+            optional[i] = fields.fieldCount() > 6 + i ? fields.field(6 + i) : "-";
+        }
+        Appointment appointment = new Appointment(fields.field(0), fields.field(1), fields.field(2),
+                LocalDate.parse(fields.field(3), DATE_FORMATTER), LocalTime.parse(fields.field(4), TIME_FORMATTER),
+                Appointment.Status.valueOf(fields.field(5).trim().toUpperCase()),
+                optional[0], optional[1], optional[2], optional[3]);
+        if (fields.fieldCount() > 10) {
+            appointment.setVersion(Long.parseLong(fields.field(10).trim())); // Lines written before versioning are 0
+        }
+        return appointment;
+    }
+
+    private static String formatAppointment(Appointment appointment) {
+        return String.join("|", appointment.getAppointmentId(), appointment.getDoctorId(),
+                appointment.getPatientId(), appointment.getDate().format(DATE_FORMATTER),
+                appointment.getTime().format(TIME_FORMATTER), appointment.getStatus().name(),
+                appointment.getRequestMessage(), appointment.getRescheduleDate(), appointment.getRescheduleTime(),
+                appointment.getRescheduleMessage(), String.valueOf(appointment.getVersion()));
+    }
+
+    // medicineId|name|description|stockLevel|lowStockLevel|type
+    private static Medicine parseMedicine(String line) {
+        FieldTokenizer fields = new FieldTokenizer().reset(line);
+        return new Medicine(fields.field(0), fields.field(1), fields.field(2), fields.fieldAsInt(3),
+                fields.fieldAsInt(4), fields.field(5));
+    }
+
+    private static String formatMedicine(Medicine medicine) {
+        return String.join("|", medicine.getMedicineId(), medicine.getName(), medicine.getDescription(),
+                String.valueOf(medicine.getStockLevel()), String.valueOf(medicine.getLowStockLevel()),
+                medicine.getMedicineType());
+    }
+
+    // prescriptionId|medicineId|quantity|status
+    private static Prescription parsePrescription(String line) {
+        FieldTokenizer fields = new FieldTokenizer().reset(line);
+        return new Prescription(fields.field(0), fields.field(1), fields.fieldAsInt(2),
+                Prescription.Status.valueOf(fields.field(3).toUpperCase()));
+    }
+
+    private static String formatPrescription(Prescription prescription) {
+        return String.join("|", prescription.getPrescriptionId(), prescription.getMedicineId(),
+                String.valueOf(prescription.getQuantity()), prescription.getStatus().name());
+    }
+
+    // recordId|doctorId|patientId|diagnosis|treatment
+    private static MedicalRecord parseMedicalRecord(String line) {
+        FieldTokenizer fields = new FieldTokenizer().reset(line);
+        return new MedicalRecord(fields.field(0), fields.field(1), fields.field(2), fields.field(3),
+                fields.field(4));
+    }
+
+    private static String formatMedicalRecord(MedicalRecord record) {
+        return String.join("|", record.getMedicalRecordId(), record.getDoctorId(), record.getPatientId(),
+                record.getDiagnosis(), record.getTreatment());
+    }
+
+    // feedbackId|patientId|doctorId|rating|comments
+    private static Feedback parseFeedback(String line) {
+        FieldTokenizer fields = new FieldTokenizer().reset(line);
+        return new Feedback(fields.field(0), fields.field(1), fields.field(2), fields.fieldAsInt(3),
+                fields.field(4));
+    }
+
+    private static String formatFeedback(Feedback feedback) {
+        return String.join("|", feedback.getFeedbackId(), feedback.getPatientId(), feedback.getDoctorId(),
+                String.valueOf(feedback.getRating()), feedback.getComments());
+    }
+
+    // patientId|firstName|lastName|gender|contact|email|role|dateOfBirth|bloodType
+    private static Patient parsePatient(String line) {
+        FieldTokenizer fields = new FieldTokenizer().reset(line);
+        return new Patient(fields.field(0), fields.field(1), fields.field(2), fields.field(3), fields.field(4),
+                fields.field(5), fields.field(6), fields.field(7), fields.field(8));
+    }
+
+    // staffId|firstName|lastName|gender|dateOfBirth|contact|email|role
+    private static Staff parseStaff(String line) {
+        String[] f = new FieldTokenizer().reset(line).fields();
+        switch (f[7]) {
+            case "Doctor":
+                return new Doctor(f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7]);
+            case "Pharmacist":
+                return new Pharmacist(f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7]);
+            case "Administrator":
+                return new Administrator(f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7]);
+            default:
+                return null;
+        }
+    }
+}
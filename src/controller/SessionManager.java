@@ -0,0 +1,127 @@
+package controller;
+
+import entity.User;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessions of the users logged in to this process. A successful login opens a session
+ * identified by a random token, kept on the user's {@link utility.Terminal}, which
+ * resolves to the logged-in user from memory until the user logs out or the session
+ * has been idle for {@code -Dhms.session.idleMinutes} minutes (default 30). An idle
+ * session is ended at the next menu choice.
+ *
+ * <p>At most {@code -Dhms.session.max} sessions (default 10000) are kept: past that,
+ * idle sessions are swept, then the least recently used ones closed.
+ */
+public class SessionManager {
+
+    private static final long IDLE_NANOS = Long.getLong("hms.session.idleMinutes", 30) * 60_000_000_000L;
+    private static final int MAX_SESSIONS = Math.max(1, Integer.getInteger("hms.session.max", 10_000));
+    private static final int TOKEN_BYTES = 32;
+    private static final SessionManager SHARED = new SessionManager();
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Returns the sessions of this process.
+     *
+     * @return the shared session manager
+     */
+    public static SessionManager shared() {
+        return SHARED;
+    }
+
+    private static class Session {
+        private final User user;
+        private volatile long lastUsed;
+
+        private Session(User user, long lastUsed) {
+            this.user = user;
+            this.lastUsed = lastUsed;
+        }
+
+        private boolean isIdle(long now) {
+            return now - lastUsed >= IDLE_NANOS;
+        }
+    }
+
+    /**
+     * Opens a session for a user who has just logged in.
+     *
+     * @param user the logged-in user
+     * @return the token of the session
+     */
+    public String open(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = System.nanoTime();
+        sessions.put(token, new Session(user, now));
+        if (sessions.size() > MAX_SESSIONS) {
+            evict(now);
+        }
+        return token;
+    }
+
+    /**
+     * Returns the user of a session, and marks the session as used. The role menus
+     * resolve their session before each choice, so an expired session is logged out.
+     *
+     * @param token the token of the session, or null
+     * @return the logged-in user, or null if the session is closed or has expired
+     */
+    public User resolve(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (session.isIdle(now)) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.lastUsed = now;
+        return session.user;
+    }
+
+    /**
+     * Closes a session, when its user logs out.
+     *
+     * @param token the token of the session
+     */
+    public void close(String token) {
+        sessions.remove(token);
+    }
+
+    /**
+     * Returns the number of open sessions, including idle ones not yet swept.
+     *
+     * @return the number of sessions
+     */
+    public int activeSessions() {
+        return sessions.size();
+    }
+
+    // Closes idle sessions, then the least recently used ones
+    private synchronized void evict(long now) {
+        sessions.values().removeIf(session -> session.isIdle(now));
+        while (sessions.size() > MAX_SESSIONS) {
+            String oldest = null;
+            long oldestTime = now;
+            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                if (oldest == null || entry.getValue().lastUsed - oldestTime < 0) {
+                    oldest = entry.getKey();
+                    oldestTime = entry.getValue().lastUsed;
+                }
+            }
+            sessions.remove(oldest);
+        }
+    }
+}
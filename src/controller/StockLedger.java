@@ -0,0 +1,364 @@
+package controller;
+
+import entity.Medicine;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import utility.IdSequence;
+import utility.Repository;
+import utility.Transaction;
+
+/**
+ * Stock movements of the medicines, shared by every session of this process. The
+ * stock level on a medicine's line in {@code data/medicine.txt} is the one count of
+ * its units: every movement reads it fresh, so it sees changes made by other
+ * processes sharing the data directory, and writes the new level in a
+ * {@link Transaction} that checks the line is still as it was read. If another
+ * session or process changed it meanwhile, the movement is computed again on top of
+ * that change, so no movement is lost and the stock never goes below zero.
+ *
+ * <p>Dispensing is done in two steps: {@link #reserve} sets units aside, or fails if
+ * not enough are available, then {@link #commit} takes them out of stock or
+ * {@link #release} puts them back. Reserved units are counted in this process only,
+ * so two sessions of the same process never reserve the same units; a reservation
+ * made in another process shows only once it is committed, and a commit that would
+ * then take the stock below zero fails. Each movement is appended to the stock ledger
+ * ({@code data/stockLedger.txt}) under an ID of its own with the balance after it, in
+ * the same transaction as the new level. {@link #commitAll} does the same for many
+ * reservations at once, in one transaction that also carries the caller's own writes,
+ * such as marking the prescriptions dispensed, so either all of them are made or none
+ * is.
+ *
+ * <p>All stock changes must go through the ledger; writing a stock level to the
+ * medicine repository directly would leave the movement out of the ledger.
+ */
+public class StockLedger {
+
+    private static final String LEDGER_FILE = "data/stockLedger.txt";
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final StockLedger SHARED = new StockLedger(Repositories.medicines(), Repositories.stockLedger());
+
+    private final Repository<Medicine> medicines;
+    private final Repository<String> ledger;
+    private final IdSequence entryIds = IdSequence.forFile(LEDGER_FILE, "SL");
+    private final Map<String, AtomicInteger> reserved = new ConcurrentHashMap<>(); // Medicine -> units set aside
+
+    private StockLedger(Repository<Medicine> medicines, Repository<String> ledger) {
+        this.medicines = medicines;
+        this.ledger = ledger;
+    }
+
+    /**
+     * Returns the ledger of the medicine inventory.
+     *
+     * @return the shared ledger
+     */
+    public static StockLedger shared() {
+        return SHARED;
+    }
+
+    /**
+     * Units of a medicine set aside by {@link StockLedger#reserve}, until they are
+     * committed or released. A reservation can be settled only once.
+     */
+    public static class Reservation {
+        private final String medicineId;
+        private final int quantity;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Reservation(String medicineId, int quantity) {
+            this.medicineId = medicineId;
+            this.quantity = quantity;
+        }
+
+        public String getMedicineId() {
+            return medicineId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+
+    // One change to the stock level of a medicine: by a number of units, or to a level
+    private static class Movement {
+        private final String medicineId;
+        private final int units;
+        private final boolean absolute;
+        private final String reference;
+
+        private Movement(String medicineId, int units, boolean absolute, String reference) {
+            this.medicineId = medicineId;
+            this.units = units;
+            this.absolute = absolute;
+            this.reference = reference;
+        }
+
+        private int levelAfter(int level) {
+            return absolute ? units : level + units;
+        }
+    }
+
+    /**
+     * Returns the units of a medicine in stock, including units reserved but not yet
+     * dispensed.
+     *
+     * @param medicineId the ID of the medicine
+     * @return the units on hand, or 0 if the medicine does not exist
+     */
+    public int onHand(String medicineId) {
+        Medicine medicine = medicines.findById(medicineId);
+        return medicine == null ? 0 : medicine.getStockLevel();
+    }
+
+    /**
+     * Sets units of a medicine aside for dispensing, if enough are available.
+     *
+     * @param medicineId the ID of the medicine
+     * @param quantity   the number of units, greater than zero
+     * @return the reservation, or null if the medicine does not exist or has fewer
+     *         units available
+     */
+    public Reservation reserve(String medicineId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        AtomicInteger units = reserved.computeIfAbsent(medicineId, id -> new AtomicInteger());
+        while (true) {
+            // Reserved units are read before the stock: a commit takes its units out of
+            // stock before it unreserves them, so they are counted twice at worst
+            int current = units.get();
+            Medicine medicine = medicines.findById(medicineId);
+            if (medicine == null || medicine.getStockLevel() - current < quantity) {
+                return null;
+            }
+            if (units.compareAndSet(current, current + quantity)) {
+                return new Reservation(medicineId, quantity);
+            }
+        }
+    }
+
+    /**
+     * Takes reserved units out of stock and records the movement, together with the
+     * caller's writes in one transaction.
+     *
+     * @param reservation the reservation to dispense
+     * @param reference   what the units were dispensed for, such as a prescription ID
+     * @param writes      adds the caller's writes to the transaction
+     * @return true if the units were taken out, false if the transaction failed, in
+     *         which case the reservation stays open and must be released
+     * @throws IllegalStateException if the reservation was already settled
+     */
+    public boolean commit(Reservation reservation, String reference, Consumer<Transaction> writes) {
+        return commitAll(Map.of(reservation, reference), writes);
+    }
+
+    /**
+     * Takes the units of several reservations out of stock at once. The movements, the
+     * new levels of the medicines and the caller's writes are committed as one
+     * {@link Transaction}, however many reservations there are. It fails if another
+     * process has meanwhile taken the units out, or if a check of the caller's writes
+     * fails.
+     *
+     * @param references what each reservation was dispensed for, such as a prescription
+     *                   ID, in the order the movements are recorded
+     * @param writes     adds the caller's writes to the transaction
+     * @return true if the units were taken out, false if the transaction failed, in
+     *         which case the reservations stay open and must be released
+     * @throws IllegalStateException if a reservation was already settled
+     */
+    public boolean commitAll(Map<Reservation, String> references, Consumer<Transaction> writes) {
+        List<Movement> movements = new ArrayList<>();
+        for (Map.Entry<Reservation, String> entry : references.entrySet()) {
+            Reservation reservation = entry.getKey();
+            if (reservation.settled.get()) {
+                throw new IllegalStateException("Reservation of " + reservation.medicineId + " already settled");
+            }
+            movements.add(new Movement(reservation.medicineId, -reservation.quantity, false, entry.getValue()));
+        }
+        if (!move(movements, writes)) {
+            return false;
+        }
+        for (Reservation reservation : references.keySet()) {
+            settle(reservation); // Out of stock now, so no longer set aside
+        }
+        return true;
+    }
+
+    /**
+     * Returns reserved units to the available stock.
+     *
+     * @param reservation the reservation to cancel
+     * @throws IllegalStateException if the reservation was already settled
+     */
+    public void release(Reservation reservation) {
+        settle(reservation);
+    }
+
+    /**
+     * Adds units of a medicine to the stock and records the movement.
+     *
+     * @param medicineId the ID of the medicine
+     * @param quantity   the number of units received
+     * @param reference  why the stock was added, such as "REPLENISHMENT"
+     * @return false if the medicine does not exist
+     * @throws IllegalArgumentException if the quantity is negative
+     */
+    public boolean restock(String medicineId, int quantity, String reference) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        return medicines.findById(medicineId) != null
+                && move(List.of(new Movement(medicineId, quantity, false, reference)), null);
+    }
+
+    /**
+     * Sets the units of a medicine on hand, as after a stock count, and records the
+     * difference. Units already reserved in this process stay reserved, so the level
+     * may not be below them.
+     *
+     * @param medicineId the ID of the medicine
+     * @param stockLevel the units on hand
+     * @param reference  why the stock was set, such as "ADJUSTMENT"
+     * @return false if the medicine does not exist, or the level is negative or below
+     *         the units reserved
+     */
+    public boolean adjustTo(String medicineId, int stockLevel, String reference) {
+        AtomicInteger units = reserved.get(medicineId);
+        if (stockLevel < 0 || (units != null && stockLevel < units.get())) {
+            return false;
+        }
+        return medicines.findById(medicineId) != null
+                && move(List.of(new Movement(medicineId, stockLevel, true, reference)), null);
+    }
+
+    /**
+     * Saves the details of a medicine, such as its name or low stock level, with the
+     * stock level currently stored rather than the one it carries.
+     *
+     * @param medicine the medicine with its updated details
+     */
+    public void saveDetails(Medicine medicine) {
+        while (true) {
+            Medicine stored = medicines.findById(medicine.getMedicineId());
+            if (stored == null) {
+                medicines.save(medicine);
+                return;
+            }
+            Medicine updated = new Medicine(medicine.getMedicineId(), medicine.getName(), medicine.getDescription(),
+                    stored.getStockLevel(), medicine.getLowStockLevel(), medicine.getMedicineType());
+            if (medicine.getStatus().startsWith("Pending")) {
+                updated.setPendingReplenishmentRequest();
+            }
+            if (medicines.saveIf(updated, current -> current.getStockLevel() == stored.getStockLevel())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops tracking a medicine that has been removed from the inventory.
+     *
+     * @param medicineId the ID of the medicine
+     */
+    public void forget(String medicineId) {
+        reserved.remove(medicineId);
+    }
+
+    // Writes movements in one transaction with the caller's writes: a ledger entry for
+    // each and the new level of each medicine, computed from its line as read and checked
+    // against it. While the transaction fails on that check, because a medicine changed
+    // meanwhile, the levels are read and the movements computed again. Movements of a
+    // medicine removed from the inventory are left out.
+    private boolean move(List<Movement> movements, Consumer<Transaction> writes) {
+        while (true) {
+            Map<String, Medicine> stored = new LinkedHashMap<>();
+            Map<String, Integer> levels = new LinkedHashMap<>();
+            for (Movement movement : movements) {
+                Medicine medicine = medicines.findById(movement.medicineId);
+                if (medicine != null && stored.putIfAbsent(movement.medicineId, medicine) == null) {
+                    levels.put(movement.medicineId, medicine.getStockLevel());
+                }
+            }
+
+            Transaction transaction = new Transaction();
+            if (writes != null) {
+                writes.accept(transaction);
+            }
+            String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMATTER);
+            for (Movement movement : movements) {
+                Integer before = levels.get(movement.medicineId);
+                if (before == null) {
+                    continue; // Removed from the inventory
+                }
+                int after = movement.levelAfter(before);
+                if (after < 0) {
+                    return false; // Taken out by another process meanwhile
+                }
+                levels.put(movement.medicineId, after);
+                transaction.insert(ledger, ledgerEntry(timestamp, movement.medicineId, after - before, after,
+                        movement.reference));
+            }
+            AtomicBoolean changed = new AtomicBoolean(); // Set if the transaction finds a medicine changed
+            for (Medicine medicine : stored.values()) {
+                transaction.update(medicines, withStockLevel(medicine, levels.get(medicine.getMedicineId())),
+                        current -> {
+                            boolean unchanged = isUnchanged(medicine, current);
+                            if (!unchanged) {
+                                changed.set(true);
+                            }
+                            return unchanged;
+                        });
+            }
+            if (transaction.commit()) {
+                return true;
+            }
+            if (!changed.get()) {
+                return false; // A check of the caller failed, or the write did, which trying again would not change
+            }
+        }
+    }
+
+    // Marks a reservation settled and stops counting its units as reserved
+    private void settle(Reservation reservation) {
+        if (!reservation.settled.compareAndSet(false, true)) {
+            throw new IllegalStateException("Reservation of " + reservation.medicineId + " already settled");
+        }
+        AtomicInteger units = reserved.get(reservation.medicineId);
+        if (units != null) {
+            units.addAndGet(-reservation.quantity);
+        }
+    }
+
+    // entryId|timestamp|medicineId|change|balance|reference
+    private String ledgerEntry(String timestamp, String medicineId, int change, int balance, String reference) {
+        return String.join("|", entryIds.next(), timestamp, medicineId, String.valueOf(change),
+                String.valueOf(balance), reference);
+    }
+
+    // Whether the stored line of a medicine still holds what was read from it
+    private static boolean isUnchanged(Medicine read, Medicine current) {
+        return current.getStockLevel() == read.getStockLevel() && current.getName().equals(read.getName())
+                && current.getDescription().equals(read.getDescription())
+                && current.getLowStockLevel() == read.getLowStockLevel()
+                && current.getMedicineType().equals(read.getMedicineType());
+    }
+
+    // Copies a medicine with a stock level, leaving the shared record untouched. A change
+    // of stock clears a pending replenishment status, as Medicine.setStockLevel does.
+    private static Medicine withStockLevel(Medicine medicine, int stockLevel) {
+        Medicine copy = new Medicine(medicine.getMedicineId(), medicine.getName(), medicine.getDescription(),
+                stockLevel, medicine.getLowStockLevel(), medicine.getMedicineType());
+        if (stockLevel == medicine.getStockLevel() && medicine.getStatus().startsWith("Pending")) {
+            copy.setPendingReplenishmentRequest();
+        }
+        return copy;
+    }
+}
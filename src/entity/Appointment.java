@@ -10,23 +10,49 @@ public class Appointment {
     private String patientId = "-";                 // Patient assigned to the appointment, defaults to empty
     private LocalDate date;               // Date of the appointment
     private LocalTime time;               // Time of the appointment
+    private long sortKey;                 // Minutes since the epoch of date and time, for ordering without parsing
     private Status status = Status.AVAILABLE;           // Default status as AVAILABLE
     private String requestMessage = "-";            // Message for additional requests, defaults to empty
     private String rescheduleDate = "-";         // Reschedule date if applicable
     private String rescheduleTime = "-";         // Reschedule time if applicable
     private String rescheduleMessage = "-";      // Reschedule message if applicable
+    private long version;                 // Bumped on every saved change, to detect concurrent updates
 
     // Enum for appointment status
     public enum Status {
-        AVAILABLE, PENDING, BOOKED, RESCHEDULE;
+        AVAILABLE, PENDING, BOOKED, RESCHEDULE, CLOSED;
     }
 
     // Constructor to initialize an Appointment object with essential details
     public Appointment(String appointmentId, String doctorId, LocalDate date, LocalTime time) {
         this.appointmentId = appointmentId;
         this.doctorId = doctorId;
-        this.date = date;
-        this.time = time;
+        setDateTime(date, time);
+    }
+
+    // Constructor to initialize an Appointment object with every stored detail
+    public Appointment(String appointmentId, String doctorId, String patientId, LocalDate date, LocalTime time,
+            Status status, String requestMessage, String rescheduleDate, String rescheduleTime,
+            String rescheduleMessage) {
+        this(appointmentId, doctorId, date, time);
+        this.patientId = patientId;
+        this.status = status;
+        this.requestMessage = requestMessage;
+        this.rescheduleDate = rescheduleDate;
+        this.rescheduleTime = rescheduleTime;
+        this.rescheduleMessage = rescheduleMessage;
+    }
+
+    // Copy constructor, for changing an appointment without touching the shared record
+    public Appointment(Appointment other) {
+        this(other.appointmentId, other.doctorId, other.patientId, other.date, other.time, other.status,
+                other.requestMessage, other.rescheduleDate, other.rescheduleTime, other.rescheduleMessage);
+        this.version = other.version;
+    }
+
+    // Packs a date and time into minutes since the epoch, so appointments compare as plain longs
+    public static long sortKeyOf(LocalDate date, LocalTime time) {
+        return date.toEpochDay() * 24 * 60 + time.getHour() * 60 + time.getMinute();
     }
 
     // String representation of the appointment object
@@ -53,6 +79,10 @@ public class Appointment {
         return patientId;
     }
 
+    public void setPatientId(String patientId) {
+        this.patientId = patientId;
+    }
+
     public LocalDate getDate() {
         return date;
     }
@@ -61,6 +91,17 @@ public class Appointment {
         return time;
     }
 
+    // Moves the appointment to a new date and time, keeping the sort key in step
+    public void setDateTime(LocalDate date, LocalTime time) {
+        this.date = date;
+        this.time = time;
+        this.sortKey = sortKeyOf(date, time);
+    }
+
+    public long getSortKey() {
+        return sortKey;
+    }
+
     public Status getStatus() {
         return status;
     }
@@ -76,4 +117,31 @@ public class Appointment {
     public void setRequestMessage(String requestMessage) {
         this.requestMessage = requestMessage;
     }
+
+    public String getRescheduleDate() {
+        return rescheduleDate;
+    }
+
+    public String getRescheduleTime() {
+        return rescheduleTime;
+    }
+
+    public String getRescheduleMessage() {
+        return rescheduleMessage;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    // Sets the requested reschedule; pass "-" for each to clear it
+    public void setReschedule(String rescheduleDate, String rescheduleTime, String rescheduleMessage) {
+        this.rescheduleDate = rescheduleDate;
+        this.rescheduleTime = rescheduleTime;
+        this.rescheduleMessage = rescheduleMessage;
+    }
 }
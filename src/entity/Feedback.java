@@ -5,6 +5,7 @@ import java.time.format.DateTimeFormatter;
 
 public class Feedback {
 
+    private String feedbackId;      // Feedback's ID
     private String patientId;       // Patient's ID
     private String doctorId;        // Doctor's ID
     private int rating;             // Rating given by the patient (1-10)
@@ -12,7 +13,8 @@ public class Feedback {
     private String datetime;        // Date and time when the feedback was given
 
     // Constructor to initialize feedback
-    public Feedback(String patientId, String doctorId, int rating, String comments) {
+    public Feedback(String feedbackId, String patientId, String doctorId, int rating, String comments) {
+        this.feedbackId = feedbackId;
         this.patientId = patientId;
         this.doctorId = doctorId;
         this.rating = rating;
@@ -23,6 +25,11 @@ public class Feedback {
         this.datetime = LocalDateTime.now().format(formatter); // Set current date and time
     }
 
+    // Getter for feedbackId
+    public String getFeedbackId() {
+        return feedbackId;
+    }
+
     // Getter and setter for patientId
     public String getPatientId() {
         return patientId;
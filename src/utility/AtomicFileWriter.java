@@ -0,0 +1,215 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crash-safe replacement of data files. New content is written to a temporary file
+ * in the same directory and moved over the target with an atomic rename, so a process
+ * killed mid-write leaves either the old or the new file, never a truncated one. The
+ * temporary file is given the target's permissions first, so a replaced file keeps
+ * the access other users of the data directory had to it.
+ *
+ * <p>How far each commit is pushed to disk is set per file by a {@link Durability}
+ * level. The default comes from {@code -Dhms.fsync} and can be overridden for a single
+ * file with {@code -Dhms.fsync.<file name>}, e.g. {@code -Dhms.fsync.appointment.txt=per_commit}.
+ * Grouped syncs are flushed every {@code -Dhms.fsync.groupWindowMs} milliseconds (default 50).
+ */
+public class AtomicFileWriter {
+
+    /**
+     * How far a commit is forced to stable storage before it is considered done.
+     */
+    public enum Durability {
+        /** Rely on the operating system to flush; survives a process kill but not a power loss. */
+        NONE,
+        /** Force the file and its directory before every commit returns. */
+        PER_COMMIT,
+        /** Force the content before the rename, but batch directory and in-place syncs in a background flush. */
+        GROUPED
+    }
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final Durability DEFAULT_DURABILITY = parse(System.getProperty("hms.fsync"), Durability.NONE);
+    private static final long GROUP_WINDOW_MS = Long.getLong("hms.fsync.groupWindowMs", 50);
+
+    private static final Map<String, Durability> DURABILITIES = new ConcurrentHashMap<>();
+    private static final Set<Path> PENDING_SYNCS = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService flusher;
+
+    /**
+     * Sets the durability level of a data file, overriding the configured default.
+     *
+     * @param filePath   the path to the data file
+     * @param durability the level to use for commits to this file
+     */
+    public static void setDurability(String filePath, Durability durability) {
+        DURABILITIES.put(keyOf(Paths.get(filePath)), durability);
+    }
+
+    /**
+     * Returns the durability level of a data file.
+     *
+     * @param path the path to the data file
+     * @return the level set for this file, or the configured default
+     */
+    public static Durability durabilityOf(Path path) {
+        return DURABILITIES.computeIfAbsent(keyOf(path), key -> parse(
+                System.getProperty("hms.fsync." + path.getFileName()), DEFAULT_DURABILITY));
+    }
+
+    /**
+     * Atomically replaces a file with the given lines.
+     *
+     * @param filePath the path to the file to replace
+     * @param lines    the new lines, without line terminators
+     * @throws IOException if the file cannot be written
+     */
+    public static void replace(String filePath, List<String> lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String line : lines) {
+            content.append(line).append(System.lineSeparator());
+        }
+        replace(Paths.get(filePath), content.toString().getBytes(CHARSET));
+    }
+
+    /**
+     * Atomically replaces a file with the given bytes, forcing it to disk according
+     * to the file's durability level.
+     *
+     * @param target  the file to replace
+     * @param content the new content of the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void replace(Path target, byte[] content) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path directory = absolute.getParent();
+        Durability durability = durabilityOf(absolute);
+
+        Path temp = Files.createTempFile(directory, absolute.getFileName().toString(), ".tmp");
+        try {
+            copyPermissions(absolute, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(content));
+                if (durability != Durability.NONE) {
+                    channel.force(true); // Content must be on disk before the rename can expose it
+                }
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        sync(directory, durability);
+    }
+
+    /**
+     * Applies a durability level to a file or directory that was just written in place.
+     *
+     * @param path       the file or directory that was modified
+     * @param durability the level to apply
+     * @throws IOException if a per-commit sync fails
+     */
+    public static void sync(Path path, Durability durability) throws IOException {
+        switch (durability) {
+            case PER_COMMIT:
+                force(path);
+                break;
+            case GROUPED:
+                startFlusher();
+                PENDING_SYNCS.add(path.toAbsolutePath());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Forces every pending grouped sync to disk.
+     */
+    public static void flush() {
+        for (Path path : PENDING_SYNCS) {
+            PENDING_SYNCS.remove(path);
+            try {
+                force(path);
+            } catch (IOException e) {
+                System.out.println("Error syncing " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static synchronized void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fsync-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(AtomicFileWriter::flush, GROUP_WINDOW_MS, GROUP_WINDOW_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(AtomicFileWriter::flush, "fsync-flusher-shutdown"));
+    }
+
+    // Gives the temporary file the target's mode, which createTempFile would otherwise narrow to 0600
+    private static void copyPermissions(Path target, Path temp) throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; the temporary file gets the default access there
+        }
+    }
+
+    private static void force(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (!Files.isDirectory(path)) {
+                throw e;
+            }
+            // Some platforms cannot open or sync a directory; the rename is still atomic there
+        }
+    }
+
+    private static String keyOf(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static Durability parse(String value, Durability fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Durability.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown durability level: " + value + ", using " + fallback);
+            return fallback;
+        }
+    }
+}
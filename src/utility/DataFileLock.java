@@ -0,0 +1,267 @@
+package utility;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Lock on a data file shared with other processes, so several programs can run against
+ * the same data directory. Readers hold the lock in shared mode and writers in
+ * exclusive mode, both within this process and, through {@link FileChannel#lock} on a
+ * sidecar file ({@code <file>.lock}), against other processes.
+ *
+ * <p>The sidecar also holds a write stamp, which a writer increments when it releases
+ * the lock after changing the file. Whoever takes the lock next compares the stamp
+ * with the last one it knew: if another process wrote in between, the file's
+ * {@link RecordStore} index and write-ahead log state are dropped, and
+ * {@link FileUtils#version(String)} moves on so cached repositories reload. A process
+ * that only reads, or only writes itself, never reloads.
+ *
+ * <p>Locks are reentrant. A thread holding the exclusive lock may also take the shared
+ * one, but not the other way round. Several files are locked exclusively together
+ * with {@link #exclusiveAll(Collection)}, in path order. The locks are taken after any
+ * {@link RecordLocks} and before a repository's own lock.
+ *
+ * <p>Locking across processes can be turned off with {@code -Dhms.processLocks=false}
+ * when only one program uses the data directory.
+ */
+public class DataFileLock {
+
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("hms.processLocks"));
+    private static final Map<String, DataFileLock> LOCKS = new ConcurrentHashMap<>();
+    private static final Held NOT_LOCKED = new Held(null);
+
+    private final String filePath;
+    private final Path lockPath;
+    private final ReentrantReadWriteLock local = new ReentrantReadWriteLock();
+    private final AtomicLong externalWrites = new AtomicLong();
+    private volatile boolean written; // The file changed under the current exclusive lock
+
+    // Guarded by this object
+    private FileChannel channel;
+    private FileLock processLock;   // Held while any thread of this process holds the lock
+    private int sharedHolders;      // Threads of this process sharing processLock
+    private long knownStamp = -1;   // Last write stamp read or written by this process
+
+    private DataFileLock(String filePath, Path lockPath) {
+        this.filePath = filePath;
+        this.lockPath = lockPath;
+    }
+
+    /**
+     * Returns whether data files are locked against other processes.
+     *
+     * @return false if {@code hms.processLocks} is set to {@code false}
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the lock of a data file, creating it on first use.
+     *
+     * @param filePath the path to the data file
+     * @return the lock of the file
+     */
+    public static DataFileLock forFile(String filePath) {
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        return LOCKS.computeIfAbsent(path.toString(), key -> new DataFileLock(filePath, Paths.get(key + LOCK_SUFFIX)));
+    }
+
+    /**
+     * A held lock, released by {@link #close()}.
+     */
+    public static class Held implements AutoCloseable {
+        private final Runnable release;
+
+        private Held(Runnable release) {
+            this.release = release;
+        }
+
+        @Override
+        public void close() {
+            if (release != null) {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Locks the file for reading, waiting while another thread or process writes it.
+     *
+     * @return the held lock
+     * @throws UncheckedIOException if the lock file cannot be opened or locked
+     */
+    public Held shared() {
+        if (!ENABLED) {
+            return NOT_LOCKED;
+        }
+        boolean processLockHeld = local.isWriteLockedByCurrentThread() || local.getReadHoldCount() > 0;
+        local.readLock().lock();
+        if (processLockHeld) {
+            return new Held(local.readLock()::unlock);
+        }
+        try {
+            synchronized (this) {
+                if (sharedHolders == 0) {
+                    acquire(true);
+                }
+                sharedHolders++;
+            }
+        } catch (IOException e) {
+            local.readLock().unlock();
+            throw new UncheckedIOException("Error locking " + filePath, e);
+        }
+        return new Held(() -> {
+            synchronized (this) {
+                if (--sharedHolders == 0) {
+                    release();
+                }
+            }
+            local.readLock().unlock();
+        });
+    }
+
+    /**
+     * Locks the file for writing, waiting while any other thread or process reads or
+     * writes it.
+     *
+     * @return the held lock
+     * @throws IllegalStateException if the current thread holds the shared lock only
+     * @throws UncheckedIOException  if the lock file cannot be opened or locked
+     */
+    public Held exclusive() {
+        if (!ENABLED) {
+            return NOT_LOCKED;
+        }
+        if (local.isWriteLockedByCurrentThread()) {
+            local.writeLock().lock();
+            return new Held(local.writeLock()::unlock);
+        }
+        if (local.getReadHoldCount() > 0) {
+            throw new IllegalStateException("Cannot upgrade a shared lock on " + filePath);
+        }
+        local.writeLock().lock();
+        try {
+            synchronized (this) {
+                acquire(false);
+            }
+        } catch (IOException e) {
+            local.writeLock().unlock();
+            throw new UncheckedIOException("Error locking " + filePath, e);
+        }
+        return new Held(() -> {
+            synchronized (this) {
+                release();
+            }
+            local.writeLock().unlock();
+        });
+    }
+
+    /**
+     * Locks several files for writing, in path order, so two callers locking
+     * overlapping files cannot deadlock.
+     *
+     * @param filePaths the paths to the data files
+     * @return the held locks
+     */
+    public static Held exclusiveAll(Collection<String> filePaths) {
+        if (!ENABLED) {
+            return NOT_LOCKED;
+        }
+        TreeSet<String> ordered = new TreeSet<>();
+        for (String filePath : filePaths) {
+            ordered.add(Paths.get(filePath).toAbsolutePath().normalize().toString());
+        }
+        List<Held> held = new ArrayList<>();
+        try {
+            for (String filePath : ordered) {
+                held.add(forFile(filePath).exclusive());
+            }
+        } catch (RuntimeException e) {
+            closeAll(held);
+            throw e;
+        }
+        return new Held(() -> closeAll(held));
+    }
+
+    /**
+     * Returns whether the current thread holds the exclusive lock of the file.
+     *
+     * @return true if the current thread may write the file
+     */
+    public boolean isHeldExclusively() {
+        return local.isWriteLockedByCurrentThread();
+    }
+
+    /**
+     * Returns how many times another process was found to have written the file.
+     *
+     * @return the number of writes seen from other processes
+     */
+    public long externalWrites() {
+        return externalWrites.get();
+    }
+
+    // Records that the file changed, so the write stamp moves on when the lock is released
+    void written() {
+        written = true;
+    }
+
+    // Takes the lock against other processes and checks whether one of them wrote the file
+    private void acquire(boolean shared) throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        processLock = channel.lock(0, Long.MAX_VALUE, shared);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        long stamp = channel.read(buffer, 0) == Long.BYTES ? buffer.getLong(0) : 0;
+        if (stamp != knownStamp) {
+            if (knownStamp >= 0) {
+                RecordStore.invalidate(filePath);
+                WriteAheadLog.reload(filePath);
+                externalWrites.incrementAndGet();
+            }
+            knownStamp = stamp;
+        }
+    }
+
+    // Moves the write stamp on if the file changed, then lets other processes in
+    private void release() {
+        try {
+            if (written) {
+                written = false;
+                knownStamp++;
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, knownStamp);
+                channel.write(buffer, 0);
+            }
+            processLock.release();
+        } catch (IOException e) {
+            System.out.println("Error releasing lock on " + filePath + ": " + e.getMessage());
+        } finally {
+            processLock = null;
+        }
+    }
+
+    private static void closeAll(List<Held> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).close();
+        }
+    }
+}
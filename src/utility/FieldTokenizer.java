@@ -0,0 +1,204 @@
+package utility;
+
+import java.util.Arrays;
+
+/**
+ * Reusable cursor over the fields of a pipe-delimited line. Resetting the tokenizer
+ * on a line only records where each field starts, so fields can be compared, parsed
+ * or sliced without splitting the line into an array of strings. A String is only
+ * created when a field is explicitly asked for with {@link #field(int)}.
+ *
+ * <p>Field counts follow the delimiters in the line ({@code "a||b"} has three fields,
+ * {@code "a|"} has two), which matches {@code String.split("\\|")} for the data files,
+ * where empty values are written as "-". A tokenizer is not thread-safe; create one per
+ * scan loop.
+ */
+public class FieldTokenizer {
+
+    private final char delimiter;
+    private CharSequence line = "";
+    private int[] starts = new int[16]; // Offset of each field; the entry after the last is line length + 1
+    private int count;
+
+    /**
+     * Creates a tokenizer for "|"-delimited lines.
+     */
+    public FieldTokenizer() {
+        this('|');
+    }
+
+    /**
+     * Creates a tokenizer for lines using the given delimiter.
+     *
+     * @param delimiter the character separating fields
+     */
+    public FieldTokenizer(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Points the tokenizer at a new line.
+     *
+     * @param line the line to tokenize
+     * @return this tokenizer
+     */
+    public FieldTokenizer reset(CharSequence line) {
+        this.line = line;
+        count = 0;
+        starts[0] = 0;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(i) == delimiter) {
+                addStart(i + 1);
+            }
+        }
+        addStart(length + 1);
+        return this;
+    }
+
+    /**
+     * Returns the number of fields in the current line.
+     *
+     * @return the number of fields
+     */
+    public int fieldCount() {
+        return count;
+    }
+
+    /**
+     * Returns the offset in the line at which a field starts.
+     *
+     * @param index the field index (0-based)
+     * @return the offset of the first character of the field
+     */
+    public int start(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * Returns the offset in the line just past the end of a field.
+     *
+     * @param index the field index (0-based)
+     * @return the offset after the last character of the field
+     */
+    public int end(int index) {
+        checkIndex(index);
+        return starts[index + 1] - 1;
+    }
+
+    /**
+     * Returns a field as a view on the line, without copying it.
+     *
+     * @param index the field index (0-based)
+     * @return the characters of the field
+     */
+    public CharSequence slice(int index) {
+        return line.subSequence(start(index), end(index));
+    }
+
+    /**
+     * Returns a field as a String.
+     *
+     * @param index the field index (0-based)
+     * @return the field
+     */
+    public String field(int index) {
+        return line.toString().substring(start(index), end(index));
+    }
+
+    /**
+     * Compares a field with a value without allocating.
+     *
+     * @param index the field index (0-based)
+     * @param value the value to compare with
+     * @return true if the field exists and equals the value
+     */
+    public boolean fieldEquals(int index, String value) {
+        return index < count && regionMatches(index, value, false);
+    }
+
+    /**
+     * Compares a field with a value, ignoring case, without allocating.
+     *
+     * @param index the field index (0-based)
+     * @param value the value to compare with
+     * @return true if the field exists and equals the value ignoring case
+     */
+    public boolean fieldEqualsIgnoreCase(int index, String value) {
+        return index < count && regionMatches(index, value, true);
+    }
+
+    /**
+     * Parses a field as a decimal integer without creating a String.
+     *
+     * @param index the field index (0-based)
+     * @return the value of the field
+     * @throws NumberFormatException if the field is not a valid integer
+     */
+    public int fieldAsInt(int index) {
+        return Integer.parseInt(line, start(index), end(index), 10);
+    }
+
+    /**
+     * Returns all fields of the current line as strings.
+     *
+     * @return the fields, in order
+     */
+    public String[] fields() {
+        String[] fields = new String[count];
+        for (int i = 0; i < count; i++) {
+            fields[i] = field(i);
+        }
+        return fields;
+    }
+
+    /**
+     * Extracts a single field from a line without tokenizing the rest of it.
+     *
+     * @param line  the "|"-delimited line
+     * @param index the field index (0-based)
+     * @return the field, or null if the line has fewer fields
+     */
+    public static String fieldOf(String line, int index) {
+        int from = 0;
+        for (int i = 0; i < index; i++) {
+            from = line.indexOf('|', from) + 1;
+            if (from == 0) {
+                return null;
+            }
+        }
+        int to = line.indexOf('|', from);
+        return line.substring(from, to < 0 ? line.length() : to);
+    }
+
+    private boolean regionMatches(int index, String value, boolean ignoreCase) {
+        int from = starts[index];
+        int length = starts[index + 1] - 1 - from;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char a = line.charAt(from + i);
+            char b = value.charAt(i);
+            if (a != b && !(ignoreCase && Character.toLowerCase(a) == Character.toLowerCase(b))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addStart(int offset) {
+        count++;
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        starts[count] = offset;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new ArrayIndexOutOfBoundsException("Field " + index + " out of bounds for " + count + " fields");
+        }
+    }
+}
@@ -1,30 +1,80 @@
 package utility;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Utility class for file operations, including reading, writing, updating, and deleting
  * entries in a text file. Each entry is assumed to be a line in the file, with fields
- * separated by a delimiter (e.g., "|").
+ * separated by a delimiter (e.g., "|"). Keyed lookups and updates are served by
+ * {@link RecordStore}, which indexes each file by the first field of its lines.
+ * When the write-ahead log is enabled (see {@link WriteAheadLog}), every operation
+ * goes through the file's log instead, so controllers must read and rewrite data
+ * files through {@link #newReader(String)} and {@link #rewriteFile(String, List)}.
+ *
+ * <p>Reads take the file's {@link DataFileLock} in shared mode and writes take it in
+ * exclusive mode, so other processes using the same data directory never see a file
+ * half-written, and a write made by one of them is picked up by the next access here.
  */
 public class FileUtils {
 
+    // Number of writes made through this class to each file, keyed by absolute path
+    private static final Map<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+
     // Appends data to the specified file
     /**
-     * Appends data to the specified file.
+     * Appends data to the specified file and waits until it has been written.
+     * Appends from concurrent callers are coalesced by the file's
+     * {@link GroupCommitAppender}.
      *
      * @param filePath the path to the file where data will be appended
      * @param data     the data to append to the file
      */
     public static void writeToFile(String filePath, String data) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
-            writer.write(data);
-            writer.newLine();
-        } catch (IOException e) {
-            System.out.println(e);
-            e.printStackTrace();
+        awaitWrite(appendAsync(filePath, List.of(data)));
+    }
+
+    /**
+     * Appends several lines to the specified file as a single batch and waits until
+     * they have been written.
+     *
+     * @param filePath the path to the file where data will be appended
+     * @param lines    the lines to append to the file
+     */
+    // Appends several lines to the specified file in one batch
+    public static void writeAllToFile(String filePath, List<String> lines) {
+        if (!lines.isEmpty()) {
+            awaitWrite(appendAsync(filePath, lines));
+        }
+    }
+
+    /**
+     * Queues lines to be appended to the specified file without waiting for the write.
+     *
+     * @param filePath the path to the file where data will be appended
+     * @param lines    the lines to append to the file
+     * @return a future completed once the lines have been written
+     */
+    // Queues lines to be appended to the specified file
+    public static CompletableFuture<Void> appendAsync(String filePath, List<String> lines) {
+        return GroupCommitAppender.forFile(filePath).appendAll(lines);
+    }
+
+    private static void awaitWrite(CompletableFuture<Void> write) {
+        try {
+            write.join();
+        } catch (CompletionException e) {
+            System.out.println(e.getCause());
+            e.getCause().printStackTrace();
         }
     }
 
@@ -37,7 +87,7 @@ public class FileUtils {
     // Reads all lines from the specified file and returns them as a List
     public static List<String> readAllLines(String filePath) {
         List<String> lines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+        try (BufferedReader reader = newReader(filePath)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 lines.add(line);
@@ -49,72 +99,175 @@ public class FileUtils {
         return lines;
     }
 
+    /**
+     * Reads all lines from the specified file, propagating any I/O error to the caller.
+     *
+     * @param filePath the path to the file to read
+     * @return the lines of the file
+     * @throws IOException if the file cannot be read
+     */
+    // Reads all lines from the specified file, throwing on error
+    public static List<String> readLines(String filePath) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = newReader(filePath)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Opens a reader over the current contents of the specified file. With the
+     * write-ahead log enabled this includes changes not yet compacted into the file.
+     * With locking across processes enabled the content is read under the file's
+     * shared lock, so the reader never sees a write from another process half-done.
+     *
+     * @param filePath the path to the file to read
+     * @return a reader positioned at the first line of the file
+     * @throws IOException if the file cannot be opened
+     */
+    // Opens a reader over the current contents of the specified file
+    public static BufferedReader newReader(String filePath) throws IOException {
+        if (!DataFileLock.isEnabled() && !WriteAheadLog.isEnabled()) {
+            return new BufferedReader(new FileReader(filePath));
+        }
+        DataFileLock.Held held = DataFileLock.forFile(filePath).shared();
+        try {
+            if (WriteAheadLog.isEnabled()) {
+                return WriteAheadLog.forFile(filePath).newReader();
+            }
+            // Through the store, so a shift left half-done by a process that stopped is never seen
+            String content = new String(RecordStore.readContent(filePath), Charset.defaultCharset());
+            return new BufferedReader(new StringReader(content));
+        } finally {
+            held.close();
+        }
+    }
+
+    /**
+     * Replaces the whole content of the specified file with the given lines. The new
+     * content is written to a temporary file and atomically moved over the old one
+     * (see {@link AtomicFileWriter}), so an interrupted rewrite never truncates the file.
+     *
+     * @param filePath the path to the file to overwrite
+     * @param lines    the lines to write, without line terminators
+     * @throws IOException if the file cannot be written
+     */
+    // Replaces the whole content of the specified file with the given lines
+    public static void rewriteFile(String filePath, List<String> lines) throws IOException {
+        DataFileLock.Held held = DataFileLock.forFile(filePath).exclusive();
+        try {
+            if (WriteAheadLog.isEnabled()) {
+                WriteAheadLog.forFile(filePath).replaceAll(lines);
+            } else {
+                RecordStore.forFile(filePath).replaceAll(lines);
+            }
+            bumpVersion(filePath);
+        } finally {
+            held.close();
+        }
+    }
+
     /**
      * Updates an entry in the file by replacing the line matching the specified ID.
+     * The line is located through the file's {@link RecordStore} index. A line of the
+     * same length is overwritten in place; any other change rewrites the line and the
+     * lines after it, through the store's shift journal.
      *
      * @param filePath the path to the file to update
      * @param data     the new data to replace the existing entry
-     * @param id       the ID of the entry to update (assumed to be at the start of the line)
+     * @param id       the ID of the entry to update (the first field of the line)
      */
     // Updates an entry in the file by replacing the line matching the specified ID
     public static void updateToFile(String filePath, String data, String id) {
-        File file = new File(filePath);
-        List<String> lines = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lines.add(line.startsWith(id) ? data : line);
+        DataFileLock.Held held = DataFileLock.forFile(filePath).exclusive();
+        try {
+            if (WriteAheadLog.isEnabled()) {
+                WriteAheadLog.forFile(filePath).upsert(id, data);
+            } else {
+                RecordStore.forFile(filePath).update(id, data);
             }
+            bumpVersion(filePath);
         } catch (IOException e) {
-            System.out.println("Error reading the file: " + e.getMessage());
+            System.out.println("Error writing to the file: " + e.getMessage());
             e.printStackTrace();
-            return;
+        } finally {
+            held.close();
         }
+    }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            for (String updatedLine : lines) {
-                writer.write(updatedLine);
-                writer.newLine();
-            }
+    /**
+     * Updates several entries in the file together, replacing the line of each given ID
+     * with a single write (see {@link RecordStore#updateAll(Map)}). IDs that are not in
+     * the file are skipped.
+     *
+     * @param filePath  the path to the file to update
+     * @param linesById the new data of each entry, keyed by the ID of the entry
+     */
+    // Updates several entries in the file, replacing the line of each ID
+    public static void updateAllToFile(String filePath, Map<String, String> linesById) {
+        try {
+            updateLines(filePath, linesById);
         } catch (IOException e) {
             System.out.println("Error writing to the file: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    // Updates several entries with a single write, reporting a failure to the caller
+    static void updateLines(String filePath, Map<String, String> linesById) throws IOException {
+        DataFileLock.Held held = DataFileLock.forFile(filePath).exclusive();
+        try {
+            if (WriteAheadLog.isEnabled()) {
+                WriteAheadLog.forFile(filePath).upsertAll(linesById);
+            } else {
+                RecordStore.forFile(filePath).updateAll(linesById);
+            }
+            bumpVersion(filePath);
+        } finally {
+            held.close();
+        }
+    }
+
+    // Appends lines as one batch and waits for them, reporting a failure to the caller.
+    // The file is locked first, so the lines are written by this thread rather than queued.
+    static void appendLines(String filePath, List<String> lines) throws IOException {
+        DataFileLock.Held held = DataFileLock.forFile(filePath).exclusive();
+        try {
+            appendAsync(filePath, lines).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            held.close();
+        }
+    }
+
     /**
      * Deletes an entry in the file with the specified ID.
      *
      * @param filePath the path to the file to update
-     * @param id       the ID of the entry to delete (assumed to be at the start of the line)
+     * @param id       the ID of the entry to delete (the first field of the line)
      */
     // Deletes an entry in the file with the specified ID
     public static void deleteFromFile(String filePath, String id) {
-        File file = new File(filePath);
-        List<String> lines = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.startsWith(id)) {
-                    lines.add(line);
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading the file: " + e.getMessage());
-            e.printStackTrace();
-            return;
-        }
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            for (String updatedLine : lines) {
-                writer.write(updatedLine);
-                writer.newLine();
+        DataFileLock.Held held = DataFileLock.forFile(filePath).exclusive();
+        try {
+            if (WriteAheadLog.isEnabled()) {
+                WriteAheadLog.forFile(filePath).delete(id);
+            } else {
+                RecordStore.forFile(filePath).delete(id);
             }
+            bumpVersion(filePath);
         } catch (IOException e) {
             System.out.println("Error writing to the file: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            held.close();
         }
     }
 
@@ -122,17 +275,15 @@ public class FileUtils {
      * Finds and returns an entry in the file with the specified ID.
      *
      * @param filePath the path to the file to search
-     * @param id       the ID of the entry to find (assumed to be at the start of the line)
+     * @param id       the ID of the entry to find (the first field of the line)
      * @return the matching entry as a string, or null if no entry is found
      */
     // Finds and returns an entry in the file with the specified ID
     public static String findEntryReturnString(String filePath, String id) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith(id)) {
-                    return line;
-                }
+        try {
+            String line = find(filePath, id);
+            if (line != null) {
+                return line;
             }
         } catch (IOException e) {
             System.out.println("Error reading the file: " + e.getMessage());
@@ -147,52 +298,121 @@ public class FileUtils {
      * Updates a specific field in an entry in the file by ID and index.
      *
      * @param filePath    the path to the file to update
-     * @param id          the ID of the entry to update (assumed to be at the start of the line)
+     * @param id          the ID of the entry to update (the first field of the line)
      * @param updatedText the new text to replace the field
      * @param index       the index of the field to update (0-based)
      */
     // Updates a specific field in an entry in the file by ID and index
     public static void updateEntry(String filePath, String id, String updatedText, int index) {
-        File file = new File(filePath);
-        List<String> lines = new ArrayList<>();
-        boolean updated = false;
+        if (updateField(filePath, id, updatedText, index)) {
+            System.out.println("Updated entry in file.");
+        }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith(id)) {
-                    String[] fields = line.split("\\|");
-                    if (index >= 0 && index < fields.length) {
-                        fields[index] = updatedText;
-                        line = String.join("|", fields);
-                        updated = true;
-                        System.out.println("Updated entry in file.");
-                    } else {
-                        System.out.println("Index out of bounds for entry: " + line);
-                        return;
-                    }
-                }
-                lines.add(line);
+    /**
+     * Updates a specific field in an entry in the file by ID and index, without
+     * printing a confirmation. The entry is read and rewritten under its record lock
+     * (see {@link RecordLocks}), so a concurrent change to another of its fields is
+     * not lost.
+     *
+     * @param filePath    the path to the file to update
+     * @param id          the ID of the entry to update (the first field of the line)
+     * @param updatedText the new text to replace the field
+     * @param index       the index of the field to update (0-based)
+     * @return true if the entry was updated
+     */
+    // Updates a specific field in an entry in the file by ID and index, quietly
+    public static boolean updateField(String filePath, String id, String updatedText, int index) {
+        RecordLocks.Held held = RecordLocks.forFile(filePath).lock(id);
+        try {
+            DataFileLock.Held fileHeld = DataFileLock.forFile(filePath).exclusive();
+            try {
+                return updateFieldLocked(filePath, id, updatedText, index);
+            } finally {
+                fileHeld.close();
             }
+        } finally {
+            held.close();
+        }
+    }
+
+    private static boolean updateFieldLocked(String filePath, String id, String updatedText, int index) {
+        String line;
+        try {
+            line = find(filePath, id);
         } catch (IOException e) {
             System.out.println("Error reading the file: " + e.getMessage());
             e.printStackTrace();
-            return;
+            return false;
         }
 
-        if (!updated) {
+        if (line == null) {
             System.out.println("No entry found with ID: " + id);
-            return;
+            return false;
         }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            for (String line : lines) {
-                writer.write(line);
-                writer.newLine();
+        String[] fields = line.split("\\|");
+        if (index < 0 || index >= fields.length) {
+            System.out.println("Index out of bounds for entry: " + line);
+            return false;
+        }
+        fields[index] = updatedText;
+
+        String data = String.join("|", fields);
+        try {
+            if (WriteAheadLog.isEnabled()) {
+                WriteAheadLog.forFile(filePath).upsert(id, data);
+            } else {
+                RecordStore.forFile(filePath).update(id, data);
             }
+            bumpVersion(filePath);
+            return true;
         } catch (IOException e) {
             System.out.println("Error writing to the file: " + e.getMessage());
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Returns how many writes have been made to the specified file through this class
+     * since startup, plus the writes found to have been made by other processes (see
+     * {@link DataFileLock#externalWrites()}). Caches compare it against the value they
+     * loaded at to detect changes.
+     *
+     * @param filePath the path to the file
+     * @return the write count of the file
+     */
+    // Returns the number of writes made to the specified file
+    public static long version(String filePath) {
+        AtomicLong version = VERSIONS.get(keyOf(filePath));
+        long externalWrites = DataFileLock.isEnabled() ? DataFileLock.forFile(filePath).externalWrites() : 0;
+        return (version == null ? 0 : version.get()) + externalWrites;
+    }
+
+    // Records writes to the specified file; appends add one per queued batch of lines
+    static void bumpVersion(String filePath, int writes) {
+        DataFileLock.forFile(filePath).written();
+        VERSIONS.computeIfAbsent(keyOf(filePath), key -> new AtomicLong()).addAndGet(writes);
+    }
+
+    private static void bumpVersion(String filePath) {
+        bumpVersion(filePath, 1);
+    }
+
+    private static String keyOf(String filePath) {
+        return Paths.get(filePath).toAbsolutePath().normalize().toString();
+    }
+
+    static String find(String filePath, String id) throws IOException {
+        DataFileLock.Held held = DataFileLock.forFile(filePath).shared();
+        try {
+            if (WriteAheadLog.isEnabled()) {
+                return WriteAheadLog.forFile(filePath).find(id);
+            }
+            return RecordStore.forFile(filePath).find(id);
+        } finally {
+            held.close();
         }
     }
 }
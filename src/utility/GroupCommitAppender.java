@@ -0,0 +1,144 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Long-lived appender for a data file that coalesces concurrent appends. Lines queued
+ * while a commit is in progress (or within {@code -Dhms.append.groupWindowMs}
+ * milliseconds of the first one, default 0) are written together as one batch: one
+ * write to the file, or to its write-ahead log, and at most one sync under the file's
+ * {@link AtomicFileWriter.Durability} level.
+ *
+ * <p>Each caller gets a future that completes once its lines have been committed.
+ * Batches are written under the file's exclusive {@link DataFileLock}; a caller that
+ * already holds that lock has its lines written straight away instead, since the
+ * committer could not take the lock until the caller lets it go.
+ */
+public class GroupCommitAppender {
+
+    private static final long GROUP_WINDOW_MS = Long.getLong("hms.append.groupWindowMs", 0);
+    private static final Map<String, GroupCommitAppender> APPENDERS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService COMMITTER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "group-committer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String filePath;
+    private final Queue<PendingAppend> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
+
+    private GroupCommitAppender(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * Returns the shared appender for the given file, creating it on first use.
+     *
+     * @param filePath the path to the data file
+     * @return the appender of the file
+     */
+    public static GroupCommitAppender forFile(String filePath) {
+        String key = Paths.get(filePath).toAbsolutePath().normalize().toString();
+        return APPENDERS.computeIfAbsent(key, k -> new GroupCommitAppender(filePath));
+    }
+
+    /**
+     * Queues a line to be appended to the file.
+     *
+     * @param data the line to append, without a line terminator
+     * @return a future completed once the line has been written
+     */
+    public CompletableFuture<Void> append(String data) {
+        return appendAll(List.of(data));
+    }
+
+    /**
+     * Queues several lines to be appended to the file in order, within the same batch.
+     *
+     * @param lines the lines to append, without line terminators
+     * @return a future completed once all lines have been written
+     */
+    public CompletableFuture<Void> appendAll(List<String> lines) {
+        if (DataFileLock.forFile(filePath).isHeldExclusively()) {
+            return appendNow(lines);
+        }
+        PendingAppend pending = new PendingAppend(new ArrayList<>(lines));
+        queue.add(pending);
+        if (commitScheduled.compareAndSet(false, true)) {
+            COMMITTER.schedule(this::commit, GROUP_WINDOW_MS, TimeUnit.MILLISECONDS);
+        }
+        return pending.future;
+    }
+
+    // Drains everything queued so far and writes it as one batch
+    private void commit() {
+        commitScheduled.set(false); // Appends arriving from now on schedule the next batch
+        List<PendingAppend> batch = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        PendingAppend pending;
+        while ((pending = queue.poll()) != null) {
+            batch.add(pending);
+            lines.addAll(pending.lines);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        DataFileLock.Held held = DataFileLock.forFile(filePath).exclusive();
+        try {
+            write(lines, batch.size());
+            for (PendingAppend committed : batch) {
+                committed.future.complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (PendingAppend failed : batch) {
+                failed.future.completeExceptionally(e);
+            }
+        } finally {
+            held.close();
+        }
+    }
+
+    // Writes the lines of a caller holding the file's lock, without queueing them
+    private CompletableFuture<Void> appendNow(List<String> lines) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        try {
+            write(lines, 1);
+            written.complete(null);
+        } catch (IOException | RuntimeException e) {
+            written.completeExceptionally(e);
+        }
+        return written;
+    }
+
+    private void write(List<String> lines, int appends) throws IOException {
+        if (WriteAheadLog.isEnabled()) {
+            WriteAheadLog.forFile(filePath).appendAll(lines);
+        } else {
+            RecordStore.forFile(filePath).appendAll(lines);
+        }
+        FileUtils.bumpVersion(filePath, appends);
+    }
+
+    private static class PendingAppend {
+        private final List<String> lines;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingAppend(List<String> lines) {
+            this.lines = lines;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocator for the IDs of one data file, such as {@code AP00012} or {@code PR00003}.
+ * Instead of reading the whole file for the last ID, IDs are handed out from an
+ * in-memory counter within a block reserved in a sidecar file
+ * ({@code <file>.<prefix>.seq}) that holds the highest number reserved so far.
+ *
+ * <p>A block is reserved under an exclusive lock on the sidecar file, so sessions in
+ * the same or another process never receive the same ID. On first use the data file
+ * is scanned once for its highest ID, which recovers the sequence when the sidecar is
+ * missing or behind. IDs left over in a block when the program exits are skipped, so
+ * the sequence may have gaps.
+ *
+ * <p>The block size is set with {@code -Dhms.id.blockSize} (default 20).
+ */
+public class IdSequence {
+
+    private static final String SEQUENCE_SUFFIX = ".seq";
+    private static final long BLOCK_SIZE = Math.max(1, Long.getLong("hms.id.blockSize", 20));
+    private static final Map<String, IdSequence> SEQUENCES = new ConcurrentHashMap<>();
+
+    private final String filePath;
+    private final String prefix;
+    private final String sequencePath;
+
+    private volatile Block block = new Block(0, 0); // Empty, so the first call reserves
+    private long scannedMax = -1;
+
+    private IdSequence(String filePath, String prefix) {
+        this.filePath = filePath;
+        this.prefix = prefix;
+        this.sequencePath = filePath + "." + prefix + SEQUENCE_SUFFIX;
+    }
+
+    /**
+     * Returns the shared sequence for the IDs with the given prefix in a data file,
+     * creating it on first use.
+     *
+     * @param filePath the path to the data file whose first field holds the IDs
+     * @param prefix   the two-letter prefix of the IDs, such as "AP"
+     * @return the sequence
+     */
+    public static IdSequence forFile(String filePath, String prefix) {
+        String key = Paths.get(filePath).toAbsolutePath().normalize() + "#" + prefix;
+        return SEQUENCES.computeIfAbsent(key, k -> new IdSequence(filePath, prefix));
+    }
+
+    /**
+     * Allocates the next ID of the sequence.
+     *
+     * @return a new ID in the format "PREFIX00001"
+     */
+    public String next() {
+        while (true) {
+            Block current = block;
+            long number = current.next.getAndIncrement();
+            if (number < current.end) {
+                return format(number);
+            }
+            synchronized (this) {
+                if (block == current) {
+                    block = reserve();
+                }
+            }
+        }
+    }
+
+    /**
+     * Allocates several IDs of the sequence at once, from a block reserved for them
+     * alone, as for a bulk import.
+     *
+     * @param count the number of IDs to allocate
+     * @return the new IDs, in ascending order
+     */
+    public List<String> next(int count) {
+        List<String> ids = new ArrayList<>(count);
+        if (count <= 0) {
+            return ids;
+        }
+        Block reserved;
+        synchronized (this) {
+            reserved = reserve(count, count);
+        }
+        for (long number = reserved.next.get(); number < reserved.end; number++) {
+            ids.add(format(number));
+        }
+        return ids;
+    }
+
+    // Formats a number of the sequence as "PREFIX00001", without the cost of String.format
+    private String format(long number) {
+        String digits = Long.toString(number);
+        StringBuilder id = new StringBuilder(prefix.length() + Math.max(5, digits.length())).append(prefix);
+        for (int i = digits.length(); i < 5; i++) {
+            id.append('0');
+        }
+        return id.append(digits).toString();
+    }
+
+    // Reserves the next block in the sidecar file, under a lock shared with other processes
+    private Block reserve() {
+        return reserve(BLOCK_SIZE, 1);
+    }
+
+    // Reserves a block of the given size, or of the fallback size if the sidecar is unusable
+    private Block reserve(long size, long fallbackSize) {
+        if (scannedMax < 0) {
+            scannedMax = scanHighestId();
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(sequencePath), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.lock(); // Released when the channel is closed
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            channel.read(buffer, 0);
+            String stored = new String(buffer.array(), StandardCharsets.UTF_8).trim();
+            long reserved = stored.isEmpty() ? 0 : Long.parseLong(stored);
+
+            long start = Math.max(reserved, scannedMax) + 1;
+            long end = start + size;
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(String.valueOf(end - 1).getBytes(StandardCharsets.UTF_8)), 0);
+            channel.force(false);
+            return new Block(start, end);
+        } catch (IOException | NumberFormatException e) {
+            // Without the sidecar, fall back to the scanned maximum for this process alone
+            System.out.println("Error reserving IDs in " + sequencePath + ": " + e.getMessage());
+            long start = Math.max(block.end - 1, scanHighestId()) + 1;
+            return new Block(start, start + fallbackSize);
+        }
+    }
+
+    // Returns the highest number among the IDs with this prefix in the data file
+    private long scanHighestId() {
+        long highest = 0;
+        for (String line : FileUtils.readAllLines(filePath)) {
+            String id = FieldTokenizer.fieldOf(line, 0);
+            if (!id.startsWith(prefix)) {
+                continue;
+            }
+            try {
+                highest = Math.max(highest, Long.parseLong(id.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+                // Not a sequence-generated ID, so it cannot collide with one
+            }
+        }
+        return highest;
+    }
+
+    // Range of numbers [next, end) reserved by this process
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package utility;
+
+/**
+ * Scheme for hashing account passwords. A stored hash names its scheme and carries its
+ * own parameters, such as its salt and cost, so hashes made under older settings keep
+ * working after the settings change. Schemes are registered with
+ * {@link PasswordHashing#register(PasswordHasher)}.
+ */
+public interface PasswordHasher {
+
+    /**
+     * Returns the name of the scheme, written between dollar signs at the start of its
+     * stored hashes (for example {@code $pbkdf2-sha256$...}).
+     *
+     * @return the scheme name
+     */
+    String scheme();
+
+    /**
+     * Hashes a password with a new salt and the current parameters of the scheme.
+     *
+     * @param password the password to hash
+     * @return the hash to store, starting with the scheme name
+     */
+    String hash(String password);
+
+    /**
+     * Checks a password against a stored hash of this scheme. The hashes are compared
+     * in constant time.
+     *
+     * @param password   the password entered
+     * @param storedHash the stored hash
+     * @return true if the password matches, false if not or if the hash is malformed
+     */
+    boolean verify(String password, String storedHash);
+
+    /**
+     * Returns whether a stored hash of this scheme was made with weaker parameters than
+     * the current ones, and should be replaced once the password is known.
+     *
+     * @param storedHash the stored hash
+     * @return true if the password should be hashed again
+     */
+    boolean needsRehash(String storedHash);
+}
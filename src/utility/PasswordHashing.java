@@ -0,0 +1,263 @@
+package utility;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hashing of account passwords through the configured {@link PasswordHasher}. New
+ * hashes use the scheme set with {@code -Dhms.password.scheme} (default
+ * {@code pbkdf2-sha256}); a stored hash is verified with the scheme it names, and
+ * hashes without a scheme are the unsalted SHA-256 hex of earlier versions.
+ * {@link #needsRehash(String)} tells when a stored hash should be replaced, because it
+ * uses another scheme or a lower cost than the current one.
+ *
+ * <p>Hashing and verifying run on a pool of {@code -Dhms.password.threads} workers
+ * (default one per processor). The caller waits for the result, but however many
+ * sessions log in at once, only that many hashes are computed at a time, so the
+ * other sessions keep their share of the processors.
+ *
+ * <p>The PBKDF2 cost is set with {@code -Dhms.password.iterations} (default 310000,
+ * about 100 ms per hash on one core; see {@code PasswordHashBenchmark}).
+ */
+public class PasswordHashing {
+
+    private static final int ITERATIONS = Integer.getInteger("hms.password.iterations", 310_000);
+    private static final int THREADS = Math.max(1, Integer.getInteger("hms.password.threads",
+            Runtime.getRuntime().availableProcessors()));
+    private static final String SCHEME = System.getProperty("hms.password.scheme", Pbkdf2.SCHEME);
+
+    private static final Map<String, PasswordHasher> HASHERS = new ConcurrentHashMap<>();
+    private static final PasswordHasher LEGACY = new Sha256();
+    private static final ExecutorService WORKERS;
+
+    static {
+        register(new Pbkdf2(ITERATIONS));
+        register(LEGACY);
+        AtomicInteger workerCount = new AtomicInteger();
+        WORKERS = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "password-hasher-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a hashing scheme, replacing any scheme with the same name.
+     *
+     * @param hasher the scheme
+     */
+    public static void register(PasswordHasher hasher) {
+        HASHERS.put(hasher.scheme(), hasher);
+    }
+
+    /**
+     * Returns the scheme new hashes are made with.
+     *
+     * @return the current scheme
+     * @throws IllegalStateException if {@code hms.password.scheme} names no registered scheme
+     */
+    public static PasswordHasher current() {
+        PasswordHasher hasher = HASHERS.get(SCHEME);
+        if (hasher == null) {
+            throw new IllegalStateException("Unknown password scheme: " + SCHEME);
+        }
+        return hasher;
+    }
+
+    /**
+     * Hashes a password with the current scheme, on the worker pool.
+     *
+     * @param password the password to hash
+     * @return the hash to store
+     */
+    public static String hash(String password) {
+        PasswordHasher hasher = current();
+        return onWorker(() -> hasher.hash(password));
+    }
+
+    /**
+     * Checks a password against a stored hash, with the scheme the hash names, on the
+     * worker pool.
+     *
+     * @param password   the password entered
+     * @param storedHash the stored hash
+     * @return true if the password matches, false if not or if the scheme is unknown
+     */
+    public static boolean verify(String password, String storedHash) {
+        PasswordHasher hasher = hasherOf(storedHash);
+        if (hasher == null) {
+            System.out.println("Unknown password scheme in stored hash.");
+            return false;
+        }
+        Boolean matches = onWorker(() -> hasher.verify(password, storedHash));
+        return matches != null && matches;
+    }
+
+    /**
+     * Returns whether a stored hash should be replaced by a hash made with the current
+     * scheme and parameters.
+     *
+     * @param storedHash the stored hash
+     * @return true if the hash uses another scheme or weaker parameters
+     */
+    public static boolean needsRehash(String storedHash) {
+        PasswordHasher hasher = hasherOf(storedHash);
+        return hasher != current() || hasher.needsRehash(storedHash);
+    }
+
+    // Returns the scheme named at the start of a stored hash
+    private static PasswordHasher hasherOf(String storedHash) {
+        if (!storedHash.startsWith("$")) {
+            return LEGACY;
+        }
+        int end = storedHash.indexOf('$', 1);
+        return end < 0 ? null : HASHERS.get(storedHash.substring(1, end));
+    }
+
+    // Runs a hash on the worker pool and waits for it. An interrupted wait gives null.
+    private static <T> T onWorker(Callable<T> task) {
+        try {
+            return WORKERS.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error hashing password", e.getCause());
+        }
+    }
+
+    /**
+     * Salted PBKDF2 with HMAC-SHA256, stored as
+     * {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>} with the salt and hash in Base64.
+     */
+    public static class Pbkdf2 implements PasswordHasher {
+
+        static final String SCHEME = "pbkdf2-sha256";
+
+        private static final int SALT_BYTES = 16;
+        private static final int HASH_BITS = 256;
+        private static final SecureRandom RANDOM = new SecureRandom();
+        private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+            try {
+                return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        private final int iterations;
+
+        /**
+         * Creates the scheme with the cost new hashes are made with.
+         *
+         * @param iterations the number of PBKDF2 iterations
+         */
+        public Pbkdf2(int iterations) {
+            this.iterations = iterations;
+        }
+
+        @Override
+        public String scheme() {
+            return SCHEME;
+        }
+
+        @Override
+        public String hash(String password) {
+            byte[] salt = new byte[SALT_BYTES];
+            RANDOM.nextBytes(salt);
+            Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+            return "$" + SCHEME + "$" + iterations + "$" + base64.encodeToString(salt) + "$"
+                    + base64.encodeToString(derive(password, salt, iterations, HASH_BITS));
+        }
+
+        @Override
+        public boolean verify(String password, String storedHash) {
+            String[] parts = storedHash.split("\\$");
+            try {
+                byte[] salt = Base64.getDecoder().decode(parts[3]);
+                byte[] expected = Base64.getDecoder().decode(parts[4]);
+                byte[] actual = derive(password, salt, Integer.parseInt(parts[2]), expected.length * 8);
+                return MessageDigest.isEqual(expected, actual);
+            } catch (RuntimeException e) {
+                return false; // Malformed hash
+            }
+        }
+
+        @Override
+        public boolean needsRehash(String storedHash) {
+            String[] parts = storedHash.split("\\$");
+            try {
+                return Integer.parseInt(parts[2]) < iterations;
+            } catch (RuntimeException e) {
+                return true;
+            }
+        }
+
+        private static byte[] derive(String password, byte[] salt, int iterations, int bits) {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bits);
+            try {
+                return FACTORY.get().generateSecret(spec).getEncoded();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Error hashing password!", e);
+            } finally {
+                spec.clearPassword();
+            }
+        }
+    }
+
+    /**
+     * Unsalted SHA-256 as hexadecimal, without a scheme name, as stored by earlier
+     * versions. Kept so those accounts can still log in and be re-hashed.
+     */
+    public static class Sha256 implements PasswordHasher {
+
+        private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        @Override
+        public String scheme() {
+            return "sha256";
+        }
+
+        @Override
+        public String hash(String password) {
+            return HexFormat.of().formatHex(digest(password));
+        }
+
+        @Override
+        public boolean verify(String password, String storedHash) {
+            try {
+                return MessageDigest.isEqual(HexFormat.of().parseHex(storedHash), digest(password));
+            } catch (IllegalArgumentException e) {
+                return false; // Not a hex hash
+            }
+        }
+
+        @Override
+        public boolean needsRehash(String storedHash) {
+            return false;
+        }
+
+        private static byte[] digest(String password) {
+            return DIGEST.get().digest(password.getBytes()); // Encoded as the earlier versions did
+        }
+    }
+}
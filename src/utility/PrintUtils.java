@@ -1,13 +1,10 @@
 package utility;
 
-import java.util.Scanner;
-
 public class PrintUtils {
 
     // Pauses execution until the user presses Enter
-    public static void pause() {
+    public static void pause(Terminal terminal) {
         System.out.println("Press Enter to continue...");
-        Scanner scanner = new Scanner(System.in);
-        scanner.nextLine(); // Waits for the user to press Enter
+        terminal.nextLine(); // Waits for the user to press Enter
     }
 }
@@ -0,0 +1,127 @@
+package utility;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks on the records of the data files, so that changes to different records of
+ * the same file, such as bookings with different doctors or payments of different
+ * bills, do not wait for each other.
+ *
+ * <p>Each file has a fixed set of lock stripes, and a record is guarded by the stripe
+ * its ID hashes to; records that share a stripe simply wait for each other. The number
+ * of stripes per file is set with {@code -Dhms.lock.stripes} (default 64).
+ *
+ * <p>Several records, in one file or across files, are locked with
+ * {@link #lockAll(Map)}, which always takes the stripes in the same order (by file
+ * path, then by stripe), so two callers locking overlapping records can never
+ * deadlock. Record locks are taken before a {@link Repository}'s own lock and never
+ * while holding one.
+ */
+public class RecordLocks {
+
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Integer.getInteger("hms.lock.stripes", 64)));
+    private static final Map<String, RecordLocks> FILES = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private RecordLocks(String key) {
+        this.key = key;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the locks of the records of a data file, creating them on first use.
+     *
+     * @param filePath the path to the data file
+     * @return the record locks of the file
+     */
+    public static RecordLocks forFile(String filePath) {
+        String key = Paths.get(filePath).toAbsolutePath().normalize().toString();
+        return FILES.computeIfAbsent(key, RecordLocks::new);
+    }
+
+    /**
+     * Locks held together, released by {@link #close()} in the reverse order they
+     * were taken.
+     */
+    public static class Held implements AutoCloseable {
+        private final List<ReentrantLock> locks;
+
+        private Held(List<ReentrantLock> locks) {
+            this.locks = locks;
+        }
+
+        @Override
+        public void close() {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * Locks one record of this file, waiting for any other holder of its stripe.
+     *
+     * @param id the record ID
+     * @return the held lock, to close once the record has been written
+     */
+    public Held lock(String id) {
+        ReentrantLock stripe = stripes[stripeOf(id)];
+        stripe.lock();
+        return new Held(List.of(stripe));
+    }
+
+    /**
+     * Locks several records of this file, in stripe order.
+     *
+     * @param ids the record IDs
+     * @return the held locks, to close once the records have been written
+     */
+    public Held lock(Collection<String> ids) {
+        return lockAll(Map.of(key, ids));
+    }
+
+    /**
+     * Locks records across several data files, in file and stripe order.
+     *
+     * @param idsByFile the record IDs to lock, keyed by the path to their data file
+     * @return the held locks, to close once the records have been written
+     */
+    public static Held lockAll(Map<String, ? extends Collection<String>> idsByFile) {
+        Map<String, TreeSet<Integer>> stripesByFile = new TreeMap<>();
+        for (Map.Entry<String, ? extends Collection<String>> entry : idsByFile.entrySet()) {
+            RecordLocks file = forFile(entry.getKey());
+            TreeSet<Integer> indexes = stripesByFile.computeIfAbsent(file.key, key -> new TreeSet<>());
+            for (String id : entry.getValue()) {
+                indexes.add(file.stripeOf(id));
+            }
+        }
+
+        List<ReentrantLock> held = new ArrayList<>();
+        for (Map.Entry<String, TreeSet<Integer>> entry : stripesByFile.entrySet()) {
+            RecordLocks file = FILES.get(entry.getKey());
+            for (int index : entry.getValue()) {
+                file.stripes[index].lock();
+                held.add(file.stripes[index]);
+            }
+        }
+        return new Held(held);
+    }
+
+    // Spreads the hash so that IDs differing only in their last digits use different stripes
+    private int stripeOf(String id) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
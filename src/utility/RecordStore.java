@@ -0,0 +1,575 @@
+package utility;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Keyed view over a pipe-delimited data file. The store keeps an in-memory index from
+ * record ID (the first field of each line) to the byte offset and length of that line,
+ * so single-record lookups seek straight to the record. Updates of the same length are
+ * written in place. A change that shifts later records rewrites only the bytes from the
+ * changed record to the end of the file: the new tail is first written to a journal
+ * beside the file ({@code <file>.shift}), then copied into place, and the journal is
+ * emptied. A crash while the tail is being copied leaves the journal full, and the copy
+ * is finished from it by {@link #recover(String)} or the next access to the file, so a
+ * half-shifted file is never read.
+ *
+ * <p>The file layout is left untouched: it is still one record per line with fields
+ * separated by "|". The index is rebuilt whenever the file's size or modification time
+ * changes underneath it, so writers that bypass the store are picked up on the next call.
+ */
+public class RecordStore {
+
+    private static final Map<String, RecordStore> STORES = new ConcurrentHashMap<>();
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(CHARSET);
+    private static final String SHIFT_SUFFIX = ".shift";
+
+    private final Path path;
+    private final Path journal; // New tail of a shift in progress, empty between shifts
+
+    // Line i occupies bytes [starts[i], starts[i] + lengths[i]), excluding its line terminator
+    private long[] starts = new long[0];
+    private int[] lengths = new int[0];
+    private int size;
+
+    private final Map<String, Integer> index = new HashMap<>(); // Record ID -> first line holding it
+    private final Set<String> duplicateIds = new HashSet<>();   // IDs that appear on more than one line
+
+    private long indexedSize = -1;
+    private long indexedModified = -1;
+
+    private RecordStore(Path path) {
+        this.path = path;
+        this.journal = Paths.get(path + SHIFT_SUFFIX);
+    }
+
+    /**
+     * Returns the shared store for the given file, creating it on first use.
+     *
+     * @param filePath the path to the data file
+     * @return the record store backing the file
+     */
+    public static RecordStore forFile(String filePath) {
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        return STORES.computeIfAbsent(path.toString(), key -> new RecordStore(path));
+    }
+
+    /**
+     * Drops the index of the given file so it is rebuilt on next access. Callers that
+     * rewrite a data file wholesale should call this once the new content is in place.
+     *
+     * @param filePath the path to the data file
+     */
+    public static void invalidate(String filePath) {
+        RecordStore store = STORES.get(Paths.get(filePath).toAbsolutePath().normalize().toString());
+        if (store != null) {
+            store.invalidate();
+        }
+    }
+
+    /**
+     * Finishes every shift left half-done by an earlier run. Called once at startup,
+     * before any data file is read or rewritten.
+     *
+     * @param dataDirectory the directory holding the data files
+     */
+    public static void recover(String dataDirectory) {
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(Paths.get(dataDirectory), "*" + SHIFT_SUFFIX)) {
+            for (Path journal : journals) {
+                String name = journal.toString();
+                forFile(name.substring(0, name.length() - SHIFT_SUFFIX.length())).finishShift();
+            }
+        } catch (IOException e) {
+            System.out.println("Error recovering data files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the content of a data file, with a shift left half-done by a process that
+     * stopped already applied. The journal is only read, so this is safe under the
+     * file's shared lock.
+     *
+     * @param filePath the path to the data file
+     * @return the bytes of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] readContent(String filePath) throws IOException {
+        RecordStore store = forFile(filePath);
+        Shift shift = store.pendingShift();
+        if (shift == null) {
+            return Files.readAllBytes(store.path);
+        }
+        byte[] content;
+        try (RandomAccessFile file = new RandomAccessFile(store.path.toFile(), "r")) {
+            content = Arrays.copyOf(readRange(file, 0, shift.from), (int) shift.from + shift.tail.length);
+        }
+        System.arraycopy(shift.tail, 0, content, (int) shift.from, shift.tail.length);
+        return content;
+    }
+
+    /**
+     * Finishes a shift of this file left half-done by a process that stopped, if any.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void finishShift() throws IOException {
+        if (!Files.exists(journal) || Files.size(journal) == 0) {
+            return;
+        }
+        Shift shift = pendingShift();
+        if (shift == null) {
+            // Cut short while being written, so the file itself was not touched yet
+            System.out.println("Discarding incomplete shift of " + path.getFileName() + ".");
+            clearJournal(AtomicFileWriter.durabilityOf(path));
+            return;
+        }
+        writeTail(shift.from, shift.tail);
+        invalidate();
+    }
+
+    /**
+     * Finds the record with the given ID.
+     *
+     * @param id the record ID (first field of the line)
+     * @return the full line, or null if no record has this ID
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized String find(String id) throws IOException {
+        ensureIndexed();
+        Integer line = index.get(id);
+        if (line == null) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            return readLine(file, line);
+        }
+    }
+
+    /**
+     * Returns whether a record with the given ID exists.
+     *
+     * @param id the record ID
+     * @return true if the ID is present in the file
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized boolean contains(String id) throws IOException {
+        ensureIndexed();
+        return index.containsKey(id);
+    }
+
+    /**
+     * Replaces the record with the given ID. A replacement of the same byte length is
+     * written in place; otherwise the record and the records after it are rewritten
+     * through the shift journal, leaving the records before it untouched.
+     *
+     * @param id   the record ID
+     * @param data the new line, without a line terminator
+     * @return true if a record was replaced, false if the ID was not found
+     * @throws IOException if the file cannot be read or written
+     */
+    public synchronized boolean update(String id, String data) throws IOException {
+        ensureIndexed();
+        Integer line = index.get(id);
+        if (line == null) {
+            return false;
+        }
+        if (duplicateIds.contains(id)) {
+            rewriteMatching(id, data);
+            return true;
+        }
+
+        byte[] bytes = data.getBytes(CHARSET);
+        long start = starts[line];
+        if (bytes.length == lengths[line]) {
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(start);
+                file.write(bytes);
+            }
+            AtomicFileWriter.sync(path, AtomicFileWriter.durabilityOf(path));
+        } else {
+            splice(start, start + lengths[line], bytes);
+
+            int delta = bytes.length - lengths[line];
+            lengths[line] = bytes.length;
+            for (int i = line + 1; i < size; i++) {
+                starts[i] += delta;
+            }
+        }
+        recordStamp();
+        return true;
+    }
+
+    /**
+     * Replaces the records with the given IDs together. A single record is updated as
+     * by {@link #update}; for several, the content from the first of them to the end of
+     * the file is rebuilt and rewritten through the shift journal in one pass, so either
+     * all of them are written or none.
+     *
+     * @param updates the new line of each record, keyed by record ID
+     * @return the number of IDs that were found and replaced
+     * @throws IOException if the file cannot be read or written
+     */
+    public synchronized int updateAll(Map<String, String> updates) throws IOException {
+        ensureIndexed();
+        int found = 0;
+        for (String id : updates.keySet()) {
+            if (index.containsKey(id)) {
+                found++;
+            }
+        }
+        if (found == 0) {
+            return 0;
+        }
+        if (updates.size() == 1) {
+            Map.Entry<String, String> update = updates.entrySet().iterator().next();
+            return update(update.getKey(), update.getValue()) ? 1 : 0;
+        }
+
+        int first = size;
+        for (String id : updates.keySet()) {
+            Integer line = index.get(id);
+            if (line != null) {
+                first = Math.min(first, line);
+            }
+        }
+        StringBuilder content = new StringBuilder();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            for (int i = first; i < size; i++) {
+                String line = readLine(file, i);
+                content.append(updates.getOrDefault(idOf(line), line)).append(System.lineSeparator());
+            }
+        }
+        shift(starts[first], content.toString().getBytes(CHARSET));
+        invalidate();
+        return found;
+    }
+
+    /**
+     * Removes every record with the given ID.
+     *
+     * @param id the record ID
+     * @return true if at least one record was removed
+     * @throws IOException if the file cannot be read or written
+     */
+    public synchronized boolean delete(String id) throws IOException {
+        ensureIndexed();
+        Integer line = index.get(id);
+        if (line == null) {
+            return false;
+        }
+        if (duplicateIds.contains(id)) {
+            rewriteMatching(id, null);
+            return true;
+        }
+
+        long start = starts[line];
+        long next = line + 1 < size ? starts[line + 1] : Files.size(path);
+        splice(start, next, new byte[0]);
+
+        long removed = next - start;
+        System.arraycopy(starts, line + 1, starts, line, size - line - 1);
+        System.arraycopy(lengths, line + 1, lengths, line, size - line - 1);
+        size--;
+        for (int i = line; i < size; i++) {
+            starts[i] -= removed;
+        }
+
+        index.remove(id);
+        for (Map.Entry<String, Integer> entry : index.entrySet()) {
+            if (entry.getValue() > line) {
+                entry.setValue(entry.getValue() - 1);
+            }
+        }
+        recordStamp();
+        return true;
+    }
+
+    /**
+     * Appends a record to the end of the file and adds it to the index.
+     *
+     * @param data the line to append, without a line terminator
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void append(String data) throws IOException {
+        appendAll(List.of(data));
+    }
+
+    /**
+     * Appends several records to the end of the file with a single write and adds
+     * them to the index.
+     *
+     * @param lines the lines to append, without line terminators
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void appendAll(List<String> lines) throws IOException {
+        ensureIndexed();
+        if (lines.isEmpty()) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long end = file.length();
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            if (end > 0 && !endsWithNewline(file, end)) {
+                // Terminate a trailing line that was written without a separator
+                batch.write(LINE_SEPARATOR);
+            }
+            long[] lineStarts = new long[lines.size()];
+            int[] lineLengths = new int[lines.size()];
+            for (int i = 0; i < lines.size(); i++) {
+                byte[] bytes = lines.get(i).getBytes(CHARSET);
+                lineStarts[i] = end + batch.size();
+                lineLengths[i] = bytes.length;
+                batch.write(bytes);
+                batch.write(LINE_SEPARATOR);
+            }
+            file.seek(end);
+            file.write(batch.toByteArray());
+            for (int i = 0; i < lines.size(); i++) {
+                addLine(lineStarts[i], lineLengths[i], idOf(lines.get(i)));
+            }
+        }
+        AtomicFileWriter.sync(path, AtomicFileWriter.durabilityOf(path));
+        recordStamp();
+    }
+
+    /**
+     * Replaces the whole content of the file, holding the same lock as the record
+     * updates so a concurrent update is never written to the replaced file.
+     *
+     * @param lines the new lines, without line terminators
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void replaceAll(List<String> lines) throws IOException {
+        AtomicFileWriter.replace(path.toString(), lines);
+        if (Files.exists(journal)) {
+            clearJournal(AtomicFileWriter.durabilityOf(path)); // The new content supersedes a shift left half-done
+        }
+        invalidate();
+    }
+
+    private synchronized void invalidate() {
+        indexedSize = -1;
+        indexedModified = -1;
+    }
+
+    // The content of the file from a byte offset to its end, as a shift leaves it
+    private static class Shift {
+        private final long from;
+        private final byte[] tail;
+
+        private Shift(long from, byte[] tail) {
+            this.from = from;
+            this.tail = tail;
+        }
+    }
+
+    // Rebuilds the index if the file changed since it was last indexed
+    private void ensureIndexed() throws IOException {
+        if (!Files.exists(path)) {
+            Files.createFile(path);
+        }
+        finishShift(); // Left by another process that stopped mid-shift
+        long currentSize = Files.size(path);
+        long currentModified = Files.getLastModifiedTime(path).toMillis();
+        if (currentSize == indexedSize && currentModified == indexedModified) {
+            return;
+        }
+
+        size = 0;
+        index.clear();
+        duplicateIds.clear();
+        byte[] content = Files.readAllBytes(path);
+        int lineStart = 0;
+        for (int i = 0; i <= content.length; i++) {
+            if (i == content.length || content[i] == '\n') {
+                if (i == content.length && lineStart == i) {
+                    break; // No trailing partial line
+                }
+                int end = i > lineStart && content[i - 1] == '\r' ? i - 1 : i;
+                addLine(lineStart, end - lineStart, idOf(content, lineStart, end));
+                lineStart = i + 1;
+            }
+        }
+        indexedSize = content.length;
+        indexedModified = currentModified;
+    }
+
+    private void addLine(long start, int length, String id) {
+        if (size == starts.length) {
+            int capacity = Math.max(16, size * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        if (index.putIfAbsent(id, size) != null) {
+            duplicateIds.add(id);
+        }
+        size++;
+    }
+
+    // Falls back to a full pass for IDs shared by several lines, replacing (or dropping) each one
+    private void rewriteMatching(String id, String data) throws IOException {
+        StringBuilder content = new StringBuilder();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            for (int i = 0; i < size; i++) {
+                String line = readLine(file, i);
+                if (idOf(line).equals(id)) {
+                    if (data == null) {
+                        continue;
+                    }
+                    line = data;
+                }
+                content.append(line).append(System.lineSeparator());
+            }
+        }
+        AtomicFileWriter.replace(path, content.toString().getBytes(CHARSET));
+        invalidate();
+    }
+
+    // Replaces bytes [from, to) of the file, shifting the bytes after them
+    private void splice(long from, long to, byte[] replacement) throws IOException {
+        byte[] tail;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            int after = (int) (file.length() - to);
+            tail = Arrays.copyOf(replacement, replacement.length + after);
+            file.seek(to);
+            file.readFully(tail, replacement.length, after);
+        }
+        shift(from, tail);
+    }
+
+    // Replaces the file from a byte offset to its end. The new tail is made durable in the
+    // journal before the file is touched, so a crash part way through can be finished.
+    private void shift(long from, byte[] tail) throws IOException {
+        AtomicFileWriter.Durability durability = AtomicFileWriter.durabilityOf(path);
+        // from, length, tail, CRC32 of from and tail
+        ByteBuffer[] record = { ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(from).putInt(tail.length).flip(),
+                ByteBuffer.wrap(tail), ByteBuffer.allocate(Long.BYTES).putLong(crcOf(from, tail)).flip() };
+        boolean created = !Files.exists(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (record[2].hasRemaining()) {
+                channel.write(record);
+            }
+            if (durability != AtomicFileWriter.Durability.NONE) {
+                channel.force(true); // The journal must be on disk before the file is changed
+            }
+        }
+        if (created && durability != AtomicFileWriter.Durability.NONE) {
+            // Kept from then on, so the directory is synced for the first shift only
+            AtomicFileWriter.sync(path.getParent(), AtomicFileWriter.Durability.PER_COMMIT);
+        }
+        writeTail(from, tail);
+    }
+
+    // Copies a tail into the file and truncates it after the tail, then empties the journal.
+    // Writing the same tail twice is harmless, so a crash here is finished by writing it again.
+    private void writeTail(long from, byte[] tail) throws IOException {
+        AtomicFileWriter.Durability durability = AtomicFileWriter.durabilityOf(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(tail);
+            long position = from;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.truncate(from + tail.length);
+            if (durability != AtomicFileWriter.Durability.NONE) {
+                channel.force(true); // The file must be complete on disk before the journal goes
+            }
+        }
+        clearJournal(durability);
+    }
+
+    private void clearJournal(AtomicFileWriter.Durability durability) throws IOException {
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        }
+        AtomicFileWriter.sync(journal, durability);
+    }
+
+    // The shift recorded in the journal, or null if there is none or it was cut short
+    private Shift pendingShift() throws IOException {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(journal);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(content))) {
+            long from = in.readLong();
+            int length = in.readInt();
+            if (from < 0 || length < 0 || length > content.length) {
+                return null;
+            }
+            byte[] tail = new byte[length];
+            in.readFully(tail);
+            return in.readLong() == crcOf(from, tail) ? new Shift(from, tail) : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static long crcOf(long from, byte[] tail) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(from).array());
+        crc.update(tail);
+        return crc.getValue();
+    }
+
+    private String readLine(RandomAccessFile file, int line) throws IOException {
+        return new String(readRange(file, starts[line], starts[line] + lengths[line]), CHARSET);
+    }
+
+    private static byte[] readRange(RandomAccessFile file, long from, long to) throws IOException {
+        byte[] bytes = new byte[(int) (to - from)];
+        file.seek(from);
+        file.readFully(bytes);
+        return bytes;
+    }
+
+    private static boolean endsWithNewline(RandomAccessFile file, long length) throws IOException {
+        file.seek(length - 1);
+        return file.read() == '\n';
+    }
+
+    private void recordStamp() throws IOException {
+        indexedSize = Files.size(path);
+        indexedModified = Files.getLastModifiedTime(path).toMillis();
+    }
+
+    private static String idOf(String line) {
+        int separator = line.indexOf('|');
+        return separator < 0 ? line : line.substring(0, separator);
+    }
+
+    private static String idOf(byte[] content, int from, int to) {
+        int end = from;
+        while (end < to && content[end] != '|') {
+            end++;
+        }
+        return new String(content, from, end - from, CHARSET);
+    }
+}
@@ -0,0 +1,591 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In-memory table of the records in one data file. The file is parsed once and kept
+ * in memory; lookups by ID are served from a hash index and every change is written
+ * through to the file with {@link FileUtils}, touching only the affected line.
+ *
+ * <p>The cache reloads itself when the file changes behind its back: either another
+ * caller wrote it through {@link FileUtils} or another process did, both tracked by
+ * {@link FileUtils#version(String)}. With locking across processes turned off (see
+ * {@link DataFileLock}), changes by other processes are instead detected from the
+ * size and modification time of the file. Records returned by the repository are the
+ * cached instances, so callers that modify one must pass it to {@link #save(Object)}.
+ *
+ * <p>Every write first takes the lock of its record (see {@link RecordLocks}), so a
+ * check and the write it guards are never split by a change to the same record,
+ * while writes to other records only wait for each other's file write. Reads hold the
+ * file's shared {@link DataFileLock} and writes its exclusive one.
+ *
+ * <p>Views derived from the records, such as indexes, are built with
+ * {@link #derive(BiFunction)} and then kept up to date by a {@link Listener}, which
+ * is told of every write made through the repository.
+ *
+ * @param <T> the record type
+ */
+public class Repository<T> {
+
+    /**
+     * Converts between records and the lines of the data file.
+     *
+     * @param <T> the record type
+     */
+    public interface Codec<T> {
+        /**
+         * Parses a line of the file.
+         *
+         * @param line the line, without its terminator
+         * @return the record, or null to skip a malformed line
+         */
+        T parse(String line);
+
+        /**
+         * Formats a record as a line of the file.
+         *
+         * @param record the record
+         * @return the line, without a terminator
+         */
+        String format(T record);
+
+        /**
+         * Returns the ID of a record, which is the first field of its line.
+         *
+         * @param record the record
+         * @return the record ID
+         */
+        String idOf(T record);
+
+        /**
+         * Builds a codec from its three functions.
+         *
+         * @param <T>    the record type
+         * @param parse  parses a line, returning null for a line to skip
+         * @param format formats a record as a line
+         * @param idOf   returns the ID of a record
+         * @return the codec
+         */
+        static <T> Codec<T> of(Function<String, T> parse, Function<T, String> format, Function<T, String> idOf) {
+            return new Codec<T>() {
+                @Override
+                public T parse(String line) {
+                    return parse.apply(line);
+                }
+
+                @Override
+                public String format(T record) {
+                    return format.apply(record);
+                }
+
+                @Override
+                public String idOf(T record) {
+                    return idOf.apply(record);
+                }
+            };
+        }
+
+        /**
+         * Returns a codec that keeps each line as it is, for files whose entity does
+         * not map one-to-one onto the line layout.
+         *
+         * @return the codec
+         */
+        static Codec<String> lines() {
+            return of(line -> line, line -> line, line -> FieldTokenizer.fieldOf(line, 0));
+        }
+    }
+
+    /**
+     * Receives the writes made through a repository, so a view derived from its
+     * records can apply them instead of being rebuilt. Changes the repository finds
+     * made behind its back, by another process or through {@link FileUtils}, are
+     * reloaded without being passed on: they show as a generation the listener has
+     * not seen, and the view must then be built again.
+     *
+     * @param <T> the record type
+     */
+    public interface Listener<T> {
+        /**
+         * Called after each write, while the repository is locked, so calls come one
+         * at a time and in the order of the writes. It must not call back into the
+         * repository.
+         *
+         * @param generation the generation of the records after the write
+         * @param saved      the records added or replaced, as now stored
+         * @param deletedIds the IDs of the records removed
+         */
+        void changed(long generation, List<T> saved, List<String> deletedIds);
+    }
+
+    private final String filePath;
+    private final Path path;
+    private final Codec<T> codec;
+    private final RecordLocks locks;
+    private final DataFileLock fileLock;
+
+    private final List<T> records = new ArrayList<>();
+    private final Map<String, T> byId = new HashMap<>();
+    private final List<Listener<T>> listeners = new CopyOnWriteArrayList<>();
+
+    private long generation; // Bumped whenever the cached records change
+    private long loadedVersion = -1;
+    private long loadedSize = -1;
+    private long loadedModified = -1;
+
+    /**
+     * Creates a repository over the given data file.
+     *
+     * @param filePath the path to the data file
+     * @param codec    the conversion between lines and records
+     */
+    public Repository(String filePath, Codec<T> codec) {
+        this.filePath = filePath;
+        this.path = Paths.get(filePath);
+        this.codec = codec;
+        this.locks = RecordLocks.forFile(filePath);
+        this.fileLock = DataFileLock.forFile(filePath);
+    }
+
+    /**
+     * Finds the record with the given ID.
+     *
+     * @param id the record ID
+     * @return the first record with this ID, or null if there is none
+     */
+    public T findById(String id) {
+        return read(() -> byId.get(id));
+    }
+
+    /**
+     * Returns all records in file order.
+     *
+     * @return a new list holding every record
+     */
+    public List<T> findAll() {
+        return read(() -> new ArrayList<>(records));
+    }
+
+    /**
+     * Returns a snapshot of the ID index, for joining many rows against this file
+     * without going through the repository for each lookup.
+     *
+     * @return a new map from each ID to the first record with that ID
+     */
+    public Map<String, T> indexById() {
+        return read(() -> new HashMap<>(byId));
+    }
+
+    /**
+     * Builds a view from all records and the generation they are at, in one read, so
+     * the view can tell from {@link Listener#changed} which writes it already holds.
+     *
+     * @param <R>   the view type
+     * @param build builds the view from the records, which it must not modify, and
+     *              their generation
+     * @return the view
+     */
+    public <R> R derive(BiFunction<List<T>, Long, R> build) {
+        return read(() -> build.apply(Collections.unmodifiableList(records), generation));
+    }
+
+    /**
+     * Registers a listener for the writes made through this repository.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Listener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the records accepted by the filter, in file order.
+     *
+     * @param filter the test applied to each record
+     * @return the matching records
+     */
+    public List<T> findWhere(Predicate<T> filter) {
+        return read(() -> {
+            List<T> matches = new ArrayList<>();
+            for (T record : records) {
+                if (filter.test(record)) {
+                    matches.add(record);
+                }
+            }
+            return matches;
+        });
+    }
+
+    /**
+     * Appends a new record to the file.
+     *
+     * @param record the record to add
+     */
+    public void add(T record) {
+        write(locks.lock(codec.idOf(record)), () -> {
+            addLocked(record);
+            return null;
+        });
+    }
+
+    private synchronized void addLocked(T record) {
+        refreshIfStale();
+        long before = FileUtils.version(filePath);
+        FileUtils.writeToFile(filePath, codec.format(record));
+        records.add(record);
+        byId.putIfAbsent(codec.idOf(record), record);
+        generation++;
+        markCurrent(before);
+        changed(List.of(record), List.of());
+    }
+
+    /**
+     * Writes a record to the file, replacing the line with the same ID or appending
+     * it if the ID is new.
+     *
+     * @param record the record to save
+     */
+    public void save(T record) {
+        write(locks.lock(codec.idOf(record)), () -> {
+            saveLocked(record);
+            return null;
+        });
+    }
+
+    private synchronized void saveLocked(T record) {
+        refreshIfStale();
+        String id = codec.idOf(record);
+        T existing = byId.get(id);
+        if (existing == null) {
+            addLocked(record);
+            return;
+        }
+        long before = FileUtils.version(filePath);
+        FileUtils.updateToFile(filePath, codec.format(record), id);
+        records.replaceAll(current -> codec.idOf(current).equals(id) ? record : current);
+        byId.put(id, record);
+        generation++;
+        markCurrent(before);
+        changed(List.of(record), List.of());
+    }
+
+    /**
+     * Writes a record to the file only if the stored record with the same ID still
+     * passes a check, such as being at the version the change was based on. The check
+     * and the write happen under the record's lock, so of several sessions changing
+     * the same record from the same starting point only the first succeeds.
+     *
+     * @param record   the record to save
+     * @param expected the check the stored record must pass
+     * @return true if the record was saved, false if it is missing or fails the check
+     */
+    public boolean saveIf(T record, Predicate<T> expected) {
+        return write(locks.lock(codec.idOf(record)), () -> {
+            if (!matches(codec.idOf(record), expected)) {
+                return false;
+            }
+            saveLocked(record);
+            return true;
+        });
+    }
+
+    private synchronized boolean matches(String id, Predicate<T> expected) {
+        refreshIfStale();
+        T current = byId.get(id);
+        return current != null && expected.test(current);
+    }
+
+    /**
+     * Writes several records to the file in one write, each only if the stored record
+     * with the same ID still passes a check. Records that fail the check, or whose ID
+     * is not in the file, are left out; the others are written together.
+     *
+     * @param records  the records to save
+     * @param expected the check each stored record must pass
+     * @return the records that were saved, in the given order
+     */
+    public List<T> saveAllIf(List<T> records, Predicate<T> expected) {
+        List<String> ids = new ArrayList<>();
+        for (T record : records) {
+            ids.add(codec.idOf(record));
+        }
+        return write(locks.lock(ids), () -> saveAllIfLocked(records, expected));
+    }
+
+    private synchronized List<T> saveAllIfLocked(List<T> records, Predicate<T> expected) {
+        refreshIfStale();
+        Map<String, T> accepted = new LinkedHashMap<>();
+        for (T record : records) {
+            String id = codec.idOf(record);
+            T current = byId.get(id);
+            if (current != null && expected.test(current)) {
+                accepted.put(id, record);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, String> lines = new LinkedHashMap<>();
+        for (Map.Entry<String, T> entry : accepted.entrySet()) {
+            lines.put(entry.getKey(), codec.format(entry.getValue()));
+        }
+        long before = FileUtils.version(filePath);
+        FileUtils.updateAllToFile(filePath, lines);
+        this.records.replaceAll(current -> accepted.getOrDefault(codec.idOf(current), current));
+        byId.putAll(accepted);
+        generation++;
+        markCurrent(before);
+        List<T> saved = new ArrayList<>(accepted.values());
+        changed(saved, List.of());
+        return saved;
+    }
+
+    /**
+     * Removes every record with the given ID from the file.
+     *
+     * @param id the record ID
+     */
+    public void delete(String id) {
+        write(locks.lock(id), () -> {
+            deleteLocked(id);
+            return null;
+        });
+    }
+
+    /**
+     * Removes every record with the given ID from the file, only if the stored record
+     * with that ID still passes a check, such as being at the version the caller read.
+     * The check and the delete happen under the record's lock, as in
+     * {@link #saveIf(Object, Predicate)}.
+     *
+     * @param id       the record ID
+     * @param expected the check the stored record must pass
+     * @return true if the record was removed, false if it is missing or fails the check
+     */
+    public boolean deleteIf(String id, Predicate<T> expected) {
+        return write(locks.lock(id), () -> {
+            if (!matches(id, expected)) {
+                return false;
+            }
+            deleteLocked(id);
+            return true;
+        });
+    }
+
+    private synchronized void deleteLocked(String id) {
+        refreshIfStale();
+        long before = FileUtils.version(filePath);
+        FileUtils.deleteFromFile(filePath, id);
+        records.removeIf(record -> codec.idOf(record).equals(id));
+        byId.remove(id);
+        generation++;
+        markCurrent(before);
+        changed(List.of(), List.of(id));
+    }
+
+    /**
+     * Returns a counter that changes whenever the records change, through this
+     * repository or behind its back. Views derived from {@link #findAll()} compare it
+     * to know when to rebuild.
+     *
+     * @return the current generation of the records
+     */
+    public long generation() {
+        return read(() -> generation);
+    }
+
+    /**
+     * Drops the cached records so the next access reloads them from the file.
+     */
+    public synchronized void invalidate() {
+        loadedVersion = -1;
+    }
+
+    // The data file and codec, for a Transaction writing records of this repository
+    String filePath() {
+        return filePath;
+    }
+
+    String idOf(T record) {
+        return codec.idOf(record);
+    }
+
+    String lineOf(T record) {
+        return codec.format(record);
+    }
+
+    // Finds the stored records of several IDs with one read, for checking a Transaction
+    Map<String, T> findAllById(Collection<String> ids) {
+        return read(() -> {
+            Map<String, T> found = new HashMap<>();
+            for (String id : ids) {
+                T record = byId.get(id);
+                if (record != null) {
+                    found.put(id, record);
+                }
+            }
+            return found;
+        });
+    }
+
+    // Writes the records of a Transaction, with one append for the new records and one
+    // update for the changed ones, and keeps the cache in step with the file. The
+    // transaction already holds the locks of the records and of the file.
+    synchronized void writeAll(List<T> added, Map<String, T> updated) throws IOException {
+        refreshIfStale();
+        long before = FileUtils.version(filePath);
+        int writes = 0;
+        if (!added.isEmpty()) {
+            List<String> lines = new ArrayList<>();
+            for (T record : added) {
+                lines.add(codec.format(record));
+            }
+            FileUtils.appendLines(filePath, lines);
+            writes++;
+        }
+        if (!updated.isEmpty()) {
+            Map<String, String> lines = new LinkedHashMap<>();
+            for (Map.Entry<String, T> entry : updated.entrySet()) {
+                lines.put(entry.getKey(), codec.format(entry.getValue()));
+            }
+            FileUtils.updateLines(filePath, lines);
+            writes++;
+        }
+        for (T record : added) {
+            records.add(record);
+            byId.putIfAbsent(codec.idOf(record), record);
+        }
+        if (!updated.isEmpty()) {
+            records.replaceAll(current -> updated.getOrDefault(codec.idOf(current), current));
+            byId.putAll(updated);
+        }
+        generation++;
+        markCurrent(before, writes);
+        List<T> saved = new ArrayList<>(added);
+        saved.addAll(updated.values());
+        changed(saved, List.of());
+    }
+
+    // Tells the listeners of a write, with the generation it brought the records to
+    private void changed(List<T> saved, List<String> deletedIds) {
+        for (Listener<T> listener : listeners) {
+            listener.changed(generation, saved, deletedIds);
+        }
+    }
+
+    // Runs a query on the cached records, under the file's shared lock
+    private <R> R read(Supplier<R> query) {
+        DataFileLock.Held held = fileLock.shared();
+        try {
+            synchronized (this) {
+                refreshIfStale();
+                return query.get();
+            }
+        } finally {
+            held.close();
+        }
+    }
+
+    // Runs a write under the given record locks and the file's exclusive lock, then
+    // releases both
+    private <R> R write(RecordLocks.Held held, Supplier<R> write) {
+        try {
+            DataFileLock.Held fileHeld = fileLock.exclusive();
+            try {
+                return write.get();
+            } finally {
+                fileHeld.close();
+            }
+        } finally {
+            held.close();
+        }
+    }
+
+    // Whether changes by other processes show only in the size and modification time of
+    // the file. Locked writers move the version on instead, and the write-ahead log is
+    // kept in memory, so its file stamps say nothing about what the cache holds.
+    private static boolean checksFileStamp() {
+        return !WriteAheadLog.isEnabled() && !DataFileLock.isEnabled();
+    }
+
+    private void refreshIfStale() {
+        long version = FileUtils.version(filePath);
+        long size = -1;
+        long modified = -1;
+        if (checksFileStamp()) {
+            try {
+                if (Files.exists(path)) {
+                    size = Files.size(path);
+                    modified = Files.getLastModifiedTime(path).toMillis();
+                }
+            } catch (IOException e) {
+                // Treat an unreadable stamp as a change and reload below
+            }
+        }
+        if (version == loadedVersion && size == loadedSize && modified == loadedModified) {
+            return;
+        }
+
+        records.clear();
+        byId.clear();
+        for (String line : FileUtils.readAllLines(filePath)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            T record;
+            try {
+                record = codec.parse(line);
+            } catch (RuntimeException e) {
+                System.out.println("Skipping invalid record in " + filePath + ": " + line);
+                continue;
+            }
+            if (record == null) {
+                continue;
+            }
+            records.add(record);
+            byId.putIfAbsent(codec.idOf(record), record);
+        }
+        generation++;
+        loadedVersion = version;
+        loadedSize = size;
+        loadedModified = modified;
+    }
+
+    // Keeps the cache valid after its own write, unless another writer got in between
+    private void markCurrent(long versionBefore) {
+        markCurrent(versionBefore, 1);
+    }
+
+    private void markCurrent(long versionBefore, int writes) {
+        long version = FileUtils.version(filePath);
+        if (version != versionBefore + writes) {
+            loadedVersion = -1;
+            return;
+        }
+        loadedVersion = version;
+        if (checksFileStamp()) {
+            try {
+                loadedSize = Files.size(path);
+                loadedModified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                loadedVersion = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package utility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders a listing as a table of left-aligned columns. Rows are collected first, so
+ * each column is as wide as its longest value (and at least its given width), and the
+ * widths are known before the first line is written. Each page is then formatted into
+ * one reused buffer and sent to the terminal in a single write, instead of a
+ * {@code printf} call per row.
+ *
+ * <p>Listings longer than a page are shown a page at a time, with a prompt to move to
+ * the next page, jump to a page number or stop. The page size is set with
+ * {@code -Dhms.table.pageSize} (default 50).
+ */
+public class TableRenderer {
+
+    private static final int PAGE_SIZE = Math.max(1, Integer.getInteger("hms.table.pageSize", 50));
+    private static final char RULE = '═';
+
+    private final List<String> headers = new ArrayList<>();
+    private final List<Integer> widths = new ArrayList<>();
+    private final List<String[]> rows = new ArrayList<>();
+    private final StringBuilder page = new StringBuilder();
+
+    /**
+     * Adds a column to the table.
+     *
+     * @param header   the column heading
+     * @param minWidth the narrowest the column may be, in characters
+     * @return this table, for chaining
+     */
+    public TableRenderer column(String header, int minWidth) {
+        headers.add(header);
+        widths.add(Math.max(minWidth, header.length()));
+        return this;
+    }
+
+    /**
+     * Adds a row to the table, widening any column its values do not fit.
+     *
+     * @param values the value of each column, in column order
+     * @return this table, for chaining
+     */
+    public TableRenderer addRow(Object... values) {
+        if (values.length != headers.size()) {
+            throw new IllegalArgumentException("Expected " + headers.size() + " values, got " + values.length);
+        }
+        String[] row = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            row[i] = String.valueOf(values[i]);
+            if (row[i].length() > widths.get(i)) {
+                widths.set(i, row[i].length());
+            }
+        }
+        rows.add(row);
+        return this;
+    }
+
+    /**
+     * Returns the number of rows added so far.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Writes the table to the terminal, a page at a time if it is longer than a page.
+     *
+     * @param terminal the terminal to write to, and to read page choices from
+     */
+    public void print(Terminal terminal) {
+        int pageCount = Math.max(1, (rows.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        int pageNumber = 1;
+
+        while (true) {
+            renderPage(pageNumber, pageCount);
+            terminal.printBlock(page);
+            if (pageCount == 1) {
+                return;
+            }
+
+            System.out.print("Enter a page number (1-" + pageCount + "), press Enter for the next page, or 0 to stop: ");
+            String input = terminal.nextLine().trim();
+            if (input.isEmpty()) {
+                if (pageNumber == pageCount) {
+                    return;
+                }
+                pageNumber++;
+                continue;
+            }
+            try {
+                int selected = Integer.parseInt(input);
+                if (selected == 0) {
+                    return;
+                }
+                if (selected >= 1 && selected <= pageCount) {
+                    pageNumber = selected;
+                } else {
+                    System.out.println("Invalid page. Please enter a number between 1 and " + pageCount + ".");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input. Please enter a page number.");
+            }
+        }
+    }
+
+    // Formats the header and the rows of one page into the page buffer
+    private void renderPage(int pageNumber, int pageCount) {
+        page.setLength(0);
+        appendLine(headers.toArray(new String[0]));
+
+        int ruleLength = -1;
+        for (int width : widths) {
+            ruleLength += width + 1;
+        }
+        for (int i = 0; i < ruleLength; i++) {
+            page.append(RULE);
+        }
+        page.append('\n');
+
+        int from = (pageNumber - 1) * PAGE_SIZE;
+        int to = Math.min(from + PAGE_SIZE, rows.size());
+        for (int i = from; i < to; i++) {
+            appendLine(rows.get(i));
+        }
+        if (pageCount > 1) {
+            page.append("Page ").append(pageNumber).append(" of ").append(pageCount)
+                    .append(" (rows ").append(from + 1).append('-').append(to)
+                    .append(" of ").append(rows.size()).append(")\n");
+        }
+    }
+
+    // Appends one line of padded cells, separated by a space
+    private void appendLine(String[] cells) {
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                page.append(' ');
+            }
+            page.append(cells[i]);
+            for (int pad = cells[i].length(); pad < widths.get(i); pad++) {
+                page.append(' ');
+            }
+        }
+        page.append('\n');
+    }
+}
@@ -0,0 +1,481 @@
+package utility;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.InputMismatchException;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * The console of one session: where the menus read the user's answers and print
+ * their screens. The terminal program has one on standard input and output; in
+ * server mode each connection has its own.
+ *
+ * <p>Input is read one line at a time. The token methods ({@link #nextInt()},
+ * {@link #next()} and so on) skip blank lines like a {@code Scanner}, but each
+ * consumes the whole line it was typed on, so no newline is left behind for the
+ * next prompt.
+ *
+ * <p>Output is buffered and flushed once per screen, right before the terminal
+ * waits for input. While a terminal is bound to a thread with {@link #bind(Terminal)},
+ * {@code System.out} on that thread writes to it, so controllers keep printing with
+ * {@code System.out} unchanged.
+ */
+public class Terminal {
+
+    private static final ThreadLocal<Terminal> CURRENT = new ThreadLocal<>();
+    private static PrintStream consoleOut; // Standard output before routing was installed
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final Charset charset;
+    private final String source;
+    private volatile String sessionToken; // Session of the user logged in on this terminal, if any
+    private String pendingLine; // Line peeked at by hasNextInt, not yet consumed
+
+    /**
+     * Creates a terminal over the given streams.
+     *
+     * @param in      the stream the user's input is read from
+     * @param out     the stream the screens are written to
+     * @param charset the character encoding of both streams
+     */
+    public Terminal(InputStream in, OutputStream out, Charset charset) {
+        this(in, out, charset, "console");
+    }
+
+    /**
+     * Creates a terminal over the given streams, for a user connecting from the given
+     * source.
+     *
+     * @param in      the stream the user's input is read from
+     * @param out     the stream the screens are written to
+     * @param charset the character encoding of both streams
+     * @param source  where the user connects from, such as the client's address, or
+     *                null if that does not tell the client apart from others
+     */
+    public Terminal(InputStream in, OutputStream out, Charset charset, String source) {
+        this.in = new BufferedReader(new InputStreamReader(in, charset));
+        this.out = new PrintStream(new BufferedOutputStream(out), false, charset);
+        this.charset = charset;
+        this.source = source;
+    }
+
+    /**
+     * Creates a terminal on the standard input and output of the process.
+     *
+     * @return the console terminal
+     */
+    public static Terminal console() {
+        return new Terminal(System.in, consoleOut != null ? consoleOut : System.out, Charset.defaultCharset());
+    }
+
+    /**
+     * Binds a terminal to the calling thread, routing its {@code System.out} there
+     * until {@link #unbind()}.
+     *
+     * @param terminal the terminal of the session running on this thread
+     */
+    public static void bind(Terminal terminal) {
+        routeSystemOut();
+        CURRENT.set(terminal);
+    }
+
+    /**
+     * Flushes the calling thread's terminal and detaches it.
+     */
+    public static void unbind() {
+        Terminal terminal = CURRENT.get();
+        if (terminal != null) {
+            terminal.flush();
+            CURRENT.remove();
+        }
+    }
+
+    // Replaces System.out with a stream that writes to the calling thread's terminal
+    private static synchronized void routeSystemOut() {
+        if (consoleOut == null) {
+            consoleOut = System.out;
+            System.setOut(new RoutingPrintStream());
+        }
+    }
+
+    private static PrintStream currentOut() {
+        Terminal terminal = CURRENT.get();
+        return terminal != null ? terminal.out : consoleOut;
+    }
+
+    /**
+     * Returns where the user of this terminal connects from.
+     *
+     * @return the client's address in server mode, null for a client on this host, or
+     *         {@code console}
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the token of the session of the user logged in on this terminal.
+     *
+     * @return the session token, or null if no user is logged in
+     */
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    /**
+     * Sets the token of the session of the user logged in on this terminal.
+     *
+     * @param sessionToken the session token, or null once the user has logged out
+     */
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    /**
+     * Reads the next line of input.
+     *
+     * @return the line, without its terminator
+     * @throws NoSuchElementException if the input has ended
+     */
+    public String nextLine() {
+        if (pendingLine != null) {
+            String line = pendingLine;
+            pendingLine = null;
+            return line;
+        }
+        flush(); // Show the screen before waiting for the answer
+        try {
+            String line = in.readLine();
+            if (line == null) {
+                throw new NoSuchElementException("No line found");
+            }
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next non-blank line and returns its first word.
+     *
+     * @return the first word of the line
+     * @throws NoSuchElementException if the input has ended
+     */
+    public String next() {
+        return firstToken(nextNonBlankLine());
+    }
+
+    /**
+     * Returns whether the first word of the next non-blank line is an integer,
+     * without consuming the line.
+     *
+     * @return true if {@link #nextInt()} would succeed
+     * @throws NoSuchElementException if the input has ended
+     */
+    public boolean hasNextInt() {
+        pendingLine = nextNonBlankLine();
+        try {
+            Integer.parseInt(firstToken(pendingLine));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the first word of the next non-blank line is a decimal number,
+     * without consuming the line.
+     *
+     * @return true if {@link #nextDouble()} would succeed
+     * @throws NoSuchElementException if the input has ended
+     */
+    public boolean hasNextDouble() {
+        pendingLine = nextNonBlankLine();
+        try {
+            Double.parseDouble(firstToken(pendingLine));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the next non-blank line as an integer. A line that is not an integer
+     * is left unread.
+     *
+     * @return the first word of the line as an integer
+     * @throws InputMismatchException if it is not an integer
+     * @throws NoSuchElementException if the input has ended
+     */
+    public int nextInt() {
+        String line = nextNonBlankLine();
+        try {
+            return Integer.parseInt(firstToken(line));
+        } catch (NumberFormatException e) {
+            pendingLine = line;
+            throw new InputMismatchException(line);
+        }
+    }
+
+    /**
+     * Reads the next non-blank line as a decimal number. A line that is not a number
+     * is left unread.
+     *
+     * @return the first word of the line as a double
+     * @throws InputMismatchException if it is not a number
+     * @throws NoSuchElementException if the input has ended
+     */
+    public double nextDouble() {
+        String line = nextNonBlankLine();
+        try {
+            return Double.parseDouble(firstToken(line));
+        } catch (NumberFormatException e) {
+            pendingLine = line;
+            throw new InputMismatchException(line);
+        }
+    }
+
+    /**
+     * Prints text without ending the line.
+     *
+     * @param text the text to print
+     */
+    public void print(String text) {
+        out.print(text);
+    }
+
+    /**
+     * Prints a line of text.
+     *
+     * @param text the text to print
+     */
+    public void println(String text) {
+        out.println(text);
+    }
+
+    /**
+     * Prints formatted text.
+     *
+     * @param format the format string
+     * @param args   the arguments referenced by the format string
+     */
+    public void printf(String format, Object... args) {
+        out.printf(format, args);
+    }
+
+    /**
+     * Sends a block of text, such as a page of a table, to the user in a single write
+     * rather than through the line buffer.
+     *
+     * @param text the text to send
+     */
+    public void printBlock(CharSequence text) {
+        byte[] bytes = text.toString().getBytes(charset);
+        out.flush(); // Keep anything printed before the block ahead of it
+        out.write(bytes, 0, bytes.length);
+        out.flush();
+    }
+
+    /**
+     * Sends everything printed so far to the user.
+     */
+    public void flush() {
+        out.flush();
+    }
+
+    private String nextNonBlankLine() {
+        String line = nextLine();
+        while (line.isBlank()) {
+            line = nextLine();
+        }
+        return line;
+    }
+
+    private static String firstToken(String line) {
+        return line.trim().split("\\s+", 2)[0];
+    }
+
+    // Forwards every call to the thread's terminal, or to standard output
+    private static class RoutingPrintStream extends PrintStream {
+
+        private RoutingPrintStream() {
+            super(OutputStream.nullOutputStream());
+        }
+
+        @Override
+        public void write(int b) {
+            currentOut().write(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            currentOut().write(buffer, offset, length);
+        }
+
+        @Override
+        public void write(byte[] buffer) throws IOException {
+            currentOut().write(buffer);
+        }
+
+        @Override
+        public void flush() {
+            currentOut().flush();
+        }
+
+        @Override
+        public void close() {
+            currentOut().flush(); // The owner of the terminal closes its stream
+        }
+
+        @Override
+        public boolean checkError() {
+            return currentOut().checkError();
+        }
+
+        @Override
+        public void print(boolean b) {
+            currentOut().print(b);
+        }
+
+        @Override
+        public void print(char c) {
+            currentOut().print(c);
+        }
+
+        @Override
+        public void print(int i) {
+            currentOut().print(i);
+        }
+
+        @Override
+        public void print(long l) {
+            currentOut().print(l);
+        }
+
+        @Override
+        public void print(float f) {
+            currentOut().print(f);
+        }
+
+        @Override
+        public void print(double d) {
+            currentOut().print(d);
+        }
+
+        @Override
+        public void print(char[] s) {
+            currentOut().print(s);
+        }
+
+        @Override
+        public void print(String s) {
+            currentOut().print(s);
+        }
+
+        @Override
+        public void print(Object obj) {
+            currentOut().print(obj);
+        }
+
+        @Override
+        public void println() {
+            currentOut().println();
+        }
+
+        @Override
+        public void println(boolean x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public void println(char x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public void println(int x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public void println(long x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public void println(float x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public void println(double x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public void println(char[] x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public void println(String x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public void println(Object x) {
+            currentOut().println(x);
+        }
+
+        @Override
+        public PrintStream printf(String format, Object... args) {
+            currentOut().printf(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream printf(Locale l, String format, Object... args) {
+            currentOut().printf(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(String format, Object... args) {
+            currentOut().format(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(Locale l, String format, Object... args) {
+            currentOut().format(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq) {
+            currentOut().append(csq);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq, int start, int end) {
+            currentOut().append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(char c) {
+            currentOut().append(c);
+            return this;
+        }
+    }
+}
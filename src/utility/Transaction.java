@@ -0,0 +1,301 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Set of record writes across several data files that are committed as one unit:
+ * either every write is made or none is.
+ *
+ * <p>On commit, the locks of the records involved are taken together (see
+ * {@link RecordLocks#lockAll(Map)}) and every write is checked against the stored
+ * records. If all checks pass, the writes
+ * are first recorded in a redo log ({@code data/transaction.log}), then applied with
+ * one batch per data file, and the log is removed. A run that stops between the two
+ * leaves the log behind, and {@link #recover()} applies it again at the next startup.
+ * Applying a write twice is harmless, since each write puts a whole line by its ID.
+ * Transactions share the redo log, so they commit one at a time, in this process and
+ * across processes sharing the data directory (see {@link DataFileLock}); the data
+ * files written are locked exclusively until the commit is done.
+ *
+ * <p>Log records are one per line:
+ * <ul>
+ * <li>{@code B|<id>} - start of the transaction</li>
+ * <li>{@code P|<file>|<line>} - line put into the file, replacing the line with the
+ * same ID or appended if the ID is new</li>
+ * <li>{@code C|<id>|<crc>} - commit marker, holding the CRC32 of the records before it</li>
+ * </ul>
+ * A log without a valid commit marker was cut short before anything was applied, and
+ * is discarded.
+ */
+public class Transaction {
+
+    private static final Path REDO_LOG = Paths.get("data/transaction.log");
+    private static final DataFileLock REDO_LOG_LOCK = DataFileLock.forFile(REDO_LOG.toString());
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final Object COMMIT_LOCK = new Object();
+
+    private static long lastId = System.currentTimeMillis();
+
+    private final List<Write<?>> writes = new ArrayList<>();
+
+    // One record to write, with the check the stored record must pass
+    private static class Write<T> {
+        private final Repository<T> repository;
+        private final T record;
+        private final Predicate<T> expected; // Null for a new record
+
+        private Write(Repository<T> repository, T record, Predicate<T> expected) {
+            this.repository = repository;
+            this.record = record;
+            this.expected = expected;
+        }
+
+        private boolean isAllowed(T current) {
+            return expected == null ? current == null : current != null && expected.test(current);
+        }
+    }
+
+    /**
+     * Adds a new record to the transaction. The commit fails if a record with the same
+     * ID already exists.
+     *
+     * @param <T>        the record type
+     * @param repository the repository of the data file
+     * @param record     the record to add
+     * @return this transaction, for chaining
+     */
+    public <T> Transaction insert(Repository<T> repository, T record) {
+        writes.add(new Write<>(repository, record, null));
+        return this;
+    }
+
+    /**
+     * Adds a change to an existing record to the transaction. The commit fails if the
+     * stored record with the same ID is missing or fails the check.
+     *
+     * @param <T>        the record type
+     * @param repository the repository of the data file
+     * @param record     the record to save
+     * @param expected   the check the stored record must pass, such as being at the
+     *                   version the change was based on
+     * @return this transaction, for chaining
+     */
+    public <T> Transaction update(Repository<T> repository, T record, Predicate<T> expected) {
+        writes.add(new Write<>(repository, record, expected));
+        return this;
+    }
+
+    /**
+     * Checks and writes every record of the transaction as one unit.
+     *
+     * @return true if the transaction was committed, false if a check failed or the
+     *         redo log could not be written, in which case nothing was written. Once
+     *         the redo log is written the transaction counts as committed: if applying
+     *         it fails even when tried a second time, it stays in the log and is applied
+     *         before the next commit or at the next startup.
+     */
+    public boolean commit() {
+        if (writes.isEmpty()) {
+            return true;
+        }
+        Map<String, List<String>> idsByFile = new LinkedHashMap<>();
+        for (Write<?> write : writes) {
+            idsByFile.computeIfAbsent(write.repository.filePath(), file -> new ArrayList<>()).add(idOf(write));
+        }
+
+        synchronized (COMMIT_LOCK) {
+            DataFileLock.Held logHeld = REDO_LOG_LOCK.exclusive();
+            try {
+                RecordLocks.Held held = RecordLocks.lockAll(idsByFile);
+                try {
+                    DataFileLock.Held filesHeld = DataFileLock.exclusiveAll(idsByFile.keySet());
+                    try {
+                        return commitLocked();
+                    } finally {
+                        filesHeld.close();
+                    }
+                } finally {
+                    held.close();
+                }
+            } finally {
+                logHeld.close();
+            }
+        }
+    }
+
+    /**
+     * Applies the transaction left in the redo log by an interrupted run, if any. Must
+     * be called at startup, after {@link WriteAheadLog#recover(String)}.
+     */
+    public static void recover() {
+        synchronized (COMMIT_LOCK) {
+            DataFileLock.Held held = REDO_LOG_LOCK.exclusive();
+            try {
+                redo();
+            } catch (IOException e) {
+                System.out.println("Error recovering transaction log: " + e.getMessage());
+            } finally {
+                held.close();
+            }
+        }
+    }
+
+    // Checks and writes the records, with their locks held
+    private boolean commitLocked() {
+        Map<Repository<?>, List<Write<?>>> byRepository = byRepository();
+        try {
+            redo(); // A transaction that failed to apply must be finished before the log is reused
+        } catch (IOException e) {
+            System.out.println("Error committing transaction: " + e.getMessage());
+            return false;
+        }
+        for (Map.Entry<Repository<?>, List<Write<?>>> entry : byRepository.entrySet()) {
+            if (!isAllowed(entry.getKey(), entry.getValue())) {
+                return false;
+            }
+        }
+        try {
+            writeLog();
+        } catch (IOException e) {
+            System.out.println("Error committing transaction: " + e.getMessage());
+            try {
+                Files.deleteIfExists(REDO_LOG); // Must not be applied later, as the commit is reported failed
+            } catch (IOException deleteError) {
+                System.out.println("Error removing transaction log: " + deleteError.getMessage());
+            }
+            return false;
+        }
+
+        // Logged, so from here on the transaction is committed and only its writes are pending
+        try {
+            apply(byRepository);
+            Files.delete(REDO_LOG);
+        } catch (IOException e) {
+            try {
+                redo();
+            } catch (IOException retryError) {
+                System.out.println("Error applying transaction, it will be applied again later: "
+                        + retryError.getMessage());
+            }
+        }
+        return true;
+    }
+
+    // Writes the whole transaction to the redo log with one write
+    private void writeLog() throws IOException {
+        long id = ++lastId;
+        StringBuilder records = new StringBuilder();
+        records.append("B|").append(id).append('\n');
+        for (Write<?> write : writes) {
+            records.append("P|").append(write.repository.filePath()).append('|').append(lineOf(write)).append('\n');
+        }
+        String content = records + "C|" + id + "|" + crcOf(records.toString()) + "\n";
+        Files.write(REDO_LOG, content.getBytes(CHARSET), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        AtomicFileWriter.sync(REDO_LOG, AtomicFileWriter.durabilityOf(REDO_LOG));
+    }
+
+    private Map<Repository<?>, List<Write<?>>> byRepository() {
+        Map<Repository<?>, List<Write<?>>> byRepository = new LinkedHashMap<>();
+        for (Write<?> write : writes) {
+            byRepository.computeIfAbsent(write.repository, repository -> new ArrayList<>()).add(write);
+        }
+        return byRepository;
+    }
+
+    // Checks the writes to one data file against its stored records, looked up together
+    @SuppressWarnings("unchecked") // Every write in the list belongs to this repository
+    private static <T> boolean isAllowed(Repository<T> repository, List<Write<?>> writes) {
+        List<String> ids = new ArrayList<>();
+        for (Write<?> write : writes) {
+            ids.add(idOf(write));
+        }
+        Map<String, T> stored = repository.findAllById(ids);
+        for (Write<?> write : writes) {
+            Write<T> typed = (Write<T>) write;
+            if (!typed.isAllowed(stored.get(repository.idOf(typed.record)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Applies the writes with one append and one update per data file
+    private void apply(Map<Repository<?>, List<Write<?>>> byRepository) throws IOException {
+        for (Map.Entry<Repository<?>, List<Write<?>>> entry : byRepository.entrySet()) {
+            applyTo(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked") // Every write in the list belongs to this repository
+    private static <T> void applyTo(Repository<T> repository, List<Write<?>> writes) throws IOException {
+        List<T> added = new ArrayList<>();
+        Map<String, T> updated = new LinkedHashMap<>();
+        for (Write<?> write : writes) {
+            Write<T> typed = (Write<T>) write;
+            if (typed.expected == null) {
+                added.add(typed.record);
+            } else {
+                updated.put(repository.idOf(typed.record), typed.record);
+            }
+        }
+        repository.writeAll(added, updated);
+    }
+
+    // Puts every line of a committed transaction left in the redo log, then removes the log
+    private static void redo() throws IOException {
+        if (!Files.exists(REDO_LOG)) {
+            return;
+        }
+        String content = new String(Files.readAllBytes(REDO_LOG), CHARSET);
+        int commitStart = content.lastIndexOf("\nC|", content.length() - 2) + 1;
+        String[] marker = commitStart > 0 ? content.substring(commitStart).trim().split("\\|") : new String[0];
+        String records = content.substring(0, commitStart);
+        if (marker.length != 3 || !records.startsWith("B|" + marker[1] + "\n")
+                || !marker[2].equals(String.valueOf(crcOf(records)))) {
+            // Cut short while being written, so none of it was applied
+            System.out.println("Discarding incomplete transaction log.");
+            Files.delete(REDO_LOG);
+            return;
+        }
+
+        for (String record : records.split("\n")) {
+            if (!record.startsWith("P|")) {
+                continue;
+            }
+            String[] put = record.split("\\|", 3);
+            String id = FieldTokenizer.fieldOf(put[2], 0);
+            if (FileUtils.find(put[1], id) != null) {
+                FileUtils.updateLines(put[1], Map.of(id, put[2]));
+            } else {
+                FileUtils.appendLines(put[1], List.of(put[2]));
+            }
+        }
+        Files.delete(REDO_LOG);
+    }
+
+    private static <T> String lineOf(Write<T> write) {
+        return write.repository.lineOf(write.record);
+    }
+
+    private static <T> String idOf(Write<T> write) {
+        return write.repository.idOf(write.record);
+    }
+
+    private static long crcOf(String records) {
+        CRC32 crc = new CRC32();
+        crc.update(records.getBytes(CHARSET));
+        return crc.getValue();
+    }
+}
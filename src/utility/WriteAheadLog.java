@@ -0,0 +1,554 @@
+package utility;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only persistence for a pipe-delimited data file. Instead of rewriting the
+ * whole file, every append, update and delete is written as one record to a sidecar
+ * log ({@code <file>.wal}), and the current contents are kept in memory. A background
+ * compactor periodically folds the log into a fresh snapshot of the data file and
+ * truncates the log.
+ *
+ * <p>Log records are one per line:
+ * <ul>
+ * <li>{@code S|<crc>} - header holding the CRC32 of the snapshot the log applies to</li>
+ * <li>{@code A|<line>} - line appended to the file</li>
+ * <li>{@code U|<id>|<line>} - every line with this ID replaced (upsert)</li>
+ * <li>{@code D|<id>} - every line with this ID removed (tombstone)</li>
+ * <li>{@code B|<count>|<crc>} - frame of a batch: the next {@code count} records,
+ * whose CRC32 is {@code crc}, are applied together</li>
+ * </ul>
+ * A log whose header does not match the snapshot has already been folded and is discarded.
+ * A torn tail, a partial last record or a batch whose records are missing or do not
+ * match its CRC, is not replayed and is cut off the log, so a batch is recovered
+ * entirely or not at all.
+ *
+ * <p>The current lines are indexed by record ID, as in {@link RecordStore}, so finds,
+ * upserts and deletes of a single record do not scan the file. Removed lines are left
+ * as holes until they make up half of the list.
+ *
+ * <p>Compaction takes the data file's exclusive {@link DataFileLock}. When another
+ * process is found to have written the file, the in-memory contents are dropped with
+ * {@link #reload(String)} and read again from the snapshot and log.
+ *
+ * <p>The mode is enabled with {@code -Dhms.persistence=wal}; the compaction interval
+ * in seconds is set with {@code -Dhms.wal.compactInterval} (default 30).
+ */
+public class WriteAheadLog {
+
+    private static final String LOG_SUFFIX = ".wal";
+    private static final boolean ENABLED = "wal".equalsIgnoreCase(System.getProperty("hms.persistence", "rewrite"));
+    private static final long COMPACT_INTERVAL_SECONDS = Long.getLong("hms.wal.compactInterval", 30);
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    private static final Map<String, WriteAheadLog> LOGS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService compactor;
+
+    private final Path snapshot;
+    private final Path log;
+    private List<String> lines;     // Current contents: snapshot with the log replayed on top; null for removed lines
+    private final Map<String, Integer> index = new HashMap<>(); // Record ID -> first line holding it
+    private final Set<String> duplicateIds = new HashSet<>();   // IDs that appear on more than one line
+    private int removedLines;
+    private String content;         // Text of the current lines, kept until the next change
+    private long snapshotCrc;
+    private int pendingRecords;     // Records written to the log since the last compaction
+
+    private WriteAheadLog(Path snapshot) {
+        this.snapshot = snapshot;
+        this.log = Paths.get(snapshot + LOG_SUFFIX);
+    }
+
+    /**
+     * Returns whether data files should be persisted through the write-ahead log.
+     *
+     * @return true if {@code hms.persistence} is set to {@code wal}
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the shared log for the given data file, starting the background
+     * compactor on first use.
+     *
+     * @param filePath the path to the data file
+     * @return the write-ahead log of the file
+     */
+    public static WriteAheadLog forFile(String filePath) {
+        startCompactor();
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        return LOGS.computeIfAbsent(path.toString(), key -> new WriteAheadLog(path));
+    }
+
+    /**
+     * Folds any log left behind by an earlier run into its data file. Called once at
+     * startup so every reader sees the logged changes, whichever persistence mode is active.
+     *
+     * @param dataDirectory the directory holding the data files
+     */
+    public static void recover(String dataDirectory) {
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(Paths.get(dataDirectory), "*" + LOG_SUFFIX)) {
+            for (Path logFile : logs) {
+                String name = logFile.toString();
+                forFile(name.substring(0, name.length() - LOG_SUFFIX.length())).compactLocked();
+            }
+        } catch (IOException e) {
+            System.out.println("Error recovering write-ahead logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Folds every open log into its data file.
+     */
+    public static void compactAll() {
+        for (WriteAheadLog wal : LOGS.values()) {
+            try {
+                wal.compactLocked();
+            } catch (IOException e) {
+                System.out.println("Error compacting " + wal.snapshot + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops the in-memory contents of the given file's log, if it is open, so they are
+     * read again from the snapshot and log on next access.
+     *
+     * @param filePath the path to the data file
+     */
+    static void reload(String filePath) {
+        WriteAheadLog wal = LOGS.get(Paths.get(filePath).toAbsolutePath().normalize().toString());
+        if (wal != null) {
+            wal.unload();
+        }
+    }
+
+    private synchronized void unload() {
+        lines = null;
+        content = null;
+    }
+
+    private static synchronized void startCompactor() {
+        if (compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(WriteAheadLog::compactAll,
+                COMPACT_INTERVAL_SECONDS, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(WriteAheadLog::compactAll, "wal-compactor-shutdown"));
+    }
+
+    /**
+     * Returns a copy of the current lines of the file.
+     *
+     * @return the lines with all logged changes applied
+     * @throws IOException if the snapshot or log cannot be read
+     */
+    public synchronized List<String> lines() throws IOException {
+        load();
+        return liveLines();
+    }
+
+    /**
+     * Returns a reader over the current contents of the file.
+     *
+     * @return a reader positioned at the first line
+     * @throws IOException if the snapshot or log cannot be read
+     */
+    public synchronized BufferedReader newReader() throws IOException {
+        load();
+        if (content == null) {
+            StringBuilder text = new StringBuilder();
+            for (String line : lines) {
+                if (line != null) {
+                    text.append(line).append('\n');
+                }
+            }
+            content = text.toString();
+        }
+        return new BufferedReader(new StringReader(content));
+    }
+
+    /**
+     * Finds the first line with the given ID.
+     *
+     * @param id the record ID (first field of the line)
+     * @return the line, or null if none matches
+     * @throws IOException if the snapshot or log cannot be read
+     */
+    public synchronized String find(String id) throws IOException {
+        load();
+        Integer line = index.get(id);
+        return line == null ? null : lines.get(line);
+    }
+
+    /**
+     * Appends a line to the file.
+     *
+     * @param data the line to append
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void append(String data) throws IOException {
+        appendAll(List.of(data));
+    }
+
+    /**
+     * Appends several lines to the file with a single log write.
+     *
+     * @param newLines the lines to append
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void appendAll(List<String> newLines) throws IOException {
+        load();
+        if (newLines.isEmpty()) {
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (String line : newLines) {
+            if (records.length() > 0) {
+                records.append('\n');
+            }
+            records.append("A|").append(line);
+        }
+        writeRecord(records.toString(), newLines.size());
+        for (String line : newLines) {
+            addLine(line);
+        }
+        content = null;
+    }
+
+    /**
+     * Replaces every line with the given ID.
+     *
+     * @param id   the record ID
+     * @param data the replacement line
+     * @return true if at least one line was replaced
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized boolean upsert(String id, String data) throws IOException {
+        load();
+        if (!index.containsKey(id)) {
+            return false;
+        }
+        writeRecord("U|" + id + "|" + data);
+        applyUpsert(id, data);
+        return true;
+    }
+
+    /**
+     * Replaces the lines of several records with a single log write. IDs that are not
+     * in the file are skipped.
+     *
+     * @param updates the replacement line of each record, keyed by record ID
+     * @return the number of IDs that were found and replaced
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized int upsertAll(Map<String, String> updates) throws IOException {
+        load();
+        StringBuilder records = new StringBuilder();
+        List<String> found = new ArrayList<>();
+        for (Map.Entry<String, String> update : updates.entrySet()) {
+            if (!index.containsKey(update.getKey())) {
+                continue;
+            }
+            if (records.length() > 0) {
+                records.append('\n');
+            }
+            records.append("U|").append(update.getKey()).append('|').append(update.getValue());
+            found.add(update.getKey());
+        }
+        if (found.isEmpty()) {
+            return 0;
+        }
+        writeRecord(records.toString(), found.size());
+        for (String id : found) {
+            applyUpsert(id, updates.get(id));
+        }
+        return found.size();
+    }
+
+    /**
+     * Removes every line with the given ID.
+     *
+     * @param id the record ID
+     * @return true if at least one line was removed
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized boolean delete(String id) throws IOException {
+        load();
+        if (!index.containsKey(id)) {
+            return false;
+        }
+        writeRecord("D|" + id);
+        applyDelete(id);
+        return true;
+    }
+
+    /**
+     * Replaces the whole file with the given lines. The new snapshot is written
+     * directly and the log is discarded, since a full rewrite supersedes it.
+     *
+     * @param newLines the new contents of the file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void replaceAll(List<String> newLines) throws IOException {
+        setLines(newLines);
+        writeSnapshot();
+    }
+
+    /**
+     * Folds the log into a fresh snapshot of the data file and removes the log.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        if (lines == null && !Files.exists(log)) {
+            return;
+        }
+        load();
+        if (pendingRecords == 0 && !Files.exists(log)) {
+            return;
+        }
+        writeSnapshot();
+    }
+
+    // Compacts under the data file's lock, so no other process writes the log meanwhile
+    private void compactLocked() throws IOException {
+        DataFileLock.Held held = DataFileLock.forFile(snapshot.toString()).exclusive();
+        try {
+            compact();
+        } finally {
+            held.close();
+        }
+    }
+
+    // Loads the snapshot and replays the log on top of it, once
+    private void load() throws IOException {
+        if (lines != null) {
+            return;
+        }
+        byte[] snapshotContent = Files.exists(snapshot) ? Files.readAllBytes(snapshot) : new byte[0];
+        snapshotCrc = crcOf(snapshotContent);
+        List<String> snapshotLines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(new String(snapshotContent, CHARSET)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                snapshotLines.add(line);
+            }
+        }
+        setLines(snapshotLines);
+
+        pendingRecords = 0;
+        if (!Files.exists(log)) {
+            return;
+        }
+        byte[] logContent = Files.readAllBytes(log);
+        List<String> records = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>(); // Byte offset just past each complete record
+        int start = 0;
+        for (int i = 0; i < logContent.length; i++) {
+            if (logContent[i] == '\n') {
+                records.add(new String(logContent, start, i - start, CHARSET));
+                ends.add(i + 1);
+                start = i + 1;
+            }
+        }
+        if (records.isEmpty() || !records.get(0).equals("S|" + snapshotCrc)) {
+            // Log was already folded into this snapshot, or belongs to a replaced one
+            Files.delete(log);
+            return;
+        }
+
+        int validEnd = ends.get(0);
+        int i = 1;
+        while (i < records.size()) {
+            String record = records.get(i);
+            int count = 1;
+            if (record.startsWith("B|")) {
+                String[] frame = record.split("\\|");
+                count = frame.length == 3 && frame[1].matches("\\d+") ? Integer.parseInt(frame[1]) : -1;
+                if (count < 1 || i + count >= records.size() || !frame[2].equals(String.valueOf(
+                        crcOf(String.join("\n", records.subList(i + 1, i + 1 + count)).getBytes(CHARSET))))) {
+                    break; // Torn batch: none of it is replayed
+                }
+                i++;
+            }
+            for (int j = i; j < i + count; j++) {
+                replay(records.get(j));
+            }
+            pendingRecords += count;
+            i += count;
+            validEnd = ends.get(i - 1);
+        }
+        if (validEnd < logContent.length) {
+            // Cut the torn tail off, so later records are not appended after it
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                channel.truncate(validEnd);
+            }
+            System.out.println("Discarded a torn record at the end of " + log.getFileName());
+        }
+    }
+
+    private void replay(String record) {
+        String body = record.substring(2);
+        switch (record.charAt(0)) {
+            case 'A':
+                addLine(body);
+                break;
+            case 'U': {
+                int separator = body.indexOf('|');
+                applyUpsert(body.substring(0, separator), body.substring(separator + 1));
+                break;
+            }
+            case 'D':
+                applyDelete(body);
+                break;
+            default:
+                System.out.println("Skipping unknown log record: " + record);
+        }
+    }
+
+    private void writeRecord(String record) throws IOException {
+        writeRecord(record, 1);
+    }
+
+    // Writes one or more newline-separated records with a single append to the log;
+    // several records are framed as a batch, so recovery replays all of them or none
+    private void writeRecord(String record, int count) throws IOException {
+        StringBuilder entry = new StringBuilder();
+        if (pendingRecords == 0 || !Files.exists(log)) {
+            Files.deleteIfExists(log);
+            entry.append("S|").append(snapshotCrc).append('\n');
+        }
+        if (count > 1) {
+            entry.append("B|").append(count).append('|').append(crcOf(record.getBytes(CHARSET))).append('\n');
+        }
+        entry.append(record).append('\n');
+        Files.write(log, entry.toString().getBytes(CHARSET), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        AtomicFileWriter.sync(log, AtomicFileWriter.durabilityOf(snapshot));
+        pendingRecords += count;
+    }
+
+    // Atomically replaces the snapshot with the in-memory lines and drops the log
+    private void writeSnapshot() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            if (line != null) {
+                text.append(line).append(System.lineSeparator());
+            }
+        }
+        byte[] bytes = text.toString().getBytes(CHARSET);
+        AtomicFileWriter.replace(snapshot, bytes);
+        snapshotCrc = crcOf(bytes);
+        Files.deleteIfExists(log);
+        pendingRecords = 0;
+        RecordStore.invalidate(snapshot.toString());
+        DataFileLock.forFile(snapshot.toString()).written(); // Other processes must reload the snapshot
+    }
+
+    // Replaces the current lines and rebuilds the index over them
+    private void setLines(List<String> newLines) {
+        lines = new ArrayList<>(newLines.size());
+        index.clear();
+        duplicateIds.clear();
+        removedLines = 0;
+        content = null;
+        for (String line : newLines) {
+            addLine(line);
+        }
+    }
+
+    private void addLine(String line) {
+        if (index.putIfAbsent(idOf(line), lines.size()) != null) {
+            duplicateIds.add(idOf(line));
+        }
+        lines.add(line);
+    }
+
+    private List<String> liveLines() {
+        List<String> live = new ArrayList<>(lines.size() - removedLines);
+        for (String line : lines) {
+            if (line != null) {
+                live.add(line);
+            }
+        }
+        return live;
+    }
+
+    private void applyUpsert(String id, String data) {
+        Integer first = index.get(id);
+        if (first == null) {
+            return;
+        }
+        content = null;
+        if (!duplicateIds.contains(id) && idOf(data).equals(id)) {
+            lines.set(first, data);
+            return;
+        }
+        // Several lines share the ID, or the new line changes it: replace each match and reindex
+        for (int i = first; i < lines.size(); i++) {
+            if (lines.get(i) != null && idOf(lines.get(i)).equals(id)) {
+                lines.set(i, data);
+            }
+        }
+        setLines(liveLines());
+    }
+
+    private void applyDelete(String id) {
+        Integer first = index.remove(id);
+        if (first == null) {
+            return;
+        }
+        content = null;
+        if (duplicateIds.remove(id)) {
+            for (int i = first; i < lines.size(); i++) {
+                if (lines.get(i) != null && idOf(lines.get(i)).equals(id)) {
+                    lines.set(i, null);
+                    removedLines++;
+                }
+            }
+        } else {
+            lines.set(first, null);
+            removedLines++;
+        }
+        if (removedLines * 2 > lines.size()) {
+            setLines(liveLines()); // Drop the holes, so the list does not grow without bound
+        }
+    }
+
+    private static long crcOf(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private static String idOf(String line) {
+        int separator = line.indexOf('|');
+        return separator < 0 ? line : line.substring(0, separator);
+    }
+}